@@ -21,6 +21,7 @@ import mud.utils.Message;
 import mud.utils.MudUtils;
 import mud.utils.SpellTimer;
 import mud.utils.Time;
+import mud.utils.TimingWheel;
 
 /*
  * Copyright (c) 2012 Jeremy N. Harton
@@ -123,6 +124,10 @@ public abstract class Command {
 		parent.timer.scheduleAtFixedRate(task, delay, period);
 	}
 	
+	protected final TimingWheel.Timeout schedule(final Runnable task, final long delay) {
+		return parent.schedule(task, delay);
+	}
+	
 	protected final String colors(final String arg, final String cc) {
 		return parent.colors(arg,  cc);
 	}
@@ -252,11 +257,11 @@ public abstract class Command {
 	}
 	
 	protected final void addSpellTimer(final Player player, final SpellTimer s) {
-		parent.getSpellTimers(player).add(s);
+		parent.addSpellTimer(player, s);
 	}
 	
 	protected final void addEffectTimer(final Player player, final EffectTimer e) {
-		parent.getEffectTimers(player).add(e);
+		parent.addEffectTimer(player, e);
 	}
 	
 	protected final boolean applyEffect(final MUDObject m, final Effect effect) {
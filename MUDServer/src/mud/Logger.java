@@ -1,19 +1,35 @@
 package mud;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Hashtable;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 import mud.utils.Log;
+import mud.utils.RingBuffer;
 
 public final class Logger {
+	private static final int BATCH_SIZE = 4096; // most lines the writer thread takes at once
+	
 	private final Map<String, Boolean> config;
 	private final Map<String, Log> logs;
 	
 	private String directory = "";
 	
 	private boolean started = false;
+	
+	// asynchronous logging (see setAsync), lines are put in the queue and written out by the writer thread
+	private RingBuffer<Entry> queue = null;
+	private Thread writer = null;
+	
+	private volatile boolean running = false;
+	
+	private final AtomicLong dropped = new AtomicLong(0); // lines thrown away because the queue was full
 
 	public Logger() {
 		this.config = new LinkedHashMap<String, Boolean>();
@@ -89,6 +105,33 @@ public final class Logger {
 		return Collections.unmodifiableMap(this.config);
 	}
 	
+	/**
+	 * Log asynchronously, i.e. log(...) just timestamps the line and puts
+	 * it in a queue, and a separate thread writes them out in batches. If the
+	 * queue is full the line is dropped (see getDropped).
+	 * 
+	 * NOTE: must be called before start()
+	 * 
+	 * @param capacity number of lines the queue can hold
+	 */
+	public void setAsync(final int capacity) {
+		if( !this.started ) {
+			this.queue = new RingBuffer<Entry>(capacity);
+		}
+	}
+	
+	public boolean isAsync() {
+		return this.queue != null;
+	}
+	
+	public long getDropped() {
+		return this.dropped.get();
+	}
+	
+	public int getQueued() {
+		return (this.queue != null) ? this.queue.size() : 0;
+	}
+	
 	public void setDirectory(final String dirPath) {
 		this.directory = dirPath;
 	}
@@ -124,15 +167,77 @@ public final class Logger {
 		}
 
 		this.started = true;
+		
+		if( this.queue != null ) {
+			this.running = true;
+			
+			this.writer = new Thread(this::drain, "logger");
+			this.writer.setDaemon(true);
+			this.writer.start();
+		}
 	}
 
 	public void stop() {
+		if( this.writer != null ) {
+			this.running = false;
+			
+			LockSupport.unpark(this.writer);
+			
+			try {
+				this.writer.join();
+			}
+			catch(final InterruptedException ie) {
+				Thread.currentThread().interrupt();
+			}
+			
+			this.writer = null;
+		}
+		
 		for(final Log log : this.logs.values()) {
 			log.closeLog();
 		}
 		
 		this.started = false;
 	}
+	
+	/**
+	 * Writer thread, takes lines from the queue and writes them out, one
+	 * batch (and so one flush) per log at a time. Keeps going until the
+	 * logger is stopped and the queue is empty.
+	 */
+	private void drain() {
+		final List<Entry> entries = new ArrayList<Entry>(BATCH_SIZE);
+		final Map<Log, List<String>> batches = new LinkedHashMap<Log, List<String>>();
+		
+		while( true ) {
+			final boolean stopping = !this.running;
+			
+			if( this.queue.drainTo(entries, BATCH_SIZE) == 0 ) {
+				if( stopping ) break;
+				
+				LockSupport.parkNanos( TimeUnit.MILLISECONDS.toNanos(5) );
+				continue;
+			}
+			
+			for(final Entry entry : entries) {
+				List<String> lines = batches.get(entry.log);
+				
+				if( lines == null ) {
+					lines = new ArrayList<String>();
+					batches.put(entry.log, lines);
+				}
+				
+				lines.add(entry.line);
+			}
+			
+			for(final Map.Entry<Log, List<String>> batch : batches.entrySet()) {
+				batch.getKey().writeAll( batch.getValue() );
+			}
+			
+			entries.clear();
+			batches.clear();
+		}
+	}
 
 	// MUDServer
 	// public void attach(Logger l) { ... }
@@ -143,7 +248,12 @@ public final class Logger {
 		final Log log = logs.get(logName);
 
 		if( log != null ) {
-			log.writeln(logString);
+			if( this.running ) {
+				if( !this.queue.offer( new Entry(log, log.format(logString)) ) ) {
+					this.dropped.incrementAndGet();
+				}
+			}
+			else log.writeln(logString);
 		}
 		else {
 			System.out.println("No such Log!");
@@ -192,4 +302,14 @@ public final class Logger {
 	private void logDebug() {}
 
 	private void logDisconnect() {}*/
+	
+	private static final class Entry {
+		private final Log log;
+		private final String line; // already timestamped
+		
+		private Entry(final Log log, final String line) {
+			this.log = log;
+			this.line = line;
+		}
+	}
 }
\ No newline at end of file
@@ -23,6 +23,7 @@ import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 
+import mud.interfaces.ObjectListener;
 import mud.misc.Effect;
 import mud.objects.Player;
 import mud.utils.MudUtils;
@@ -38,6 +39,10 @@ public abstract class MUDObject {
 	private static final int NUM_PROPS = 100;
 	private static final float LOAD_FACT = 0.75f;
 	
+	private static ObjectListener listener = null; // told about changes (see setLocation, changed)
+
+	private transient volatile int revision = 0;   // incremented on each change (see changed)
+	
 	/* object data - persistent */
 	private Integer dbref;               // database reference number
 	protected String name;               // object name
@@ -192,6 +197,7 @@ public abstract class MUDObject {
 	 */
 	public boolean setName(final String newName) {
 		this.name = newName;
+		changed();
 		return true;
 	}
 
@@ -212,6 +218,7 @@ public abstract class MUDObject {
 	 */
 	public final void setDesc(final String newDescription) {
 		this.desc = newDescription;
+		changed();
 	}
 
 	/**
@@ -238,6 +245,7 @@ public abstract class MUDObject {
 	
 	public final void setFlag(final ObjectFlag flag) {
 		this.flags.add(flag);
+		changed();
 	}
 
 	/**
@@ -248,6 +256,7 @@ public abstract class MUDObject {
 	public final void setFlags(final EnumSet<ObjectFlag> tempFlags)
 	{
 		this.flags = tempFlags;
+		changed();
 	}
 
 	/**
@@ -257,6 +266,7 @@ public abstract class MUDObject {
 	 */
 	public final void removeFlag(final ObjectFlag flag) {
 		this.flags.remove(flag);
+		changed();
 	}
 
 	/**
@@ -267,6 +277,7 @@ public abstract class MUDObject {
 	public final void removeFlags(final EnumSet<ObjectFlag> tempFlags)
 	{
 		this.flags.removeAll(tempFlags);
+		changed();
 	}
 
 	/**
@@ -297,7 +308,44 @@ public abstract class MUDObject {
 	 * @param newLocation integer (database reference) of another MUDObject
 	 */
 	public final void setLocation(final Integer newLocation) {
+		final Integer oldLocation = this.location;
+		
 		this.location = newLocation;
+		
+		if( listener != null ) listener.locationChanged(this, oldLocation, newLocation);
+	}
+	
+	/**
+	 * Set the listener to be told whenever any MUDObject is changed
+	 * (ObjectDB uses this to keep track of what is where and of what
+	 * needs saving).
+	 * 
+	 * @param newListener
+	 */
+	public static void setListener(final ObjectListener newListener) {
+		listener = newListener;
+	}
+	
+	/**
+	 * Indicate that something about this object (that gets saved) has
+	 * changed. Subclasses should call this from any of their own setters
+	 * that change saved data.
+	 */
+	protected final void changed() {
+		this.revision++;
+
+		if( listener != null ) listener.objectChanged(this);
+	}
+
+	/**
+	 * Get this object's revision, which goes up every time something about
+	 * it (that gets saved) changes. Useful for telling whether something
+	 * computed from the object is out of date.
+	 * 
+	 * @return
+	 */
+	public final int getRevision() {
+		return this.revision;
 	}
 
 	/**
@@ -318,6 +366,7 @@ public abstract class MUDObject {
 	 */
 	public final void setOwner(final Player player) {
 		this.owner = player;
+		changed();
 	}
 	
 	public Double getWeight() {
@@ -382,6 +431,7 @@ public abstract class MUDObject {
 	 */
 	public final void setProperty(final String key, final String value) {
 		this.properties.put(key,  value);
+		changed();
 	}
 	
 	public final <T> void setProperty(final String key, final T value) {
@@ -398,6 +448,8 @@ public abstract class MUDObject {
 			
 			this.properties.put(key, "" + i.intValue());
 		}
+		
+		changed();
 	}
 
 	/**
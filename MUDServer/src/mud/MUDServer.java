@@ -23,15 +23,11 @@ package mud;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.FilenameFilter;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.PrintWriter;
 import java.lang.reflect.InvocationTargetException;
 import java.net.InetAddress;
@@ -52,6 +48,7 @@ import java.util.LinkedList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Hashtable;
 import java.util.Map.Entry;
 import java.util.Random;
@@ -59,7 +56,13 @@ import java.util.Set;
 import java.util.Stack;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
@@ -188,6 +191,8 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	
 	private boolean log_chat = true;        // log chat messages? (true=yes,false=no)
 	private boolean log_debug = true;       // log debug messages? (true=yes,false=no)
+	private boolean log_async = false;      // write logs from a separate thread? (true=yes,false=no)
+	private int log_roll = 0;               // time (minutes) before starting new log files, 0 for only when full
 	
 	// server state
 	private boolean running = true;
@@ -219,6 +224,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	private final String DATA_DIR = resolvePath(MAIN_DIR, "data"); // Data Directory
 	
 	private final String ACCOUNT_DIR = resolvePath(DATA_DIR, "accounts");     // Account Directory
+	private final String ACCOUNT_STORE = "accounts.db";                       // Account Store (file, in ACCOUNT_DIR)
 	private final String BACKUP_DIR = resolvePath(DATA_DIR, "backup");        // Backup Directory
 	private final String BOARD_DIR = resolvePath(DATA_DIR, "boards");         // Boards Directory
 	private final String CONFIG_DIR = resolvePath(DATA_DIR, "config");        // Config Directory
@@ -279,10 +285,15 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	public TimeLoop game_time;   // TimeLoop Object
 	private CommandExec cmdExec; //
 
-	private ConcurrentLinkedQueue<CMD> cmdQueue;
+	private LinkedBlockingQueue<CMD> cmdQueue;
 	
 	final private ChatChanneler chan = new ChatChanneler();
 
+	// delivers chat messages to channel listeners (see run)
+	final private ChatDispatcher chatDispatcher = new ChatDispatcher(chan,
+			(cc, msg, color, tagged) -> buildChatMessage(cc.getName(), new Triple<String>(cc.getChanColor(), cc.getSenderColor(), cc.getTextColor()), msg, color, tagged),
+			this::logChat);
+
 	// HashMaps
 	// dynamic - the contents of the hashmap may change while the server is running and in some cases that is very likely
 	// static - the contents of the hashmap are currently loaded once at startup and not modified thereafter
@@ -330,6 +341,14 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	private final Map<String, Date> holidays = new HashMap<String, Date>(10, 0.75f);               // HashMap that holds an in-game date for a "holiday" name string
 	private final Map<Integer, String> years = new HashMap<Integer, String>(50, 0.75f);            // HashMap that holds year names for game themes that supply them (static)
 	private final Map<String, Command> commandMap = new HashMap<String, Command>(20, 0.75f); // HashMap that holds an instance of each command currently (dynamic)
+	private final CommandRouter router = new CommandRouter();                                // Table of commands (name -> handler + access level), see registerCommands()
+	
+	// player commands which only touch the player's room, these can run alongside commands in other rooms (see getRooms)
+	private final Set<String> localCmds = new HashSet<String>(Arrays.asList(
+			"aliases", "calendar", "colors", "commands", "condition", "drop", "effects", "exits", "exp", "feats", "get", "inventory",
+			"look", "money", "pose", "put", "say", "score", "spellinfo", "spells", "stats", "status", "take", "time", "version",
+			"vitals", "where", "who"
+			));
 	private final Map<Zone, Integer> zones = new LinkedHashMap<Zone, Integer>(1, 0.75f);   // HashMap that tracks currently "loaded" zones (dynamic)
 	
 	private final Map<Client, Player> sclients = new HashMap<Client, Player>();
@@ -342,6 +361,11 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	private ObjectDB objectDB = new ObjectDB(); // TODO consider access modifier
 
 	private List<Player> players;          // ArrayList of Player Objects currently in use
+	
+	// indexes of the players in 'players' (see addOnline/removeOnline)
+	private final Map<Client, Player> onlineByClient = new ConcurrentHashMap<Client, Player>();  // client -> player
+	private final Map<String, Player> onlineByName = new ConcurrentHashMap<String, Player>();    // name -> player (exact, names are case-sensitive)
+	private final Map<Integer, Player> onlineByDBRef = new ConcurrentHashMap<Integer, Player>(); // dbref -> player
 
 	private Map<String, Spell> spells2 = new HashMap<String, Spell>(); // HashMap to lookup spells by index using name as key (static)
 
@@ -406,11 +430,19 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	/* global */
 
 	protected ArrayList<Mobile> moving = new ArrayList<Mobile>();  // list of mobiles which are currently moving
-	protected ArrayList<Player> outside = new ArrayList<Player>(); // list of players who are currently outside
+	protected List<Player> outside = Collections.synchronizedList(new ArrayList<Player>()); // list of players who are currently outside
 
 	// public HashMap<Room, List<Player>> listenersLists; // possibly replace per room listener lists? (UNUSED)
 
-	protected Timer timer = new Timer(); // Timer object with thread for executing TimerTask(s) for Spells, Effects
+	protected Timer timer = new Timer();                        // Timer object with thread for executing (repeating) TimerTask(s) for Commands
+	protected final TimingWheel timers = new TimingWheel(100, this::runExclusive); // timing wheel (100ms tick) for Spell, Effect, Auction timers, respawns, etc
+	
+	private final ReentrantLock worldLock = new ReentrantLock(); // held by the main loop while it runs commands, when they aren't queued (see runExclusive)
+
+	private final RenderCache renderCache = new RenderCache(); // rendered room output (see look(Room, Client))
+
+	private final PasswordHasher hasher = new PasswordHasher(2, 64, 2); // password hashing threads (see verify)
+	private final ConcurrentLinkedQueue<Runnable> verified = new ConcurrentLinkedQueue<Runnable>(); // logins/creations waiting to finish, once their password is hashed
 
 	private Hashtable<String, Bank> banks = new Hashtable<String, Bank>(); // banks
 
@@ -428,9 +460,9 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	/* player data */
 
 	// timer maps
-	private Map<Player, List<SpellTimer>> spellTimers = new HashMap<Player, List<SpellTimer>>();       // spell cooldown timers
-	private Map<Player, List<EffectTimer>> effectTimers = new HashMap<Player, List<EffectTimer>>();    // effect timers (effects end when timer ends)
-	private Map<Player, List<AuctionTimer>> auctionTimers = new HashMap<Player, List<AuctionTimer>>(); // auctions timers auctions end when timer ends)
+	private Map<Player, List<SpellTimer>> spellTimers = new ConcurrentHashMap<Player, List<SpellTimer>>();       // spell cooldown timers
+	private Map<Player, List<EffectTimer>> effectTimers = new ConcurrentHashMap<Player, List<EffectTimer>>();    // effect timers (effects end when timer ends)
+	private Map<Player, List<AuctionTimer>> auctionTimers = new ConcurrentHashMap<Player, List<AuctionTimer>>(); // auctions timers auctions end when timer ends)
 
 	// server state/configuration
 	private boolean firstRun = false;        // is the first time the software been's run [default: false]
@@ -445,6 +477,21 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	private boolean queued_commands = false; // should we queue commands and process them in order of arrival?  [default: true]
 	private boolean soft_commands = true;    // will we look at a command map for Command object based commands [default: true]
 	private boolean console_enabled = true;  // is the admin console available [default: true]
+	private boolean use_nio = false;         // use the non-blocking (selector based) network engine [default: false]
+	private boolean use_mccp = true;         // offer clients compressed output (MCCP2) [default: true]
+	
+	private int io_threads = NIOServer.DEFAULT_IO_THREADS; // number of i/o threads for the non-blocking network engine
+	private int command_threads = 1;                        // number of threads used to run queued commands (see CommandExec)
+	private int output_hwm = Client.DEFAULT_HIGH_WATER_MARK; // per client output high-water mark (bytes), see Client.isBackedUp()
+	
+	private int tick_length = 500; // length of a main loop tick (ms), periodic work is done once per tick
+	private int cmd_rate = 4;      // sustained number of commands per second allowed per client
+	private int cmd_burst = 8;     // number of commands a client may send in a burst
+	
+	private int checkpoint_interval = 300; // time between database checkpoints (s), 0 disables them (see ObjectDB.checkpoint)
+	private long last_checkpoint = 0;      // time of the last database checkpoint (ms)
+	
+	private final AtomicBoolean backup_running = new AtomicBoolean(false); // is a live backup being written (see live_backup)
 	
 	// TODO resolve the issue behind enabling queued_commands which results in fairly high CPU usage
 	
@@ -464,6 +511,9 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	private Map<Client, LoginData> loginData = new Hashtable<Client, LoginData>();    // holding values for login
 	private Map<Client, ClientData> clientData = new Hashtable<Client, ClientData>(); // used for?
 	
+	private Map<Client, RateLimiter> rateLimiters = new Hashtable<Client, RateLimiter>(); // per client command rate limiting
+	private Set<Client> deferred = new LinkedHashSet<Client>();                           // clients with input left over (main loop only)
+	
 	// holds instances of interactive terminal to game that is outside of the game world itself
 	private ConsoleMonitor cmon;
 
@@ -471,9 +521,10 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	private Map<Client, Account> caTable = new Hashtable<Client, Account>();
 
 	private AccountManager acctMgr = new AccountManager(); // Account Manager, holds and tracks Account objects
+	private AccountStore accountStore = new AccountStore( new File(ACCOUNT_DIR, ACCOUNT_STORE) ); // Account Store, where accounts are saved (see loadAccounts, saveAccounts)
 
 	// necessary so that cNames can properly map to player objects
-	private Map<String, Player> cNames = new Hashtable<String, Player>();
+	private Map<String, Player> cNames = new ConcurrentHashMap<String, Player>();
 	private Map<PClass, Integer> numPlayersOnlinePerClass = new Hashtable<PClass, Integer>();
 
 	// List<Feat> feats = (ArrayList<Feat>) Utils.mkList(Feat.ap_light,
@@ -576,7 +627,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			"@pgm",                                                           // @pgm interpret a "script" program
 			"@set", "setcolor", "@setskill",                                  // @set set properties on objects, @setskill set player skill values
 			"@sethp", "@setlevel", "@setmana",
-			"@setxp",
+			"@setxp", "@stats",                                               // @stats show object counts (by type, flag, zone, owner)
 			"@viewlog", "@zones", "@zoneinfo"                                 // @zones setup,configure,modify zones
 	};
 
@@ -596,6 +647,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	};
 
 	private static final int DEFAULT_PORT = 4000;
+	private static final int LOG_QUEUE_SIZE = 65536; // lines that can be waiting to be logged (see Logger.setAsync)
 	
 	Currency caps = new Currency("Bottle Caps", "caps", null, 1.0);
 	
@@ -664,6 +716,9 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 						System.out.println("Logging Enabled.");
 						System.out.println("");
 					}
+					else if (param.equals("async-logging")) {
+						server.log_async = true;
+					}
 					else if (param.equals("db")) {
 						server.DB_FILE = server.resolvePath(server.DATA_DIR, "databases", args[a + 1]);
 						System.out.println("Using database " + args[a + 1]);
@@ -702,6 +757,29 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 					else if (param.equals("int-login")) {
 						server.int_login = true;
 					}
+					else if (param.equals("nio")) {
+						server.use_nio = true;
+						System.out.println("Using non-blocking network engine.");
+					}
+					else if (param.equals("io-threads")) {
+						server.io_threads = Utils.toInt(args[a + 1], NIOServer.DEFAULT_IO_THREADS);
+					}
+					else if (param.equals("output-hwm")) {
+						server.output_hwm = Utils.toInt(args[a + 1], Client.DEFAULT_HIGH_WATER_MARK);
+					}
+					else if (param.equals("no-mccp")) {
+						server.use_mccp = false;
+					}
+					else if (param.equals("command-rate")) {
+						server.cmd_rate = Utils.toInt(args[a + 1], server.cmd_rate);
+					}
+					else if (param.equals("command-threads")) {
+						server.queued_commands = true;
+						server.command_threads = Utils.toInt(args[a + 1], 1);
+					}
+					else if (param.equals("checkpoint")) {
+						server.checkpoint_interval = Utils.toInt(args[a + 1], server.checkpoint_interval);
+					}
 					else if (param.equals("use-accounts")) {
 						server.use_accounts = true;
 					}
@@ -895,13 +973,23 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			logger.addConfigOption("log_chat", log_chat);
 			logger.addConfigOption("log_debug", log_debug);
 			
+			// write logs from a separate thread, so that logging doesn't hold up commands
+			if( log_async ) logger.setAsync(LOG_QUEUE_SIZE);
+			
 			// instantiate log objects (using no max length, no buffer -- for now)
+			final List<Log> logs = new ArrayList<Log>();
+			
+			logs.add( new Log("log", false) );   // character actions, etc
+			logs.add( new Log("error", false) ); // any software errors that occur
 			
-			logger.register( new Log("log", false) );   // character actions, etc
-			logger.register( new Log("error", false) ); // any software errors that occur
+			if( log_debug ) logs.add( new Log("debug", false) ); // any and all debugging
+			if( log_chat )  logs.add( new Log("chat", false) );  // all chat messages
 			
-			if( log_debug ) logger.register( new Log("debug", false) ); // any and all debugging
-			if( log_chat )  logger.register( new Log("chat", false) );  // all chat messages
+			for (final Log log : logs) {
+				log.setRollInterval(log_roll * 60000L);
+				
+				logger.register( log );
+			}
 			
 			attach( logger );
 			
@@ -1026,7 +1114,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		final ObjectLoader loader = new ObjectLoader(this, objectDB);
 
 		// Load everything from databases by flag
-		loader.loadObjects(loadListDatabase(DB_FILE), logger);
+		loader.loadObjects(DB_FILE, loadJournal(DB_FILE), logger);
 
 		debug("Database Loaded!");
 		debug("");
@@ -1035,10 +1123,14 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		
 		// TODO what do these functions output?
 		
+		final long placeStart = System.currentTimeMillis();
+		
 		// Post-Room Loading (i.e. place within the game world)
 		loadExits();          // load exits
 		placeThingsInRooms(); // load thing
 		loadItems();          // load items
+		
+		debug("Placed objects in " + (System.currentTimeMillis() - placeStart) + " ms");
 		// stackItems(); // put items inside of the objects they belong
 
 		// objectDB.stackItems(); // put items inside of the objects they belong
@@ -1241,6 +1333,8 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		 * features. In fact that bit just above doesn't need any changing.
 		 * Although I might need to explicity handle aliases better.
 		 */
+		registerCommands();
+		
 		addCommand("@access",   new AccessCommand());   //
 		addCommand("attack",    new AttackCommand());   //
 		addCommand("cast",      new CastCommand());     //
@@ -1316,7 +1410,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		}
 
 		// Initialize Program Interpreter
-		this.pgm = new ProgramInterpreter(this, true);
+		this.pgm = new ProgramInterpreter(this);
 
 		// Coins.debug();
 
@@ -1393,14 +1487,19 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 		debug("Time (Thread) Started!");
 
+		// Timers (spells, effects, auctions, respawns)
+		startThread( timers, "timers" );
+
+		debug("Timers (Thread) Started!");
+
 		// Weather Loop
 		// cpu: ~20%
 		// System.out.println("Weather (Thread) Started!");
 
 		// NOTE: if commands are unqueued then an error may hang the game
 		if (queued_commands) {
-			cmdQueue = new ConcurrentLinkedQueue<CMD>();
-			cmdExec = new CommandExec(this, cmdQueue);
+			cmdQueue = new LinkedBlockingQueue<CMD>();
+			cmdExec = new CommandExec(this, cmdQueue, command_threads);
 
 			startThread( cmdExec, "command_exec" );
 
@@ -1412,7 +1511,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		// TODO convert printlns to debug calls
 		
 		// TODO it'd be good to caught server launch failures in here, maybe?
-		this.s = new Server(this, port);
+		this.s = createServer();
 		
 		startThread( this.s, "server" );
 		
@@ -1459,6 +1558,9 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	private void processCMD(final CMD newCmd) {
 		final String command = newCmd.getCmdString();
 		final Client client = newCmd.getClient();
+		
+		// gather all the output from the command (and the prompt) into one write
+		client.beginOutput();
 
 		try {
 			if (checkAccess(getPlayer(client), newCmd.getPermissions())) {
@@ -1472,10 +1574,14 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			debug("processCMD(): ? (exception)");
 			debug( e );
 		}
-
-		if (loginCheck(client)) {
-			System.out.println("Client associated with login");
-			prompt(client);
+		finally {
+			try {
+				if (loginCheck(client)) {
+					System.out.println("Client associated with login");
+					prompt(client);
+				}
+			}
+			finally { client.endOutput(); }
 		}
 	}
 
@@ -1506,6 +1612,14 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 				client.write( Telnet.translate("IAC DONT NAWS") );
 			}
 			
+			// MCCP2 (compressed output), which we offer when the client connects
+			if( ba.length == Client.TELNET_COMMAND_LENGTH && ba[2] == Telnet.MCCP2 ) {
+				if( ba[1] == Telnet.DO )        client.MCCP2 = true;
+				else if( ba[1] == Telnet.DONT ) client.MCCP2 = false;
+				
+				updateCompression(client);
+			}
+			
 			/*if( message.equals("IAC SB NAWS") ) {
 				client.tn_cmd = false;
 				client.tn_subneg = true;
@@ -1564,6 +1678,12 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			}
 		}
 
+		// if the client isn't keeping up with it's output, leave any input queued until it does
+		if( client.isBackedUp() ) return;
+		
+		// if the client is sending commands faster than allowed, leave any input queued until it's allowed another
+		if( client.hasInput() && !getRateLimiter(client).tryAcquire() ) return;
+
 		final String whatClientSaid = client.getInput();
 		
 		try {
@@ -1619,11 +1739,6 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 			// flush players -- clean up broken connections;
 			//flush(); // not sure what the point of this is...
-
-			Thread.sleep(500); // wait 5/10 of a second
-		}
-		catch (final InterruptedException ie) {
-			debug("runHelper(): thread interrupted? (interrupted exception)");
 		}
 		catch (final Exception e) {
 			/*
@@ -1690,89 +1805,260 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		debug("Running? " + this.running); // tell us whether the MUD server is running or not
 		debug("Server? " + s.isRunning()); // tell us whether the underlying socket server is running
 
+		long next_tick = System.currentTimeMillis();
+
 		while (running) {
 			if (!input_hold) {
-				// try to reduce usage of cpu time
+				// wait for a client to have input for us, or for the next tick, whichever comes first
+				Client ready = null;
+				
 				try {
-					Thread.sleep(500);
+					ready = s.getReadyClient( getWaitTime(next_tick) );
 				}
 				catch(final InterruptedException ie) {
 					debug( ie );
 				}
 				
-				for (final Client client : s.getClients()) {
-					runHelper(client);
-				}
+				final Client first = ready;
 				
-				module.run();
-
-				/* Notification Messages */
-
-				// if we aren't delivering immediate notifications, then they'll be handled here
-				if (!notify_immediate) {
-					// grab and send one notification per player this loop iteration (if they have any)
-					for (final Player player : messageQueues.keySet()) {
-						final String message = messageQueues.get(player).poll();
-
-						if (message != null) {
-							send(message, player.getClient());
-						}
+				runExclusive(() -> {
+					// handle input as soon as it arrives
+					for (Client client = first; client != null; client = s.getReadyClient()) {
+						dispatch(client);
+					}
+					
+					// handle clients with input left over, that are allowed another command now
+					for (final Client client : new ArrayList<Client>(deferred)) {
+						if( !client.isRunning() )                         deferred.remove(client);
+						else if( getRateLimiter(client).getDelay() == 0 ) dispatch(client);
+					}
+				});
+				
+				if( System.currentTimeMillis() < next_tick ) continue;
+				
+				next_tick = System.currentTimeMillis() + tick_length;
+				
+				runExclusive(this::tick);
+				
+				if( checkpoint_interval > 0 ) {
+					if( last_checkpoint == 0 ) last_checkpoint = System.currentTimeMillis();
+					
+					if( System.currentTimeMillis() - last_checkpoint >= checkpoint_interval * 1000L ) {
+						checkpoint();
+						
+						last_checkpoint = System.currentTimeMillis();
 					}
 				}
+			}
+		}
+	}
+	
+	/**
+	 * Do the main loop's periodic work. This changes the world, so it's run
+	 * while no commands are (see runExclusive).
+	 */
+	private void tick() {
+		// check on every client once a tick (telnet messages, idle players, etc)
+		for (final Client client : s.getClients()) {
+			dispatch(client);
+		}
+		
+		// gather output from the rest of this tick (notifications, chat) into one write per client
+		final List<Client> clients = s.getClients();
+		
+		for (final Client client : clients) client.beginOutput();
+		
+		try {
+			module.run();
 
-				// TODO resolve major inefficiencies around delivering chat messages that amount to substantial cpu usage
-
-				/* Chat Messages */
-				Client client = null;
-				Message msg = null;
+			/* Logins (etc) whose passwords have been hashed */
+			runVerified();
 
-				String chan_name = "";
-				String chan_color = "";
-				String sender_color = "";
-				String text_color = "";
+			/* Notification Messages */
 
-				// for each ChatChannel
-				for (final ChatChannel cc : chan.getChatChannels()) {
-					// debug("CHANNEL: " + cc.getName(), 4);
+			// if we aren't delivering immediate notifications, then they'll be handled here
+			if (!notify_immediate) {
+				// grab and send one notification per player this loop iteration (if they have any)
+				for (final Player player : messageQueues.keySet()) {
+					final String message = messageQueues.get(player).poll();
 
-					chan_name = cc.getName();
-					chan_color = cc.getChanColor();
-					sender_color = cc.getSenderColor();
-					text_color = cc.getTextColor();
-					
-					msg = cc.getNextMessage();
-					
-					if (msg == null) {
-						//debug(chan_name + ": No Messages", 4);
-						continue;
+					if (message != null) {
+						send(message, player.getClient());
 					}
-					
-					Triple<String> colors = new Triple<String>(chan_color, sender_color, text_color);
-					
-					final String cm = buildChatMessage(chan_name, colors , msg, true, false);
-					final String cm_tag = buildChatMessage(chan_name, colors, msg, true, true);
-					final String cm_log = buildChatMessage(chan_name, colors, msg, false, false); // no color for logs
-					
-					// for each listener of this channel, send the message
-					for (final Player player : cc.getListeners()) {
-						try {
-							client = player.getClient();
+				}
+			}
 
-							if (player.getConfigOption("tagged-chat")) client.write(cm_tag);
-							else                                       client.write(cm);
-							
-							logChat( cm_log );
+			/* Chat Messages */
 
-							debug("chat message sent successfully", 4);
-						}
-						catch (final NullPointerException npe) {
-							debug("Game [chat channel: " + chan_name + "] > Null Message.");
-							debug( npe );
-						}
-					}
-				}
+			// every message waiting in every channel (see ChatDispatcher)
+			chatDispatcher.dispatch();
+		}
+		finally {
+			for (final Client c : clients) c.endOutput();
+		}
+	}
+	
+	/**
+	 * Run something that changes the world (the main loop's tick, timers, the
+	 * time loop, etc) while no commands are being run. When commands are
+	 * queued that means holding CommandExec's lock, otherwise they are run on
+	 * the main loop and it's the lock that the main loop holds while it runs
+	 * them.
+	 * 
+	 * @param task
+	 */
+	public void runExclusive(final Runnable task) {
+		if ( cmdExec != null ) {
+			cmdExec.runExclusive(() -> { task.run(); return null; });
+		}
+		else {
+			worldLock.lock();
+			
+			try     { task.run(); }
+			finally { worldLock.unlock(); }
+		}
+	}
+	
+	/**
+	 * Handle input from a client, gathering all the output from it's command
+	 * into one write. If the client has more input waiting afterward (more than
+	 * one line arrived, or it is being rate limited), it is deferred until it is
+	 * allowed another command.
+	 * 
+	 * @param client
+	 */
+	private void dispatch(final Client client) {
+		deferred.remove(client);
+		
+		client.beginOutput();
+		
+		try     { runHelper(client); }
+		finally { client.endOutput(); }
+		
+		if( client.isRunning() && (client.hasInput() || client.hasTelnetMessage()) ) deferred.add(client);
+	}
+	
+	/**
+	 * Figure out how long the main loop can wait for input, which is until
+	 * the next tick or until a deferred client is allowed another command.
+	 * 
+	 * @param next_tick time of the next tick (ms)
+	 * @return time to wait (ms)
+	 */
+	private long getWaitTime(final long next_tick) {
+		long wait = next_tick - System.currentTimeMillis();
+		
+		for (final Client client : deferred) {
+			// clients that aren't keeping up with output are left to the tick
+			if( client.isBackedUp() ) continue;
+			
+			wait = Math.min(wait, getRateLimiter(client).getDelay());
+		}
+		
+		return Math.max(0, wait);
+	}
+	
+	private RateLimiter getRateLimiter(final Client client) {
+		RateLimiter limiter = this.rateLimiters.get(client);
+		
+		if( limiter == null ) {
+			limiter = new RateLimiter(cmd_rate, cmd_burst);
+			
+			this.rateLimiters.put(client, limiter);
+		}
+		
+		return limiter;
+	}
+	
+	/**
+	 * Get a number identifying the part of the world the client's player is in,
+	 * it's zone if the room belongs to one or else the room itself. Used to
+	 * decide which thread runs the client's commands (see CommandExec).
+	 * 
+	 * @param client
+	 * @return
+	 */
+	public int getRegion(final Client client) {
+		final Player player = getPlayer(client);
+		
+		if( player != null ) {
+			final Room room = getRoom( player.getLocation() );
+			
+			if( room != null ) {
+				final Zone zone = room.getZone();
+				
+				if( zone != null ) return zone.getId();
+				else               return room.getDBRef();
 			}
 		}
+		
+		return 0;
+	}
+	
+	/**
+	 * Get the rooms that need to be locked for the specified input to be run
+	 * alongside commands from other parts of the world (see CommandExec), or
+	 * null if it has to be run by itself. Player commands which only touch
+	 * the player's room (see localCmds) need that room, and going through an
+	 * exit needs the room on the other side too. Anything else (logging in,
+	 * editors, chat, building/admin commands, soft commands, etc) might change
+	 * things anywhere, as might a room with triggers or a portal.
+	 * 
+	 * NOTE: looking at something other than the room, or at a room whose
+	 * description has scripting in it, may run a script (which can change
+	 * things)
+	 * 
+	 * @param input
+	 * @param client
+	 * @return room dbrefs, or null
+	 */
+	public int[] getRooms(final String input, final Client client) {
+		if( !loginCheck(client) ) return null;
+		
+		final Player player = getPlayer(client);
+		
+		if( !Utils.mkList("IC", "OOC", "INT", "VIEW").contains( player.getStatus() ) ) return null;
+		
+		final String cmd = input.trim().split(" ")[0];
+		
+		if( cmd.startsWith("#") ) return null; // chat
+		
+		final Room room = getRoom( player.getLocation() );
+		
+		if( room == null || hasTriggers(room) ) return null;
+		
+		final CommandRouter.Route route = router.getRoute(cmd, aliases);
+		
+		if( route != null && !route.isSoft() && player.getAccess() >= route.getAccess() ) {
+			if( route.getAccess() > Constants.USER || !localCmds.contains( route.getName() ) ) return null;
+			
+			if( route.getName().equals("look") ) {
+				final String arg = input.trim().substring(cmd.length()).trim();
+				
+				if( !arg.isEmpty() || room.getDesc().contains("{") ) return null;
+			}
+			
+			return new int[] { room.getDBRef() };
+		}
+		
+		// exits
+		for (final Exit exit : room.getExits()) {
+			if( isExitFor(exit, cmd) ) {
+				if( exit.getExitType() == ExitType.PORTAL ) return null;
+				
+				final Room other = getRoom( exit.getDestination() != room.getDBRef() ? exit.getDestination() : exit.getLocation() );
+				
+				if( other == null || hasTriggers(other) ) return null;
+				
+				return new int[] { room.getDBRef(), other.getDBRef() };
+			}
+		}
+		
+		return null;
+	}
+	
+	private boolean hasTriggers(final Room room) {
+		return !room.getTriggers(TriggerType.onEnter).isEmpty() || !room.getTriggers(TriggerType.onLeave).isEmpty();
 	}
 	
 	private String buildChatMessage(String channelName, Triple<String> colorData, Message msg, Boolean color, Boolean tagged) {
@@ -2638,6 +2924,9 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 				case "account_menu":
 					handle_account_menu(cmd, client);
 					break;
+				case "verifying":
+					send("Verifying your password, please wait...", client);
+					break;
 				default:
 					setClientState(client, ""); // clear any unintended client states
 					break;
@@ -2826,597 +3115,60 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 				/* Command Evaluation */
 
-				boolean buildCmd = false;
-				boolean adminCmd = false;
-				boolean wizCmd = false;
-				boolean superuserCmd = false;
-
-				debug("Entering superuser command loop...", 4);
-				
-				/* SuperUser Commands */
-
-				if (player.getAccess() >= Constants.SUPERUSER) {
-					superuserCmd = true; // begin by assuming we have a superuser command
-
-					if( cmdIs(cmd, "@access") ) {
-						getCommand("@access").execute(arg, client);
-					}
-					else if( cmdIs(cmd, "@alias") ) {
-						cmd_alias(arg, client);
-					}
-					else if( cmdIs(cmd, "@broadcast") ) {
-						write("Game> " + player.getName() + " says, " + arg);
-					}
-					else if( cmdIs(cmd, "@jsonify") ) {
-						cmd_jsonify(arg, client);
-					}
-					else if( cmdIs(cmd, "@load") ) {
-						send("Game> Command Not Implemented!", client);
-
-						boolean success = cmd_unloadc(arg, client);
-
-						if( success ) {
-							send("Game> Loaded " + commandMap.get(arg) + ".", client);
-						}
-						else {
-							String[] args = arg.split("=");
-
-							send("Game> Failed to load " + args[1] + " with command name " + args[0], client);
-						}
-					}
-					else if( cmdIs(cmd, "@unload") ) {
-						send("Game> Command Not Implemented!", client);
-
-						boolean success = cmd_unloadc(arg, client);
-
-						if( success ) {
-							send("Game> Unloaded " + arg + ".", client);
-						}
-						else {
-							String[] args = arg.split("=");
-
-							send("Game> Failed to unload " + args[1] + " with command name " + args[0], client);
-						}
-					}
-					else if( cmdIs(cmd, "@reload") ) {
-						if (arg.equals("")) sys_reload();
-						else                sys_reload(arg);
-					}
-					else if( cmdIs(cmd, "@shutdown") )   cmd_shutdown(arg, client);
-					else if( cmdIs(cmd, "@sethour") )    cmd_sethour(arg, client);
-					else if( cmdIs(cmd, "@setminute") )  cmd_setminute(arg, client);
-					else if( cmdIs(cmd, "@setweather") ) cmd_setweather(arg, client);
-					else {
-						superuserCmd = false; // if our initial assumption was wrong, indicate that
-					}
-
-					if (superuserCmd) {
-						return;
-					}
-				}
-
-				debug("Exited superuser command loop.", 4);
+				// look the command up in the command table (see registerCommands)
+				final CommandRouter.Route route = router.getRoute(cmd, aliases);
 
-				debug("Entering build command loop...", 4);
+				if (route != null && !route.isSoft() && player.getAccess() >= route.getAccess()) {
+					debug("Command: " + route.getName(), 4);
 
-				/* Builder Commands */
+					route.execute(arg, client);
 
-				if (player.getAccess() >= Constants.BUILD) {
-					buildCmd = true; // begin by assuming we have a build command
-
-					if ( cmdIs(cmd, "@check") ) {
-						// run the check function
-						cmd_check(arg, client);
-					}
-					else if ( cmdIs(cmd, "@cedit") ) {
-						// indicate what is parsing commands
-						debug("Command Parser: @cedit");
-
-						// launch the item editor
-						cmd_creatureedit(arg, client);
-					}
-					else if ( cmdIs(cmd, "@create_npc") ) {
-						final String[] args = arg.split(" ");
-
-						for (final String s : args) {
-							System.out.println(s);
-						}
-
-						final String npcName = args[0];
-						
-						//getRace checks equality, ignoring case
-						//final Race npcRace = getRace(args[1]);
-						final Race npcRace = Races.NONE;
-						//final Integer[] stats = Utils.stringsToIntegers(args[2].split(","));
-						final Integer[] stats = Utils.stringsToIntegers("7,7,7,7,7,7,7".split(","));
-						
-						final Room location = getRoom(getPlayer(client).getLocation());
-
-						createNPC(npcName, npcRace, stats, location);
-					}
-					else if ( cmdIs(cmd, "@dig") ) {
-						cmd_dig(arg, client);
-					}
-					else if ( cmdIs(cmd, "@describe") ) {
-						// run the describe function
-						cmd_describe(arg, client);
-					}
-					else if ( cmdIs(cmd, "@door") ) {
-						// run the door function
-						cmd_door(arg, client);
-					}
-
-					// pass arguments to the dungeon function
-					// commented out on purpose
-					/*
-					 * else if ( cmd.equals("@dungeon") || ( aliasExists &&
-					 * alias.equals("@dungeon") ) ) { buildCmd = true;
-					 * 
-					 * int dX = 2; int dY = 2;
-					 * 
-					 * Dungeon d = new Dungeon(arg, dX, dY);
-					 * 
-					 * cmd_jump(d.dRooms[0][0].getDBRef() + "", client);
-					 * cmd_look("", client);
-					 * 
-					 * int dXc = 0; int dYc = 0;
-					 * 
-					 * System.out.println(d.dRooms.length);
-					 * 
-					 * for (int r = 0; r < dX * dY; r++) { if (dXc == 0) {
-					 * System.out.println("Xexits" + ", " + r + ", " + "(" + dXc
-					 * + ", " + dYc + ")"); cmd_open("east=" + d.roomIds[r] +
-					 * "=" + (d.roomIds[r] + 1), client); cmd_open("west=" +
-					 * (d.roomIds[r] + 1) + "=" + d.roomIds[r], client); } if
-					 * (dYc == 0) { System.out.println("Yexits" + ", " + r +
-					 * ", " + "(" + dXc + ", " + dYc + ")"); cmd_open("south=" +
-					 * d.roomIds[r] + "=" + (d.roomIds[r] + dX), client);
-					 * cmd_open("north=" + (d.roomIds[r] + dX) + "=" +
-					 * d.roomIds[r], client); } if (r == dX - 1) {
-					 * System.out.println("Increase in Y"); dYc = dYc + 1; dXc =
-					 * 0; } else { System.out.println("Increase in X"); dXc =
-					 * dXc + 1; } } }
-					 */
-					else if ( cmdIs(cmd, "@edit") ) {
-						cmd_edit(arg, client);
-					}
-					else if ( cmdIs(cmd, "@examine") ) {
-						// run the examine function
-						cmd_examine(arg, client);
-					}
-					//
-					else if ( cmdIs(cmd, "@fail") ) {
-						cmd_fail(arg, client);
-					}
-					else if ( cmdIs(cmd, "@iedit") ) {
-						// indicate what is parsing commands
-						debug("Command Parser: @iedit");
-
-						// launch the item editor
-						cmd_itemedit(arg, client);
-					}
-					else if ( cmdIs(cmd, "@jump") ) {
-						cmd_jump(arg, client);
-					}
-					else if ( cmdIs(cmd, "@link") ) {
-						cmd_link(arg, client);
-					}
-					else if ( cmdIs(cmd, "@lsedit") ) {
-						cmd_lsedit(arg, client); // run the list editor
-					}
-					else if ( cmdIs(cmd, "@nameref") ) {
-						cmd_nameref(arg, client);
-					}
-					else if ( cmdIs(cmd, "@ofail") ) {
-						cmd_ofail(arg, client); // set an ofail message
-					}
-					else if ( cmdIs(cmd, "@open") ) {
-						// run the open function
-						cmd_open(arg, client);
-					}
-					else if ( cmdIs(cmd, "@osuccess") ) {
-						//
-						cmd_osuccess(arg, client);
-					}
-					else if ( cmdIs(cmd, "@qedit") ) {
-						//
-						debug("Command Parser: @qedit");
-
-						// run the list editor
-						cmd_questedit(arg, client);
-					}
-					else if ( cmdIs(cmd, "@redit") ) {
-						//
-						debug("Command Parser: @redit");
-
-						// run the list editor
-						cmd_roomedit(arg, client);
-					}
-					else if ( cmdIs(cmd, "@skedit") ) {
-						//
-						debug("Command Parser: @skilledit");
-
-						// run the skill editor
-						cmd_skilledit(arg, client);
-					}
-					//
-					else if ( cmdIs(cmd, "@success") ) {
-						cmd_success(arg, client); // set an exit success message
-					}
-					else if ( cmdIs(cmd, "@unlink") ) {
-						cmd_unlink(arg, client);
-					}
-					else if ( cmdIs(cmd, "@zedit") ) {
-						cmd_zoneedit(arg, client);
-					}
-					else {
-						buildCmd = false; // if our initial assumption was wrong, indicate that
-					}
-
-					if (buildCmd) {
-						return;
-					}
+					return;
 				}
 
-				debug("Exited build command loop.", 4);
-
-				debug("Entering admin command loop...", 4);
+				if (player.getAccess() >= Constants.USER) {
+					// TODO exits first, then soft commands...
+					debug("Exit? " + cmd);
 
-				/* Admin Commands */
+					boolean nothing = false;
 
-				if (player.getAccess() >= Constants.ADMIN) {
-					adminCmd = true; // begin by assuming we have a admin command
+					if ( cmd.matches("[a-zA-Z_-]+") ) {
+						// exit handling
+						// Has the user given an action/exit that is linked to something for which no similarly named command exists?
+						// If so, execute link or move user in the direction/to the room specified by the action/exit
 
-					if ( cmdIs(cmd, "@accounts") ) {
-						cmd_accounts(arg, client);
-					}
-					else if ( cmdIs(cmd, "@alias") ) {
-						cmd_alias(arg, client);
-					}
-					else if ( cmdIs(cmd, "@backup") ) {
-						cmd_backup(arg, client);
-						// send("Game> Backup Functionality Broken. Please stick to manual file saves.");
-					} 
-					else if ( cmdIs(cmd, "@bb") ) {
-						cmd_bb(arg, client);
-					}
-					else if ( cmdIs(cmd, "@config") ) {
-						cmd_config(arg, client);
-					}
-					else if ( cmdIs(cmd, "@control") ) {
-						// run the NPC control/takeover function?
-						cmd_control(arg, client);
-					}
-					else if ( cmdIs(cmd, "@debug") ) {
-						cmd_debug(arg, client);
-					}
-					else if ( cmdIs(cmd, "@find") ) {
-						cmd_find(arg, client);
-					}
-					else if ( cmdIs(cmd, "@flags") ) {
-						cmd_flags(arg, client);
-					}
-					else if ( cmdIs(cmd, "@give") ) {
-						cmd_give(arg, client);
-					}
-					else if ( cmdIs(cmd, "@hash") ) {
-						client.write("Hash of argument: '" + arg + "' is hash: '" + Utils.hash(arg) + "'.");
-					}
-					else if ( cmdIs(cmd, "@hedit") ) {
-						cmd_helpedit(arg, client);
-					}
-					else if ( cmdIs(cmd, "@initialize") ) {
-						cmd_initialize(arg, client);
-					}
-					else if ( cmdIs(cmd, "@kick") ) {
-						cmd_kick(arg, client);
-					}
-					else if ( cmdIs(cmd, "@listprops") ) {
-						cmd_listprops(arg, client);
-					}
-					else if ( cmdIs(cmd, "@makehouse") ) {
-						makeHouse( getPlayer(client) );
-					}
-					else if ( cmdIs(cmd, "@name") ) {
-						cmd_name(arg, client);
-					}
-					else if ( cmdIs(cmd, "@nextdb") ) {
-						if (arg.equals("")) {
-							send("Next Database Reference Number (DBRef/DBRN): " + objectDB.peekNextId(), client);
+						// handle the command as an exit
+						if ( exitHandler(cmd, client) ) {
+							debug("It was an exit");
 						}
-					}
-					else if ( cmdIs(cmd, "@npcs") ) {
-						cmd_npcs("", client);
-					}
-					else if ( cmdIs(cmd, "@lex") ) {
-						final List<String> result = ProgramInterpreter.lex(arg); 
-						
-						send(result, client);
-					}
-					else if ( cmdIs(cmd, "@pgm") ) {
-						// we'll just create a new and temporary instance (debugging enabled)
-						ProgramInterpreter newInterp = new ProgramInterpreter(this, true);
-						
-						Script script = new Script(arg);
-						
-						// invoke the program interpreter and pass it the argument
-						send("-Result: " + newInterp.interpret(script, player, null), client);
-
-						newInterp = null;
-					}
-					else if ( cmdIs(cmd, "@set") ) {
-						cmd_set(arg, client);
-					}
-					else if ( cmdIs(cmd, "@session") ) {
-						/*
-						 * notionally this should give data on the current or
-						 * last of the specified player
-						 */
-						cmd_session(arg, client);
-					}
-					else if ( cmdIs(cmd, "@sethp") ) {
-						cmd_sethp(arg, client); // DM/Debug Command
-					}
-					else if ( cmdIs(cmd, "@setlevel") ) {
-						cmd_setlevel(arg, client); // DM/Debug Command
-					}
-					else if ( cmdIs(cmd, "@setmana") ) {
-						cmd_setmana(arg, client); // DM/Debug Command
-					}
-					else if ( cmdIs(cmd, "@setskill") ) {
-						cmd_setskill(arg, client); // DM/Debug Command
-					}
-					else if ( cmdIs(cmd, "@setxp") ) {
-						cmd_setxp(arg, client); // DM/Debug Command
-					}
-					else if ( cmdIs(cmd, "@viewlog") ) {
-						cmd_viewlog(arg, client);
-					}
-					else if ( cmdIs(cmd, "@tune") ) {
-						String[] args = arg.split(" ");
-
-						if (args[0].equals("cmdDelay")) {
-							final int delay = Utils.toInt(args[1], -1);
-						}
-					}
-					else if ( cmdIs(cmd, "@zones") ) {
-						cmd_zones(arg, client);
-					}
-					else if ( cmdIs(cmd, "@zoneinfo") ) {
-						cmd_zoneinfo(arg, client);
-					}
-					else {
-						adminCmd = false; // if our initial assumption was wrong, indicate that
-					}
-
-					if (adminCmd) {
-						return;
-					}
-				}
-
-				debug("Exited admin command loop.", 4);
-
-				debug("Entered wizard command loop.", 4);
-
-				/* Wizard Commands */
-
-				if (player.getAccess() >= Constants.WIZARD) {
-					wizCmd = true; // begin by assuming we have a wizard command
-
-					if ( cmdIs(cmd, "@ban") ) {
-						cmd_ban(arg, client);
-					}
-					else if ( cmdIs(cmd, "@flag") ) {
-						cmd_flag(arg, client);
-					}
-					else if ( cmdIs(cmd, "@flush") ) {
-						flush();
-						send("Dead Connections Flushed!");
-					}
-					else if ( cmdIs(cmd, "@recycle") ) {
-						cmd_recycle(arg, client);
-					}
-					else if ( cmdIs(cmd, "@setcolor") ) {
-						cmd_setcolor(arg, client);
-					}
-					else if ( cmdIs(cmd, "@setmode") ) {
-						cmd_setmode(arg, client);
-					}
-					else if ( cmdIs(cmd, "@spawn") ) {
-						cmd_spawn(arg, client);
-					}
-					else if ( cmdIs(cmd, "@teleport") ) {
-						getCommand("@teleport").execute(arg, client);
-					}
-					else {
-						wizCmd = false; // if our initial assumption was wrong, indicate that
-					}
-
-					if (wizCmd) {
-						return;
-					}
-				}
-
-				debug("Exited wizard command loop.", 4);
-
-				debug("Entering user commmand loop...", 4);
-
-				/* User Commands */
-
-				// TODO convert player command checks to use CmdIs(...)
-
-				if (player.getAccess() >= Constants.USER) {
-					if ( cmdIs(cmd, "ask") )             cmd_ask(arg, client);
-					// attack (a soft command)
-					else if ( cmdIs(cmd, "aliases") )    cmd_aliases(arg, client);
-					else if ( cmdIs(cmd, "auction") )    cmd_auction(arg, client);
-					else if ( cmdIs(cmd, "auctions") )   cmd_auctions(arg, client);
-					else if ( cmdIs(cmd, "balance") )    cmd_balance(arg, client);
-					else if ( cmdIs(cmd, "bash") )       cmd_bash(arg, client);
-					else if ( cmdIs(cmd, "bid") )        cmd_bid(arg, client);
-					else if ( cmdIs(cmd, "boards") )     cmd_boards(arg, client);
-					else if ( cmdIs(cmd, "buy") )        cmd_buy(arg, client);
-					else if ( cmdIs(cmd, "calendar") )   cmd_calendar(arg, client);
-					// cast (a soft command)
-					else if ( cmdIs(cmd, "chargen") )    cmd_chargen(arg, client);
-					else if ( cmdIs(cmd, "chat") )       cmd_chat(arg, client);
-					else if ( cmdIs(cmd, "climb") )      cmd_climb(arg, client);
-					else if ( cmdIs(cmd, "cls") )        cmd_cls(arg, client);
-					else if ( cmdIs(cmd, "colors") )     cmd_colors(arg, client);
-					else if ( cmdIs(cmd, "commands") )   cmd_commands(arg, client);
-					else if ( cmdIs(cmd, "consider") )   cmd_consider(arg, client);
-					else if ( cmdIs(cmd, "condition") )  cmd_condition(arg, client);
-					else if ( cmdIs(cmd, "craft") )      cmd_craft(arg, client);
-					else if ( cmdIs(cmd, "deposit") )    cmd_deposit(arg, client);
-					else if ( cmdIs(cmd, "drink") )      cmd_drink(arg, client);
-					else if ( cmdIs(cmd, "drop") )       cmd_drop(arg, client); 
-					else if ( cmdIs(cmd, "effects") )    cmd_effects(arg, client);
-					else if ( cmdIs(cmd, "equip") )      cmd_equip(arg, client);
-					else if ( cmdIs(cmd, "exchange") )   cmd_exchange(arg, client);
-					else if ( cmdIs(cmd, "exp") )        cmd_exp(arg, client); // TODO CMD 5
-					else if ( cmdIs(cmd, "exits") )      cmd_exits(arg, client);
-					else if ( cmdIs(cmd, "feats") )      cmd_feats(arg, client);
-					else if ( cmdIs(cmd, "fly") )        cmd_fly(arg, client); // TODO CMD 6
-					else if ( cmdIs(cmd, "get") )        cmd_get(arg, client);
-					else if ( cmdIs(cmd, "go") )         cmd_go(arg, client);
-					// greet (a soft command)
-					else if ( cmdIs(cmd, "help") )       cmd_help(arg, client);
-					else if ( cmdIs(cmd, "hold") )       cmd_hold(arg, client);
-					else if ( cmdIs(cmd, "home") )       cmd_home(arg, client);
-					else if ( cmdIs(cmd, "housing") )    cmd_housing(arg, client);
-					else if ( cmdIs(cmd, "inspect") )    cmd_inspect(arg, client);
-					else if ( cmdIs(cmd, "interact") )   cmd_interact(arg, client);
-					else if ( cmdIs(cmd, "inventory") )  cmd_inventory(arg, client);
-					else if ( cmdIs(cmd, "land") )       cmd_land(arg, client);    // TODO CMD
-					else if ( cmdIs(cmd, "levelup") )    cmd_levelup(arg, client); // TODO CMD 8 fix this kludge
-					else if ( cmdIs(cmd, "list") )       cmd_list(arg, client);
-					else if ( cmdIs(cmd, "lock") )       cmd_lock(arg, client);
-					else if ( cmdIs(cmd, "logout") )     cmd_logout(arg, client);
-					else if ( cmdIs(cmd, "look") )       cmd_look(arg, client);
-					else if ( cmdIs(cmd, "lookat") )     cmd_lookat(arg, client);
-					// mail (a soft command)
-					else if ( cmdIs(cmd, "map") )        cmd_map(arg, client);
-					else if ( cmdIs(cmd, "money") )      cmd_money(arg, client);
-					
-					else if ( cmdIs(cmd, "motd") )       send(messageOfTheDay(), client); // TODO CMD 11
-					
-					else if ( cmdIs(cmd, "move") )       cmd_move(arg, client);
-					else if ( cmdIs(cmd, "ooc") )        player.setStatus("OOC"); // TODO CMD 12 fix this kludge
-					else if ( cmdIs(cmd, "ic") )         player.setStatus("IC");  // TODO CMD 13 fix this kludge
-					
-					else if ( cmdIs(cmd, "open") )       cmd_open2(arg, client);
-					else if ( cmdIs(cmd, "page") )       cmd_page(arg, client);
-					else if ( cmdIs(cmd, "pose") )       cmd_pose(arg, client);
-					else if ( cmdIs(cmd, "party") )      cmd_party(arg, client);
-					else if ( cmdIs(cmd, "passwd") )     cmd_passwd(arg, client);
-					else if ( cmdIs(cmd, "pconfig") )    cmd_pconfig(arg, client);
-					else if ( cmdIs(cmd, "pinfo") )      cmd_pinfo(arg, client);
-					else if ( cmdIs(cmd, "push") )       cmd_push(arg, client);
-					else if ( cmdIs(cmd, "put") )        cmd_put(arg, client);
-					
-					else if ( cmdIs(cmd, "prompt") )     prompt(client);
-					
-					else if ( cmdIs(cmd, "quests") )     cmd_quests(arg, client);
-					else if ( cmdIs(cmd, "quit") )       cmd_quit(arg, client);
-					else if ( cmdIs(cmd, "read") )       cmd_read(arg, client);
-					else if ( cmdIs(cmd, "roll") )       cmd_roll(arg, client); // TODO CMD 14
-					else if ( cmdIs(cmd, "run") ) {
-						(new Command("") {
-							@Override
-							public void execute(final String arg, final Client client) {
-								final Player player = getPlayer(client);
-								player.setSpeed(Constants.RUN);
-								send("You get ready to run.", client);
-							}
-						}).execute(arg, client);
-					}
-					else if ( cmdIs(cmd, "score") )      cmd_score(arg, client);
-					else if ( cmdIs(cmd, "sell") )       cmd_sell(arg, client);
-					else if ( cmdIs(cmd, "sheathe") )    cmd_sheathe(arg, client);
-					else if ( cmdIs(cmd, "skillcheck") ) cmd_skillcheck(arg, client);
-					else if ( cmdIs(cmd, "spellinfo") )  cmd_spellinfo(arg, client);
-					else if ( cmdIs(cmd, "spells") )     cmd_spells(arg, client);
-					// staff (a soft command)
-					else if ( cmdIs(cmd, "stats") )      cmd_stats(arg, client);
-					else if ( cmdIs(cmd, "status") )     cmd_status(arg, client);
-					else if ( cmdIs(cmd, "talk") )       cmd_talk(arg, client);
-					else if ( cmdIs(cmd, "take") )       cmd_take(arg, client);
-					else if ( cmdIs(cmd, "target") )     cmd_target(arg, client);
-					else if ( cmdIs(cmd, "tell") )       cmd_tell(arg, client);
-					else if ( cmdIs(cmd, "time") )       cmd_time(arg, client);
-					else if ( cmdIs(cmd, "trade") )      cmd_trade(arg, client);
-					else if ( cmdIs(cmd, "travel") )     cmd_travel(arg, client);
-					else if ( cmdIs(cmd, "unequip") )    cmd_unequip(arg, client);
-					else if ( cmdIs(cmd, "unlock") )     cmd_unlock(arg, client);
-					else if ( cmdIs(cmd, "use") )        cmd_use(arg, client);
-					else if ( cmdIs(cmd, "value") )      cmd_value(arg, client);
-					else if ( cmdIs(cmd, "version") )    cmd_version(arg, client);					
-					else if ( cmdIs(cmd, "vitals") )     cmd_vitals(arg, client);
-					else if ( cmdIs(cmd, "where") )      cmd_where(arg, client);
-					else if ( cmdIs(cmd, "who") )        cmd_who(arg, client);
-					else if ( cmdIs(cmd, "withdraw") )   cmd_withdraw(arg, client);
-					else if ( cmdIs(cmd, "walk") ) {
-						(new Command("") {
-							@Override
-							public void execute(final String arg, final Client client) {
-								final Player player = getPlayer(client);
-								
-								if (player.getSpeed() > Constants.WALK) {
-									player.setSpeed(Constants.WALK);
-									send("You slow down to a walking speed.", client);
+						// general case for non-explicitly checked mapped commands
+						else if (soft_commands) { // "soft" commands enabled?
+							debug("Look in CommandMap");
+							final boolean playerCmd = player.hasCommand(cmd);
+							final Command command = (playerCmd ? player.getCommand(cmd) : getCommand(cmd));
+
+							if (command != null) {
+								if ( checkAccess(player, command.getAccessLevel()) ) {
+									// go through the command table if we can, so the call gets timed
+									if ( !playerCmd && route != null && route.isSoft() ) route.execute(arg, client);
+									else                                                command.execute(arg, client);
 								}
+								else send("You may not use that command. (Insufficient Access Level!)", client);
 							}
-						}).execute(arg, client);
-					}
-					else if ( cmdIs(cmd, "write") ) { // TODO CMD 21
-						// check for something to write in/on (writable things
-						// -- paper, books, scrolls?)
-						// check for writing tool and ink
-						// get stuff and "write" it down
+							else send("Command is NULL.", client);
+						}
+						else nothing = true;
 					}
 					else {
-						// TODO exits first, then soft commands...
-						debug("Exit? " + cmd);
-						
-						boolean nothing = false;
-
-						if ( cmd.matches("[a-zA-Z_-]+") ) {
-							// exit handling
-							// Has the user given an action/exit that is linked to something for which no similarly named command exists?
-							// If so, execute link or move user in the direction/to the room specified by the action/exit
+						debug("No match found in '" + cmd + "'");
+						nothing = true;
+					}
 
-							// handle the command as an exit
-							if ( exitHandler(cmd, client) ) {
-								debug("It was an exit");
-							}
-							// general case for non-explicitly checked mapped commands
-							else if (soft_commands) { // "soft" commands enabled?
-								debug("Look in CommandMap");
-								final Command command = (player.hasCommand(cmd) ? player.getCommand(cmd) : getCommand(cmd));
-
-								if (command != null) {
-									if ( checkAccess(player, command.getAccessLevel()) ) {
-										command.execute(arg, client);
-									}
-									else send("You may not use that command. (Insufficient Access Level!)", client);
-								}
-								else send("Command is NULL.", client);
-							}
-							else nothing = true;
-						}
-						else {
-							debug("No match found in '" + cmd + "'");
-							nothing = true;
-						}
-						
-						if( nothing ) {
-							send("Huh? That is not a known command.", client);
-							debug("Command> Unknown Command");
-						}
+					if( nothing ) {
+						send("Huh? That is not a known command.", client);
+						debug("Command> Unknown Command");
 					}
 				}
-
-				debug("Exited user commmand loop.", 4);
 			}
 		}
 	}
@@ -3561,7 +3313,10 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 						// account = new Account(this.accounts.size(), args[1],
 						// args[2], 5);
-						acctMgr.addAccount(args[1], args[2], 5); // add the account to the account manager
+						// add the account to the account manager
+						if( acctMgr.addAccount(args[1], args[2], 5) == null ) {
+							send("@accounts: an account with that username already exists", client);
+						}
 					}
 					else if ( args[0].equals("+link") ) { // @accounts +link 3 Nathan
 						final Account account = acctMgr.getAccount(Utils.toInt(args[1], -1));
@@ -3570,7 +3325,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 						// players too
 
 						if (account != null) {
-							if (player != null) account.linkCharacter(player);
+							if (player != null) acctMgr.linkCharacter(account, player);
 							else                send("No such Player Exists!", client);
 						}
 						else send("No Such Account Exists!", client);
@@ -4007,6 +3762,11 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	 * @param client
 	 */
 	private void cmd_backup(final String arg, final Client client) {
+		if( arg.equalsIgnoreCase("live") ) {
+			live_backup(client);
+			return;
+		}
+		
 		backup(arg);
 		send("Finished backing up.", client);
 	}
@@ -4747,18 +4507,10 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 						applyEffect(ptarget, e); // apply the effect to the target
 
 						// spell timer with default (60 sec) cooldown
-						final SpellTimer sTimer = new SpellTimer(spell, 60);
-						
-						getSpellTimers(player).add(sTimer);
-						
-						timer.scheduleAtFixedRate(sTimer, 0, 1000);
+						addSpellTimer(player, new SpellTimer(spell, 60));
 						
 						// effect timer with default (30 sec) cooldown
-						final EffectTimer etimer = new EffectTimer(e, 30);
-						
-						getEffectTimers(player).add(etimer);
-						
-						timer.scheduleAtFixedRate(etimer, 0, 1000); // create countdown timer
+						addEffectTimer(player, new EffectTimer(e, 30));
 					}
 					else {
 						System.out.println("Target is not Player.");
@@ -5266,47 +5018,110 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 				return;
 			}
 			
-			final String password = p.getPass();
-			final String password_hash = Utils.hash(pass);
+			// check the password once it's been hashed (see connect)
+			verify(client, pass, (password_hash) -> connect(p, password_hash, client));
+		}
+	}
 
-			//if ( !p.getPass().equals()) {
-			if( !password.equals(password_hash) ) {
-				debug("PASS: Fail");
-				send("That player does not exist or the password is incorrect!", client);
-				return;
-			}
+	/**
+	 * Finish connecting a player, once the password they gave has been
+	 * hashed (see cmd_connect).
+	 * 
+	 * @param p
+	 * @param password_hash
+	 * @param client
+	 */
+	private void connect(final Player p, final String password_hash, final Client client) {
+		final String password = p.getPass();
 
-			debug("PASS: Pass"); // report success for password check
-			
-			// TODO how do I handle what amounts to a second login after some kind of pseudo-disconnect 
-			
-			// remove player in case of relogin (this is the not ideal handling)
-			final int playerDBRef = p.getDBRef();
-			final String playerName = p.getName();
-			
-			for (final Player player1 : this.players) {
-				if ( player1.getDBRef() == playerDBRef && player1.getName().equals(playerName) ) {
-					/* won't work because client object vanishes when the player loses connection */
-					init_disconn(player1.getClient(), false);
-					break;
-				}
-			}
-			
-			// connect to the game
-			if (mode == GameMode.NORMAL) {
-				init_conn(p, client, false); // Open Mode
+		//if ( !p.getPass().equals()) {
+		if( !password.equals(password_hash) ) {
+			debug("PASS: Fail");
+			send("That player does not exist or the password is incorrect!", client);
+			return;
+		}
+
+		debug("PASS: Pass"); // report success for password check
+		
+		// TODO how do I handle what amounts to a second login after some kind of pseudo-disconnect 
+		
+		// remove player in case of relogin (this is the not ideal handling)
+		final int playerDBRef = p.getDBRef();
+		final String playerName = p.getName();
+		
+		for (final Player player1 : this.players) {
+			if ( player1.getDBRef() == playerDBRef && player1.getName().equals(playerName) ) {
+				/* won't work because client object vanishes when the player loses connection */
+				init_disconn(player1.getClient(), false);
+				break;
 			}
-			else if (mode == GameMode.WIZARD) {
-				if (p.getFlags().contains("W") || p.getAccess() == Constants.WIZARD) {
-					init_conn(p, client, false); // Wizard-Only Mode
-				}
-				else send("Sorry, only Wizards are allowed to login at this time.", client);
+		}
+		
+		// connect to the game
+		if (mode == GameMode.NORMAL) {
+			init_conn(p, client, false); // Open Mode
+		}
+		else if (mode == GameMode.WIZARD) {
+			if (p.getFlags().contains("W") || p.getAccess() == Constants.WIZARD) {
+				init_conn(p, client, false); // Wizard-Only Mode
 			}
-			else if (mode == GameMode.MAINTENANCE) {
-				send("Sorry, the mud is currently in maintenance mode.", client);
+			else send("Sorry, only Wizards are allowed to login at this time.", client);
+		}
+		else if (mode == GameMode.MAINTENANCE) {
+			send("Sorry, the mud is currently in maintenance mode.", client);
+		}
+		else {
+			send("Sorry, you cannot connect to the mud at this time. Please try again later.", client);
+		}
+	}
+
+	/**
+	 * Hash a password on one of the hashing threads (it's slow on purpose)
+	 * and then, back on the main thread, hand the hash to the continuation
+	 * (see runVerified). The client is kept in the "verifying" state until
+	 * then.
+	 * 
+	 * If there are already too many hashes waiting (in total, or for the
+	 * client's address) the client is asked to try again later.
+	 * 
+	 * @param client
+	 * @param password
+	 * @param next what to do with the hash
+	 */
+	private void verify(final Client client, final String password, final Consumer<String> next) {
+		setClientState(client, "verifying");
+
+		final boolean accepted = hasher.hash(client.getIPAddress(), password, (hash) -> {
+			verified.add(() -> {
+				if ( "verifying".equals( getClientState(client) ) ) setClientState(client, "");
+
+				if ( client.isRunning() ) next.accept(hash);
+			});
+		});
+
+		if ( !accepted ) {
+			setClientState(client, "");
+
+			send("The server is busy, please try again in a moment.", client);
+		}
+	}
+
+	/**
+	 * Run the continuations of any password hashes that have finished (see
+	 * verify), as though they were commands.
+	 */
+	private void runVerified() {
+		Runnable task;
+
+		while ( (task = verified.poll()) != null ) {
+			final Runnable t = task;
+
+			try {
+				runExclusive(t);
 			}
-			else {
-				send("Sorry, you cannot connect to the mud at this time. Please try again later.", client);
+			catch (final Exception e) {
+				debug("Game > Exception running verified login");
+				debug( e );
 			}
 		}
 	}
@@ -5540,59 +5355,80 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		// check for existing player by that name,
 		// if exists report that the name is already used, if not continue on
 		// if (!objectDB.hasName(user) && validateName(user)) {
-		if ( objectDB.hasName(user) || !validateName(user) ) {
+		if ( objectDB.hasName(user) || (use_accounts && acctMgr.hasAccount(user)) || !validateName(user) ) {
 			// indicate the unavailability and/or unsuitability of the chosen name
 			send("That name is not available, please choose another and try again.", client);
 		}
 		else {
-			// create a new player object for the new player
-			final Player player = new Player(-1, user, Utils.hash(pass), start_room);
-
-			// TODO decide if this is okay or find a better way
-			// sclients.put(client, player);
-			// run character generation (should we do this here?)
+			// create the player once the password has been hashed (see create)
+			verify(client, pass, (pass_hash) -> create(user, pass, pass_hash, client));
+		}
+	}
 
-			debug("");
-			debug("\'" + module.getName() + "\'");
-			debug("");
+	/**
+	 * Finish creating a new player, once their password has been hashed
+	 * (see cmd_create).
+	 * 
+	 * @param user
+	 * @param pass
+	 * @param pass_hash
+	 * @param client
+	 */
+	private void create(final String user, final String pass, final String pass_hash, final Client client) {
+		// someone else may have taken the name in the meantime
+		if ( objectDB.hasName(user) || (use_accounts && acctMgr.hasAccount(user)) ) {
+			send("That name is not available, please choose another and try again.", client);
+			return;
+		}
 
-			// does this belong here or in init_conn
-			if (module != null) {
-				//
-				module.PCInit(player);
-				
-				// TODO how to print this out?
-				//debug(player.getSlots().keySet());
+		// create a new player object for the new player
+		final Player player = new Player(-1, user, pass_hash, start_room);
 
-				// give them starting equipment?
-				
-				//
-				final Item helpNote = createItem("Note", "Read this note for help with 'read'.", player.getDBRef());
+		// TODO decide if this is okay or find a better way
+		// sclients.put(client, player);
+		// run character generation (should we do this here?)
 
-				helpNote.setProperty("_game/readable", true);
-				helpNote.setProperty("_game/text","Welcome.\nTo get started you should read the help/lore files and then go through character generation.");
+		debug("");
+		debug("\'" + module.getName() + "\'");
+		debug("");
 
-				initCreatedItem(helpNote);
+		// does this belong here or in init_conn
+		if (module != null) {
+			//
+			module.PCInit(player);
+			
+			// TODO how to print this out?
+			//debug(player.getSlots().keySet());
 
-				player.getInventory().add( helpNote );
-			}
+			// give them starting equipment?
 			
-			if( use_accounts ) {
-				//acctMgr.getAccount(user, pass).linkCharacter(player);
-				// TODO figure out how to make sure this account is created before any queries
-				final Account a = acctMgr.addAccount(user, pass, 4);
-				
-				a.linkCharacter(player);
-			}
+			//
+			final Item helpNote = createItem("Note", "Read this note for help with 'read'.", player.getDBRef());
 
-			objectDB.addAsNew(player);
-			objectDB.addPlayer(player); // add player to the auth table
+			helpNote.setProperty("_game/readable", true);
+			helpNote.setProperty("_game/text","Welcome.\nTo get started you should read the help/lore files and then go through character generation.");
 
-			send("Welcome to the Game, " + colors(user, getDisplayColor("player")) + ". Your password is: " + colors(pass, "yellow"), client);
+			initCreatedItem(helpNote);
+
+			player.getInventory().add( helpNote );
+		}
+		
+		objectDB.addAsNew(player);
+		objectDB.addPlayer(player); // add player to the auth table
 
-			// initiate the connection
-			init_conn(player, client, true);
+		// NOTE: only once the player is in the database, since characters are indexed by dbref
+		if( use_accounts ) {
+			//acctMgr.getAccount(user, pass).linkCharacter(player);
+			// TODO figure out how to make sure this account is created before any queries
+			final Account a = acctMgr.addAccount(user, pass, 4);
+			
+			if( a != null ) acctMgr.linkCharacter(a, player);
 		}
+
+		send("Welcome to the Game, " + colors(user, getDisplayColor("player")) + ". Your password is: " + colors(pass, "yellow"), client);
+
+		// initiate the connection
+		init_conn(player, client, true);
 	}
 	
 	// TODO write code for cmd_creatureedit(...)
@@ -5653,10 +5489,63 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	 * about them would be useful (default locking state, type of lock, etc).
 	 * Such information would help with troubleshooting any future problems.
 	 * 
+	 * '@check locations' checks the database's indexes of what is where.
+	 * 
+	 * '@check inventory' checks the players' inventory totals (weight, item
+	 * counts) and works out again any that are wrong.
+	 * 
+	 * '@check counts' checks the database's object counts (see @stats).
+	 * 
 	 * @param arg
 	 * @param client
 	 */
 	private void cmd_check(final String arg, final Client client) {
+		if ( arg.equalsIgnoreCase("locations") ) {
+			final List<String> problems = objectDB.checkLocations();
+
+			for (final String problem : problems) {
+				send(problem, client);
+			}
+
+			send("Game> Location Check: " + problems.size() + " problem(s) found.", client);
+
+			return;
+		}
+		else if ( arg.equalsIgnoreCase("counts") ) {
+			final List<String> problems = objectDB.checkCounts();
+
+			for (final String problem : problems) {
+				send(problem, client);
+			}
+
+			send("Game> Count Check: " + problems.size() + " problem(s) found.", client);
+
+			return;
+		}
+		else if ( arg.equalsIgnoreCase("inventory") ) {
+			int count = 0;
+			int rebuilt = 0;
+
+			for (final Player player : objectDB.getPlayers()) {
+				final List<String> problems = player.getInventory().check( player.getName() );
+
+				if( !problems.isEmpty() ) {
+					for (final String problem : problems) {
+						send(problem, client);
+					}
+
+					player.getInventory().rebuild();
+
+					count += problems.size();
+					rebuilt++;
+				}
+			}
+
+			send("Game> Inventory Check: " + count + " problem(s) found, " + rebuilt + " inventories rebuilt.", client);
+
+			return;
+		}
+
 		final Player player = getPlayer(client);
 		final Room room = getRoom( player.getLocation() );
 
@@ -5954,6 +5843,134 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 				client.writeln("");
 			}
 		}
+		else if (param.equals("journal")) {
+			/*
+			 * show how many objects are waiting to be saved and how big the journal is
+			 */
+			send("Changed Objects: " + objectDB.getDirtyCount(), client);
+			send("Journal Size: " + new File(DB_FILE + ".journal").length() + " bytes", client);
+			send("Checkpoint Interval: " + checkpoint_interval + " s", client);
+		}
+		else if (param.equals("chat")) {
+			/*
+			 * show how many chat messages each channel is handling
+			 */
+			final double minutes = chatDispatcher.getUptime() / 60000.0;
+
+			send("Chat Channels", client);
+			send(Utils.padRight("", '-', 70), client);
+			send(Utils.padRight("Channel", 12) + Utils.padRight("Messages", 10) + Utils.padRight("Msg/min", 10) + Utils.padRight("Deliveries", 12) + Utils.padRight("Queued", 8) + "Max Queued", client);
+
+			for (final ChatChannel cc : chan.getChatChannels()) {
+				final ChatDispatcher.Stats stats = chatDispatcher.getStats(cc.getName());
+
+				send(Utils.padRight(cc.getName(), 12) + Utils.padRight("" + stats.getMessages(), 10) + Utils.padRight(String.format("%.1f", stats.getMessages() / minutes), 10)
+						+ Utils.padRight("" + stats.getDeliveries(), 12) + Utils.padRight("" + cc.getQueueSize(), 8) + stats.getMaxQueued(), client);
+			}
+		}
+		else if (param.equals("render")) {
+			/*
+			 * show how well the room render cache is doing
+			 */
+			send("Render Cache", client);
+			send(Utils.padRight("", '-', 40), client);
+			send("Entries: " + renderCache.size(), client);
+			send("Hits: " + renderCache.getHits(), client);
+			send("Misses: " + renderCache.getMisses() + " (" + renderCache.getStale() + " stale)", client);
+			send(String.format("Hit Rate: %.1f%%", renderCache.getHitRate()), client);
+		}
+		else if (param.equals("mccp")) {
+			/*
+			 * show how much output compression is saving (and what it costs)
+			 */
+			long raw = 0, compressed = 0, time = 0;
+			int compressing = 0;
+
+			for (final Client c : s.getClients()) {
+				if( c == null ) continue;
+
+				if( c.isCompressing() ) compressing++;
+
+				raw += c.getRawBytes();
+				compressed += c.getCompressedBytes();
+				time += c.getCompressionTime();
+			}
+
+			send("Output Compression (MCCP2)", client);
+			send(Utils.padRight("", '-', 40), client);
+			send("Enabled: " + use_mccp, client);
+			send("Clients: " + compressing + " compressing", client);
+			send("Raw: " + raw + " bytes", client);
+			send("Compressed: " + compressed + " bytes", client);
+			send(String.format("Ratio: %.1f%%", (raw > 0) ? (100.0 * compressed) / raw : 0.0), client);
+			send(String.format("CPU: %.1f ns/byte", (raw > 0) ? (double) time / raw : 0.0), client);
+		}
+		else if (param.equals("output")) {
+			/*
+			 * show how much output is waiting on clients (and how much was thrown away)
+			 */
+			long unsent = 0;
+			int backedUp = 0;
+
+			for (final Client c : s.getClients()) {
+				if( c == null ) continue;
+
+				if( c.isBackedUp() ) backedUp++;
+
+				unsent += c.getUnsentBytes();
+			}
+
+			send("Client Output", client);
+			send(Utils.padRight("", '-', 40), client);
+			send("High-water Mark: " + output_hwm + " bytes", client);
+			send("Clients: " + backedUp + " backed up", client);
+			send("Unsent: " + unsent + " bytes", client);
+			send("Dropped: " + Client.getTotalDroppedBytes() + " bytes (clients disconnected for not reading)", client);
+		}
+		else if (param.equals("hashing")) {
+			/*
+			 * show how the password hashing threads are doing
+			 */
+			final long completed = hasher.getCompleted();
+
+			send("Password Hashing", client);
+			send(Utils.padRight("", '-', 40), client);
+			send("Threads: " + hasher.getThreads() + " (" + hasher.getActive() + " active)", client);
+			send("Queued: " + hasher.getQueued(), client);
+			send("Completed: " + completed, client);
+			send("Rejected: " + hasher.getRejected(), client);
+			send(String.format("Avg Time: %.1f ms", (completed > 0) ? hasher.getTotalTime() / (completed * 1000000.0) : 0.0), client);
+			send(String.format("Max Time: %.1f ms", hasher.getMaxTime() / 1000000.0), client);
+		}
+		else if (param.equals("cmdqueue")) {
+			/*
+			 * list the commands that are waiting to be run (or being run)
+			 */
+			if( cmdExec != null ) {
+				send("Command Threads: " + cmdExec.getThreads(), client);
+
+				for (final CMD cmd : cmdExec.getQueued()) {
+					send(String.format("%-8s %-15s %s", cmd.getStatus(), cmd.getClient().getIPAddress(), cmd.getCmdString()), client);
+				}
+			}
+			else send("Game> Commands are not queued.", client);
+		}
+		else if (param.equals("commands")) {
+			/*
+			 * list the commands in the command table, along with how many
+			 * times each has been used and how long it took (on average and at most)
+			 */
+			send(String.format("%-16s %-9s %-6s %10s %10s %10s", "Command", "Access", "Type", "Calls", "Avg (us)", "Max (us)"), client);
+			send(Utils.padLeft("", '-', 66), client);
+
+			for (final CommandRouter.Route route : router.getRoutes()) {
+				final long calls = route.getCalls();
+				final long avg = (calls > 0) ? (route.getTotalTime() / calls) / 1000 : 0;
+
+				send(String.format("%-16s %-9s %-6s %10d %10d %10d",
+						route.getName(), route.getAccess(), route.isSoft() ? "soft" : "hard", calls, avg, route.getMaxTime() / 1000), client);
+			}
+		}
 		else if (param.equals("creatures")) {
 			send("Creatures", client);
 			send("--------------------------------------------------------------------------", client);
@@ -6120,10 +6137,6 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			send("Timers", client);
 
 			send(Utils.padRight("", '-', 40), client);
-			
-			
-			// TODO check on this, why do I do this here? to make sure their up to date? TimeLoop does this already
-			checkTimers();
 
 			// Effect Timers
 			for (EffectTimer etimer : getEffectTimers(getPlayer(client))) {
@@ -6636,7 +6649,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 					send("You dropped " + colors(itemName, "yellow") + " on the floor.", client);
 				}
 
-				addMessage(new Message(player.getName() + " dropped " + colors(itemName, "yellow") + " on the floor.", room));
+				addMessage(new Message(player.getName() + " dropped " + colors(itemName, "yellow") + " on the floor.", room, player));
 			}
 
 			player.getInventory().clear();
@@ -6649,7 +6662,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 			// look for specified item in the player's inventory
 			if (dbref != -1)  item = MudUtils.findItem(dbref, player.getInventory());
-			if (item == null) item = MudUtils.findItem(arg, player.getInventory());
+			if (item == null) item = findItem(arg, player, player.getInventory());
 
 			if (item != null) {
 				final String itemName = item.getName();
@@ -6666,7 +6679,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 				// return message telling others that the player dropped the item?
 				// obviously we want the players in the current room that can see something
-				addMessage(new Message(player.getName() + " dropped " + colors(itemName, "yellow") + " on the floor.", room));
+				addMessage(new Message(player.getName() + " dropped " + colors(itemName, "yellow") + " on the floor.", room, player));
 			}
 			else send("You don't have that.", client);
 		}
@@ -6811,7 +6824,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 			// look for specified item in the player's inventory
 			if (dbref != -1)  item = MudUtils.findItem(dbref, player.getInventory());
-			if (item == null) item = MudUtils.findItem(arg, player.getInventory());
+			if (item == null) item = findItem(arg, player, player.getInventory());
 
 			if (item != null) {
 				if ( item.isEquippable() ) {
@@ -6921,6 +6934,16 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 				// get by string/name
 				MUDObject mobj = getObject(arg);
 				
+				// otherwise, something we're holding or that's here (by part of its name)
+				if( mobj == null ) {
+					final Player player = getPlayer(client);
+					final Room room = getRoom( player.getLocation() );
+					
+					mobj = findItem(arg, player, player.getInventory());
+					
+					if( mobj == null && room != null ) mobj = findItem(arg, room, room.getItems());
+				}
+				
 				//MUDObject mobj = null;// findObject()
 				
 				if( mobj != null ) {
@@ -7717,7 +7740,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 		// determine whether you have the item/thing? in question
 		if (DBREF != -1)  item = MudUtils.findItem(DBREF, player.getInventory());
-		else              item = MudUtils.findItem(arg, player.getInventory());
+		else              item = findItem(arg, player, player.getInventory());
 
 		if (item != null) {
 			// can you hold it?
@@ -7887,7 +7910,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		
 		int loc = player.getLocation();
 
-		final Item item = MudUtils.findItem(arg, objectDB.getItemsByLoc(loc));
+		final Item item = objectDB.findItem(arg, loc);
 
 		final Map<String, String> visual_props = item.getVisualProperties();
 
@@ -9752,6 +9775,9 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 						case "notify_newmail":
 							send("Should the game notify you when you receive in-game OOC mail?", client);
 							break;
+						case "compress":
+							send("Compress output (MCCP2) if your client supports it.", client);
+							break;
 						default:
 							break;
 						}
@@ -9786,6 +9812,8 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 						send("Invalid config setting! (use 'true' or 'false')", client);
 						break;
 					}
+					
+					if( option.equals("compress") ) updateCompression(client);
 				}
 				else {
 					send(option + " = " + getPlayer(client).getConfigOption(option), client);
@@ -10529,6 +10557,8 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 				objectDB.removeRoom(room); // recycle the room
 
+				renderCache.invalidate( room.getDBRef() ); // the dbref may be reused
+
 				success = true;
 			}
 			else {
@@ -10620,9 +10650,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			final String username = args[0];
 			final String password = args[1];
 
-			acctMgr.addAccount(username, password, 3);
-
-			final Account account = acctMgr.getAccount(username, password);
+			final Account account = acctMgr.addAccount(username, password, 3);
 
 			caTable.put(client, account);
 
@@ -11151,7 +11179,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 					final Vendor v = (Vendor) npc;
 					
 					// get the object to sell
-					final Item item = MudUtils.findItem(arg, player.getInventory());
+					final Item item = findItem(arg, player, player.getInventory());
 					
 					final Coins payment = v.sell(item);
 
@@ -11579,6 +11607,81 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		send("----------------------", client);
 	}
 
+	/**
+	 * Command: @stats
+	 * 
+	 * Show how many objects there are in the database by type, flag, zone
+	 * or owner. These come from counts kept as objects are added, removed
+	 * and changed (see ObjectDB.getCounts), so no walk of the database is
+	 * needed.
+	 * 
+	 * @param arg
+	 * @param client
+	 */
+	private void cmd_dbstats(final String arg, final Client client) {
+		final ObjectDB.ObjectCounts counts = objectDB.getCounts();
+		final int total = counts.getTotal();
+
+		if ( arg.equals("") || arg.equalsIgnoreCase("types") ) {
+			send("Objects by Type", client);
+			send(Utils.padRight("", '-', 40), client);
+
+			for (final TypeFlag type : TypeFlag.values()) {
+				final int n = counts.getCount(type);
+
+				send(String.format("%-10s %8d %6.2f%%", type.getName(), n, (total > 0) ? n * 100.0 / total : 0.0), client);
+			}
+
+			send(Utils.padRight("", '-', 40), client);
+			send(String.format("%-10s %8d", "Total", total), client);
+		}
+		else if ( arg.equalsIgnoreCase("flags") ) {
+			send("Objects by Flag", client);
+			send(Utils.padRight("", '-', 40), client);
+
+			for (final ObjectFlag flag : ObjectFlag.values()) {
+				send(String.format("%-12s %8d", flag.name(), counts.getCount(flag)), client);
+			}
+		}
+		else if ( arg.equalsIgnoreCase("zones") ) {
+			send("Objects by Zone", client);
+			send(Utils.padRight("", '-', 40), client);
+			send(String.format("%-20s %6s %8s", "Zone", "Rooms", "Objects"), client);
+
+			for (final Zone zone : zones.keySet()) {
+				int population = 0;
+
+				for (final Room room : zone.getRooms()) {
+					population += objectDB.getPopulation( room.getDBRef() );
+				}
+
+				send(String.format("%-20s %6d %8d", zone.getName(), zone.getRooms().size(), population), client);
+			}
+		}
+		else if ( arg.equalsIgnoreCase("owners") ) {
+			final List<Map.Entry<Integer, Integer>> owners = new ArrayList<Map.Entry<Integer, Integer>>( counts.getOwners().entrySet() );
+
+			// most objects first
+			Collections.sort(owners, (e1, e2) -> Integer.compare(e2.getValue(), e1.getValue()));
+
+			int owned = 0;
+
+			send("Objects by Owner", client);
+			send(Utils.padRight("", '-', 40), client);
+
+			for (final Map.Entry<Integer, Integer> e : owners) {
+				final MUDObject owner = objectDB.getById( e.getKey() );
+
+				send(String.format("%-20s %8d", (owner != null) ? owner.getName() + "(#" + e.getKey() + ")" : "#" + e.getKey(), e.getValue()), client);
+
+				owned += e.getValue();
+			}
+
+			send(String.format("%-20s %8d", "(no owner)", total - owned), client);
+		}
+		else send("Syntax: @stats [types|flags|zones|owners]", client);
+	}
+
 	// output format borrowed from TorilMud status command
 	private void cmd_status(final String arg, final Client client) {
 		send("Effects", client);
@@ -11702,7 +11805,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 			// look for specified item in the player's current room
 			if (dbref != -1)  item = MudUtils.findItem(dbref, room.getItems());
-			if (item == null) item = MudUtils.findItem(arg, room.getItems());
+			if (item == null) item = findItem(arg, room, room.getItems());
 
 			if (item != null) {
 				take(player, room, item);
@@ -12424,6 +12527,11 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 				if (command.equals("info")) {
 					send("Log File: " + resolvePath(LOG_DIR, log.getFileName()), client);
 					send("Log Size: " + log.getLinesWritten(), client);
+					
+					if( logger.isAsync() ) {
+						send("Log Queue: " + logger.getQueued(), client);
+						send("Log Dropped: " + logger.getDropped(), client);
+					}
 				}
 				else if (command.equals("lines")) {
 					List<String> lines;
@@ -12499,7 +12607,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	private void cmd_value(final String arg, final Client client) {
 		final Player player = getPlayer(client);
 
-		final Item item = MudUtils.findItem(arg, player.getInventory());
+		final Item item = findItem(arg, player, player.getInventory());
 
 		send(item.getName() + " " + item.getValue(), client);
 	}
@@ -13154,38 +13262,10 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		debug("Entering exit handler (String)...");
 
 		for (final Exit exit : room.getExits()) {
-			// for doors
-			final String[] doorNames = exit.getName().split("/");
-
-			// checks for doorness and at the same time whether the given command is a valid exit name for the door
-			//boolean door = (doorNames.length == 2) ? ((doorNames[0].equals(cmd) || doorNames[1].equals(cmd)) ? true : false) : false;
-			//boolean door_alias = (doorNames.length == 2) ? (exit.hasAlias(doorNames[0] + "|" + cmd) || exit.hasAlias(doorNames[1] + "|" + cmd)) : false;
-			
-			boolean door = false;
-			boolean door_alias = false;
-			
-			if ( doorNames.length == 2 ) {
-				// door
-				if ( doorNames[0].equals(cmd) || doorNames[1].equals(cmd) ) door = true;
-				
-				// door_alias
-				if ( exit.hasAlias(doorNames[0] + "|" + cmd) || exit.hasAlias(doorNames[1] + "|" + cmd) ) door_alias = true;
-			}
-
 			debug("Command: " + cmd);
-			debug("door [B]: " + door);
-			debug("door_alias [B]: " + door_alias);
-
-			if (exit.getExitType() == ExitType.DOOR) {
-				debug("\'" + doorNames[0] + "|" + cmd + "\'");
-				debug("\'" + doorNames[1] + "|" + cmd + "\'");
-			}
-
 			debug("Aliases: " + exit.getAliases());
-			
-			final String exitName = exit.getName();
 
-			if (exitName.equals(cmd) || exitName.equals( aliases.get(cmd) ) || exit.getAliases().contains(cmd) || door || door_alias) {
+			if ( isExitFor(exit, cmd) ) {
 				return exitHandler(exit, client);
 			}
 		}
@@ -13196,6 +13276,37 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		return false;
 	}
 
+	/**
+	 * Is the specified command the name (or an alias) of the exit?
+	 * 
+	 * @param exit
+	 * @param cmd
+	 * @return
+	 */
+	private boolean isExitFor(final Exit exit, final String cmd) {
+		// for doors
+		final String[] doorNames = exit.getName().split("/");
+
+		// checks for doorness and at the same time whether the given command is a valid exit name for the door
+		//boolean door = (doorNames.length == 2) ? ((doorNames[0].equals(cmd) || doorNames[1].equals(cmd)) ? true : false) : false;
+		//boolean door_alias = (doorNames.length == 2) ? (exit.hasAlias(doorNames[0] + "|" + cmd) || exit.hasAlias(doorNames[1] + "|" + cmd)) : false;
+		
+		boolean door = false;
+		boolean door_alias = false;
+		
+		if ( doorNames.length == 2 ) {
+			// door
+			if ( doorNames[0].equals(cmd) || doorNames[1].equals(cmd) ) door = true;
+			
+			// door_alias
+			if ( exit.hasAlias(doorNames[0] + "|" + cmd) || exit.hasAlias(doorNames[1] + "|" + cmd) ) door_alias = true;
+		}
+		
+		final String exitName = exit.getName();
+
+		return exitName.equals(cmd) || exitName.equals( aliases.get(cmd) ) || exit.getAliases().contains(cmd) || door || door_alias;
+	}
+
 	/**
 	 * kind of a kludge
 	 * 
@@ -13248,11 +13359,8 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 			// execute leave triggers
 			for (final Trigger trigger : room.getTriggers(TriggerType.onLeave)) {
-				System.out.println(trigger);
-				
 				// TODO need new way to send text here if the trigger result isn't a script
-				// execTrigger(trigger, room, client);
-				send(pgm.interpret(trigger.getScript(), getPlayer(client), room), client);
+				execTrigger(trigger, room, client);
 			}
 
 			// send other exit properties
@@ -13280,7 +13388,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			// send the osuccess message
 			if (!exit.getMessage("osuccMsg").equals("")) {
 				// TODO check where these messages end up getting sent to
-				addMessage( new Message(exit.getMessage("osuccMsg"), room) );
+				addMessage( new Message(exit.getMessage("osuccMsg"), room, player) );
 				addMessage( new Message(player.getName() + " left the room.") ); // TODO fix kludge
 			}
 			
@@ -13309,11 +13417,8 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
             
 			// execute enter triggers
 			for (final Trigger trigger : room1.getTriggers(TriggerType.onEnter)) {
-				System.out.println(trigger);
-				
 				// TODO need new way to send text here if the trigger result isn't a script
-				// execTrigger(trigger, room, client);
-				send(pgm.interpret(trigger.getScript(), getPlayer(client), room1), client);
+				execTrigger(trigger, room1, client);
 			}
 
 			// call msp to play a tune that is the theme for a type of room
@@ -15716,22 +15821,23 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 				final String username = ld.username;
 				final String password = ld.password;
 
-				acctMgr.addAccount(username, password, 3);
-				
-				// TODO where should hashing occur?
-				final Account account = acctMgr.getAccount(username, Utils.hash(password));
+				final Account account = acctMgr.addAccount(username, password, 3);
 				
 				if( client == null ) System.out.println("CLIENT IS NULL!");
-				if( account == null ) System.out.println("ACCOUNT IS NULL!");
 				
-				caTable.put(client, account);
-				
-				// TODO this seems a tad insecure
-				send("Account Registered!", client);
-				send("Username: \'" + username + "\'", client);
-				send("Password: \'" + password + "\'", client);
+				if( account != null ) {
+					caTable.put(client, account);
+					
+					// TODO this seems a tad insecure
+					send("Account Registered!", client);
+					send("Username: \'" + username + "\'", client);
+					send("Password: \'" + password + "\'", client);
 
-				send("You may now login using your account credentials as you would those for an ordinary player.", client);
+					send("You may now login using your account credentials as you would those for an ordinary player.", client);
+				}
+				else {
+					send("That username is already taken. Registration Aborted!", client);
+				}
 			}
 			else {
 				send("Registration Aborted!");
@@ -15782,31 +15888,8 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			else if ( state.equals(Constants.AUTHENTICATE) ) {
 				loginData.remove(client);
 
-				// TODO create the account handler
-				final Account account1 = acctMgr.getAccount(data.username, Utils.hash( data.password ) );
-
-				if (account1 != null) {
-					// if there is no active player or multiplay is allowed
-					if (account1.getPlayer() == null || multiplay == 1) {
-						caTable.put(client, account1);
-
-						// final Account account = caTable.get(client);
-
-						account_menu(account1, client);
-
-						setClientState(client, "account_menu");
-					}
-					else {
-						send("That account is already logged-in!", client);
-
-						setClientState(client, "");
-					}
-				}
-				else {
-					send("No Such Account!", client);
-
-					setClientState(client, "");
-				}
+				// check the account once the password has been hashed (see account_login)
+				verify(client, data.password, (pass_hash) -> account_login(data.username, pass_hash, client));
 			}
 		}
 		else {
@@ -15821,6 +15904,42 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		}
 	}
 
+	/**
+	 * Finish logging into an account, once the password given has been
+	 * hashed (see handle_account_login).
+	 * 
+	 * @param username
+	 * @param pass_hash
+	 * @param client
+	 */
+	private void account_login(final String username, final String pass_hash, final Client client) {
+		// TODO create the account handler
+		final Account account1 = acctMgr.getAccount(username, pass_hash);
+
+		if (account1 != null) {
+			// if there is no active player or multiplay is allowed
+			if (account1.getPlayer() == null || multiplay == 1) {
+				caTable.put(client, account1);
+
+				// final Account account = caTable.get(client);
+
+				account_menu(account1, client);
+
+				setClientState(client, "account_menu");
+			}
+			else {
+				send("That account is already logged-in!", client);
+
+				setClientState(client, "");
+			}
+		}
+		else {
+			send("No Such Account!", client);
+
+			setClientState(client, "");
+		}
+	}
+
 	private void handle_account_menu(final String input, final Client client) {
 		debug("HANDLE ACCOUNT MENU");
 
@@ -16082,21 +16201,55 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			}
 		}
 
-		return null;
+		return null;
+	}
+
+	// logged-in player check
+	public boolean loginCheck(final Client client) {
+		if (client == null) return false;
+
+		// we only want to go through player references of those who are logged in
+		return onlineByClient.containsKey(client);
+	}
+
+	/**
+	 * Add a player to the list of players in the game, and to the
+	 * indexes used to look them up by client, name, and dbref.
+	 * 
+	 * NOTE: the player's client must be set first
+	 * 
+	 * @param player
+	 */
+	private void addOnline(final Player player) {
+		this.players.add(player);
+
+		if (player.getClient() != null) onlineByClient.put(player.getClient(), player);
+
+		onlineByName.put(player.getName(), player);
+		onlineByDBRef.put(player.getDBRef(), player);
+
+		objectDB.playerOnline(player);
 	}
 
-	// logged-in player check
-	public boolean loginCheck(final Client client) {
-		if (client == null) return false;
+	/**
+	 * Remove a player from the list of players in the game, and
+	 * from the indexes.
+	 * 
+	 * @param player
+	 */
+	private void removeOnline(final Player player) {
+		this.players.remove(player);
 
-		// we only want to go through player references of those who are logged in
-		for (final Player p : players) {
-			if (p.getClient().equals(client)) {
-				return true;
-			}
-		}
+		// save the player's final state at the next checkpoint
+		objectDB.markDirty(player);
 
-		return false;
+		// the player's client may already have been cleared
+		onlineByClient.values().remove(player);
+
+		onlineByName.remove(player.getName(), player);
+		onlineByDBRef.remove(player.getDBRef(), player);
+
+		objectDB.playerOffline(player);
 	}
 
 	// Object "Retrieval" Functions
@@ -16331,23 +16484,18 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	}
 	
 	public Player getPlayer(final String name, final Boolean online) {
-		debug("Searching for player by name...");
-		debug("\"" + name + "\"", 2);
-		
 		Player player = null;
 		
+		if( name == null ) return null;
+		
 		if( online ) {
-			for (final Player p : this.players) {
-				// TODO: how to handle cnames? how does the command know if they are enabled?
-				//if (player.getName().equals(name) || player.getCName().equals(name)) {
-				// how important is true equality?
-				if ( p.getName().equals(name) ) {
-					debug("Argument:     " + name);
-					debug("Player Name:  " + p.getName());
-					debug("Player CName: " + p.getCName());
-
-					player = p;
-				}
+			final Player p = onlineByName.get(name);
+			
+			if ( p != null ) {
+				player = p;
+			}
+			else if ( use_cnames ) {
+				player = cNames.get(name);
 			}
 		}
 		else {
@@ -16372,14 +16520,8 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	public Player getPlayer(final Integer dbref, final Boolean online) {
 		Player player = null;
 		
-		if( online ) {
-			for (final Player p : this.players) {
-				if (p.getDBRef() == dbref) {
-					player = p;
-				}
-			}
-		}
-		else player = objectDB.getPlayer(dbref);
+		if( online ) player = onlineByDBRef.get(dbref);
+		else         player = objectDB.getPlayer(dbref);
 		
 		return player;
 	}
@@ -16522,40 +16664,71 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			System.out.println("");
 		}*/
 
-		FileOutputStream fos;
-		ObjectOutputStream oos;
-		
-		GsonBuilder builder = new GsonBuilder();
-		
-		builder.setPrettyPrinting();
-		
-		Gson gson = builder.create();
-
-		for (final Account acct : acctMgr.getAccounts()) {
+		// accounts that have been removed have to be removed from the store, or they'd be loaded again
+		for (final Integer id : acctMgr.takeRemoved()) {
 			try {
-				fos = new FileOutputStream( resolvePath(ACCOUNT_DIR, acct.getUsername() + ".acct") );
-				oos = new ObjectOutputStream(fos);
-				
-				System.out.println( gson.toJson( acct ) );
-				
-				oos.writeObject(acct);
-
-				oos.close();
+				accountStore.remove(id);
+			}
+			catch (final IOException ioe) {
+				System.out.println("Accounts: unable to remove account " + id + " from " + ACCOUNT_STORE + ", it will be loaded again");
+				ioe.printStackTrace();
 			}
-			catch (final FileNotFoundException fnfe) { fnfe.printStackTrace(); }
-			catch (final Exception e)                { e.printStackTrace(); }
+		}
+
+		// only the accounts that have changed get written (see AccountStore)
+		try {
+			final int written = accountStore.save(acctMgr.getAccounts(), false);
+
+			debug("Accounts: " + written + " saved");
+		}
+		catch (final IOException ioe) {
+			System.out.println("--- Stack Trace ---");
+			ioe.printStackTrace();
 		}
 	}
 
 	/**
-	 * Save Database (calls save method on instance of ObjectDB)
+	 * Save Database (calls compact method on instance of ObjectDB, which
+	 * writes out the whole database and throws away the journal)
 	 */
 	public void saveDB() {
-		// save databases to disk, modifies 'real' files
-		objectDB.save(DB_FILE);
+		// save databases to disk, modifies 'real' files (while no commands are running, see checkpoint)
+		runExclusive(() -> objectDB.compact(DB_FILE));
 		send("Done");
 	}
 	
+	/**
+	 * Save just the objects that have changed since the last checkpoint
+	 * to the database journal (see ObjectDB.checkpoint).
+	 * 
+	 * NOTE: this is done while no commands are running, so that nothing
+	 * changes part way through an object being written out
+	 */
+	public void checkpoint() {
+		runExclusive(() -> {
+			final int count = objectDB.checkpoint(DB_FILE);
+			
+			if( count > 0 )       debug("Checkpoint: " + count + " objects saved", 2);
+			else if( count < 0 )  debug("Checkpoint: failed");
+		});
+	}
+	
+	/**
+	 * Load the database journal, if there is one.
+	 * 
+	 * @param filename database file
+	 * @return the journal lines, or null if there is no journal
+	 */
+	private List<String> loadJournal(final String filename) {
+		final File journal = new File(filename + ".journal");
+		
+		if( !journal.exists() ) return null;
+		
+		debug("Using journal " + journal.getName());
+		
+		return Arrays.asList( Utils.loadStrings( journal.getPath() ) );
+	}
+	
 	/**
 	 * Save Database (calls save method on instance of ObjectDB)
 	 */
@@ -16667,13 +16840,17 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	/**
 	 * loadAccounts
 	 * 
-	 * Read in serialized account data from files in the account directory,
-	 * create account objects, and then add them to the account manager
+	 * Read in account data from the account store (accounts.db) in the
+	 * account directory, and then add them to the account manager.
+	 * 
+	 * If there isn't an account store yet, any accounts in the old format
+	 * (one file of serialized account data per account) are read and
+	 * saved to a new one. Any that can't be (e.g. the username is already
+	 * taken, ignoring case) are reported, and their files left alone.
 	 * 
 	 * @param account_dir
 	 */
 	public void loadAccounts(String account_dir) {
-		// TODO find a more effective way to load account data
 		System.out.println("ACCOUNT_DIR: " + account_dir);
 		
 		final File dir = new File(account_dir);
@@ -16683,92 +16860,54 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			return;
 		}
 		
-		System.out.println(dir.listFiles());
-		
-		Account account = null;
-		
-		ObjectInputStream ois;
-		
-		final FilenameFilter af = new FilenameFilter() {
-			@Override
-			public boolean accept(File arg0, String arg1) {
-				return arg1.endsWith(".acct");
-			}
-		};
+		accountStore = new AccountStore( new File(dir, ACCOUNT_STORE) );
 		
-		// TODO use a FilenameFilter to get only .acct files, what is the best listing method?
-		for (final File file : dir.listFiles(af)) {
-			//if (file.isFile() && file.getName().endsWith(".acct")) {
-			if ( file.isFile() ) {
-				System.out.println("Account File Found: " + file.getName());
-
-				try {
-					ois = new ObjectInputStream(new FileInputStream(file));
-
-					account = (Account) ois.readObject();
-
-					System.out.println("ID: " + account.getId());
-					System.out.println("Username: " + account.getUsername());
-
-					final int aId = account.getId();
-					Account.Status aStatus = account.getStatus();
-
-					final Date aCreated = account.getCreated();
-					Date aModified = account.getModified();
-
-					String aUsername = account.getUsername();
-					String aPassword = account.getPassword();
-
-					final int aCharLimit = account.getCharLimit();
-
-					Account account2 = new Account(aId, aStatus, aCreated, aModified, aUsername, aPassword, aCharLimit, new Player[0]);
-
-					// connect players to their respective account
-					Player player = objectDB.getPlayer(account.getUsername());
-					// NOTE: ^ use DB because players still ought to be account
-					// associated even if not logged in
-
-					if (player != null) account2.linkCharacter(player);
-
-					acctMgr.addAccount(account2);
-
-					/*
-					 * while( ois.available() > 0 ) { account = (Account)
-					 * ois.readObject();
-					 * 
-					 * for(Player player : players) { // TODO figure out way
-					 * connect players and the accounts they belong to }
-					 * 
-					 * acctMgr.addAccount( account ); }
-					 */
-
-					ois.close();
-				}
-				catch (final FileNotFoundException fnfe) {
-					System.out.println("--- Stack Trace ---");
-					fnfe.printStackTrace();
+		try {
+			if ( accountStore.exists() ) {
+				for (final Account account : accountStore.load(objectDB::getPlayer)) {
+					acctMgr.addAccount(account);
 				}
-				catch (final ClassNotFoundException cnfe) {
-					System.out.println("--- Stack Trace ---");
-					cnfe.printStackTrace();
+			}
+			else {
+				// migrate any old (.acct) account files
+				final List<Account> accounts = AccountStore.readLegacy(dir, objectDB::getPlayer);
+				
+				int added = 0;
+				
+				for (final Account account : accounts) {
+					if ( acctMgr.addAccount(account) ) added++;
+					else {
+						System.out.println("Account " + account.getId() + " (" + account.getUsername() + ") not migrated, the id or username (ignoring case) is already taken");
+					}
 				}
-				catch (final IOException ioe) {
-					System.out.println("--- Stack Trace ---");
-					ioe.printStackTrace();
+				
+				if ( added > 0 ) {
+					final int written;
+					
+					try {
+						written = accountStore.save(acctMgr.getAccounts(), true);
+					}
+					catch (final IOException ioe) {
+						// don't leave a partial store behind, or the old files would never be looked at again
+						new File(dir, ACCOUNT_STORE).delete();
+						
+						throw ioe;
+					}
+					
+					System.out.println("Migrated " + written + " of " + accounts.size() + " account(s) to " + ACCOUNT_STORE);
+					
+					if ( written < accounts.size() ) {
+						System.out.println("The account(s) that weren't migrated (see above) have been left in " + dir.getPath() + " (.acct files)");
+					}
 				}
 			}
 		}
-
-		/*
-		 * LinkedList<Integer> ids = new LinkedList<Integer>();
-		 * 
-		 * for(Integer i : iamap.keySet()) { System.out.println(i); ids.add(i);
-		 * }
-		 * 
-		 * if( !ids.isEmpty() ) { Collections.sort(ids);
-		 * System.out.println(ids); last_account_id = ids.getLast(); } else
-		 * last_account_id = 0;
-		 */
+		catch (final IOException ioe) {
+			System.out.println("--- Stack Trace ---");
+			ioe.printStackTrace();
+		}
+		
+		System.out.println("Accounts: " + acctMgr.numAccounts() + " loaded");
 	}
 
 	/**
@@ -17487,6 +17626,8 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		sclients.put(client, player);
 
 		player.setClient(client);    // need this set so I can ask for it in various other places
+		
+		updateCompression(client);   // the player may not want compressed output
 
 		logConnect(player, time);
 
@@ -17550,9 +17691,9 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		messageQueues.put(player, new LinkedList<String>());
 
 		/* create timer lists for the player */
-		this.effectTimers.put(player, new LinkedList<EffectTimer>());
-		this.spellTimers.put(player, new LinkedList<SpellTimer>());
-		this.auctionTimers.put(player, new LinkedList<AuctionTimer>());
+		this.effectTimers.put(player, new CopyOnWriteArrayList<EffectTimer>());
+		this.spellTimers.put(player, new CopyOnWriteArrayList<SpellTimer>());
+		this.auctionTimers.put(player, new CopyOnWriteArrayList<AuctionTimer>());
 
 		player.setStatus("IC");
 		
@@ -17562,7 +17703,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		else                send("No GameModule configured!", client);
 		
 		/* add the player to the game */
-		this.players.add(player);
+		addOnline(player);
 
 		/* run any connect properties specified by the player */
 		cProps(player); // really should check permissions..
@@ -17702,7 +17843,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		// synchronized to deal with the possibility that someone invoked 'who'
 		// and needs to finish iterating through the list
 		synchronized (players) {
-			players.remove(player); // Remove the player object for the disconnecting player
+			removeOnline(player); // Remove the player object for the disconnecting player
 		}
 
 		// DEBUG: Tell us which character was disconnected
@@ -17715,6 +17856,23 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		}
 	}
 
+	/**
+	 * Start/stop compressing output to the client, so that it's compressed
+	 * only if compression is enabled, the client agreed to it (IAC DO MCCP2)
+	 * and the player (if logged in) hasn't turned it off ("compress" config
+	 * option).
+	 * 
+	 * @param client
+	 */
+	private void updateCompression(final Client client) {
+		final Player player = getPlayer(client);
+
+		if( use_mccp && client.MCCP2 && (player == null || player.getConfigOption("compress")) ) {
+			client.startCompression();
+		}
+		else client.stopCompression();
+	}
+
 	public void telnetNegotiation(Client client) {
 		// client.telnet = true; // mark as client as being negotiated with
 
@@ -17819,6 +17977,11 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 	// event triggered on client connection
 	public void clientConnected(final Client someClient) {
+		someClient.setHighWaterMark(output_hwm);
+		
+		// offer compressed output (see updateCompression)
+		if (use_mccp) someClient.write( new byte[] { Telnet.IAC, Telnet.WILL, Telnet.MCCP2 } );
+		
 		send("Connecting from " + someClient.getIPAddress(), someClient);
 
 		// decide if a player (or in this case, IP address) will be allowed to
@@ -17920,7 +18083,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		final ObjectLoader loader = new ObjectLoader(this, objectDB);
 
 		// load objects from databases
-		loader.loadObjects(loadListDatabase(DB_FILE), this.logger);
+		loader.loadObjects(DB_FILE, loadJournal(DB_FILE), this.logger);
 
 		// tell us that loading is done (supply custom message?)
 		send("Game> Done.");
@@ -17937,7 +18100,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		final ObjectLoader loader = new ObjectLoader(this, objectDB);
 
 		// load objects from databases
-		loader.loadObjects(loadListDatabase(DB_FILE), this.logger);
+		loader.loadObjects(DB_FILE, loadJournal(DB_FILE), this.logger);
 
 		// tell us that loading is done (supply custom message?)
 		send("Game> Done.");
@@ -18017,14 +18180,14 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 				final Player slave = playerControlMap.getSlave(player);
 
 				if (slave == null) {
-					players.remove(player);
+					removeOnline(player);
 					debug("Player removed.");
 					return;
 				}
 				else {
 					debug("Player \"idle\", but controlling an npc.");
 				}
-				players.remove(player);
+				removeOnline(player);
 			}
 			else {
 				// we have a client
@@ -18036,17 +18199,15 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	}
 
 	private void restart(int secs) {
-		final TimerTask task = new TimerTask() {
+		this.timers.schedule(new Runnable() {
 			public void run() {
 				restart();
 			}
-		};
-		
-		this.timer.schedule(task, secs * 1000);
+		}, secs * 1000L);
 	}
 	
 	private void restart() {
-		this.s = new Server(this, port);         // initialize the server object
+		this.s = createServer();                 // initialize the server object
 		
 		new Thread(this.s, "server").start();    // start it in a thread
 		
@@ -18060,13 +18221,11 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	}
 	
 	private void shutdown(int secs) {
-		final TimerTask task = new TimerTask() {
+		this.timers.schedule(new Runnable() {
 			public void run() {
 				shutdown();
 			}
-		};
-		
-		this.timer.schedule(task, secs * 1000);
+		}, secs * 1000L);
 	}
 
 	private void shutdown() {
@@ -18101,6 +18260,15 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		
 		System.out.println("Done");
 
+		// stop the timers
+		System.out.print("Stopping timers... ");
+
+		timers.stop();
+		timer.cancel();
+		hasher.shutdown();
+
+		System.out.println("Done");
+
 		// run the backup (run before closing logs so any backup problems get logged)
 		System.out.print("Running backup... ");
 		
@@ -18172,11 +18340,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		}
 		if (telnet == 1 || telnet == 2) {
 			// telnet and mud clients
-			for (char c : data.toCharArray()) {
-				write(c);
-			}
-
-			write("\r\n");
+			write(data + "\r\n");
 		}
 	}
 
@@ -18233,12 +18397,8 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 				client.write(data + "\r\n");
 			}
 			else if (telnet == 1 || telnet == 2) {
-				// telnet and mud clients
-				for (char c : data.toCharArray()) {
-					client.write(c);
-				}
-
-				client.write("\r\n");
+				// telnet and mud clients (buffered by the client, so this is one write, not one per character)
+				client.write(data + "\r\n");
 			}
 		}
 		else {
@@ -18259,6 +18419,40 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	private void send(final List<String> data, final Client client) {
 		client.write(data);
 	}
+
+	/**
+	 * Send a message that has already been encoded (see encode), so that the
+	 * same one can go to many clients without encoding it for each of them.
+	 * 
+	 * @param data
+	 * @param client
+	 */
+	private void send(final byte[] data, final Client client) {
+		// we won't send anything if there's no client or it's stopped
+		if ( client == null || !client.isRunning() ) return;
+
+		// check if socket is open, otherwise drop the connection
+		final Socket s = client.getSocket();
+
+		if( s.isClosed() ) {
+			debug("Client: socket closed?! (unexpected disconnect)");
+			client.stopRunning();
+			kick(client);
+			return;
+		}
+
+		client.write(data);
+	}
+
+	/**
+	 * Encode a message as it will be sent (see send(String, Client))
+	 * 
+	 * @param data
+	 * @return
+	 */
+	private byte[] encode(final String data) {
+		return (data + "\r\n").getBytes();
+	}
 	
 	/**
 	 * A wrapper function for the primary debug function that ensures that I can
@@ -18298,6 +18492,17 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		}
 	}
 	
+	/**
+	 * Would debugging information at the specified level be printed? Lets
+	 * callers skip building messages that would just be thrown away.
+	 * 
+	 * @param tDebugLevel
+	 * @return
+	 */
+	public boolean isDebugging(final int tDebugLevel) {
+		return debug && debugLevel >= tDebugLevel;
+	}
+	
 	public void debug(final String data, final Boolean test) {
 		if ( debug ) {
 			if ( test ) {
@@ -18707,13 +18912,18 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 		debug(type.name(), 4);
 
+		final byte[] data; // the message, encoded once and shared by everyone it goes to
+
 		switch (type) {
 		case BROADCAST:
-			for (final Player player : players) {
-				room = getRoom( player.getLocation() );
-				
-				if (room.getRoomType() == RoomType.OUTSIDE && player.getEditor() == Editors.NONE) {
-					send(message, player.getClient());
+			data = encode(message);
+
+			// everyone outside (i.e. listening in an occupied outside room)
+			for (final Room room1 : objectDB.getOccupiedWeatherRooms()) {
+				for (final Player player : room1.getListeners()) {
+					if (!(player instanceof NPC) && player.getEditor() == Editors.NONE) {
+						send(data, player.getClient());
+					}
 				}
 			}
 
@@ -18724,14 +18934,15 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			
 			// just in case the location somehow isn't a room
 			if (room != null) {
-				// send a message to all of the room's listeners
+				data = encode(message);
+
+				final Player exclude = msg.getExclude();
+
+				// send a message to all of the room's listeners (except whoever it's about)
 				for (final Player player : room.getListeners()) {
 					if (true) { // placeholder test condition for awareness of surroundings
-						boolean name = ( message.contains( player.getName() ) );
-						boolean cname = ( message.contains( player.getCName() ) );
-						
-						if ( !name && !cname ) {
-							send(message, player.getClient());
+						if ( player != exclude ) {
+							send(data, player.getClient());
 						}
 					}
 				}
@@ -18748,9 +18959,11 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			if (room != null) {
 				room.fireEvent(message);
 
+				data = encode(sender.getName() + " says, \"" + message + "\".");
+
 				for (final Player bystander : room.getListeners()) {
 					if (sender != bystander && !(bystander instanceof NPC)) {
-						send(sender.getName() + " says, \"" + message + "\".", bystander.getClient());
+						send(data, bystander.getClient());
 					}
 				}
 			}
@@ -19232,23 +19445,34 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			
 			int line_limit = player.getLineLimit(); /* Make the description conform to a column limit */
 
+			final boolean hud = player.getConfigOption("hud_enabled");
+
+			// the parts that don't change unless the room does come from the render cache
+			// (unless the description has scripting in it, which has to be run each time)
+			RenderCache.Render render;
+
+			if ( RenderCache.isCacheable( room.getDesc() ) ) {
+				final RenderCache.Key key = new RenderCache.Key(room.getDBRef(), line_limit, color, hud, game_time.getTimeOfDay(), room.getRoomType());
+
+				render = renderCache.get(key, room.getRevision(), room.getContentsVersion());
+
+				if (render == null) {
+					render = render(room, line_limit, hud);
+
+					renderCache.put(key, render);
+				}
+			}
+			else {
+				render = render(room, line_limit, hud);
+			}
+
 			// TODO make this get it's header data from somewhere else to make it customizable
-			if (player.getConfigOption("hud_enabled")) {
+			if (hud) {
 				//send(getHeader("--| %r |%s[ %z ]--", room), client);
 				output.add( getHeader("--| %r |%s[ %z ]--", room) );
 			}
 			else {
-				if (!room.getFlags().contains(ObjectFlag.SILENT)) {
-					//send(colors(room.getName() + " (#" + room.getDBRef() + ")",  getDisplayColor("room")), client);
-					output.add( colors(room.getName() + " (#" + room.getDBRef() + ")",  getDisplayColor("room")) );
-				}
-				else {
-					//send(colors(room.getName(), getDisplayColor("room")), client);
-					output.add( colors(room.getName(), getDisplayColor("room")) );
-				}
-
-				//send(Utils.padRight("", '-', line_limit), client);
-				output.add( Utils.padRight("", '-', line_limit) );
+				output.addAll( render.getTitle() );
 			}
 			
 			//send("", client);
@@ -19256,26 +19480,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			
 			/* Start Description */
 
-			// TODO is this duplicated in TimeLoop?
-			TimeOfDay[] night = { TimeOfDay.DUSK, TimeOfDay.MIDNIGHT, TimeOfDay.NIGHT, TimeOfDay.BEFORE_DAWN };
-
-			if (room.getRoomType() == RoomType.OUTSIDE && Arrays.asList(night).contains(game_time.getTimeOfDay())) {
-				//send("It's too dark to be able to see anything.", client);
-				output.add( "It's too dark to be able to see anything." );
-			}
-			else {
-				// TODO resolve timeOfDay issue
-				//final String description = parse(room.getDesc(), room.timeOfDay);
-				final String description = parse(room.getDesc(), "DAY");
-				//final String description = parse(room.getDesc(), timeOfDay(room));
-
-				debug("description (parsed): " + description);
-
-				// TODO make sure the line below doesn't cause issues
-				String tempDescription = check(description);
-				
-				output.addAll( parseDesc(tempDescription, line_limit) );
-			}
+			output.addAll( render.getDescription() );
 
 			//send("", client);
 			output.add( "" );
@@ -19321,27 +19526,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 				output.add( Utils.padRight("", '-', line_limit) );
 			}
 
-			if (room.getThings().size() > 0) {
-				StringBuilder sb = new StringBuilder();
-
-				for (final Thing thing : room.getThings()) {
-					
-					if ( !thing.hasFlag(ObjectFlag.DARK) ) { // only shown non-Dark things
-						if ( !room.hasFlag(ObjectFlag.SILENT) ) {
-							// send(colors(thing.getName() + "(#" + thing.getDBRef() + ")", "yellow"), client);
-							sb.append(colors(thing.getName() + "(#" + thing.getDBRef() + ")", "yellow") + ", ");
-						}
-						else {
-							// send(colors(thing.getName(), "yellow"), client);
-							sb.append(colors(thing.getName(), "yellow") + ", ");
-						}
-					}
-				}
-
-				//send(sb.toString().substring(0, sb.length() - 2), client); // dropping the last two characters clips the ending ", "
-				
-				output.add( sb.toString().substring(0, sb.length() - 2) );
-			}
+			output.addAll( render.getThings() );
 
 			/*
 			 * need to fix this code up, so that rooms whose coordinates, other
@@ -19371,18 +19556,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			//send("Contents:", client);
 			output.add( "Contents:" );
 
-			if ( !room.hasFlag(ObjectFlag.SILENT) ) {
-				for (final Item item : room.getItems()) {
-					//send(colors(item.getName() + "(#" + item.getDBRef() + ")", "yellow"), client);
-					output.add( colors(item.getName() + "(#" + item.getDBRef() + ")", "yellow") );
-				}
-			} 
-			else {
-				for (final Item item : room.getItems()) {
-					//send(colors(item.getName(), "yellow"), client);
-					output.add( colors(item.getName(), "yellow") );
-				}
-			}
+			output.addAll( render.getItems() );
 
 			//send("With:", client);
 			output.add( "With:" );
@@ -19468,29 +19642,122 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			// Portal
 			final List<Portal> tempPortals = new ArrayList<Portal>(5);
 
-			for (final Portal portal : portals) {
-				/*
-				 * final Point currentPos = current.getPosition(); final Point
-				 * portalPos = portal.getPosition();
-				 * 
-				 * final boolean playerAtPortal = ( portalPos.getX() ==
-				 * currentPos.getX() && portalPos.getY() == currentPos.getY() );
-				 */
+			for (final Portal portal : portals) {
+				/*
+				 * final Point currentPos = current.getPosition(); final Point
+				 * portalPos = portal.getPosition();
+				 * 
+				 * final boolean playerAtPortal = ( portalPos.getX() ==
+				 * currentPos.getX() && portalPos.getY() == currentPos.getY() );
+				 */
+
+				final boolean playerAtPortal = player.getPosition().equals(portal.getPosition());
+
+				if ( playerAtPortal && (portal.getOrigin() == room.getDBRef() || portal.getDestination() == room.getDBRef()) ) {
+					tempPortals.add(portal);
+				}
+			}
+
+			if (tempPortals.size() == 1)     output.add( "There is a portal here." ); //send("There is a portal here.", client);
+			else if (tempPortals.size() > 1) output.add( "There are several portals here."); //send("There are several portals here.", client);
+			
+			send( output, client );
+		}
+		else if (player == null) send("Game> Player is NULL? (this should be impossible here, ignoring bugs)", client);
+		else if (room == null)   send("Game> Invalid Room?", client);
+	}
+
+	/**
+	 * Render the parts of a room's output that only change when the room
+	 * (or what's in it) does: the title, the (parsed, word wrapped)
+	 * description, the things and the items.
+	 * 
+	 * @param room
+	 * @param line_limit
+	 * @param hud        is the player using the hud (header instead of a title)
+	 * @return
+	 */
+	private RenderCache.Render render(final Room room, final int line_limit, final boolean hud) {
+		// get these first, so that any change while we're rendering makes this stale
+		final int revision = room.getRevision();
+		final int contents = room.getContentsVersion();
+
+		final List<String> title = new ArrayList<String>(2);
+		final List<String> description = new ArrayList<String>();
+		final List<String> things = new ArrayList<String>(1);
+		final List<String> items = new ArrayList<String>();
+
+		if (!hud) {
+			if (!room.getFlags().contains(ObjectFlag.SILENT)) {
+				//send(colors(room.getName() + " (#" + room.getDBRef() + ")",  getDisplayColor("room")), client);
+				title.add( colors(room.getName() + " (#" + room.getDBRef() + ")",  getDisplayColor("room")) );
+			}
+			else {
+				//send(colors(room.getName(), getDisplayColor("room")), client);
+				title.add( colors(room.getName(), getDisplayColor("room")) );
+			}
+
+			//send(Utils.padRight("", '-', line_limit), client);
+			title.add( Utils.padRight("", '-', line_limit) );
+		}
 
-				final boolean playerAtPortal = player.getPosition().equals(portal.getPosition());
+		// TODO is this duplicated in TimeLoop?
+		TimeOfDay[] night = { TimeOfDay.DUSK, TimeOfDay.MIDNIGHT, TimeOfDay.NIGHT, TimeOfDay.BEFORE_DAWN };
 
-				if ( playerAtPortal && (portal.getOrigin() == room.getDBRef() || portal.getDestination() == room.getDBRef()) ) {
-					tempPortals.add(portal);
+		if (room.getRoomType() == RoomType.OUTSIDE && Arrays.asList(night).contains(game_time.getTimeOfDay())) {
+			//send("It's too dark to be able to see anything.", client);
+			description.add( "It's too dark to be able to see anything." );
+		}
+		else {
+			// TODO resolve timeOfDay issue
+			//final String description = parse(room.getDesc(), room.timeOfDay);
+			final String desc = parse(room.getDesc(), "DAY");
+			//final String description = parse(room.getDesc(), timeOfDay(room));
+
+			debug("description (parsed): " + desc);
+
+			// TODO make sure the line below doesn't cause issues
+			String tempDescription = check(desc);
+			
+			description.addAll( parseDesc(tempDescription, line_limit) );
+		}
+
+		if (room.getThings().size() > 0) {
+			StringBuilder sb = new StringBuilder();
+
+			for (final Thing thing : room.getThings()) {
+				
+				if ( !thing.hasFlag(ObjectFlag.DARK) ) { // only shown non-Dark things
+					if ( !room.hasFlag(ObjectFlag.SILENT) ) {
+						// send(colors(thing.getName() + "(#" + thing.getDBRef() + ")", "yellow"), client);
+						sb.append(colors(thing.getName() + "(#" + thing.getDBRef() + ")", "yellow") + ", ");
+					}
+					else {
+						// send(colors(thing.getName(), "yellow"), client);
+						sb.append(colors(thing.getName(), "yellow") + ", ");
+					}
 				}
 			}
 
-			if (tempPortals.size() == 1)     output.add( "There is a portal here." ); //send("There is a portal here.", client);
-			else if (tempPortals.size() > 1) output.add( "There are several portals here."); //send("There are several portals here.", client);
+			//send(sb.toString().substring(0, sb.length() - 2), client); // dropping the last two characters clips the ending ", "
 			
-			send( output, client );
+			if (sb.length() > 0) things.add( sb.toString().substring(0, sb.length() - 2) );
 		}
-		else if (player == null) send("Game> Player is NULL? (this should be impossible here, ignoring bugs)", client);
-		else if (room == null)   send("Game> Invalid Room?", client);
+
+		if ( !room.hasFlag(ObjectFlag.SILENT) ) {
+			for (final Item item : room.getItems()) {
+				//send(colors(item.getName() + "(#" + item.getDBRef() + ")", "yellow"), client);
+				items.add( colors(item.getName() + "(#" + item.getDBRef() + ")", "yellow") );
+			}
+		} 
+		else {
+			for (final Item item : room.getItems()) {
+				//send(colors(item.getName(), "yellow"), client);
+				items.add( colors(item.getName(), "yellow") );
+			}
+		}
+
+		return new RenderCache.Render(revision, contents, title, description, things, items);
 	}
 
 	/**
@@ -20018,29 +20285,17 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 	public void broadcastWeather() {
 		// old WeatherLoop code, which only ran once per "minute" anyway
-		// loop through all the rooms and broadcast weather messages accordingly
-		for (final Room room : objectDB.getWeatherRooms()) {
-			if (objectDB.getPlayersByRoom( room ).size() == 0) continue;
+		// loop through the (outside) rooms with players in them and broadcast weather messages accordingly
+		final Map<WeatherState, String> messages = new HashMap<WeatherState, String>(); // message for each weather state (only worked out once)
 
+		for (final Room room : objectDB.getOccupiedWeatherRooms()) {
 			debug("" + room.getDBRef(), 4);
-			
-			String msg = null;
-			
-			final String wsName = room.getWeather().getState().getName();
-			
-			switch (wsName) {
-			case "Clear Skies":
-				msg = "The sun shines down brightly from the cloudless blue sky.";
-				break;
-			case "Cloudy":
-				msg = "The cloud layer blots out the sun, leaving the world to be lit by the dim gray light that diffuses through it.";
-				break;
-			case "Rain":
-				msg = "The rain continues to pour down from above.";
-				break;
-			default:
-				break;
-			}
+
+			final WeatherState ws = room.getWeather().getState();
+
+			if ( !messages.containsKey(ws) ) messages.put(ws, getWeatherMessage(ws));
+
+			final String msg = messages.get(ws);
 
 			if (msg != null) {
 				// broadcast(msg, r);
@@ -20050,6 +20305,32 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		// end old WeatherLoop code
 	}
 
+	/**
+	 * Get the message describing the continuing weather (see broadcastWeather)
+	 * 
+	 * @param ws
+	 * @return the message, or null if there isn't one for that kind of weather
+	 */
+	private String getWeatherMessage(final WeatherState ws) {
+		String msg = null;
+
+		switch (ws.getName()) {
+		case "Clear Skies":
+			msg = "The sun shines down brightly from the cloudless blue sky.";
+			break;
+		case "Cloudy":
+			msg = "The cloud layer blots out the sun, leaving the world to be lit by the dim gray light that diffuses through it.";
+			break;
+		case "Rain":
+			msg = "The rain continues to pour down from above.";
+			break;
+		default:
+			break;
+		}
+
+		return msg;
+	}
+
 	/**
 	 * Loop through the players, make sure we are the only one poking at the
 	 * current one, then make single increment adjustments to their location
@@ -20289,6 +20570,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 					command = Command.class.cast(c2Object);
 					commandMap.put(args[0], command);
+					router.add(args[0], command);
 
 					return true;
 				}
@@ -20335,6 +20617,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 		if (commandMap.containsKey(arg)) {
 			commandMap.remove(arg);
+			router.remove(arg);
 			commandUnloaded = true;
 
 			send("Command Unloaded!", client);
@@ -20748,10 +21031,12 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 		String changeText = (( ws.upDown == 1 ) ? ws.transUpText : ws.transDownText);
 
-		for (final Room room : objectDB.getWeatherRooms())  {
-			if (changeText != null) {
+		if (changeText != null) {
+			debug(changeText);
+
+			// only rooms with someone there to see it
+			for (final Room room : objectDB.getOccupiedWeatherRooms())  {
 				addMessage( new Message(changeText, room) );
-				debug(changeText);
 			}
 		}
 		
@@ -21330,8 +21615,6 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		// TODO how do I decide idleness
 		checkForIdlePlayers();
 		
-		checkTimers();
-		
 		if( game_time.getSeconds() % 6 == 0 ) {
 			handleCombat();
 		}
@@ -21390,36 +21673,70 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	}
 
 	public void live_backup() {
-		send("Pausing game!");
-
-		// Pause all combat
-		input_hold = true; // Halt Player Input
-		game_time.pauseLoop(); // Pause the time tracking
-
-		final GameMode old_mode = mode;
-		
-		changeMode(GameMode.MAINTENANCE); // Put the game into Maintenance mode (no new logins, except Wizards)
+		live_backup(null);
+	}
+	
+	/**
+	 * Backup the game without stopping it. A snapshot of the database is
+	 * taken (while no commands are running) and then written out to the
+	 * backup directory by another thread while the game carries on.
+	 * 
+	 * @param client client to tell how it went (may be null)
+	 */
+	private void live_backup(final Client client) {
+		if( !backup_running.compareAndSet(false, true) ) {
+			if( client != null ) send("Game> A backup is already in progress.", client);
+			return;
+		}
 		
-		send("Entering " + mode.toString() + " Mode.");
-
-		send("Backing up game...");
-
 		// backs the current database up to current_database_name.bak
-		//backup(BACKUP_DIR + DB_FILE.substring(DB_FILE.lastIndexOf('\'') + 1, DB_FILE.length() - 3) + ".bak");
-		String current_db = ( new File(DB_FILE).getName() );
-		backup( resolvePath(BACKUP_DIR, current_db.replace(".txt", ".bak")) );
-
-		send("Finished backing up");
-
-		send("Unpausing game!");
-
-		game_time.unpauseLoop(); // Resume tracking time
-		input_hold = false; // Resume Player Input
-		// Unpause all combat
+		final String current_db = ( new File(DB_FILE).getName() );
+		final String filename = resolvePath(BACKUP_DIR, current_db.replace(".txt", ".bak"));
+		
+		final ObjectDB.Snapshot snapshot;
 		
-		changeMode(old_mode);
+		try {
+			// Accounts
+			saveAccounts();
+			
+			if( cmdExec != null ) snapshot = cmdExec.runExclusive(objectDB::takeSnapshot);
+			else                  snapshot = objectDB.takeSnapshot();
+		}
+		catch(final RuntimeException re) {
+			backup_running.set(false);
+			throw re;
+		}
 		
-		send("Entering " + mode.toString() + " Mode.");
+		final String taken = String.format("Snapshot %d (%d objects, %d changed) taken in %.2f ms", snapshot.getVersion(), snapshot.getSize(), snapshot.getChanged(), snapshot.getCaptureTime() / 1000000.0);
+		
+		log(taken);
+		
+		if( client != null ) send("Game> " + taken + ", backing up...", client);
+		
+		startThread(new Runnable() {
+			@Override
+			public void run() {
+				final long start = System.currentTimeMillis();
+				
+				try {
+					final long bytes = snapshot.write(filename);
+					
+					final String done = String.format("Snapshot %d: %d bytes written to %s in %d ms", snapshot.getVersion(), bytes, new File(filename).getName(), System.currentTimeMillis() - start);
+					
+					log(done);
+					
+					if( client != null && client.isRunning() ) send("Game> " + done, client);
+				}
+				catch(final IOException ioe) {
+					log("Snapshot " + snapshot.getVersion() + ": backup failed - " + ioe.getMessage());
+					
+					if( client != null && client.isRunning() ) send("Game> Backup failed.", client);
+				}
+				finally {
+					backup_running.set(false);
+				}
+			}
+		}, "backup");
 	}
 
 	/**
@@ -21855,14 +22172,73 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		return null;
 	}
 
-	private void execTrigger(Trigger trig, MUDObject mudObject, Client client) {
+	/**
+	 * Show how many times each script has been run, how long it took (on
+	 * average and at most) and how many times it went over the budget.
+	 * 
+	 * @param client
+	 */
+	private void cmd_pgmstats(final Client client) {
+		send(String.format("%10s %10s %10s %8s  %s", "Runs", "Avg (us)", "Max (us)", "Overrun", "Script"), client);
+		send(Utils.padLeft("", '-', 70), client);
+
+		for (final ProgramInterpreter.ScriptStats ss : pgm.getStats()) {
+			final long count = ss.getCount();
+			final long avg = (count > 0) ? (ss.getTotalTime() / count) / 1000 : 0;
+
+			String text = ss.getText();
+
+			if (text.length() > 32) text = text.substring(0, 29) + "...";
+
+			send(String.format("%10d %10d %10d %8d  %s", count, avg, ss.getMaxTime() / 1000, ss.getOverruns(), text), client);
+		}
+
+		send(Utils.padLeft("", '-', 70), client);
+		send("Compiled Scripts (cached): " + ProgramInterpreter.getCacheSize(), client);
+	}
+
+	/**
+	 * Run a trigger's script, sending the result to the client. If the
+	 * trigger has a delay (in seconds) the script is run once the delay
+	 * is up, rather than right now.
+	 * 
+	 * NOTE: scripts can change the world (give, create_item, etc), so a
+	 * delayed one is run the same way as anything else on a timer, i.e. while
+	 * no commands are running (see runExclusive), not on the timer thread.
+	 * 
+	 * @param trig
+	 * @param mudObject object the trigger belongs to
+	 * @param client
+	 */
+	private void execTrigger(final Trigger trig, final MUDObject mudObject, final Client client) {
 		String script = trig.getScript().getText();
 
 		final int numLeftBrace = Utils.countNumOfChar(script, '{');
 		final int numRightBrace = Utils.countNumOfChar(script, '}');
 
 		if (numLeftBrace != 0 && numRightBrace != 0 && numLeftBrace == numRightBrace) {
-			send(pgm.interpret(trig.getScript(), getPlayer(client), mudObject), client);
+			final Player player = getPlayer(client);
+
+			if (trig.getDelay() > 0) {
+				timers.schedule(new Runnable() {
+					public void run() {
+						runExclusive(() -> {
+							// the player may have left by now
+							if (player != null && player.getClient() == client && client.isRunning()) {
+								send(pgm.interpret(trig.getScript(), player, mudObject), client);
+							}
+						});
+					}
+				}, trig.getDelay() * 1000L);
+			}
+			else send(pgm.interpret(trig.getScript(), player, mudObject), client);
+		}
+		else if (numLeftBrace != numRightBrace) {
+			final int p_dbref = (getPlayer(client) != null) ? getPlayer(client).getDBRef() : -1;
+
+			debug("execTrigger: invalid script (unbalanced braces) on trigger for #" + mudObject.getDBRef() + ", not run");
+
+			send("Invalid Script! (" + p_dbref + "," + mudObject.getDBRef() + ")", client);
 		}
 	}
 
@@ -21905,87 +22281,48 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	}*/
 
 	/**
-	 * check for expired timers and clear them
+	 * Start a spell (cooldown) timer for the player, the timer is
+	 * removed from their list when it expires.
+	 * 
+	 * @param player
+	 * @param stimer
 	 */
-	public void checkTimers() {
-		// TODO can I genericize this list to TimerTask?
-
-		// Effect Timers (when they expire, effects are removed)
-		final List<EffectTimer> expired_timers = new LinkedList<EffectTimer>();
-
-		// each player has their own list of effect timers
-		for(final Player player : effectTimers.keySet()) {
-			final List<EffectTimer> etl = effectTimers.get(player);
-
-			// add the timers that are expired to the expired list
-			for (final EffectTimer etimer : etl) {
-				if (etimer.getTimeRemaining() <= 0) {
-					expired_timers.add(etimer);
-				}
-			}
-			
-			// remove each timer in eff from the player's list of effect timers
-			for (final EffectTimer etimer : expired_timers) {
-				String effectName = etimer.getEffect().getName();
-
-				//player.removeEffect(effectName);
-				removeEffect(player, effectName);
-
-				send(etimer.getEffect().getName() + " effect removed.", player.getClient());
+	public void addSpellTimer(final Player player, final SpellTimer stimer) {
+		final List<SpellTimer> stl = getSpellTimers(player);
 
-				etl.remove(etimer);
-			}
-		}
-
-		expired_timers.clear();
-
-		///
-		
-		// Effect Timers (when they expire, effects are removed)
-		final List<SpellTimer> expired_timers2 = new LinkedList<SpellTimer>();
-
-		// each player has their own list of effect timers
-		for(final Player player : spellTimers.keySet()) {
-			final List<SpellTimer> stl = spellTimers.get(player);
-
-			// add the timers that are expired to the expired list
-			for (final SpellTimer stimer : stl) {
-				if (stimer.getTimeRemaining() <= 0) {
-					expired_timers2.add(stimer);
-				}
-			}
+		stl.add(stimer);
 
-			// remove each timer in eff from the player's list of effect timers
-			for (final SpellTimer etimer : expired_timers2) {
-				stl.remove(etimer);
+		stimer.schedule(timers, new Runnable() {
+			public void run() {
+				stl.remove(stimer);
 			}
-		}
+		});
+	}
 
-		expired_timers2.clear();
+	/**
+	 * Start an effect timer for the player, when it expires the effect is
+	 * removed and the timer is removed from their list.
+	 * 
+	 * @param player
+	 * @param etimer
+	 */
+	public void addEffectTimer(final Player player, final EffectTimer etimer) {
+		final List<EffectTimer> etl = getEffectTimers(player);
 
-		// TODO auction timers -- see below
-		// perhaps a global spin through and decrement task of an internal count on Auctions would
-		// be more practical?
-		List<AuctionTimer> auc_timers = new LinkedList<AuctionTimer>();
+		etl.add(etimer);
 
-		for(final Player player : auctionTimers.keySet()) {
-			final List<AuctionTimer> atl = auctionTimers.get(player);
+		etimer.schedule(timers, new Runnable() {
+			public void run() {
+				final String effectName = etimer.getEffect().getName();
 
-			for (final AuctionTimer atimer : atl) {
-				if (atimer.getTimeRemaining() <= 0) {
-					auc_timers.add(atimer);
-				}
-			}
+				//player.removeEffect(effectName);
+				removeEffect(player, effectName);
 
-			for (final AuctionTimer atimer : auc_timers) {
-				// remove completed auction? marked it ended?
-				send("Your auction of " + atimer.getAuction().getItem().getName() + " ended!", player.getClient());
+				send(effectName + " effect removed.", player.getClient());
 
-				atl.remove(atimer);
+				etl.remove(etimer);
 			}
-
-			auc_timers.clear();
-		}
+		});
 	}
 
 	/**
@@ -21994,7 +22331,18 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	 * @param task
 	 */
 	public void scheduleTask(TimerTask task) {
-		this.timer.schedule(task, 0L); // immediate scheduling
+		this.timers.schedule(task, 0L); // immediate scheduling
+	}
+
+	/**
+	 * Schedule Task (after the specified delay)
+	 * 
+	 * @param task
+	 * @param delay time to wait (ms)
+	 * @return a Timeout, which can be used to cancel the task
+	 */
+	public TimingWheel.Timeout schedule(final Runnable task, final long delay) {
+		return this.timers.schedule(task, delay);
 	}
 
 	// global nameref access functions
@@ -22197,7 +22545,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	public void handleDeath(final Player player) {
 		// Player/NPC Death
 		if ( player.getState() == Player.State.DEAD ) {
-			final TimerTask tt = new TimerTask() {
+			final Runnable respawn = new Runnable() {
 				@Override public void run() {
 					respawn(player, player.getLocation());
 				}
@@ -22205,7 +22553,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 
 			int respawn_time = 5;
 
-			timer.schedule(tt, respawn_time * 60000);
+			timers.schedule(respawn, respawn_time * 60000L);
 			
 			send("You have died! (5 minutes til respawn)", player.getClient());
 			
@@ -22708,6 +23056,8 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	 */
 	public void setDisplayColor(final String displayType, final String ANSIColor) {
 		this.displayColors.put(displayType, new Pair<String>(ANSIColor, ""));
+
+		this.renderCache.clear(); // rendered rooms have the old colors
 	}
 
 	/**
@@ -22727,6 +23077,8 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 			else                         this.displayColors.put(displayType, new Pair<String>(ANSIColor, XTERMColor));
 		}
 		else this.displayColors.put(displayType, new Pair<String>(ANSIColor, XTERMColor));
+
+		this.renderCache.clear(); // rendered rooms have the old colors
 	}
 	
 	private String getDisplayColor(final TypeFlag type) {
@@ -23487,6 +23839,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 							if (item_stack.stackSize() < Constants.MAX_STACK_SIZE) {
 								debug("stackable - added to existing stack");
 								item_stack.stack(item);
+								player.getInventory().update(item1); // the stack may weigh more now
 								foundItemStack = true;
 								break;
 							}
@@ -23669,6 +24022,14 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 							break;
 						case "logging-enabled":
 							if (value.equals("true")) logging = true;
+							break;
+						case "logging-async":
+							if (value.equals("true")) log_async = true;
+							break;
+						case "logging-roll":
+							n = Utils.toInt(value, -1);
+							if (n >= 0) log_roll = n;
+							break;
 						case "port":
 							n = Utils.toInt(value, -1);
 							if (n != 1 && (n > 1024 && n < 9999)) {
@@ -23677,6 +24038,39 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 						case "int-login":
 							if (value.equals("true")) int_login = true;
 							break;
+						case "nio":
+							if (value.equals("true")) use_nio = true;
+							break;
+						case "io-threads":
+							n = Utils.toInt(value, -1);
+							if (n > 0) io_threads = n;
+							break;
+						case "output-hwm":
+							n = Utils.toInt(value, -1);
+							if (n > 0) output_hwm = n;
+							break;
+						case "mccp":
+							use_mccp = value.equals("true");
+							break;
+						case "command-rate":
+							n = Utils.toInt(value, -1);
+							if (n > 0) cmd_rate = n;
+							break;
+						case "command-burst":
+							n = Utils.toInt(value, -1);
+							if (n > 0) cmd_burst = n;
+							break;
+						case "command-threads":
+							n = Utils.toInt(value, -1);
+							if (n > 0) {
+								queued_commands = true;
+								command_threads = n;
+							}
+							break;
+						case "checkpoint-interval":
+							n = Utils.toInt(value, -1);
+							if (n >= 0) checkpoint_interval = n;
+							break;
 						default:
 							break;
 						}
@@ -23749,7 +24143,7 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 		}
 
 		// TODO check to see if this succeeded or not, then make a report accordingly to the client
-		if ( account.linkCharacter(player) ) {
+		if ( acctMgr.linkCharacter(account, player) ) {
 		}
 		else send("", client);
 
@@ -23783,16 +24177,36 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	
 	private void link_character(final Account account, final Player player) {
 		if( account != null ) {
-			account.linkCharacter(player);
+			acctMgr.linkCharacter(account, player);
 		}
 	}
 	
 	private void unlink_character(final Account account, final Player player) {
 		if( account != null ) {
-			account.unlinkCharacter(player);
+			acctMgr.unlinkCharacter(account, player);
 		}
 	}
 	
+	/**
+	 * Find an item by (part of its) name amongst a player's or room's items
+	 * (see MudUtils.findItem), using the database's name index for that
+	 * location (see ObjectDB.findItem). Should the index not turn it up
+	 * (i.e. the item's location doesn't match where it's been put), the list
+	 * is searched instead.
+	 * 
+	 * @param name
+	 * @param container the player/room holding the items
+	 * @param items     the items it holds
+	 * @return the item, or null if there isn't one that matches
+	 */
+	private Item findItem(final String name, final MUDObject container, final List<Item> items) {
+		final Item item = objectDB.findItem(name, container.getDBRef());
+
+		if ( item != null && items.contains(item) ) return item;
+
+		return MudUtils.findItem(name, items);
+	}
+	
 	// TODO finish implementation, would like to use search stuff from above and
 	// would like to take criteria, like say whether the item is a container
 	// NOTE this is needed still and is used to get a list of items with matching names
@@ -23950,8 +24364,18 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	}
 
 	public void addAuctionTimer(final AuctionTimer atimer, final Player player) {
-		auctionTimers.get(player).add(atimer);
-		timer.scheduleAtFixedRate(atimer, 0, 1000);
+		final List<AuctionTimer> atl = auctionTimers.get(player);
+
+		atl.add(atimer);
+
+		atimer.schedule(timers, new Runnable() {
+			public void run() {
+				// remove completed auction? marked it ended?
+				send("Your auction of " + atimer.getAuction().getItem().getName() + " ended!", player.getClient());
+
+				atl.remove(atimer);
+			}
+		});
 	}
 	
 	/**
@@ -24203,7 +24627,21 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	}
 	
 	// Network Server Call Wrappers
+	
+	/**
+	 * Create the network server object, using the non-blocking engine if
+	 * it was asked for at startup and the thread per client one otherwise.
+	 * 
+	 * @return
+	 */
+	private Server createServer() {
+		if( use_nio ) return new NIOServer(this, port, io_threads);
+		else          return new Server(this, port);
+	}
+	
 	private void disconnect(final Client client) {
+		this.rateLimiters.remove(client);
+		
 		s.disconnect(client);
 	}
 	
@@ -24225,6 +24663,287 @@ public final class MUDServer implements MUDServerI, MUDServerAPI {
 	private void addCommand(final String text, final Command cmd) {
 		cmd.init(this);
 		this.commandMap.put(text, cmd);
+		this.router.add(text, cmd);
+	}
+	
+	/**
+	 * Fill in the command table with the built-in commands and the access
+	 * level required for each. Command objects are added to it by addCommand.
+	 * 
+	 * NOTE: a command with a higher access level than the player has is
+	 * treated as though it doesn't exist (the input will be checked against
+	 * exits and soft commands instead).
+	 */
+	private void registerCommands() {
+		/* SuperUser Commands */
+
+		router.add("@access",     Constants.SUPERUSER, (arg, client) -> getCommand("@access").execute(arg, client));
+		router.add("@broadcast",  Constants.SUPERUSER, (arg, client) -> write("Game> " + getPlayer(client).getName() + " says, " + arg));
+		router.add("@jsonify",    Constants.SUPERUSER, this::cmd_jsonify);
+		router.add("@load",       Constants.SUPERUSER, (arg, client) -> {
+			send("Game> Command Not Implemented!", client);
+
+			boolean success = cmd_unloadc(arg, client);
+
+			if( success ) {
+				send("Game> Loaded " + commandMap.get(arg) + ".", client);
+			}
+			else {
+				String[] args = arg.split("=");
+
+				send("Game> Failed to load " + args[1] + " with command name " + args[0], client);
+			}
+		});
+		router.add("@unload",     Constants.SUPERUSER, (arg, client) -> {
+			send("Game> Command Not Implemented!", client);
+
+			boolean success = cmd_unloadc(arg, client);
+
+			if( success ) {
+				send("Game> Unloaded " + arg + ".", client);
+			}
+			else {
+				String[] args = arg.split("=");
+
+				send("Game> Failed to unload " + args[1] + " with command name " + args[0], client);
+			}
+		});
+		router.add("@reload",     Constants.SUPERUSER, (arg, client) -> {
+			if (arg.equals("")) sys_reload();
+			else                sys_reload(arg);
+		});
+		router.add("@shutdown",   Constants.SUPERUSER, this::cmd_shutdown);
+		router.add("@sethour",    Constants.SUPERUSER, this::cmd_sethour);
+		router.add("@setminute",  Constants.SUPERUSER, this::cmd_setminute);
+		router.add("@setweather", Constants.SUPERUSER, this::cmd_setweather);
+
+		/* Builder Commands */
+
+		router.add("@check",      Constants.BUILD, this::cmd_check);
+		router.add("@cedit",      Constants.BUILD, this::cmd_creatureedit);
+		router.add("@create_npc", Constants.BUILD, (arg, client) -> {
+			final String[] args = arg.split(" ");
+
+			for (final String s : args) {
+				System.out.println(s);
+			}
+
+			final String npcName = args[0];
+
+			//getRace checks equality, ignoring case
+			//final Race npcRace = getRace(args[1]);
+			final Race npcRace = Races.NONE;
+			//final Integer[] stats = Utils.stringsToIntegers(args[2].split(","));
+			final Integer[] stats = Utils.stringsToIntegers("7,7,7,7,7,7,7".split(","));
+
+			final Room location = getRoom(getPlayer(client).getLocation());
+
+			createNPC(npcName, npcRace, stats, location);
+		});
+		router.add("@dig",        Constants.BUILD, this::cmd_dig);
+		router.add("@describe",   Constants.BUILD, this::cmd_describe);
+		router.add("@door",       Constants.BUILD, this::cmd_door);
+		router.add("@edit",       Constants.BUILD, this::cmd_edit);
+		router.add("@examine",    Constants.BUILD, this::cmd_examine);
+		router.add("@fail",       Constants.BUILD, this::cmd_fail);
+		router.add("@iedit",      Constants.BUILD, this::cmd_itemedit);
+		router.add("@jump",       Constants.BUILD, this::cmd_jump);
+		router.add("@link",       Constants.BUILD, this::cmd_link);
+		router.add("@lsedit",     Constants.BUILD, this::cmd_lsedit);
+		router.add("@nameref",    Constants.BUILD, this::cmd_nameref);
+		router.add("@ofail",      Constants.BUILD, this::cmd_ofail);
+		router.add("@open",       Constants.BUILD, this::cmd_open);
+		router.add("@osuccess",   Constants.BUILD, this::cmd_osuccess);
+		router.add("@qedit",      Constants.BUILD, this::cmd_questedit);
+		router.add("@redit",      Constants.BUILD, this::cmd_roomedit);
+		router.add("@skedit",     Constants.BUILD, this::cmd_skilledit);
+		router.add("@success",    Constants.BUILD, this::cmd_success);
+		router.add("@unlink",     Constants.BUILD, this::cmd_unlink);
+		router.add("@zedit",      Constants.BUILD, this::cmd_zoneedit);
+
+		/* Admin Commands */
+
+		router.add("@accounts",   Constants.ADMIN, this::cmd_accounts);
+		router.add("@alias",      Constants.ADMIN, this::cmd_alias);
+		router.add("@backup",     Constants.ADMIN, this::cmd_backup);
+		router.add("@bb",         Constants.ADMIN, this::cmd_bb);
+		router.add("@config",     Constants.ADMIN, this::cmd_config);
+		router.add("@control",    Constants.ADMIN, this::cmd_control);
+		router.add("@debug",      Constants.ADMIN, this::cmd_debug);
+		router.add("@find",       Constants.ADMIN, this::cmd_find);
+		router.add("@flags",      Constants.ADMIN, this::cmd_flags);
+		router.add("@give",       Constants.ADMIN, this::cmd_give);
+		router.add("@hash",       Constants.ADMIN, (arg, client) -> client.write("Hash of argument: '" + arg + "' is hash: '" + Utils.hash(arg) + "'."));
+		router.add("@hedit",      Constants.ADMIN, this::cmd_helpedit);
+		router.add("@initialize", Constants.ADMIN, this::cmd_initialize);
+		router.add("@kick",       Constants.ADMIN, this::cmd_kick);
+		router.add("@listprops",  Constants.ADMIN, this::cmd_listprops);
+		router.add("@makehouse",  Constants.ADMIN, (arg, client) -> makeHouse( getPlayer(client) ));
+		router.add("@name",       Constants.ADMIN, this::cmd_name);
+		router.add("@nextdb",     Constants.ADMIN, (arg, client) -> {
+			if (arg.equals("")) {
+				send("Next Database Reference Number (DBRef/DBRN): " + objectDB.peekNextId(), client);
+			}
+		});
+		router.add("@npcs",       Constants.ADMIN, (arg, client) -> cmd_npcs("", client));
+		router.add("@lex",        Constants.ADMIN, (arg, client) -> send(ProgramInterpreter.lex(arg), client));
+		router.add("@pgm",        Constants.ADMIN, (arg, client) -> {
+			if (arg.equals("stats")) {
+				cmd_pgmstats(client);
+				return;
+			}
+
+			// we'll just create a new and temporary instance (debugging enabled)
+			final ProgramInterpreter newInterp = new ProgramInterpreter(this, true);
+
+			final Script script = new Script(arg);
+
+			// invoke the program interpreter and pass it the argument
+			send("-Result: " + newInterp.interpret(script, getPlayer(client), null), client);
+		});
+		router.add("@set",        Constants.ADMIN, this::cmd_set);
+		router.add("@session",    Constants.ADMIN, this::cmd_session);
+		router.add("@sethp",      Constants.ADMIN, this::cmd_sethp);
+		router.add("@setlevel",   Constants.ADMIN, this::cmd_setlevel);
+		router.add("@setmana",    Constants.ADMIN, this::cmd_setmana);
+		router.add("@setskill",   Constants.ADMIN, this::cmd_setskill);
+		router.add("@setxp",      Constants.ADMIN, this::cmd_setxp);
+		router.add("@stats",      Constants.ADMIN, this::cmd_dbstats);
+		router.add("@viewlog",    Constants.ADMIN, this::cmd_viewlog);
+		router.add("@tune",       Constants.ADMIN, (arg, client) -> {
+			String[] args = arg.split(" ");
+
+			if (args[0].equals("cmdDelay")) {
+				final int delay = Utils.toInt(args[1], -1);
+			}
+		});
+		router.add("@zones",      Constants.ADMIN, this::cmd_zones);
+		router.add("@zoneinfo",   Constants.ADMIN, this::cmd_zoneinfo);
+
+		/* Wizard Commands */
+
+		router.add("@ban",      Constants.WIZARD, this::cmd_ban);
+		router.add("@flag",     Constants.WIZARD, this::cmd_flag);
+		router.add("@flush",    Constants.WIZARD, (arg, client) -> {
+			flush();
+			send("Dead Connections Flushed!");
+		});
+		router.add("@recycle",  Constants.WIZARD, this::cmd_recycle);
+		router.add("@setcolor", Constants.WIZARD, this::cmd_setcolor);
+		router.add("@setmode",  Constants.WIZARD, this::cmd_setmode);
+		router.add("@spawn",    Constants.WIZARD, this::cmd_spawn);
+		router.add("@teleport", Constants.WIZARD, (arg, client) -> getCommand("@teleport").execute(arg, client));
+
+		/* User Commands */
+
+		router.add("ask",        Constants.USER, this::cmd_ask);
+		router.add("aliases",    Constants.USER, this::cmd_aliases);
+		router.add("auction",    Constants.USER, this::cmd_auction);
+		router.add("auctions",   Constants.USER, this::cmd_auctions);
+		router.add("balance",    Constants.USER, this::cmd_balance);
+		router.add("bash",       Constants.USER, this::cmd_bash);
+		router.add("bid",        Constants.USER, this::cmd_bid);
+		router.add("boards",     Constants.USER, this::cmd_boards);
+		router.add("buy",        Constants.USER, this::cmd_buy);
+		router.add("calendar",   Constants.USER, this::cmd_calendar);
+		router.add("chargen",    Constants.USER, this::cmd_chargen);
+		router.add("chat",       Constants.USER, this::cmd_chat);
+		router.add("climb",      Constants.USER, this::cmd_climb);
+		router.add("cls",        Constants.USER, this::cmd_cls);
+		router.add("colors",     Constants.USER, this::cmd_colors);
+		router.add("commands",   Constants.USER, this::cmd_commands);
+		router.add("consider",   Constants.USER, this::cmd_consider);
+		router.add("condition",  Constants.USER, this::cmd_condition);
+		router.add("craft",      Constants.USER, this::cmd_craft);
+		router.add("deposit",    Constants.USER, this::cmd_deposit);
+		router.add("drink",      Constants.USER, this::cmd_drink);
+		router.add("drop",       Constants.USER, this::cmd_drop);
+		router.add("effects",    Constants.USER, this::cmd_effects);
+		router.add("equip",      Constants.USER, this::cmd_equip);
+		router.add("exchange",   Constants.USER, this::cmd_exchange);
+		router.add("exp",        Constants.USER, this::cmd_exp);
+		router.add("exits",      Constants.USER, this::cmd_exits);
+		router.add("feats",      Constants.USER, this::cmd_feats);
+		router.add("fly",        Constants.USER, this::cmd_fly);
+		router.add("get",        Constants.USER, this::cmd_get);
+		router.add("go",         Constants.USER, this::cmd_go);
+		router.add("help",       Constants.USER, this::cmd_help);
+		router.add("hold",       Constants.USER, this::cmd_hold);
+		router.add("home",       Constants.USER, this::cmd_home);
+		router.add("housing",    Constants.USER, this::cmd_housing);
+		router.add("inspect",    Constants.USER, this::cmd_inspect);
+		router.add("interact",   Constants.USER, this::cmd_interact);
+		router.add("inventory",  Constants.USER, this::cmd_inventory);
+		router.add("land",       Constants.USER, this::cmd_land);
+		router.add("levelup",    Constants.USER, this::cmd_levelup);
+		router.add("list",       Constants.USER, this::cmd_list);
+		router.add("lock",       Constants.USER, this::cmd_lock);
+		router.add("logout",     Constants.USER, this::cmd_logout);
+		router.add("look",       Constants.USER, this::cmd_look);
+		router.add("lookat",     Constants.USER, this::cmd_lookat);
+		router.add("map",        Constants.USER, this::cmd_map);
+		router.add("money",      Constants.USER, this::cmd_money);
+		router.add("motd",       Constants.USER, (arg, client) -> send(messageOfTheDay(), client));
+		router.add("move",       Constants.USER, this::cmd_move);
+		router.add("ooc",        Constants.USER, (arg, client) -> getPlayer(client).setStatus("OOC"));
+		router.add("ic",         Constants.USER, (arg, client) -> getPlayer(client).setStatus("IC"));
+		router.add("open",       Constants.USER, this::cmd_open2);
+		router.add("page",       Constants.USER, this::cmd_page);
+		router.add("pose",       Constants.USER, this::cmd_pose);
+		router.add("party",      Constants.USER, this::cmd_party);
+		router.add("passwd",     Constants.USER, this::cmd_passwd);
+		router.add("pconfig",    Constants.USER, this::cmd_pconfig);
+		router.add("pinfo",      Constants.USER, this::cmd_pinfo);
+		router.add("push",       Constants.USER, this::cmd_push);
+		router.add("put",        Constants.USER, this::cmd_put);
+		router.add("prompt",     Constants.USER, (arg, client) -> prompt(client));
+		router.add("quests",     Constants.USER, this::cmd_quests);
+		router.add("quit",       Constants.USER, this::cmd_quit);
+		router.add("read",       Constants.USER, this::cmd_read);
+		router.add("roll",       Constants.USER, this::cmd_roll);
+		router.add("run",        Constants.USER, (arg, client) -> {
+			final Player player = getPlayer(client);
+			player.setSpeed(Constants.RUN);
+			send("You get ready to run.", client);
+		});
+		router.add("score",      Constants.USER, this::cmd_score);
+		router.add("sell",       Constants.USER, this::cmd_sell);
+		router.add("sheathe",    Constants.USER, this::cmd_sheathe);
+		router.add("skillcheck", Constants.USER, this::cmd_skillcheck);
+		router.add("spellinfo",  Constants.USER, this::cmd_spellinfo);
+		router.add("spells",     Constants.USER, this::cmd_spells);
+		router.add("stats",      Constants.USER, this::cmd_stats);
+		router.add("status",     Constants.USER, this::cmd_status);
+		router.add("talk",       Constants.USER, this::cmd_talk);
+		router.add("take",       Constants.USER, this::cmd_take);
+		router.add("target",     Constants.USER, this::cmd_target);
+		router.add("tell",       Constants.USER, this::cmd_tell);
+		router.add("time",       Constants.USER, this::cmd_time);
+		router.add("trade",      Constants.USER, this::cmd_trade);
+		router.add("travel",     Constants.USER, this::cmd_travel);
+		router.add("unequip",    Constants.USER, this::cmd_unequip);
+		router.add("unlock",     Constants.USER, this::cmd_unlock);
+		router.add("use",        Constants.USER, this::cmd_use);
+		router.add("value",      Constants.USER, this::cmd_value);
+		router.add("version",    Constants.USER, this::cmd_version);
+		router.add("vitals",     Constants.USER, this::cmd_vitals);
+		router.add("where",      Constants.USER, this::cmd_where);
+		router.add("who",        Constants.USER, this::cmd_who);
+		router.add("withdraw",   Constants.USER, this::cmd_withdraw);
+		router.add("walk",       Constants.USER, (arg, client) -> {
+			final Player player = getPlayer(client);
+
+			if (player.getSpeed() > Constants.WALK) {
+				player.setSpeed(Constants.WALK);
+				send("You slow down to a walking speed.", client);
+			}
+		});
+		router.add("write",      Constants.USER, (arg, client) -> {
+			// TODO CMD 21
+			// check for something to write in/on (writable things -- paper, books, scrolls?)
+			// check for writing tool and ink
+			// get stuff and "write" it down
+		});
 	}
 
 	private void handle_conversation(final NPC npc, final Player player, final Integer option) {
@@ -1,22 +1,42 @@
 package mud;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.Stack;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 
 import mud.objects.*;
 import mud.objects.exits.Door;
 import mud.objects.items.Arrow;
 import mud.objects.items.Container;
+import mud.utils.NameIndex;
 import mud.utils.Utils;
 
 import mud.game.PClass;
+import mud.interfaces.ObjectListener;
 import mud.interfaces.ODBI;
 
 /*
@@ -37,13 +57,19 @@ import mud.interfaces.ODBI;
  *
  */
 
-public final class ObjectDB implements ODBI {
+public final class ObjectDB implements ODBI, ObjectListener {
 	private int nextId = 0;
 
 	// TreeMap allows instant retrieval by id and by name.
 	private final Map<String, MUDObject>  objsByName = new TreeMap<String, MUDObject>();
 	private final Map<Integer, MUDObject> objsById = new TreeMap<Integer, MUDObject>();
 
+	// object names (ignoring case), for finding objects by (part of) their name
+	private final NameIndex<MUDObject> objsByLower = new NameIndex<MUDObject>(false);
+
+	// number of objects of each type, with each flag and by owner (see getCounts)
+	private final ObjectCounts counts = new ObjectCounts();
+
 	// holds unused database references, that exist due to "recycled" objects
 	private Stack<Integer> unusedDBNs = new Stack<Integer>();
 	private List<Integer> reservedDBNs = new LinkedList<Integer>();
@@ -51,6 +77,25 @@ public final class ObjectDB implements ODBI {
 	// Hashtable is used here because it does not permit null values
 	//private Hashtable<Client, LinkedList<Integer>> reservationTable = new Hashtable<Client, LinkedList<Integer>>();
 
+	// dbrefs of objects changed since the last checkpoint (see checkpoint, compact)
+	private final Set<Integer> dirty = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+
+	private long journalLimit = 4 * 1024 * 1024; // journal size (bytes) at which checkpoint compacts instead
+
+	private final Map<Integer, String> ignoredLines = new HashMap<Integer, String>(); // ignored lines from the database file, by dbref
+
+	private long snapshotVersion = 0; // number of the last snapshot taken (see takeSnapshot)
+
+	// each object's line as of the last snapshot, and the dbrefs of objects changed since (see takeSnapshot)
+	private Map<MUDObject, String> snapshotLines = new IdentityHashMap<MUDObject, String>();
+	private final Set<Integer> snapshotDirty = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+
+	public ObjectDB() {
+		// keep the location indexes up to date when things move around, and
+		// keep track of what's changed
+		MUDObject.setListener(this);
+	}
+
 	/**
 	 * As long as we construct objects and insert them into this db afterwards as a separate step,
 	 * getting the next id is somewhat of a hack. We could easily construct objects with an invalid id
@@ -156,7 +201,6 @@ public final class ObjectDB implements ODBI {
 			NullObject no = (NullObject) mobj;
 
 			if( !no.isLocked() ) {
-				System.out.println("dbref isn't in use");
 				this.unusedDBNs.push(unusedId);
 			}
 			else {
@@ -205,69 +249,311 @@ public final class ObjectDB implements ODBI {
 	}
 
 	// Serialize all objects via `toDB` and save array to file.
-	// TODO fix save method, this one depends on saving over the old database
 	public void save(final String filename) {
-		final String[] old = Utils.loadStrings(filename);         // old (current in file) database
+		Utils.saveStrings(filename, snapshot());
+	}
+
+	/**
+	 * Get the current database as it should be written to file, one line
+	 * per dbref.
+	 * 
+	 * @return
+	 */
+	private synchronized String[] snapshot() {
 		final String[] toSave = new String[this.objsById.size()]; // new (save to file) database
 
-		// TODO sometimes has issues with NullPointerException(s)
+		int index = 0;
+
+		for (final MUDObject obj : this.objsById.values()) {
+			toSave[index] = toLine(obj);
 
-		System.out.println("Old Size: " + old.length);
-		System.out.println("New Size: " + toSave.length);
+			index++;
+		}
 
-		int index = 0;
+		return toSave;
+	}
+
+	/**
+	 * Get the line to write to the database file for an object.
+	 * 
+	 * @param obj
+	 * @return
+	 */
+	private String toLine(final MUDObject obj) {
+		final String record = toRecord(obj);
+
+		if( record != null ) return record;
+
+		// a locked NullObject probably means a line whose data we are ignoring (but want to keep)
+		final String line = this.ignoredLines.get(obj.getDBRef());
+
+		return (line != null) ? line : obj.toDB();
+	}
+
+	/**
+	 * Get the database line for an object, or null if the object is a locked
+	 * NullObject (i.e. it stands for a line we're ignoring, which should be
+	 * kept as is).
+	 * 
+	 * @param obj
+	 * @return
+	 */
+	private static String toRecord(final MUDObject obj) {
+		if( obj instanceof NullObject ) {
+			if( ((NullObject) obj).isLocked() ) return null;
+		}
+		else if( obj instanceof Player ) {
+			// store a NullObject for a new player, they don't get saved until they're not new
+			if( ((Player) obj).isNew() ) return new NullObject(obj.getDBRef()).toDB();
+		}
+
+		return obj.toDB();
+	}
+
+	/**
+	 * Keep an ignored line (one starting with '&') from the database file,
+	 * so that it can be written back out as is.
+	 * 
+	 * @param dbref
+	 * @param line
+	 */
+	public synchronized void setIgnoredLine(final int dbref, final String line) {
+		this.ignoredLines.put(dbref, line);
+	}
+
+	/**
+	 * Take a snapshot of the database, i.e. every object's database line as of
+	 * right now, which can be written out later (see Snapshot.write) while the
+	 * objects themselves keep changing.
+	 * 
+	 * Only the objects that have changed since the last snapshot are
+	 * serialized again, the lines for the rest are reused from it. So how
+	 * long this takes depends on how much has changed, not on the size of
+	 * the database.
+	 * 
+	 * @return
+	 */
+	public Snapshot takeSnapshot() {
+		final long start = System.nanoTime();
+
+		final String[] lines;
+		final long version;
+
+		int changed = 0;
+
+		synchronized(this) {
+			final List<Integer> dirty = new ArrayList<Integer>( this.snapshotDirty );
+
+			this.snapshotDirty.removeAll(dirty);
+
+			final Set<Integer> modified = new HashSet<Integer>(dirty);
+
+			final Map<MUDObject, String> previous = this.snapshotLines;
+			final Map<MUDObject, String> current = new IdentityHashMap<MUDObject, String>(this.objsById.size());
+
+			lines = new String[this.objsById.size()];
+
+			int index = 0;
 
-		if( old != null ) {
 			for (final MUDObject obj : this.objsById.values()) {
-				if(obj instanceof NullObject) {
-					NullObject no = (NullObject) obj;
+				// (a replaced object is a different object, so it won't have a line yet)
+				String line = previous.get(obj);
 
-					// a locked NullObject probably means a line whose data we are ignoring (but want to keep)
-					if( no.isLocked() ) {
-						System.out.println(index + " Old Data: " + old[index] + " Keeping...");
-						toSave[index] = old[index]; // keep old data
-					}
-					else {
-						System.out.println(index + " No Previous Data, Overwriting...");
-						toSave[index] = obj.toDB(); // just save the null object
-					}
+				if( line == null || modified.contains(obj.getDBRef()) ) {
+					line = toLine(obj);
+					changed++;
 				}
-				else if(obj instanceof Player) {
-					Player player = (Player) obj;
 
-					if( !player.isNew() ) { // if the player is not new, save it
-						toSave[index] = obj.toDB();
-					}
-					else { // otherwise, store a NullObject
-						toSave[index] = new NullObject(obj.getDBRef()).toDB();
-					}
-				}
-				else {
-					System.out.println(obj.getName());
+				current.put(obj, line);
 
-					toSave[index] = obj.toDB();
-				}
+				lines[index++] = line;
+			}
+
+			this.snapshotLines = current;
+
+			version = ++this.snapshotVersion;
+		}
+
+		return new Snapshot(version, lines, changed, System.nanoTime() - start);
+	}
+
+	/**
+	 * Append the objects that have changed since the last checkpoint to the
+	 * database's journal (&lt;filename&gt;.journal), instead of rewriting the
+	 * whole database. Once the journal gets too big it is folded back into
+	 * the database (see compact).
+	 * 
+	 * Each journal line is &lt;length&gt;:&lt;record&gt;, so that a line that was only
+	 * partly written (i.e. the server died mid-write) can be recognized and
+	 * skipped when the journal is replayed (see ObjectLoader.replayJournal).
+	 * 
+	 * @param filename database file
+	 * @return the number of objects written, -1 if there was a problem
+	 */
+	public synchronized int checkpoint(final String filename) {
+		final File journal = new File(filename + ".journal");
+
+		if( journal.length() > this.journalLimit ) {
+			return compact(filename) ? this.objsById.size() : -1;
+		}
+
+		final List<Integer> changed = drainDirty();
+
+		if( changed.isEmpty() ) return 0;
 
-				index++;
+		final StringBuilder sb = new StringBuilder();
+
+		// if the last write was cut off, start on a new line so that only the partial record is lost
+		if( !endsWithNewline(journal) ) sb.append('\n');
+
+		int count = 0;
+
+		for (final Integer dbref : changed) {
+			final MUDObject obj = this.objsById.get(dbref);
+
+			if( obj == null ) continue;
+
+			final String record = toRecord(obj);
+
+			if( record != null ) {
+				sb.append(record.length()).append(':').append(record).append('\n');
+				count++;
 			}
 		}
-		else {
-			// TODO figure out if this part of save(...) should just go elsewhere. This is essentially
-			// breaking the notion of save since we aren't saving over an existing database
-			for (final MUDObject obj : objsById.values()) {
-				System.out.println(obj.getName());
 
-				toSave[index] = obj.toDB();
+		if( count == 0 ) return 0;
+
+		try (final FileOutputStream fos = new FileOutputStream(journal, true)) {
+			final Writer writer = new OutputStreamWriter(fos);
+
+			writer.write( sb.toString() );
+			writer.flush();
+
+			fos.getFD().sync();
+		}
+		catch(final IOException ioe) {
+			System.out.println("ObjectDB: problem writing journal " + journal.getName());
+			ioe.printStackTrace();
+
+			this.dirty.addAll(changed); // try again next time
+
+			return -1;
+		}
+
+		return count;
+	}
 
-				System.out.println(toSave[index]);
+	/**
+	 * Write lines of text out to a file, making sure they've actually reached
+	 * the disk before returning (so that the file can safely replace another).
+	 * 
+	 * @param file
+	 * @param lines
+	 * @throws IOException
+	 */
+	private static void writeLines(final File file, final String[] lines) throws IOException {
+		try (final FileOutputStream fos = new FileOutputStream(file)) {
+			final Writer writer = new BufferedWriter(new OutputStreamWriter(fos));
 
-				index++;
+			for (final String line : lines) {
+				writer.write(line);
+				writer.write(System.lineSeparator());
 			}
+
+			writer.flush();
+
+			fos.getFD().sync();
 		}
+	}
+
+	private static boolean endsWithNewline(final File file) {
+		if( file.length() == 0 ) return true;
 
-		Utils.saveStrings(filename, toSave);
+		try (final RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			raf.seek(raf.length() - 1);
+
+			return raf.read() == '\n';
+		}
+		catch(final IOException ioe) {
+			return false;
+		}
 	}
-	
+
+	/**
+	 * Write out the whole database (to a temporary file, which then replaces
+	 * the database file) and throw away the journal, since everything in it is
+	 * now in the database file.
+	 * 
+	 * @param filename database file
+	 * @return true if successful, false otherwise
+	 */
+	public synchronized boolean compact(final String filename) {
+		final File file = new File(filename);
+		final File temp = new File(filename + ".tmp");
+		final File journal = new File(filename + ".journal");
+
+		final List<Integer> changed = drainDirty();
+
+		try {
+			writeLines(temp, snapshot());
+
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch(final IOException ioe) {
+			System.out.println("ObjectDB: problem replacing " + file.getName());
+			ioe.printStackTrace();
+
+			this.dirty.addAll(changed); // try again next time
+
+			return false;
+		}
+
+		if( journal.exists() && !journal.delete() ) {
+			System.out.println("ObjectDB: unable to delete journal " + journal.getName());
+		}
+
+		return true;
+	}
+
+	/**
+	 * Indicate that an object has changed and needs to be saved at
+	 * the next checkpoint.
+	 * 
+	 * @param object
+	 */
+	public void markDirty(final MUDObject object) {
+		if( object != null ) {
+			this.dirty.add(object.getDBRef());
+			this.snapshotDirty.add(object.getDBRef());
+		}
+	}
+
+	/**
+	 * Forget about any changes (i.e. once the database has just been loaded
+	 * and nothing has changed yet).
+	 */
+	public void clearDirty() {
+		this.dirty.clear();
+	}
+
+	public int getDirtyCount() {
+		return this.dirty.size();
+	}
+
+	public void setJournalLimit(final long bytes) {
+		this.journalLimit = bytes;
+	}
+
+	private List<Integer> drainDirty() {
+		final List<Integer> changed = new ArrayList<Integer>( this.dirty );
+
+		this.dirty.removeAll(changed);
+
+		Collections.sort(changed);
+
+		return changed;
+	}
+
 	/**
 	 * mostly used for adding objects in file to in-memory database, all of
 	 * which have, of course, valid dbrefs that follow each other sequentially.
@@ -294,12 +580,6 @@ public final class ObjectDB implements ODBI {
 		// if the item dbref doesn't match the next one AND there is no entry for that id...
 
 
-		System.out.println("");
-		System.out.println("ObjectDB " + nextId + ": " + object.getDBRef());
-
-		System.out.println(object.getDBRef() + ": " + object.getName());
-		System.out.println("");
-
 		// --
 		if( object.getDBRef() != nextId ) {
 			// TODO This shouldn't be a problem at all, maybe... (There should always be a line in the database for every dbref that's ever been used?
@@ -307,19 +587,14 @@ public final class ObjectDB implements ODBI {
 				// TODO the check for a non-null object is a KLUDGE so that we can use add(...) for loading and new stuff.
 				while( object.getDBRef() != nextId && getById(object.getDBRef()) == null) {
 					// TODO fix this code, seriously! it will fill up the database with nullobjects if it hits ONE problem!
-					System.out.println("nextId: " + nextId);
-					System.out.println("dbref:  " + object.getDBRef());
-					System.out.println("");
+					System.out.println("ObjectDB: no entry for #" + nextId + " (next is #" + object.getDBRef() + "), inserted a locked NullObject");
 
 					// create a NullObject AND lock it
 					NullObject no = new NullObject(nextId);
 					no.lock();
 
 					// insert NullObject
-					this.objsById.put(no.getDBRef(), no);
-
-					System.out.println("Inserted NullObject!");
-					System.out.println("");
+					putObject(no);
 
 					this.nextId++;
 
@@ -331,20 +606,19 @@ public final class ObjectDB implements ODBI {
 		
 		boolean skip = false;
 
-		this.objsById.put(object.getDBRef(), object);
+		putObject(object);
+
+		markDirty(object);
 
 		/* If there's a null object in the database, let us know.
 		 * If it's just because of an ignored line it will be locked,
 		 * but otherwise we should take note of the dbref for re-use
 		 */
 		if(object instanceof NullObject) {
-			System.out.println("Inserted NullObject!");
-
 			NullObject no = (NullObject) object;
 
 			// if it's just an empty space from a deleted objects we can reuse the id
-			if( no.isLocked() ) System.out.println(">>> Object is Locked <<<");
-			else                addUnused( object.getDBRef() );
+			if( !no.isLocked() ) addUnused( object.getDBRef() );
 
 			skip = true;
 		}
@@ -387,9 +661,11 @@ public final class ObjectDB implements ODBI {
 		// TODO adding it is a buggy mess due to conflicting uses of add(...), load vs add new stuff
 		//add(item);
 		
-		this.objsById.put(object.getDBRef(), object);
+		putObject(object);
 		this.objsByName.put(object.getName(), object);
 
+		markDirty(object);
+
 		// add additional names for exits (conveniences/game/player use)
 		if( object.isType(TypeFlag.EXIT) ) {
 			final Exit exit = (Exit) object; 
@@ -412,17 +688,32 @@ public final class ObjectDB implements ODBI {
 	public void remove(final MUDObject item) {
 		final int DBREF = item.getDBRef();
 		
-		this.objsById.remove( DBREF );
+		if( this.objsById.remove( DBREF ) != null ) this.counts.remove(DBREF);
+
 		this.objsByName.values().remove(item);
+		this.objsByLower.remove(item);
 		
 		final NullObject no = new NullObject( DBREF );
 		
-		this.objsById.put(DBREF, no);
+		putObject(no);
 		this.objsByName.put(no.getName(), no);
+
+		markDirty(no);
 		
 		addUnused( DBREF );
 	}
 
+	// put an object in the id map (and the name index), replacing whatever was there
+	private void putObject(final MUDObject object) {
+		final MUDObject old = this.objsById.put(object.getDBRef(), object);
+
+		if( old != null && old != object ) this.objsByLower.remove(old);
+
+		this.objsByLower.add(object);
+
+		this.counts.add(object); // replaces whatever was counted for that dbref
+	}
+
 	// Ensure object is in both maps, overwriting any object in the id map.
 	/*public void set(final int n, final MUDObject item) {
         objsById.put(n, item);
@@ -465,7 +756,7 @@ public final class ObjectDB implements ODBI {
 	 * @return
 	 */
 	public List<MUDObject> getByRoom(final Room room) {
-		List<MUDObject> objects = new ArrayList<MUDObject>(100);
+		List<MUDObject> objects = new ArrayList<MUDObject>();
 
 		objects.addAll( getExitsByRoom( room ) );
 		objects.addAll( getThingsForRoom( room ) );
@@ -569,19 +860,7 @@ public final class ObjectDB implements ODBI {
 	 * @return
 	 */
 	public List<MUDObject> findByLower(final String name) {
-		final LinkedList<MUDObject> acc = new LinkedList<MUDObject>();
-		
-		final String testName = name.toLowerCase();
-		
-		for (final MUDObject obj : this.objsById.values()) {
-			String objectName = obj.getName().toLowerCase();
-			
-			if( objectName.startsWith( testName ) ) {
-				acc.add(obj);
-			}
-		}
-
-		return acc;
+		return new LinkedList<MUDObject>( this.objsByLower.findByPrefix(name) );
 	}
 
 	/**
@@ -590,18 +869,18 @@ public final class ObjectDB implements ODBI {
 	 * of (P)layers, (R)ooms, (E)xits, etc. However it could also be used
 	 * to count objects that are flagged (D)ark for instance.
 	 * 
+	 * NOTE: uses the running counts (see getCounts), not a walk of the database
+	 * 
 	 * @param letters the flags to search for
 	 * @return
 	 */
 	public int[] getFlagCounts(final String[] letters) {
 		final int[] counts = new int[letters.length];
-		Arrays.fill(counts, 0);
 
-		// objsById returns more objects than objsByName
-		for (final MUDObject obj : this.objsById.values()) {
-			for (int i = 0; i < letters.length; i++) {
-				if (obj.type.toString().startsWith(letters[i])) {
-					counts[i] += 1;
+		for (int i = 0; i < letters.length; i++) {
+			for (final TypeFlag type : TypeFlag.values()) {
+				if (type.toString().startsWith(letters[i])) {
+					counts[i] += this.counts.getCount(type);
 				}
 			}
 		}
@@ -609,6 +888,46 @@ public final class ObjectDB implements ODBI {
 		return counts;
 	}
 
+	/**
+	 * Get the running counts of the objects in the database (by type, flag
+	 * and owner).
+	 * 
+	 * @return
+	 */
+	public ObjectCounts getCounts() {
+		return this.counts;
+	}
+
+	/**
+	 * Get the number of objects at the specified location (of the types
+	 * indexed by location, see LocationIndex).
+	 * 
+	 * @param location
+	 * @return
+	 */
+	public int getPopulation(final int location) {
+		return this.exitsByLoc.size(location) + this.creepsByLoc.size(location) + this.npcsByLoc.size(location)
+				+ this.itemsByLoc.size(location) + this.thingsByLoc.size(location) + this.playersByLoc.size(location);
+	}
+
+	/**
+	 * Check the running counts against a walk of the database, fixing them
+	 * if they're wrong.
+	 * 
+	 * @return a list of problems found (empty if there weren't any)
+	 */
+	public List<String> checkCounts() {
+		final List<String> problems = this.counts.check(this.objsById.values());
+
+		if( !problems.isEmpty() ) {
+			this.counts.clear();
+
+			for (final MUDObject object : this.objsById.values()) this.counts.add(object);
+		}
+
+		return problems;
+	}
+
 	////////////// ROOMS
 	private final Map<Integer, Room> roomsById   = new HashMap<Integer, Room>();
 	private final Map<String, Room>  roomsByName = new HashMap<String, Room>();
@@ -665,6 +984,27 @@ public final class ObjectDB implements ODBI {
 		return getRoomsByType(RoomType.OUTSIDE);
 	}
 
+	/**
+	 * Get the weather rooms (see getWeatherRooms) that have players who are
+	 * online in them, in order, without looking at every room (see
+	 * playerOnline).
+	 * 
+	 * @return
+	 */
+	public List<Room> getOccupiedWeatherRooms() {
+		final List<Room> acc = new LinkedList<Room>();
+
+		for (final Integer loc : this.occupiedOutside) {
+			final Room r = this.roomsById.get(loc);
+
+			if (r != null) {
+				acc.add(r);
+			}
+		}
+
+		return acc;
+	}
+
 	public List<Room> getRoomsByParentLocation(final int loc) {
 		final List<Room> acc = new LinkedList<Room>();
 
@@ -692,6 +1032,8 @@ public final class ObjectDB implements ODBI {
 	/////////////// EXITS
 	private final Map<Integer, Exit> exitsById   = new HashMap<Integer, Exit>();
 	private final Map<String, Exit>  exitsByName = new HashMap<String, Exit>();
+	
+	private final LocationIndex<Exit> exitsByLoc = new LocationIndex<Exit>();
 
 	public Exit getExit(final int dbref) {
 		if( dbref < 0 ) return null;
@@ -708,21 +1050,11 @@ public final class ObjectDB implements ODBI {
 	}
 
 	public List<Exit> getExitsByRoom(final Room room) {
-		final List<Exit> acc = new LinkedList<Exit>();
-
-		int loc = room.getDBRef();
-
-		for (final Exit e : this.exitsById.values()) {
-			if (e.getLocation() == loc) {
-				acc.add(e);
-			}
-		}
-
-		return acc;
+		return this.exitsByLoc.get( room.getDBRef() );
 	}
 
 	public void addExit(final Exit exit) {
-		this.exitsById.put(exit.getDBRef(), exit);
+		this.exitsByLoc.replace( this.exitsById.put(exit.getDBRef(), exit), exit );
 
 		if( exit.getExitType() == ExitType.DOOR ) {
 			String[] names = exit.getName().split("/");
@@ -736,14 +1068,15 @@ public final class ObjectDB implements ODBI {
 	}
 
 	public void removeExit(final Exit e) {
-		this.exitsById.values().remove(e.getDBRef());
+		this.exitsById.remove(e.getDBRef());
+		this.exitsByLoc.remove(e);
 
 		if( e.getExitType() == ExitType.DOOR ) {
 			String[] temp = e.getName().split(";");
 			String[] names = temp[0].split("/");
 
-			this.exitsByName.values().remove(names[0]);
-			this.exitsByName.values().remove(names[1]);
+			this.exitsByName.remove(names[0]);
+			this.exitsByName.remove(names[1]);
 		}
 		else {
 			this.exitsByName.remove(e.getName());
@@ -753,9 +1086,12 @@ public final class ObjectDB implements ODBI {
 	//////////////////// CREATURES
 	// Should rooms store their own creatures?
 	private final List<Creature> creeps = new ArrayList<Creature>();
+	
+	private final LocationIndex<Creature> creepsByLoc = new LocationIndex<Creature>();
 
 	public void addCreature(final Creature c) {
 		this.creeps.add(c);
+		this.creepsByLoc.add(c);
 	}
 
 	public List<Creature> getCreatures() {
@@ -763,25 +1099,17 @@ public final class ObjectDB implements ODBI {
 	}
 
 	public List<Creature> getCreaturesByRoom(final Room room) {
-		final List<Creature> acc = new LinkedList<Creature>();
-
-		int loc = room.getDBRef();
-
-		for (final Creature c : this.creeps) {
-			if (c.getLocation() == loc) {
-				acc.add(c);
-			}
-		}
-
-		return acc;
+		return this.creepsByLoc.get( room.getDBRef() );
 	}
 
 	////////////////// NPCs
 	private final Map<Integer, NPC> npcsById   = new HashMap<Integer, NPC>();
 	private final Map<String, NPC>  npcsByName = new HashMap<String, NPC>();
+	
+	private final LocationIndex<NPC> npcsByLoc = new LocationIndex<NPC>();
 
 	public void addNPC(final NPC npc) {
-		this.npcsById.put(npc.getDBRef(), npc);
+		this.npcsByLoc.replace( this.npcsById.put(npc.getDBRef(), npc), npc );
 		this.npcsByName.put(npc.getName(), npc);
 		this.npcsByName.put(npc.getCName(), npc);
 	}
@@ -811,44 +1139,87 @@ public final class ObjectDB implements ODBI {
 	}
 
 	public List<NPC> getNPCsByRoom(final Room room) {
-		final List<NPC> acc = new LinkedList<NPC>();
-
-		int loc = room.getDBRef();
-
-		for (final NPC n : this.npcsById.values()) {
-			if (n.getLocation() == loc) {
-				acc.add(n);
-			}
-		}
-
-		return acc;
+		return this.npcsByLoc.get( room.getDBRef() );
 	}
 
 	////////////////// ITEMS
 	private final List<Item> items = new ArrayList<Item>();
 	
 	private final Map<Integer, Item> itemsById   = new HashMap<Integer, Item>();
+	
+	private final LocationIndex<Item> itemsByLoc = new LocationIndex<Item>();
+
+	private final Map<Integer, NameIndex<Item>> itemNamesByLoc = new ConcurrentHashMap<Integer, NameIndex<Item>>(); // item names, by location (see findItem)
 
 	public void addItem(final Item item) {
 		this.items.add(item);
 		this.itemsById.put(item.getDBRef(), item);
+		this.itemsByLoc.add(item);
+
+		getItemNames( item.getLocation() ).add(item);
 	}
 
 	public void removeItem(final Item item) {
 		this.items.remove(item);
 		this.itemsById.remove(item.getDBRef());
+		
+		if( !this.items.contains(item) ) {
+			this.itemsByLoc.remove(item);
+
+			removeItemName(item, item.getLocation());
+		}
 	}
 
+	/**
+	 * Find the item at the specified location (a room, or a player/container's
+	 * inventory) that best matches the name given, using the same rules as
+	 * MudUtils.findItem, without looking at every item there.
+	 * 
+	 * @param name
+	 * @param location
+	 * @return the item, or null if there isn't one that matches
+	 */
+	public Item findItem(final String name, final int location) {
+		final NameIndex<Item> index = this.itemNamesByLoc.get(location);
+
+		return (index != null) ? index.find(name) : null;
+	}
+
+	private NameIndex<Item> getItemNames(final Integer location) {
+		final Integer loc = (location != null) ? location : -1;
+
+		NameIndex<Item> index = this.itemNamesByLoc.get(loc);
+
+		if( index == null ) {
+			final NameIndex<Item> newIndex = new NameIndex<Item>(true);
+
+			index = this.itemNamesByLoc.putIfAbsent(loc, newIndex);
+
+			if( index == null ) index = newIndex;
+		}
+
+		return index;
+	}
+
+	private void removeItemName(final Item item, final Integer location) {
+		final NameIndex<Item> index = this.itemNamesByLoc.get( (location != null) ? location : -1 );
+
+		if( index != null ) index.remove(item);
+	}
+
+	// NOTE: done in parallel, one room at a time (each room is only touched by one thread)
 	public void addItemsToRooms() {
-		for (final Item item : this.items) {
-			final Room r = getRoomById(item.getLocation());
+		new ArrayList<Integer>( this.itemsByLoc.locations() ).parallelStream().forEach(loc -> {
+			final Room r = getRoomById(loc);
 
 			if (r != null) {
-				r.addItem(item);
+				r.addItems( this.itemsByLoc.get(loc) );
 			}
-		}
+		});
 	}
 
+	// NOTE: not done in parallel, since adding to a container updates the totals of
+	// every inventory it's (somewhere) inside of and Inventory isn't thread-safe
 	public void addItemsToContainers() {
 		for (final Item item : this.items) {
 			if( item instanceof Container ) {
@@ -871,15 +1242,13 @@ public final class ObjectDB implements ODBI {
 
 	// somewhat pointless, since items are more likely to have the same name than most other objects
 	public Item getItem(final String name) {
-		Item item = null;
-
-		for (final Item item1 : this.items) {
-			if ( item1.getName().equals(name) ) {
-				item = item1;
+		for (final MUDObject obj : this.objsByLower.findExact(name)) {
+			if ( obj instanceof Item && obj.getName().equals(name) && this.itemsById.get(obj.getDBRef()) == obj ) {
+				return (Item) obj;
 			}
 		}
 
-		return item;
+		return null;
 	}
 
 	public List<Item> getItems() {
@@ -913,15 +1282,7 @@ public final class ObjectDB implements ODBI {
 	 * @return list of items located in the object referred to by dbref
 	 */
 	public List<Item> getItemsByLoc(final int loc) {
-		final List<Item> acc = new LinkedList<Item>();
-
-		for (final Item item : this.items) {
-			if (item.getLocation() == loc) {
-				acc.add(item);
-			}
-		}
-
-		return acc;
+		return this.itemsByLoc.get(loc);
 	}
 
 	/**
@@ -948,15 +1309,20 @@ public final class ObjectDB implements ODBI {
 	///////////// THINGS
 	private final List<Thing> things = new ArrayList<Thing>();
 	private final Map<Integer, Thing> thingsById = new HashMap<Integer, Thing>();
+	
+	private final LocationIndex<Thing> thingsByLoc = new LocationIndex<Thing>();
 
 	public void addThing(final Thing thing) {
 		this.things.add(thing);
 		this.thingsById.put(thing.getDBRef(), thing);
+		this.thingsByLoc.add(thing);
 	}
 
 	public void removeThing(final Thing thing) {
 		this.things.remove(thing);
 		this.thingsById.remove(thing.getDBRef());
+		
+		if( !this.things.contains(thing) ) this.thingsByLoc.remove(thing);
 	}
 
 	public Thing getThing(int dbref) {
@@ -980,38 +1346,29 @@ public final class ObjectDB implements ODBI {
 	}
 
 	public List<Thing> getThingsForRoom(final Room room) {
-		final List<Thing> acc = new LinkedList<Thing>();
-
-		int roomId = room.getDBRef();
-
-		for (final Thing t : this.things) {
-			if (t.getLocation() == roomId) {
-				acc.add(t);
-			}
-		}
-
-		return acc;
+		return this.thingsByLoc.get( room.getDBRef() );
 	}
 
+	// NOTE: done in parallel, one room at a time (each room is only touched by one thread)
 	public void placeThingsInRooms(final MUDServer parent) {
-		for (final Thing thing : this.things) {
-			if (thing != null) {
-				final Room room = parent.getRoom(thing.getLocation());
+		new ArrayList<Integer>( this.thingsByLoc.locations() ).parallelStream().forEach(loc -> {
+			final Room room = parent.getRoom(loc);
 
-				if (room != null) {
-					room.addThing( thing );
-				}
+			if (room != null) {
+				room.addThings( this.thingsByLoc.get(loc) );
 			}
-		}
+		});
 	}
 
 	///////////////////////////// PLAYERS
 	private final Map<Integer, Player> playersById = new HashMap<Integer, Player>();
 	private final Map<String, Player> playersByName = new HashMap<String, Player>();
+	
+	private final LocationIndex<Player> playersByLoc = new LocationIndex<Player>();
 
 	public void addPlayer(final Player p) {
 		this.playersById.put(p.getDBRef(), p);
-		this.playersByName.put(p.getName(), p);
+		this.playersByLoc.replace( this.playersByName.put(p.getName(), p), p );
 	}
 
 	public Player getPlayer(final int dbref) {
@@ -1050,21 +1407,86 @@ public final class ObjectDB implements ODBI {
 	}
 
 	public List<Player> getPlayersByRoom(final Room room) {
-		final List<Player> acc = new LinkedList<Player>();
+		return this.playersByLoc.get( room.getDBRef() );
+	}
+	
+	public List<Player> getPlayers() {
+		return new ArrayList<Player>(this.playersById.values());
+	}
 
-		int loc = room.getDBRef();
+	///////////////////////////// ONLINE PLAYERS
+	// where each online player is, and which outside rooms have any in them (see getOccupiedWeatherRooms)
+	private final Map<Player, Integer> onlineAt = new HashMap<Player, Integer>();
+	private final Map<Integer, Set<Player>> onlineByLoc = new HashMap<Integer, Set<Player>>(); // no empty sets
+	private final Set<Integer> occupiedOutside = new ConcurrentSkipListSet<Integer>();
 
-		for (final Player p : this.playersByName.values()) {
-			if (p.getLocation() == loc) {
-				acc.add(p);
-			}
+	/**
+	 * Note that a player is online (logged in), so that the rooms with
+	 * players in them are kept track of as they move around.
+	 * 
+	 * @param player
+	 */
+	public void playerOnline(final Player player) {
+		synchronized(this.onlineAt) {
+			final int location = (player.getLocation() != null) ? player.getLocation() : -1;
+
+			final Integer old = this.onlineAt.put(player, location);
+
+			if( old != null ) removeOnline(player, old);
+
+			addOnline(player, location);
 		}
+	}
 
-		return acc;
+	/**
+	 * Note that a player is no longer online.
+	 * 
+	 * @param player
+	 */
+	public void playerOffline(final Player player) {
+		synchronized(this.onlineAt) {
+			final Integer location = this.onlineAt.remove(player);
+
+			if( location != null ) removeOnline(player, location);
+		}
 	}
-	
-	public List<Player> getPlayers() {
-		return new ArrayList<Player>(this.playersById.values());
+
+	private void addOnline(final Player player, final int location) {
+		Set<Player> set = this.onlineByLoc.get(location);
+
+		if( set == null ) {
+			set = new HashSet<Player>();
+
+			this.onlineByLoc.put(location, set);
+		}
+
+		set.add(player);
+
+		updateOccupied(location);
+	}
+
+	private void removeOnline(final Player player, final int location) {
+		final Set<Player> set = this.onlineByLoc.get(location);
+
+		if( set != null && set.remove(player) && set.isEmpty() ) {
+			this.onlineByLoc.remove(location);
+
+			updateOccupied(location);
+		}
+	}
+
+	// is the location an outside room with an online player in it? (it may have changed either way)
+	private void updateOccupied(final int location) {
+		synchronized(this.onlineAt) {
+			final Room room = this.roomsById.get(location);
+
+			if( room != null && room.getRoomType() == RoomType.OUTSIDE && this.onlineByLoc.containsKey(location) ) {
+				this.occupiedOutside.add(location);
+			}
+			else {
+				this.occupiedOutside.remove(location);
+			}
+		}
 	}
 
 	/**
@@ -1090,8 +1512,456 @@ public final class ObjectDB implements ODBI {
 
 		this.objsById.clear();
 		this.objsByName.clear();
+		this.objsByLower.clear();
+		this.counts.clear();
 
 		this.unusedDBNs.clear();
 		this.reservedDBNs.clear();
+
+		this.ignoredLines.clear();
+
+		this.exitsByLoc.clear();
+		this.creepsByLoc.clear();
+		this.npcsByLoc.clear();
+		this.itemsByLoc.clear();
+		this.thingsByLoc.clear();
+		this.playersByLoc.clear();
+
+		this.itemNamesByLoc.clear();
+
+		synchronized(this.onlineAt) {
+			this.onlineAt.clear();
+			this.onlineByLoc.clear();
+			this.occupiedOutside.clear();
+		}
+
+		synchronized(this) {
+			this.snapshotLines = new IdentityHashMap<MUDObject, String>();
+			this.snapshotDirty.clear();
+		}
+
+		this.dirty.clear();
+	}
+
+	@Override
+	public void locationChanged(final MUDObject object, final Integer oldLocation, final Integer newLocation) {
+		// only moves the object if it's in the index to begin with
+		this.exitsByLoc.move(object, oldLocation, newLocation);
+		this.creepsByLoc.move(object, oldLocation, newLocation);
+		this.npcsByLoc.move(object, oldLocation, newLocation);
+		this.itemsByLoc.move(object, oldLocation, newLocation);
+		this.thingsByLoc.move(object, oldLocation, newLocation);
+		this.playersByLoc.move(object, oldLocation, newLocation);
+
+		if( object instanceof Player ) {
+			final Player player = (Player) object;
+
+			synchronized(this.onlineAt) {
+				if( this.onlineAt.containsKey(player) ) playerOnline(player);
+			}
+		}
+
+		if( object instanceof Item && this.itemsById.get(object.getDBRef()) == object ) {
+			removeItemName((Item) object, oldLocation);
+
+			getItemNames(newLocation).add((Item) object);
+		}
+
+		objectChanged(object);
+	}
+
+	@Override
+	public void objectChanged(final MUDObject object) {
+		// only objects that are actually in the database need saving
+		if( this.objsById.get(object.getDBRef()) == object ) {
+			this.dirty.add(object.getDBRef());
+			this.snapshotDirty.add(object.getDBRef());
+
+			// its flags or owner may have changed
+			this.counts.update(object);
+
+			// keep the name indexes up to date (in case it was renamed)
+			this.objsByLower.update(object);
+
+			if( object instanceof Item ) {
+				final Integer location = object.getLocation();
+
+				final NameIndex<Item> index = this.itemNamesByLoc.get( (location != null) ? location : -1 );
+
+				if( index != null ) index.update((Item) object);
+			}
+
+			// a room may have become (or stopped being) an outside one
+			if( object instanceof Room ) updateOccupied(object.getDBRef());
+
+			// a thing/item changing changes how the room it's in looks
+			if( object instanceof Item || object instanceof Thing ) {
+				final MUDObject location = this.objsById.get(object.getLocation());
+
+				if( location instanceof Room ) ((Room) location).contentsChanged();
+			}
+		}
+	}
+
+	/**
+	 * Check the location indexes against the objects they are supposed
+	 * to index, i.e. that every object is indexed under the location it
+	 * is actually at and that nothing else is indexed.
+	 * 
+	 * @return a list of problems found (empty if there weren't any)
+	 */
+	public List<String> checkLocations() {
+		final List<String> problems = new LinkedList<String>();
+
+		checkLocations("Exit",     this.exitsById.values(),     this.exitsByLoc,   problems);
+		checkLocations("Creature", this.creeps,                 this.creepsByLoc,  problems);
+		checkLocations("NPC",      this.npcsById.values(),      this.npcsByLoc,    problems);
+		checkLocations("Item",     this.items,                  this.itemsByLoc,   problems);
+		checkLocations("Thing",    this.things,                 this.thingsByLoc,  problems);
+		checkLocations("Player",   this.playersByName.values(), this.playersByLoc, problems);
+
+		return problems;
+	}
+
+	private <T extends MUDObject> void checkLocations(final String type, final Collection<T> objects, final LocationIndex<T> index, final List<String> problems) {
+		final Set<T> known = Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+
+		known.addAll(objects);
+
+		for (final T object : known) {
+			if( !index.contains(object) ) {
+				problems.add(type + " " + object.getName() + " (#" + object.getDBRef() + ") at #" + object.getLocation() + " is not indexed");
+			}
+		}
+
+		for (final Map.Entry<Integer, Set<T>> entry : index.entries()) {
+			for (final T object : entry.getValue()) {
+				if( !known.contains(object) ) {
+					problems.add(type + " " + object.getName() + " (#" + object.getDBRef() + ") is indexed at #" + entry.getKey() + " but isn't in the database");
+				}
+				else if( !entry.getKey().equals( LocationIndex.key(object.getLocation()) ) ) {
+					problems.add(type + " " + object.getName() + " (#" + object.getDBRef() + ") is indexed at #" + entry.getKey() + " but located at #" + object.getLocation());
+				}
+			}
+		}
+	}
+
+	/**
+	 * A copy of the database lines as of some moment, see takeSnapshot.
+	 */
+	public static final class Snapshot {
+		private final long version;
+		private final long time;        // when the snapshot was taken (ms)
+		private final long captureTime; // how long it took to take the snapshot (ns)
+
+		private final String[] lines;
+		private final int changed;      // how many of the lines had to be serialized again
+
+		private Snapshot(final long version, final String[] lines, final int changed, final long captureTime) {
+			this.version = version;
+			this.time = System.currentTimeMillis();
+			this.captureTime = captureTime;
+			this.lines = lines;
+			this.changed = changed;
+		}
+
+		public long getVersion() {
+			return this.version;
+		}
+
+		public long getTime() {
+			return this.time;
+		}
+
+		public long getCaptureTime() {
+			return this.captureTime;
+		}
+
+		public int getSize() {
+			return this.lines.length;
+		}
+
+		public int getChanged() {
+			return this.changed;
+		}
+
+		/**
+		 * Write the snapshot out to the specified file. It's written (and
+		 * synced) to a temporary file first, which then replaces the specified
+		 * one, so that an existing file is never left half written.
+		 * 
+		 * @param filename
+		 * @return the number of bytes written
+		 * @throws IOException
+		 */
+		public long write(final String filename) throws IOException {
+			final File file = new File(filename);
+			final File temp = new File(filename + ".tmp");
+
+			writeLines(temp, this.lines);
+
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+			return file.length();
+		}
+	}
+
+	/**
+	 * Keeps track of which objects (of one type) are at each location, so that
+	 * getting the contents of a room doesn't mean looking at every object of
+	 * that type in the database.
+	 * 
+	 * @param <T>
+	 */
+	private static final class LocationIndex<T extends MUDObject> {
+		private static final Comparator<MUDObject> BY_DBREF = new Comparator<MUDObject>() {
+			@Override
+			public int compare(final MUDObject o1, final MUDObject o2) {
+				return Integer.compare(o1.getDBRef(), o2.getDBRef());
+			}
+		};
+
+		private final Map<Integer, Set<T>> index = new ConcurrentHashMap<Integer, Set<T>>();
+
+		// objects without a location are kept under -1 (not in the world)
+		private static Integer key(final Integer location) {
+			return (location != null) ? location : -1;
+		}
+
+		private Set<T> getSet(final Integer location) {
+			Set<T> set = index.get( key(location) );
+
+			if( set == null ) {
+				final Set<T> newSet = Collections.newSetFromMap(new ConcurrentHashMap<T, Boolean>());
+
+				set = index.putIfAbsent(key(location), newSet);
+
+				if( set == null ) set = newSet;
+			}
+
+			return set;
+		}
+
+		public void add(final T object) {
+			getSet( object.getLocation() ).add(object);
+		}
+
+		public void remove(final T object) {
+			final Set<T> set = index.get( key(object.getLocation()) );
+
+			if( set != null ) set.remove(object);
+		}
+
+		// remove the object being replaced (if there was one), then add the new one
+		public void replace(final T old, final T object) {
+			if( old != null && old != object ) remove(old);
+
+			add(object);
+		}
+
+		@SuppressWarnings("unchecked")
+		public void move(final MUDObject object, final Integer from, final Integer to) {
+			final Set<T> set = index.get( key(from) );
+
+			// if it was in the set, then it's a T
+			if( set != null && set.remove(object) ) getSet(to).add( (T) object );
+		}
+
+		public boolean contains(final T object) {
+			final Set<T> set = index.get( key(object.getLocation()) );
+
+			return set != null && set.contains(object);
+		}
+
+		public int size(final int location) {
+			final Set<T> set = index.get(location);
+
+			return (set != null) ? set.size() : 0;
+		}
+
+		/**
+		 * Get the objects at the specified location, ordered by dbref.
+		 * 
+		 * @param location
+		 * @return
+		 */
+		public List<T> get(final int location) {
+			final Set<T> set = index.get(location);
+
+			if( set == null || set.isEmpty() ) return new ArrayList<T>(0);
+
+			final List<T> list = new ArrayList<T>(set);
+
+			Collections.sort(list, BY_DBREF);
+
+			return list;
+		}
+
+		public Set<Integer> locations() {
+			return this.index.keySet();
+		}
+
+		public Set<Map.Entry<Integer, Set<T>>> entries() {
+			return index.entrySet();
+		}
+
+		public void clear() {
+			index.clear();
+		}
+	}
+
+	/**
+	 * Running counts of the objects in the database, by type, by flag and by
+	 * owner, kept up to date as objects are added, removed and changed so
+	 * that statistics don't mean looking at every object.
+	 * 
+	 * What each object was counted as is remembered, so that a change (e.g.
+	 * a flag being set) is counted by taking away the old and adding the new.
+	 */
+	public static final class ObjectCounts {
+		private final int[] types = new int[TypeFlag.values().length];
+		private final int[] flags = new int[ObjectFlag.values().length];
+
+		private final Map<Integer, Integer> owners = new HashMap<Integer, Integer>();  // owner dbref -> objects owned
+		private final Map<Integer, Counted> counted = new HashMap<Integer, Counted>(); // dbref -> what it was counted as
+
+		private int total = 0;
+
+		private synchronized void add(final MUDObject object) {
+			final Counted old = this.counted.put(object.getDBRef(), new Counted(object));
+
+			if( old != null ) count(old, -1);
+
+			count(this.counted.get(object.getDBRef()), 1);
+		}
+
+		private synchronized void remove(final int dbref) {
+			final Counted old = this.counted.remove(dbref);
+
+			if( old != null ) count(old, -1);
+		}
+
+		private synchronized void update(final MUDObject object) {
+			final Counted old = this.counted.get(object.getDBRef());
+
+			if( old == null || !old.matches(object) ) add(object);
+		}
+
+		private synchronized void clear() {
+			Arrays.fill(this.types, 0);
+			Arrays.fill(this.flags, 0);
+
+			this.owners.clear();
+			this.counted.clear();
+
+			this.total = 0;
+		}
+
+		private void count(final Counted c, final int n) {
+			this.total += n;
+
+			if( c.type != null ) this.types[c.type.ordinal()] += n;
+
+			for (final ObjectFlag flag : c.flags) this.flags[flag.ordinal()] += n;
+
+			if( c.owner != null ) {
+				final Integer owned = this.owners.get(c.owner);
+				final int m = ((owned != null) ? owned : 0) + n;
+
+				if( m != 0 ) this.owners.put(c.owner, m);
+				else         this.owners.remove(c.owner);
+			}
+		}
+
+		public synchronized int getTotal() {
+			return this.total;
+		}
+
+		public synchronized int getCount(final TypeFlag type) {
+			return this.types[type.ordinal()];
+		}
+
+		public synchronized int getCount(final ObjectFlag flag) {
+			return this.flags[flag.ordinal()];
+		}
+
+		/**
+		 * Get the number of objects each owner owns.
+		 * 
+		 * @return a copy (owner dbref -> objects owned)
+		 */
+		public synchronized Map<Integer, Integer> getOwners() {
+			return new HashMap<Integer, Integer>(this.owners);
+		}
+
+		/**
+		 * Compare the counts to a count of the specified objects.
+		 * 
+		 * @param objects
+		 * @return a list of problems found (empty if there weren't any)
+		 */
+		private synchronized List<String> check(final Collection<MUDObject> objects) {
+			final ObjectCounts actual = new ObjectCounts();
+
+			for (final MUDObject object : objects) actual.add(object);
+
+			final List<String> problems = new LinkedList<String>();
+
+			if( actual.total != this.total ) {
+				problems.add("Total: " + this.total + ", should be " + actual.total);
+			}
+
+			for (final TypeFlag type : TypeFlag.values()) {
+				final int n = actual.types[type.ordinal()];
+
+				if( n != this.types[type.ordinal()] ) {
+					problems.add("Type " + type.getName() + ": " + this.types[type.ordinal()] + ", should be " + n);
+				}
+			}
+
+			for (final ObjectFlag flag : ObjectFlag.values()) {
+				final int n = actual.flags[flag.ordinal()];
+
+				if( n != this.flags[flag.ordinal()] ) {
+					problems.add("Flag " + flag.name() + ": " + this.flags[flag.ordinal()] + ", should be " + n);
+				}
+			}
+
+			if( !actual.owners.equals(this.owners) ) {
+				problems.add("Owners: " + this.owners + ", should be " + actual.owners);
+			}
+
+			return problems;
+		}
+	}
+
+	/**
+	 * What an object was counted as (see ObjectCounts).
+	 */
+	private static final class Counted {
+		private final TypeFlag type;
+		private final EnumSet<ObjectFlag> flags;
+		private final Integer owner;
+
+		private Counted(final MUDObject object) {
+			final EnumSet<ObjectFlag> objFlags = object.getFlags();
+
+			this.type = object.type;
+			this.flags = (objFlags != null) ? EnumSet.copyOf(objFlags) : EnumSet.noneOf(ObjectFlag.class);
+			this.owner = owner(object);
+		}
+
+		private boolean matches(final MUDObject object) {
+			final EnumSet<ObjectFlag> objFlags = object.getFlags();
+
+			return this.type == object.type && this.flags.equals( (objFlags != null) ? objFlags : EnumSet.noneOf(ObjectFlag.class) )
+					&& Objects.equals(this.owner, owner(object));
+		}
+
+		private static Integer owner(final MUDObject object) {
+			final Player owner = object.getOwner();
+
+			return (owner != null) ? owner.getDBRef() : null;
+		}
 	}
-}
\ No newline at end of file
+}
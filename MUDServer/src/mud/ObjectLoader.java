@@ -1,11 +1,27 @@
 package mud;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.ConcurrentModificationException;
 import java.util.EnumSet;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.LinkedList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import mud.objects.*;
 import mud.objects.exits.Door;
@@ -60,381 +76,655 @@ public class ObjectLoader {
 	
 	private boolean loaded = false;
 	
+	private static final int MIN_CHUNK = 64 * 1024; // smallest chunk of the database file to parse on it's own (bytes)
+	
+	// things that refer to other objects, hooked up after loading (see addObject, link)
+	private final Map<Room, Integer> roomZones = new ConcurrentHashMap<Room, Integer>();
+	private final Map<Door, Integer> doorKeys = new ConcurrentHashMap<Door, Integer>();
+	
 	public ObjectLoader(final MUDServer parent, final ObjectDB objectDB) {
 		this.parent = parent;
 		this.objectDB = objectDB;
 	}
 	
+	/**
+	 * Load objects from the database lines, after replaying the journal
+	 * (see ObjectDB.checkpoint) over them.
+	 * 
+	 * @param in      database lines
+	 * @param journal journal lines (may be null)
+	 * @param logger
+	 */
+	public void loadObjects(final List<String> in, final List<String> journal, final Logger logger) {
+		loadObjects(replayJournal(in, journal), logger);
+	}
+	
+	/**
+	 * Merge the journal's records into the database lines. The last
+	 * record for a dbref is the one that counts, it replaces the database
+	 * line for that dbref or, if there isn't one, gets added to the end
+	 * (in dbref order). Records that were only partly written are skipped.
+	 * 
+	 * @param in      database lines
+	 * @param journal journal lines (may be null)
+	 * @return
+	 */
+	public List<String> replayJournal(final List<String> in, final List<String> journal) {
+		if( journal == null || journal.isEmpty() ) return in;
+		
+		final Map<Integer, String> records = readJournal(journal);
+		
+		final List<String> out = new ArrayList<String>(in.size() + records.size());
+		
+		for (final String line : in) {
+			String record = null;
+			
+			// ignored lines are never journaled, so leave them be
+			if( line.charAt(0) != '&' ) {
+				try {
+					record = records.remove( Integer.parseInt(line.split("#")[0]) );
+				}
+				catch(final NumberFormatException nfe) {
+					// not a dbref, the loader will complain about it
+				}
+			}
+			
+			out.add( (record != null) ? record : line );
+		}
+		
+		out.addAll( records.values() );
+		
+		return out;
+	}
+	
+	/**
+	 * Get the valid records in the journal, the last one for each dbref.
+	 * 
+	 * @param journal journal lines (may be null)
+	 * @return records by dbref
+	 */
+	private Map<Integer, String> readJournal(final List<String> journal) {
+		final Map<Integer, String> records = new TreeMap<Integer, String>();
+		
+		if( journal == null ) return records;
+		
+		int skipped = 0;
+		
+		for (final String line : journal) {
+			if( line.isEmpty() ) continue;
+			
+			final int sep = line.indexOf(':');
+			
+			try {
+				final int length = Integer.parseInt(line.substring(0, sep));
+				final String record = line.substring(sep + 1);
+				
+				if( record.length() != length ) {
+					skipped++;
+					continue;
+				}
+				
+				records.put(Integer.parseInt(record.split("#")[0]), record);
+			}
+			catch(final NumberFormatException | IndexOutOfBoundsException e) {
+				skipped++;
+			}
+		}
+		
+		debug("Journal: " + records.size() + " records, " + skipped + " skipped");
+		
+		return records;
+	}
+	
 	// TODO fix this so I actually us the logger
 	public void loadObjects(final List<String> in, final Logger logger) {
 		for (final String oInfo : in) {
-			Integer oDBRef = 0, oLocation = 0;
-			String oName = "", oFlags = "", oDesc = "";
-			char oTypeFlag;
-
-			if (oInfo.charAt(0) == '&') { // means to ignore that line
-				debug("`loadObjects` ignoring line: ");
-				debug(oInfo);
-				debug("");
+			final MUDObject object = parseObject(oInfo);
+			
+			if( object != null ) addObject(object);
+		}
+		
+		link();
+		
+		objectDB.clearDirty(); // nothing has changed since loading
+		
+		loaded = true;
+	}
+	
+	/**
+	 * Load objects straight from the database file, after replaying the
+	 * journal (see ObjectDB.checkpoint) over them.
+	 * 
+	 * The file is memory mapped and split into chunks (on line boundaries)
+	 * which are parsed in parallel. The objects are then added to the
+	 * database in dbref order, same as loading them one line at a time.
+	 * 
+	 * @param filename database file
+	 * @param journal  journal lines (may be null)
+	 * @param logger
+	 */
+	public void loadObjects(final String filename, final List<String> journal, final Logger logger) {
+		final long start = System.nanoTime();
+		
+		final int threads = Runtime.getRuntime().availableProcessors();
+		
+		final List<ByteBuffer> chunks;
+		
+		try (final FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+			chunks = split(channel.map(MapMode.READ_ONLY, 0, channel.size()), threads);
+		}
+		catch(final IOException ioe) {
+			debug("Error: unable to read database " + filename + " (" + ioe.getMessage() + ")");
+			return;
+		}
+		
+		final long mapped = System.nanoTime();
+		
+		final ExecutorService pool = Executors.newFixedThreadPool(threads);
+		
+		final Map<Integer, MUDObject> objects = new TreeMap<Integer, MUDObject>();
+		
+		try {
+			final List<Future<List<MUDObject>>> results = new ArrayList<Future<List<MUDObject>>>(chunks.size());
+			
+			for (final ByteBuffer chunk : chunks) {
+				results.add( pool.submit(() -> parseChunk(chunk)) );
+			}
+			
+			for (final Future<List<MUDObject>> result : results) {
+				for (final MUDObject object : result.get()) objects.put(object.getDBRef(), object);
+			}
+		}
+		catch(final InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+		catch(final ExecutionException ee) {
+			if( ee.getCause() instanceof RuntimeException ) throw (RuntimeException) ee.getCause();
+			
+			throw new RuntimeException(ee.getCause());
+		}
+		finally {
+			pool.shutdown();
+		}
+		
+		// the journal's records replace (or add to) the file's, except for ignored lines (they're never journaled)
+		for (final String record : readJournal(journal).values()) {
+			final MUDObject object = parseObject(record);
+			
+			if( object == null ) continue;
+			
+			final MUDObject old = objects.get(object.getDBRef());
+			
+			if( old instanceof NullObject && ((NullObject) old).isLocked() ) continue;
+			
+			objects.put(object.getDBRef(), object);
+		}
+		
+		final long parsed = System.nanoTime();
+		
+		for (final MUDObject object : objects.values()) {
+			addObject(object);
+		}
+		
+		link();
+		
+		objectDB.clearDirty(); // nothing has changed since loading
+		
+		loaded = true;
+		
+		final long done = System.nanoTime();
+		
+		debug(String.format("Loaded %d objects in %d ms (map: %d ms, parse: %d ms [%d chunks], assemble: %d ms)",
+				objects.size(), (done - start) / 1000000, (mapped - start) / 1000000, (parsed - mapped) / 1000000, chunks.size(), (done - parsed) / 1000000));
+	}
+	
+	/**
+	 * Split the buffer into (up to) the specified number of chunks, each of
+	 * which ends at the end of a line.
+	 * 
+	 * @param buffer
+	 * @param count
+	 * @return
+	 */
+	private static List<ByteBuffer> split(final ByteBuffer buffer, final int count) {
+		final List<ByteBuffer> chunks = new ArrayList<ByteBuffer>(count);
+		
+		final int limit = buffer.limit();
+		final int size = Math.max(limit / count, MIN_CHUNK);
+		
+		int begin = 0;
+		
+		while( begin < limit ) {
+			int end = Math.min(begin + size, limit);
+			
+			while( end < limit && buffer.get(end - 1) != '\n' ) end++;
+			
+			final ByteBuffer chunk = buffer.duplicate();
+			
+			chunk.position(begin);
+			chunk.limit(end);
+			
+			chunks.add( chunk.slice() );
+			
+			begin = end;
+		}
+		
+		return chunks;
+	}
+	
+	/**
+	 * Parse the objects in a chunk of the database file, skipping
+	 * blank and commented out lines.
+	 * 
+	 * @param chunk
+	 * @return
+	 */
+	private List<MUDObject> parseChunk(final ByteBuffer chunk) {
+		final List<MUDObject> objects = new ArrayList<MUDObject>();
+		
+		final CharBuffer chars = Charset.defaultCharset().decode(chunk);
+		
+		int begin = 0;
+		
+		for (int index = 0; index <= chars.length(); index++) {
+			if( index < chars.length() && chars.charAt(index) != '\n' ) continue;
+			
+			int end = index;
+			
+			if( end > begin && chars.charAt(end - 1) == '\r' ) end--;
+			
+			if( end > begin && chars.charAt(begin) != '#' ) {
+				final MUDObject object = parseObject( chars.subSequence(begin, end).toString() );
 				
-				// grab the dbref number and remove the prefixing & character
-				oDBRef = Integer.parseInt(oInfo.split("#")[0].replace('&', ' ').trim());
+				if( object != null ) objects.add(object);
+			}
+			
+			begin = index + 1;
+		}
+		
+		return objects;
+	}
+	
+	/**
+	 * Make an object from it's database line. This doesn't add the object to
+	 * the database (see addObject), so that lines can be parsed in parallel.
+	 * 
+	 * @param oInfo
+	 * @return the object, or null if the line didn't describe one
+	 */
+	private MUDObject parseObject(final String oInfo) {
+		Integer oDBRef = 0, oLocation = 0;
+		String oName = "", oFlags = "", oDesc = "";
+		char oTypeFlag;
 
-				NullObject no = new NullObject(oDBRef);
-				no.lock(); // lock the NullObject
-				
-				//debug("NULLObject (" + oDBRef + ") Locked?: " + no.isLocked()); // print out the lock state
-				//debug("");
+		if (oInfo.charAt(0) == '&') { // means to ignore that line
+			debug("`loadObjects` ignoring line: ");
+			debug(oInfo);
+			debug("");
+			
+			// grab the dbref number and remove the prefixing & character
+			oDBRef = Integer.parseInt(oInfo.split("#")[0].replace('&', ' ').trim());
+
+			NullObject no = new NullObject(oDBRef);
+			no.lock(); // lock the NullObject
+			
+			objectDB.setIgnoredLine(oDBRef, oInfo); // keep the line, so it gets saved as is
+			
+			//debug("NULLObject (" + oDBRef + ") Locked?: " + no.isLocked()); // print out the lock state
+			//debug("");
+
+			return no;
+		}
 
-				objectDB.add(no);
+		try {
+			String[] attr = oInfo.split("#");
+			
+			oDBRef = Integer.parseInt(attr[0]);
+			oName = attr[1];
+			oTypeFlag = attr[2].charAt(0);
+			oFlags = attr[2].substring(1, attr[2].length());
+			oDesc = attr[3];
+			oLocation = Integer.parseInt(attr[4]);
+			
+			if (oTypeFlag == 'C') {
+				/*
+				 * int cType = Integer.parseInt(attr[6]);
+				 * 
+				 * CreatureType ct = CreatureType.values()[cType];
+				 * 
+				 * if (ct == CreatureType.HORSE) { final Horse horse = new
+				 * Horse(); //final Creature cre = new Creature(oDBRef,
+				 * oName, ObjectFlag.getFlagsFromString(oFlags), oDesc,
+				 * oLocation); horse.setCreatureType( ct );
+				 * 
+				 * // add the creature to the in-memory database and to the
+				 * list of creatures objectDB.add(horse);
+				 * objectDB.addCreature(horse); } else { final Creature cre
+				 * = new Creature(oDBRef, oName,
+				 * ObjectFlag.getFlagsFromString(oFlags), oDesc, oLocation);
+				 * 
+				 * // add the creature to the in-memory database and to the
+				 * list of creatures objectDB.add(cre);
+				 * objectDB.addCreature(cre); }
+				 */
+
+				final Creature cre = new Creature(oDBRef, oName, ObjectFlag.getFlagsFromString(oFlags), oDesc, oLocation);
+
+				return cre;
+			}
+			else if (oTypeFlag == 'P') {
+				// Player
+				Player player = loadPlayer(oInfo);
 				
-				continue;
+				debugEntry(player);
+
+				return player;
 			}
+			else if (oFlags.equals("IKV")) {
+				// NPC - Innkeeper
+				Innkeeper ik = new Innkeeper(oDBRef, oName, ObjectFlag.getFlagsFromString(oFlags), oDesc, "Merchant",
+						"VEN", oLocation, Coins.fromArray(new int[] { 1000, 1000, 1000, 1000 }));
 
-			try {
-				String[] attr = oInfo.split("#");
-				
-				oDBRef = Integer.parseInt(attr[0]);
-				oName = attr[1];
-				oTypeFlag = attr[2].charAt(0);
-				oFlags = attr[2].substring(1, attr[2].length());
-				oDesc = attr[3];
-				oLocation = Integer.parseInt(attr[4]);
-				
-				debug("---- Database Object");
-				debug("DBRef: " + oDBRef);
-				debug("Name: " + oName);
-				debug("Flags: " + oFlags);
-				debug("Description: " + oDesc);
-				debug("Location: " + oLocation);
-				debug("");
-
-				if (oTypeFlag == 'C') {
-					/*
-					 * int cType = Integer.parseInt(attr[6]);
-					 * 
-					 * CreatureType ct = CreatureType.values()[cType];
-					 * 
-					 * if (ct == CreatureType.HORSE) { final Horse horse = new
-					 * Horse(); //final Creature cre = new Creature(oDBRef,
-					 * oName, ObjectFlag.getFlagsFromString(oFlags), oDesc,
-					 * oLocation); horse.setCreatureType( ct );
-					 * 
-					 * // add the creature to the in-memory database and to the
-					 * list of creatures objectDB.add(horse);
-					 * objectDB.addCreature(horse); } else { final Creature cre
-					 * = new Creature(oDBRef, oName,
-					 * ObjectFlag.getFlagsFromString(oFlags), oDesc, oLocation);
-					 * 
-					 * // add the creature to the in-memory database and to the
-					 * list of creatures objectDB.add(cre);
-					 * objectDB.addCreature(cre); }
-					 */
-
-					final Creature cre = new Creature(oDBRef, oName, ObjectFlag.getFlagsFromString(oFlags), oDesc, oLocation);
-
-					// add the creature to the in-memory database and to the
-					// list of creatures
-					objectDB.add(cre);
-					objectDB.addCreature(cre);
-				}
-				else if (oTypeFlag == 'P') {
-					// Player
-					Player player = loadPlayer(oInfo);
+				debugEntry(ik);
+				debug("Innkeeper", 2);
+
+				return ik;
+			}
+			
+			// Exit(String tempName, String tempFlags, String tempDesc, int
+			// tempLoc, int tempDBREF, int tempDestination)
+			else if (oTypeFlag == 'E') {
+				// Exit
+				//String oDest = attr[5];
+				int eType = Integer.parseInt(attr[6]);
+
+				ExitType et = ExitType.values()[eType];
+
+				if (et == ExitType.STD) {
+					// Standard
+					int oDest = Integer.parseInt(attr[5]);
 					
-					debug("log.debug (db entry): " + player.toDB(), 2);
+					// [A]bsolutely [E]verything/[Leave];ae/leave
+					String oAlias = "";
+					
+					if( oName.indexOf(';') != -1 ) {
+						final String[] temp = oName.split(";");
+						
+						oName = oName.substring(0, oName.indexOf(';'));
+						
+						if( temp.length > 1 ) {
+							oAlias = temp[1];
+						}
+					}
 
-					objectDB.add(player);
-					objectDB.addPlayer(player);
-				}
-				else if (oFlags.equals("IKV")) {
-					// NPC - Innkeeper
-					Innkeeper ik = new Innkeeper(oDBRef, oName, ObjectFlag.getFlagsFromString(oFlags), oDesc, "Merchant",
-							"VEN", oLocation, Coins.fromArray(new int[] { 1000, 1000, 1000, 1000 }));
+					Exit exit = new Exit(oDBRef, oName, ObjectFlag.getFlagsFromString(oFlags), oDesc, oLocation, oDest);
+					
+					if( !oAlias.equals("") ) exit.addAlias(oAlias);
 
-					debug("log.debug (db entry): " + ik.toDB(), 2);
-					debug("Innkeeper", 2);
+					debugEntry(exit);
 
-					objectDB.add(ik);
-					objectDB.addNPC(ik);
+					return exit;
 				}
-				
-				// Exit(String tempName, String tempFlags, String tempDesc, int
-				// tempLoc, int tempDBREF, int tempDestination)
-				else if (oTypeFlag == 'E') {
-					// Exit
-					//String oDest = attr[5];
-					int eType = Integer.parseInt(attr[6]);
+				else if (et == ExitType.DOOR) {
+					// Door
+					int oDest = Integer.parseInt(attr[5]);
+					
+					int lockState = Utils.toInt(attr[7], 0); //valid lock states are: 0, 1
+					int keyDBRef = Utils.toInt(attr[8], -1);
+					
+					String[] temp = oName.split(";");
+					
+					oName = temp[0];
 
-					ExitType et = ExitType.values()[eType];
+					Door door = new Door(oDBRef, oName, ObjectFlag.getFlagsFromString(oFlags), oDesc, oLocation, oDest);
 
-					if (et == ExitType.STD) {
-						// Standard
-						int oDest = Integer.parseInt(attr[5]);
+					if (temp.length == 2) {
+						String[] names = temp[0].split("/");
+						String[] aliases = temp[1].split("/");
 						
-						// [A]bsolutely [E]verything/[Leave];ae/leave
-						String oAlias = "";
-						
-						if( oName.indexOf(';') != -1 ) {
-							final String[] temp = oName.split(";");
-							
-							oName = oName.substring(0, oName.indexOf(';'));
-							
-							if( temp.length > 1 ) {
-								oAlias = temp[1];
+						// set up any aliases
+						if (aliases.length > 0) {
+							for (final String a : aliases[0].split(",")) door.addAlias(names[0] + "|" + a);
+
+							if (aliases.length == 2) {
+								for (String a : aliases[1].split(",")) door.addAlias(names[1] + "|" + a);
 							}
 						}
+					}
+					
+					if ( lockState == 1 ) door.lock();
+					
+					// the key may not have been loaded yet (see link)
+					if ( keyDBRef != -1 ) doorKeys.put(door, keyDBRef);
+					
+					door.init();
+					
+					debug( "exit (origin): " + door.getName(oLocation) );
+					debug( "exit (dest): " + door.getName(oDest) );
+					
+					debug( door.side1.toString() );
+					debug( door.side2.toString() );
+					
+					debugEntry(door);
 
-						Exit exit = new Exit(oDBRef, oName, ObjectFlag.getFlagsFromString(oFlags), oDesc, oLocation, oDest);
-						
-						if( !oAlias.equals("") ) exit.addAlias(oAlias);
+					return door;
+				}
+				else if (et == ExitType.PORTAL) {
+					// Portal
+					Portal portal;
 
-						debug("log.debug (db entry): " + exit.toDB(), 2);
+					int pType = Utils.toInt(attr[7], -1);
+					PortalType oPortalType = PortalType.values()[pType];
 
-						objectDB.add(exit);
-						objectDB.addExit(exit);
-					}
-					else if (et == ExitType.DOOR) {
-						// Door
-						int oDest = Integer.parseInt(attr[5]);
-						
-						int lockState = Utils.toInt(attr[7], 0); //valid lock states are: 0, 1
-						int keyDBRef = Utils.toInt(attr[8], -1);
-						
-						System.out.println("   Location: " + oLocation);
-						System.out.println("Destination: "  + oDest);
-						
-						String[] temp = oName.split(";");
-						
-						System.out.println(Arrays.asList(temp));
-						
-						oName = temp[0];
-
-						Door door = new Door(oDBRef, oName, ObjectFlag.getFlagsFromString(oFlags), oDesc, oLocation, oDest);
-
-						if (temp.length == 2) {
-							String[] names = temp[0].split("/");
-							String[] aliases = temp[1].split("/");
-							
-							System.out.println("  Names: " + Arrays.asList(names));
-							System.out.println("Aliases: " + Arrays.asList(aliases));
-							
-							// set up any aliases
-							if (aliases.length > 0) {
-								for (final String a : aliases[0].split(",")) door.addAlias(names[0] + "|" + a);
-
-								if (aliases.length == 2) {
-									for (String a : aliases[1].split(",")) door.addAlias(names[1] + "|" + a);
-								}
-							}
-						}
+					// here we assume a typed but unkeyed portal
+					if (oPortalType == PortalType.STD) {
+						// Standard
+						int oDestination = Integer.parseInt(attr[5]);
+
+						portal = new Portal(PortalType.STD, oLocation, oDestination);
 						
-						if ( lockState == 1 ) door.lock();
+						portal.setDBRef(oDBRef); // NOTE: ought to handle this in the constructor
+						portal.setDesc(oDesc);
+
+						portal.name = attr[1]; // name
+						portal.setPosition(0, 0); // set x and y coordinate of position
 						
-						if ( keyDBRef != -1 ) {
-							final Item item = objectDB.getItem(keyDBRef);
-							
-							if( item != null ) door.setKey(item);
-						}
+						portal.setKey("test");
 						
-						door.init();
+						debugEntry(portal);
 						
-						debug( "exit (origin): " + door.getName(oLocation) );
-						debug( "exit (dest): " + door.getName(oDest) );
+						return portal;
+					}
+					else if (oPortalType == PortalType.RANDOM) {
+						// Random
+						int[] oDestinations = Utils.stringsToInts(attr[5].split(","));
+
+						portal = new Portal(PortalType.RANDOM, oLocation, oDestinations);
 						
-						debug( door.side1.toString() );
-						debug( door.side2.toString() );
+						portal.setDBRef(oDBRef); // NOTE: ought to handle this in the constructor
+						portal.setDesc(oDesc);
 						
-						debug("log.debug (db entry): " + door.toDB(), 2);
+						portal.name = attr[1]; // name
+						portal.setPosition(0, 0); // set x and y coordinate of position
 
-						objectDB.add(door);
-						objectDB.addExit(door);
-					}
-					else if (et == ExitType.PORTAL) {
-						// Portal
-						Portal portal;
-
-						int pType = Utils.toInt(attr[7], -1);
-						PortalType oPortalType = PortalType.values()[pType];
-
-						// here we assume a typed but unkeyed portal
-						if (oPortalType == PortalType.STD) {
-							// Standard
-							int oDestination = Integer.parseInt(attr[5]);
-
-							portal = new Portal(PortalType.STD, oLocation, oDestination);
-							
-							portal.setDBRef(oDBRef); // NOTE: ought to handle this in the constructor
-							portal.setDesc(oDesc);
-
-							portal.name = attr[1]; // name
-							portal.setPosition(0, 0); // set x and y coordinate of position
-							
-							portal.setKey("test");
-							
-							debug("log.debug (db entry): " + portal.toDB(), 2);
-							
-							objectDB.add(portal);
-							objectDB.addExit(portal);
-						}
-						else if (oPortalType == PortalType.RANDOM) {
-							// Random
-							int[] oDestinations = Utils.stringsToInts(attr[5].split(","));
-
-							portal = new Portal(PortalType.RANDOM, oLocation, oDestinations);
-							
-							portal.setDBRef(oDBRef); // NOTE: ought to handle this in the constructor
-							portal.setDesc(oDesc);
-							
-							portal.name = attr[1]; // name
-							portal.setPosition(0, 0); // set x and y coordinate of position
-
-							portal.setKey("test");
-
-							debug("log.debug (db entry): " + portal.toDB(), 2);
-							
-							objectDB.add(portal);
-							objectDB.addExit(portal);
-						}
-						else {
-							debug("log.debug (error): Problem with object #" + oDBRef + " - invalid PortalType", 2);
-						}
+						portal.setKey("test");
+
+						debugEntry(portal);
+						
+						return portal;
 					}
 					else {
-						debug("log.debug (error): Problem with object #" + oDBRef, 2);
+						debug("log.debug (error): Problem with object #" + oDBRef + " - invalid PortalType", 2);
 					}
 				}
-				else if (oTypeFlag == 'N') {
-					// NPC
-					if (oFlags.contains("M")) {
-						Merchant merchant = new Merchant(oDBRef, oName, ObjectFlag.getFlagsFromString(oFlags), "A merchant.",
-								"Merchant", "VEN", oLocation, Coins.fromArray(new int[] { 1000, 1000, 1000, 1000 }));
+				else {
+					debug("log.debug (error): Problem with object #" + oDBRef, 2);
+				}
+			}
+			else if (oTypeFlag == 'N') {
+				// NPC
+				if (oFlags.contains("M")) {
+					Merchant merchant = new Merchant(oDBRef, oName, ObjectFlag.getFlagsFromString(oFlags), "A merchant.",
+							"Merchant", "VEN", oLocation, Coins.fromArray(new int[] { 1000, 1000, 1000, 1000 }));
 
-						debug("log.debug (db entry): " + merchant.toDB(), 2);
-						debug("Merchant", 2);
+					debugEntry(merchant);
+					debug("Merchant", 2);
 
-						objectDB.add(merchant);
-						objectDB.addNPC(merchant);
-					}
-					else {
+					return merchant;
+				}
+				else {
 
-						// NPC npc = new NPC(oDBRef, oName, oDesc, oLocation,
-						// "npc");
-						NPC npc = loadNPC(oInfo);
-						npc.setCName("npc");
+					// NPC npc = new NPC(oDBRef, oName, oDesc, oLocation,
+					// "npc");
+					NPC npc = loadNPC(oInfo);
+					npc.setCName("npc");
 
-						// npc.addQuest(new Quest("Test", "Test", new
-						// Task("Test")));
+					// npc.addQuest(new Quest("Test", "Test", new
+					// Task("Test")));
 
-						debug("log.debug (db entry): " + npc.toDB(), 2);
+					debugEntry(npc);
 
-						objectDB.add(npc);
-						objectDB.addNPC(npc);
-					}
+					return npc;
 				}
-				else if (oTypeFlag == 'R') {
-					// Room
-					String roomType = attr[5];
-					int[] dimensions = Utils.stringsToInts(attr[6].split(","));
-					int zoneId = Utils.toInt(attr[8], -1);
+			}
+			else if (oTypeFlag == 'R') {
+				// Room
+				String roomType = attr[5];
+				int[] dimensions = Utils.stringsToInts(attr[6].split(","));
+				int zoneId = Utils.toInt(attr[8], -1);
 
-					final Room room = new Room(oDBRef, oName, ObjectFlag.getFlagsFromString(oFlags), oDesc, oLocation);
+				final Room room = new Room(oDBRef, oName, ObjectFlag.getFlagsFromString(oFlags), oDesc, oLocation);
 
-					room.setRoomType(RoomType.fromLetter(roomType.charAt(0)));
+				room.setRoomType(RoomType.fromLetter(roomType.charAt(0)));
 
-					// set room dimensions (x, y, z)
-					room.setDimensions(dimensions[0], dimensions[1], dimensions[2]);
+				// set room dimensions (x, y, z)
+				room.setDimensions(dimensions[0], dimensions[1], dimensions[2]);
 
-					// set zone
-					if (zoneId != -1) {
-						debug("Zone ID: " + zoneId);
+				// set zone (see addObject)
+				if (zoneId != -1) roomZones.put(room, zoneId);
 
-						final Zone zone = parent.getZone(zoneId);
-						
-						if( zone != null ) {
-							room.setZone(zone);
-							zone.addRoom(room);
-							
-							//room.setZone(parent.getZone(zoneId));
-							//parent.getZone(zoneId).addRoom(room);
-						}
-						
-						debug((zone == null) ? "Zone is NULL." : "Zone in NOT NULL.");
-					}
+				if (room.getRoomType().equals(RoomType.OUTSIDE)) {
+					room.getProperties().put("sky", "The sky is clear and flecked with stars.");
+				}
+				
+				debugEntry(room);
 
-					if (room.getRoomType().equals(RoomType.OUTSIDE)) {
-						room.getProperties().put("sky", "The sky is clear and flecked with stars.");
-					}
+				return room;
+			}
+			else if (oTypeFlag == 'T') {
+				// Thing
+				try {
+					final Thing thing = loadThing(oInfo);
 					
-					debug("log.debug (db entry): " + room.toDB(), 2);
-
-					objectDB.add(room);
-					objectDB.addRoom(room);
+					debugEntry(thing);
+					
+					return thing;
 				}
-				else if (oTypeFlag == 'T') {
-					// Thing
-					try {
-						final Thing thing = loadThing(oInfo);
-						
-						debug("log.debug (db entry): " + thing.toDB(), 2);
-						
-						objectDB.add(thing);
-						objectDB.addThing(thing);
-					}
-					catch (final InvalidThingTypeException itte) {
-						itte.printStackTrace();
-						debug("log.debug (error): " + itte.getMessage());
-					}
+				catch (final InvalidThingTypeException itte) {
+					itte.printStackTrace();
+					debug("log.debug (error): " + itte.getMessage());
 				}
-				else if (oTypeFlag == 'I') {
-					// Item
-					try {
-						final Item item = loadItem(oInfo);
-						
-						debug("log.debug (db entry): " + item.toDB(), 2);
-						
-						objectDB.add(item);
-						objectDB.addItem(item);
-					}
-					catch(final InvalidItemTypeException iite) {
-						iite.printStackTrace();
-						debug("log.debug (error): " + iite.getMessage());
-					}
+			}
+			else if (oTypeFlag == 'I') {
+				// Item
+				try {
+					final Item item = loadItem(oInfo);
+					
+					debugEntry(item);
+					
+					return item;
 				}
-				else if (oTypeFlag == 'Z') { // Zone
-					// not sure about this bit, for some reason I made 'Z' a
-					// TypeFlag
-					// for a Zone, but Zone isn't presently a MUDObject and I'm
-					// a little
-					// uncertain as to whether it should be.
-					//
-					// i'd like to load them on startup, but MUDObjects chiefly
-					// handle "real" objects
-					// in the world rather than abstract concepts. Of course,
-					// Room kind of bends
-					// the boundary in that defines an abstract space and Zone
-					// is kind of like a super room...
-					/*
-					 * Zone zone = loadZone();
-					 * 
-					 * objectDB.add(zone);
-					 */
-
+				catch(final InvalidItemTypeException iite) {
+					iite.printStackTrace();
+					debug("log.debug (error): " + iite.getMessage());
 				}
+			}
+			else if (oTypeFlag == 'Z') { // Zone
+				// not sure about this bit, for some reason I made 'Z' a
+				// TypeFlag
+				// for a Zone, but Zone isn't presently a MUDObject and I'm
+				// a little
+				// uncertain as to whether it should be.
+				//
+				// i'd like to load them on startup, but MUDObjects chiefly
+				// handle "real" objects
+				// in the world rather than abstract concepts. Of course,
+				// Room kind of bends
+				// the boundary in that defines an abstract space and Zone
+				// is kind of like a super room...
+				/*
+				 * Zone zone = loadZone();
+				 * 
+				 * objectDB.add(zone);
+				 */
+
+			}
+			
+			else if ( oName.equals("null") ) {
+				NullObject Null = new NullObject(oDBRef);
 				
-				else if ( oName.equals("null") ) {
-					NullObject Null = new NullObject(oDBRef);
-					
-					debug("log.debug (db entry): " + Null.toDB() + " [Found NULLObject]", 2);
-					
-					objectDB.add(Null);
+				if( isDebugging(2) ) debug("log.debug (db entry): " + Null.toDB() + " [Found NULLObject]", 2);
+				
+				return Null;
+			}
+		}
+		catch (ConcurrentModificationException cme)   { cme.printStackTrace();    }
+		catch (ArrayIndexOutOfBoundsException aioobe) { aioobe.printStackTrace(); }
+		
+		return null;
+	}
+	
+	/**
+	 * Add a newly loaded object to the database, and to the list for it's
+	 * type.
+	 * 
+	 * @param object
+	 */
+	private void addObject(final MUDObject object) {
+		objectDB.add(object);
+		
+		if( object instanceof Creature )    objectDB.addCreature( (Creature) object );
+		else if( object instanceof NPC )    objectDB.addNPC( (NPC) object );
+		else if( object instanceof Player ) objectDB.addPlayer( (Player) object );
+		else if( object instanceof Exit )   objectDB.addExit( (Exit) object );
+		else if( object instanceof Thing )  objectDB.addThing( (Thing) object );
+		else if( object instanceof Item )   objectDB.addItem( (Item) object );
+		else if( object instanceof Room ) {
+			final Room room = (Room) object;
+			
+			objectDB.addRoom(room);
+			
+			final Integer zoneId = roomZones.remove(room);
+			
+			if( zoneId != null ) {
+				debug("Zone ID: " + zoneId);
+				
+				final Zone zone = parent.getZone(zoneId);
+				
+				if( zone != null ) {
+					room.setZone(zone);
+					zone.addRoom(room);
 				}
+				
+				debug((zone == null) ? "Zone is NULL." : "Zone in NOT NULL.");
 			}
-			catch (ConcurrentModificationException cme)   { cme.printStackTrace();    }
-			catch (ArrayIndexOutOfBoundsException aioobe) { aioobe.printStackTrace(); }
+		}
+	}
+	
+	/**
+	 * Hook up anything that refers to another object, now that all the
+	 * objects are loaded.
+	 */
+	private void link() {
+		for (final Map.Entry<Door, Integer> entry : doorKeys.entrySet()) {
+			final Item item = objectDB.getItem( entry.getValue() );
+			
+			if( item != null ) entry.getKey().setKey(item);
 		}
 		
-		loaded = true;
+		doorKeys.clear();
+		roomZones.clear();
 	}
 
 	/*
@@ -505,12 +795,10 @@ public class ObjectLoader {
 		raceNum = Utils.toInt(attr[9], Races.NONE.getId());
 		//player.setRace(Races.getRace(raceNum));
 		player.setRace(parent.getRace(raceNum));
-		System.out.println("Race: " + raceNum + " ( " + parent.getRace(raceNum).getName() + " )");
 
 		/* Set Player Class */
 		classNum = Utils.toInt(attr[10], Classes.NONE.getId());
 		player.setPClass(Classes.getClass(classNum));
-		System.out.println("Class: " + classNum + " ( " + Classes.getClass(classNum).getName() + " )");
 
 		/* Set Status */
 		player.setStatus(attr[11]);
@@ -608,10 +896,6 @@ public class ObjectLoader {
 	final private Item loadItem(final String itemData) throws InvalidItemTypeException {
 		String[] attr = itemData.split("#");
 		
-		System.out.println("");
-		System.out.println("debug(itemData): " + itemData);
-		System.out.println("");
-		
 		Integer oDBRef = Integer.parseInt(attr[0]);
 		String oName = attr[1];
 		Character oTypeFlag = attr[2].charAt(0);
@@ -627,27 +911,12 @@ public class ObjectLoader {
 		final ItemType it = getItemType(itemType);
 		final SlotType st = getSlotType(slotType);
 		
-		System.out.println("ItemType ID: " + itemType);
-		System.out.println("SlotType ID: " + slotType);
-		
-		if( it != null ) {
-			System.out.println("ItemType: " + it.getName());
-			System.out.println("");
-		}
-		else throw new InvalidItemTypeException("No such ItemType (" + itemType + ")");
-		
-		if( st != null ) {
-			System.out.println("SlotType: " + st.getName());
-			System.out.println("");
-		}
+		if( it == null ) throw new InvalidItemTypeException("No such ItemType (" + itemType + ")");
 		
 		// module level itemtype handling...
 		if( it.getId() >= 16 ) {
 			final Item item = parent.getGameModule().loadItem(itemData);
 
-			System.out.println("Item DBRef: " + item.getDBRef());
-			System.out.println("");
-
 			return item;
 		}
 
@@ -782,10 +1051,6 @@ public class ObjectLoader {
 	private final Thing loadThing(final String thingData) throws InvalidThingTypeException {
 		String[] attr = thingData.split("#");
 		
-		System.out.println("");
-		System.out.println("debug(thingData): " + thingData);
-		System.out.println("");
-		
 		Integer oDBRef = Integer.parseInt(attr[0]);
 		String oName = attr[1];
 		Character oTypeFlag = attr[2].charAt(0);
@@ -801,21 +1066,12 @@ public class ObjectLoader {
 		
 		final ThingType tt = getThingType(thingType);
 		
-		System.out.println("ThingType ID: " + thingType);
-		
-		if( tt != null ) {
-			System.out.println("ThingType: " + tt.getName());
-			System.out.println("");
-		}
-		else throw new InvalidThingTypeException("No such ThingType ( " + thingType + ")");
+		if( tt == null ) throw new InvalidThingTypeException("No such ThingType ( " + thingType + ")");
 
 		// module level thingtype handling...
 		if( tt.getId() >= 16 ) {
 			final Thing thing = parent.getGameModule().loadThing(thingData);
 			
-			System.out.println("Thing DBRef: " + thing.getDBRef());
-			System.out.println("");
-			
 			return thing;
 		}
 
@@ -958,6 +1214,15 @@ public class ObjectLoader {
 		debug(data, 1);
 	}
 	
+	public boolean isDebugging(final int tDebugLevel) {
+		return parent.isDebugging(tDebugLevel);
+	}
+	
+	// an object's database entry, only built if it will actually be printed
+	private void debugEntry(final MUDObject object) {
+		if( isDebugging(2) ) debug("log.debug (db entry): " + object.toDB(), 2);
+	}
+	
 	/**
 	 * A wrapper function for System.out.println that can be "disabled" by
 	 * setting an integer. Used to turn "on"/"off" printing debug messages to
@@ -26,6 +26,8 @@ public class Auction {
 	protected int duration;      // length of the auction ( in seconds )
 	protected int remaining;     // time until the auction ends ( in seconds )
 	
+	protected AuctionTimer timer = null; // timer counting down the auction (if it's been started)
+	
 	private List<Bid> bids;
 	
 	private Bid currentBid;
@@ -143,6 +145,8 @@ public class Auction {
 	}
 	
 	public int getTimeLeft() {
+		if( this.timer != null ) return this.timer.getTimeRemaining();
+		
 		return this.remaining;
 	}
 }
\ No newline at end of file
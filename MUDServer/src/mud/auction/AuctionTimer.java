@@ -1,35 +1,40 @@
 package mud.auction;
 
-import java.util.TimerTask;
-
 import mud.auction.Auction;
-import mud.misc.Counter;
+import mud.utils.TimingWheel;
 
-public class AuctionTimer extends TimerTask {
+public class AuctionTimer {
 	private Auction auction;
-	private Counter time;
+	
+	private TimingWheel.Timeout timeout = null;
 	
 	public AuctionTimer(final Auction auction) {
 		super();
 		this.auction = auction;
-		this.time = new Counter( auction.duration );
+		this.auction.timer = this;
 	}
 	
 	public Auction getAuction() {
 		return this.auction;
 	}
 	
-	public int getTimeRemaining() {
-		return this.time.getValue();
+	/**
+	 * Start the timer, running the specified task when the auction ends.
+	 * 
+	 * @param wheel
+	 * @param onExpiry
+	 */
+	public void schedule(final TimingWheel wheel, final Runnable onExpiry) {
+		this.timeout = wheel.schedule(onExpiry, this.auction.duration * 1000L);
 	}
-
-	@Override
-	public void run() {
-		if( this.time.getValue() > 0 ) {
-			// decrement time
-			this.time.decrement(); // count down a "second"
-			this.auction.remaining--;
-		}
-		else { cancel(); }
+	
+	public boolean cancel() {
+		return this.timeout != null && this.timeout.cancel();
+	}
+	
+	public int getTimeRemaining() {
+		if( this.timeout == null ) return this.auction.duration;
+		
+		return (int) ((this.timeout.getRemaining() + 999) / 1000); // round up to a "second"
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -220,4 +220,13 @@ public class ChatChannel {
 	public Message getNextMessage() {
 		return this.messages.poll();
 	}
+	
+	/**
+	 * Get the number of messages waiting to be sent.
+	 * 
+	 * @return
+	 */
+	public int getQueueSize() {
+		return this.messages.size();
+	}
 }
\ No newline at end of file
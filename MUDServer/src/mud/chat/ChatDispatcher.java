@@ -0,0 +1,171 @@
+package mud.chat;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import mud.net.Client;
+import mud.objects.Player;
+import mud.utils.Message;
+
+/**
+ * Delivers the messages written to chat channels to the channels' listeners.
+ *
+ * Each time dispatch() is called (once per tick), every message waiting in
+ * each channel is sent, not just one per channel. A message is formatted
+ * and encoded once (plain and tagged, see the "tagged-chat" player config
+ * option) and the same bytes written to every listener, and it's logged
+ * once no matter how many listeners it has.
+ *
+ * @author Jeremy
+ *
+ */
+public class ChatDispatcher {
+	/**
+	 * Formats a chat message for sending or logging.
+	 */
+	public interface Formatter {
+		public String format(final ChatChannel channel, final Message msg, final boolean color, final boolean tagged);
+	}
+
+	private final ChatChanneler chan;
+	private final Formatter formatter;
+	private final Consumer<String> logger;
+
+	private final Map<String, Stats> stats = new ConcurrentHashMap<String, Stats>(); // by channel name
+
+	private final long start = System.currentTimeMillis();
+
+	/**
+	 *
+	 * @param chan      the chat channels
+	 * @param formatter formats messages
+	 * @param logger    logs messages (uncolored)
+	 */
+	public ChatDispatcher(final ChatChanneler chan, final Formatter formatter, final Consumer<String> logger) {
+		this.chan = chan;
+		this.formatter = formatter;
+		this.logger = logger;
+	}
+
+	/**
+	 * Send all the messages waiting in each channel (the ones there when we
+	 * get to the channel, anything written after that waits for the next
+	 * call).
+	 *
+	 * @return the number of messages sent
+	 */
+	public int dispatch() {
+		int count = 0;
+
+		for (final ChatChannel cc : this.chan.getChatChannels()) {
+			final Stats s = getStats(cc.getName());
+
+			final int waiting = cc.getQueueSize();
+
+			s.queued(waiting);
+
+			for (int i = 0; i < waiting; i++) {
+				final Message msg = cc.getNextMessage();
+
+				if( msg == null ) break;
+
+				s.delivered( send(cc, msg) );
+
+				count++;
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Get the statistics for the specified channel.
+	 *
+	 * @param channelName
+	 * @return
+	 */
+	public Stats getStats(final String channelName) {
+		Stats s = this.stats.get(channelName);
+
+		if( s == null ) {
+			final Stats newStats = new Stats();
+
+			s = this.stats.putIfAbsent(channelName, newStats);
+
+			if( s == null ) s = newStats;
+		}
+
+		return s;
+	}
+
+	/**
+	 * Get how long we've been dispatching, for working out rates.
+	 *
+	 * @return time (ms)
+	 */
+	public long getUptime() {
+		return Math.max(1, System.currentTimeMillis() - this.start);
+	}
+
+	private int send(final ChatChannel cc, final Message msg) {
+		final byte[] plain = this.formatter.format(cc, msg, true, false).getBytes();
+		final byte[] tagged = this.formatter.format(cc, msg, true, true).getBytes();
+
+		int sent = 0;
+
+		for (final Player player : cc.getListeners()) {
+			final Client client = player.getClient();
+
+			if( client == null || !client.isRunning() ) continue;
+
+			if( player.getConfigOption("tagged-chat") ) client.write(tagged);
+			else                                        client.write(plain);
+
+			sent++;
+		}
+
+		this.logger.accept( this.formatter.format(cc, msg, false, false) ); // no color for logs
+
+		return sent;
+	}
+
+	/**
+	 * Message statistics for a channel.
+	 */
+	public static final class Stats {
+		private final AtomicLong messages = new AtomicLong(0);   // messages sent
+		private final AtomicLong deliveries = new AtomicLong(0); // messages sent * listeners they went to
+
+		private volatile int queued = 0;    // messages waiting at the last dispatch
+		private volatile int maxQueued = 0; // most messages ever waiting at a dispatch
+
+		private void queued(final int waiting) {
+			this.queued = waiting;
+
+			if( waiting > this.maxQueued ) this.maxQueued = waiting;
+		}
+
+		private void delivered(final int listeners) {
+			this.messages.incrementAndGet();
+			this.deliveries.addAndGet(listeners);
+		}
+
+		public long getMessages() {
+			return this.messages.get();
+		}
+
+		public long getDeliveries() {
+			return this.deliveries.get();
+		}
+
+		public int getQueued() {
+			return this.queued;
+		}
+
+		public int getMaxQueued() {
+			return this.maxQueued;
+		}
+	}
+}
@@ -0,0 +1,16 @@
+package mud.interfaces;
+
+import mud.MUDObject;
+
+/**
+ * Something that wants to know when a MUDObject is changed (see
+ * MUDObject.setLocation and MUDObject.changed).
+ * 
+ * @author Jeremy
+ *
+ */
+public interface ObjectListener {
+	public void locationChanged(final MUDObject object, final Integer oldLocation, final Integer newLocation);
+	
+	public void objectChanged(final MUDObject object);
+}
@@ -116,6 +116,22 @@ public class Coins
     	return new Coins(this.copperValue - other.copperValue);
     }
 
+    /**
+     * Get the weight of the coins (in the fewest coins, see toArray), at
+     * 1/16 oz. per copper, 1/8 oz. per silver, 1/4 oz. per gold and 1/2 oz.
+     * per platinum coin.
+     * 
+     * @return weight (lbs)
+     */
+    public double getWeight() {
+        final int platinum = copperValue / PLATINUM_RATIO;
+        final int gold = (copperValue % PLATINUM_RATIO) / GOLD_RATIO;
+        final int silver = (copperValue % GOLD_RATIO) / SILVER_RATIO;
+        final int copper = copperValue % SILVER_RATIO;
+        
+        return ( copper * 0.0625 + silver * 0.1250 + gold * 0.2500 + platinum * 0.5000 ) / 16; // 16 oz = 1 lb
+    }
+
     public int[] toArray() {
         final int[] coins = new int[4];
         coins[3] = numOfPlatinum();
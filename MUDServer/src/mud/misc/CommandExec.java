@@ -17,7 +17,15 @@ package mud.misc;
   SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 */
 
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
 
 import mud.MUDServer;
 import mud.misc.CMD.Status;
@@ -30,86 +38,202 @@ import mud.objects.Player;
  * independent of those commands being sent so that slow command execution doesn't in
  * any way slow the actual command input;
  * 
+ * Commands are handed out to one or more worker threads based on the part of
+ * the world (Zone, or Room if it has no zone) the player is in. Commands from
+ * the same client are always run in the order they arrived. Commands which
+ * only touch the player's room (or, going through an exit, the room on the
+ * other side) lock those rooms, so commands in different rooms run at the
+ * same time. Anything else (see MUDServer.getRooms) runs by itself, as does
+ * anything passed to runExclusive (the main loop's tick, timers, etc).
+ * 
  * @author Jeremy
  *
  */
 public class CommandExec implements Runnable {
 	private MUDServer parent;
-	private ConcurrentLinkedQueue<CMD> cmdQueue;
-	private int sleepTime = 500; // 250ms, 0.25s
+	private BlockingQueue<CMD> cmdQueue;
+	private int sleepTime = 0; // optional delay between commands (ms), rate limiting is done per client now
+	
+	private final Worker[] workers;
+	
+	// ordinary commands hold the read lock (and their rooms' locks), exclusive ones the write lock
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final RoomLocks roomLocks = new RoomLocks();
 	
-	private CMD newCmd;
+	// the worker each client with unfinished commands is assigned to, and how many there are
+	private final Map<Client, Worker> assigned = new HashMap<Client, Worker>();
+	private final Map<Client, Integer> outstanding = new HashMap<Client, Integer>();
 	
-	private boolean running = false;
+	private volatile boolean running = false;
 
-	public CommandExec(MUDServer parent, ConcurrentLinkedQueue<CMD> cmdQueue) {
+	public CommandExec(MUDServer parent, BlockingQueue<CMD> cmdQueue) {
+		this(parent, cmdQueue, 1);
+	}
+	
+	public CommandExec(MUDServer parent, BlockingQueue<CMD> cmdQueue, int threads) {
 		this.parent = parent;
 		this.cmdQueue = cmdQueue;
+		
+		this.workers = new Worker[Math.max(1, threads)];
+		
+		for (int w = 0; w < this.workers.length; w++) {
+			this.workers[w] = new Worker();
+		}
 	}
 
 	@Override
 	public void run() {
 		this.running = true;
 		
+		for (int w = 0; w < workers.length; w++) {
+			final Thread thread = new Thread(workers[w], Thread.currentThread().getName() + "-" + w);
+			
+			thread.setDaemon(true);
+			thread.start();
+		}
+		
 		while ( this.running ) {
-			if ( !this.cmdQueue.isEmpty() ) {
+			try {
+				// wait for a command to arrive
+				final CMD newCmd = this.cmdQueue.take();
+				
+				// should it be set to WAITING before it's put in the queue in the first place?
+				newCmd.setStatus(CMD.Status.WAITING);
+				
+				assign(newCmd).queue.add(newCmd);
+			}
+			catch (final InterruptedException ie) {
+				System.out.println("Command Execution: Interrupted!");
+				
+				System.out.println("--- Stack Trace ---");
+				ie.printStackTrace();
+			}
+			catch(final NullPointerException npe) {
+				System.out.println("--- Stack Trace ---");
+				npe.printStackTrace();
+			}
+		}
+	}
+	
+	/**
+	 * Pick a worker for the command. If the client already has commands
+	 * waiting on a worker, the command goes to the same one so that it
+	 * doesn't run before them.
+	 * 
+	 * @param cmd
+	 * @return
+	 */
+	private Worker assign(final CMD cmd) {
+		final Client client = cmd.getClient();
+		
+		synchronized(assigned) {
+			Worker worker = assigned.get(client);
+			
+			if( worker == null ) {
+				final int region = (workers.length > 1) ? parent.getRegion(client) : 0;
+				
+				worker = workers[ Math.abs(region % workers.length) ];
+				
+				assigned.put(client, worker);
+				outstanding.put(client, 1);
+			}
+			else {
+				outstanding.put(client, outstanding.get(client) + 1);
+			}
+			
+			return worker;
+		}
+	}
+	
+	private void finished(final Client client) {
+		synchronized(assigned) {
+			final int count = outstanding.get(client) - 1;
+			
+			if( count > 0 ) {
+				outstanding.put(client, count);
+			}
+			else {
+				outstanding.remove(client);
+				assigned.remove(client);
+			}
+		}
+	}
+	
+	/**
+	 * Get all the commands that have been handed out to a worker, but haven't
+	 * been finished yet.
+	 * 
+	 * @return
+	 */
+	public List<CMD> getQueued() {
+		final List<CMD> queued = new ArrayList<CMD>();
+		
+		for (final Worker worker : workers) {
+			final CMD current = worker.current;
+			
+			if( current != null ) queued.add(current);
+			
+			queued.addAll(worker.queue);
+		}
+		
+		return queued;
+	}
+	
+	/**
+	 * Run something while no commands are being run, i.e. holding the same
+	 * lock that an exclusive command would. If the current thread is already
+	 * running a command, it's just run (the lock can't be upgraded).
+	 * 
+	 * @param task
+	 * @return whatever the task returns
+	 */
+	public <T> T runExclusive(final Supplier<T> task) {
+		if( lock.getReadHoldCount() > 0 || lock.isWriteLockedByCurrentThread() ) {
+			return task.get();
+		}
+		
+		lock.writeLock().lock();
+		
+		try {
+			return task.get();
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	public int getThreads() {
+		return this.workers.length;
+	}
+	
+	public int getCommandDelay() {
+		return this.sleepTime;
+	}
+	
+	public void setCommandDelay(int ms) {
+		this.sleepTime = ms;
+	}
+	
+	private class Worker implements Runnable {
+		private final BlockingQueue<CMD> queue = new LinkedBlockingQueue<CMD>();
+		
+		private volatile CMD current;
+		
+		@Override
+		public void run() {
+			while ( running ) {
+				CMD newCmd = null;
+				
 				try {
-					newCmd = this.cmdQueue.poll();
-					
-					// should it be set to WAITING before it's put in the queue in the first place?
-					newCmd.setStatus(CMD.Status.WAITING);
+					// wait for a command to arrive
+					newCmd = this.queue.take();
 					
-					// parse out stored data
-					final String command = newCmd.getCmdString();
-					final Client client = newCmd.getClient();
+					this.current = newCmd;
 					
-					final Player player = parent.getPlayer(client);
+					execute(newCmd);
 					
-					// verify that client is still connected
-					if( client.isRunning() ) {
-						newCmd.setStatus(CMD.Status.ACTIVE); // mark command as being processed
-						
-						// try to capture errors
-						try {
-							// handle command permissions
-							if ( parent.checkAccess(player, newCmd.getPermissions()) )
-							{
-								// interpret command
-								parent.cmd(command, client);
-							}
-							else {
-								// TODO write "error" to player?
-								System.out.println("Insufficient Access Permissions");
-							}
-						}
-						catch(final NullPointerException npe) {
-							System.out.println("--- Stack Trace ---");
-							npe.printStackTrace();
-						}
-						
-						newCmd.setStatus(CMD.Status.FINISHED);
-						
-						// clear the processed command
-						newCmd = null;
-						
-						if ( parent.loginCheck( client ) ) {
-							parent.prompt(client); // buggy, especially when you're not logged on yet
-						}
-						
-						// if the queue isn't empty, print out a list of the unresolved commands
-						/*if ( !this.cmdQueue.isEmpty() ) {
-							System.out.println("Queue");
-							System.out.println("------------------------------");
-							
-							for (final CMD c : this.cmdQueue) {
-								System.out.println( c.getCmdString().trim() );
-							}
-						}*/
-						
-						// sleep between executing commands
-						Thread.sleep(sleepTime);
-					}
-					else continue;
+					// sleep between executing commands (if configured to)
+					if ( sleepTime > 0 ) Thread.sleep(sleepTime);
 				}
 				catch (final InterruptedException ie) {
 					// if interrupted when we are processing a command
@@ -118,31 +242,88 @@ public class CommandExec implements Runnable {
 					System.out.println("--- Stack Trace ---");
 					ie.printStackTrace();
 					
-					if (newCmd != null) {
-						if (newCmd.getStatus() == Status.WAITING) {
-							// if the command is still waiting (i.e. we never got to try to execute it)
-							this.cmdQueue.add(newCmd);
-						}
-						else {
-							parent.notify(parent.getPlayer(newCmd.getClient()), "Error: Failed Command Execution!");
-						}
-						
-						newCmd = null; // null our reference to it
+					if (newCmd != null && newCmd.getStatus() != Status.FINISHED) {
+						parent.notify(parent.getPlayer(newCmd.getClient()), "Error: Failed Command Execution!");
 					}
 				}
 				catch(final NullPointerException npe) {
 					System.out.println("--- Stack Trace ---");
 					npe.printStackTrace();
 				}
+				finally {
+					this.current = null;
+					
+					if (newCmd != null) finished( newCmd.getClient() );
+				}
+			}
+		}
+		
+		private void execute(final CMD newCmd) {
+			// parse out stored data
+			final String command = newCmd.getCmdString();
+			final Client client = newCmd.getClient();
+			
+			final Player player = parent.getPlayer(client);
+			
+			// verify that client is still connected
+			if( !client.isRunning() ) return;
+			
+			// the rooms are decided under the read lock, since nothing but the player's own commands
+			// can move them while it's held, and if there aren't any we have to run by ourselves
+			Lock held = lock.readLock();
+			
+			held.lock();
+			
+			final int[] rooms = parent.getRooms(command, client);
+			
+			if( rooms != null ) {
+				roomLocks.lock(rooms);
+			}
+			else {
+				held.unlock();
+				
+				held = lock.writeLock();
+				
+				held.lock();
+			}
+			
+			newCmd.setStatus(CMD.Status.ACTIVE); // mark command as being processed
+			
+			// gather all the output from the command (and the prompt) into one write
+			client.beginOutput();
+			
+			try {
+				// try to capture errors
+				try {
+					// handle command permissions
+					if ( parent.checkAccess(player, newCmd.getPermissions()) )
+					{
+						// interpret command
+						parent.cmd(command, client);
+					}
+					else {
+						// TODO write "error" to player?
+						System.out.println("Insufficient Access Permissions");
+					}
+				}
+				catch(final NullPointerException npe) {
+					System.out.println("--- Stack Trace ---");
+					npe.printStackTrace();
+				}
+				
+				newCmd.setStatus(CMD.Status.FINISHED);
+				
+				if ( parent.loginCheck( client ) ) {
+					parent.prompt(client); // buggy, especially when you're not logged on yet
+				}
+			}
+			finally {
+				client.endOutput();
+				
+				if( rooms != null ) roomLocks.unlock(rooms);
+				
+				held.unlock();
 			}
 		}
 	}
-	
-	public int getCommandDelay() {
-		return this.sleepTime;
-	}
-	
-	public void setCommandDelay(int ms) {
-		this.sleepTime = ms;
-	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,197 @@
+package mud.misc;
+
+/*
+  Copyright (c) 2012 Jeremy N. Harton
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+  documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+  persons to whom the Software is furnished to do so, subject to the following conditions:
+
+  The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+  Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+  MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+  CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+  SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import mud.Command;
+import mud.net.Client;
+
+/**
+ * A table of commands, mapping each command name to the code that handles
+ * it and the access level needed to use it. Replaces walking a long chain
+ * of string comparisons with a single hash lookup (two if the name is an
+ * alias).
+ *
+ * Built-in commands are "hard" routes and are checked before exits. Command
+ * objects (see MUDServer.addCommand) are "soft" routes and are only checked
+ * after exits, same as before.
+ *
+ * Each route keeps track of how many times it was called and how long it
+ * took.
+ *
+ * @author Jeremy
+ *
+ */
+public class CommandRouter {
+	public interface Handler {
+		public void execute(final String arg, final Client client);
+	}
+
+	private final Map<String, Route> routes = new ConcurrentHashMap<String, Route>(200, 0.75f);
+
+	/**
+	 * Add a built-in command.
+	 *
+	 * @param name    command name
+	 * @param access  access level required to use the command
+	 * @param handler code to run
+	 */
+	public void add(final String name, final int access, final Handler handler) {
+		routes.put(name, new Route(name, access, handler, null));
+	}
+
+	/**
+	 * Add a Command object. If there is already a built-in command with the
+	 * same name it is left alone (it's expected to call the Command itself).
+	 *
+	 * @param name
+	 * @param command
+	 */
+	public void add(final String name, final Command command) {
+		final Route route = routes.get(name);
+
+		if( route == null || route.isSoft() ) {
+			routes.put(name, new Route(name, command.getAccessLevel(), command::execute, command));
+		}
+	}
+
+	/**
+	 * Remove a Command object. Built-in commands cannot be removed.
+	 *
+	 * @param name
+	 */
+	public void remove(final String name) {
+		final Route route = routes.get(name);
+
+		if( route != null && route.isSoft() ) {
+			routes.remove(name);
+		}
+	}
+
+	/**
+	 * Find the route for the specified command name, checking the
+	 * supplied aliases (alias -> command name) if there isn't one.
+	 *
+	 * @param name
+	 * @param aliases
+	 * @return the route, or null if there isn't one
+	 */
+	public Route getRoute(final String name, final Map<String, String> aliases) {
+		Route route = routes.get(name);
+
+		if( route == null && aliases != null ) {
+			final String command = aliases.get(name);
+
+			if( command != null ) route = routes.get(command);
+		}
+
+		return route;
+	}
+
+	/**
+	 * Get all the routes, ordered by name.
+	 *
+	 * @return
+	 */
+	public List<Route> getRoutes() {
+		final List<Route> list = new ArrayList<Route>( routes.values() );
+
+		Collections.sort(list, new Comparator<Route>() {
+			@Override
+			public int compare(final Route r1, final Route r2) {
+				return r1.getName().compareTo(r2.getName());
+			}
+		});
+
+		return list;
+	}
+
+	public static class Route {
+		private final String name;
+		private final int access;
+		private final Handler handler;
+		private final Command command; // Command object, if this is a soft route
+
+		private long calls = 0;
+		private long total = 0; // ns
+		private long max = 0;   // ns
+
+		private Route(final String name, final int access, final Handler handler, final Command command) {
+			this.name = name;
+			this.access = access;
+			this.handler = handler;
+			this.command = command;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		public int getAccess() {
+			if( command != null ) return command.getAccessLevel();
+
+			return this.access;
+		}
+
+		public boolean isSoft() {
+			return this.command != null;
+		}
+
+		/**
+		 * Run the command, recording how long it took.
+		 *
+		 * @param arg
+		 * @param client
+		 */
+		public void execute(final String arg, final Client client) {
+			final long start = System.nanoTime();
+
+			try {
+				handler.execute(arg, client);
+			}
+			finally {
+				record(System.nanoTime() - start);
+			}
+		}
+
+		private synchronized void record(final long time) {
+			calls++;
+			total += time;
+
+			if( time > max ) max = time;
+		}
+
+		public synchronized long getCalls() {
+			return this.calls;
+		}
+
+		public synchronized long getTotalTime() {
+			return this.total;
+		}
+
+		public synchronized long getMaxTime() {
+			return this.max;
+		}
+	}
+}
@@ -1,7 +1,13 @@
 package mud.misc;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -39,6 +45,9 @@ public final class ProgramInterpreter {
 	
 	private static enum Perms { READ, WRITE };
 	
+	// functions whose parameters are numbers (or conditions, for 'and')
+	private static final List<String> MATH = Utils.mkList("add", "sub", "mul", "and", "eq", "lt", "le", "gt", "ge");
+	
 	// TODO I would like to pry out holding a parent reference..
 	private final MUDServer parent;
 	private final ODBI database;
@@ -49,6 +58,30 @@ public final class ProgramInterpreter {
 
 	private final Hashtable<String, String> vars;
 
+	// budget for each script run, a script that goes over is stopped
+	private int max_steps = 10000; // number of functions/values evaluated
+	private long max_time = 50;    // time (ms)
+
+	// execution statistics, by script text
+	private static final int STATS_SIZE = 256;
+
+	private final Map<String, ScriptStats> stats = Collections.synchronizedMap(new LinkedHashMap<String, ScriptStats>(STATS_SIZE, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<String, ScriptStats> eldest) {
+			return size() > STATS_SIZE;
+		}
+	});
+
+	// compiled scripts, by script text (shared, since compiling doesn't depend on the interpreter)
+	private static final int CACHE_SIZE = 1024;
+
+	private static final Map<String, Node> cache = Collections.synchronizedMap(new LinkedHashMap<String, Node>(CACHE_SIZE, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<String, Node> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	});
+
 	public ProgramInterpreter(final MUDServer parent) {
 		this(parent, false);
 	}
@@ -61,8 +94,7 @@ public final class ProgramInterpreter {
 		this.parent = parent;
 		this.database = parent.getDBInterface();
 
-		//this.debug_enabled = enable_debug;
-		this.debug_enabled = true;
+		this.debug_enabled = enable_debug;
 		
 		this.permissions = EnumSet.copyOf(perms);
 		
@@ -70,7 +102,8 @@ public final class ProgramInterpreter {
 	}
 
 	/**
-	 * Add a variable to the interpreter's vars.
+	 * Add a variable to the interpreter's vars. These are copied into
+	 * the variables of each script run (after cmd, arg, how, player, this).
 	 * 
 	 * @param value String variable value
 	 */
@@ -121,123 +154,251 @@ public final class ProgramInterpreter {
 		this.vars.remove(name);
 	}
 
-	public String interpret(final Script script, final Player player, final MUDObject object) {
-		return interpret( script.getText(), player, object );
-	}
-
 	/**
-	 * Function to evaluate a script/program
+	 * Run a script, stopping it if it goes over the interpreter's budget
+	 * (see setBudget).
 	 * 
 	 * @param script
+	 * @param player
+	 * @param object
 	 * @return
 	 */
-	private String interpret(final String script, final Player player, final MUDObject object) {	
-		//System.out.println("PGM: <" + script + ">");
-		//System.out.println("pArg: " + script);
-		String result = "";
+	public String interpret(final Script script, final Player player, final MUDObject object) {
+		final Node program = compile(script);
 
-		if ( isValidScript( script ) ) {
-			if( debug_enabled ) System.out.println("Interpret: " + script);
+		final long start = System.nanoTime();
 
-			// no script function equals no script
-			if( script.indexOf(":") != -1 ) {
-				// TODO fix this, we are assuming it's all one nested script...
-				String work = script.substring(1, script.length() - 1); // strip off the outermost squiggly braces ( {} )
+		final Frame frame = new Frame(player, object, this.vars, this.max_steps, start + (this.max_time * 1000000L));
 
-				if( debug_enabled ) System.out.println("work: " + work);
+		String result;
 
-				final String[] temp = work.split(":", 2);
+		boolean overrun = false;
 
-				String functionName = temp[0]; // FUNCTION NAME
+		try {
+			result = run(program, frame);
+		}
+		catch(final BudgetExceeded be) {
+			if( debug_enabled ) System.out.println("PGM: budget exceeded after " + frame.steps + " steps");
 
-				if( debug_enabled ) System.out.println("Function: " + functionName); // tell us the script function used
+			result = "PGM: Script exceeded budget!";
+			overrun = true;
+		}
 
-				List<String> params = null;    // FUNCTION PARAMETERS 
+		getStats( script.getText() ).record(System.nanoTime() - start, overrun);
 
-				// find the parameters if there are any
-				if( temp.length > 1 ) {
-					params = Utils.mkList(temp[1].split(",")); // split the arguments on commas ( , )
+		return result;
+	}
 
-					if( debug_enabled ) System.out.println("Fixing Params");
+	/**
+	 * Set the budget for each script run.
+	 * 
+	 * @param steps maximum number of functions/values to evaluate
+	 * @param time  maximum time (ms)
+	 */
+	public void setBudget(final int steps, final long time) {
+		this.max_steps = steps;
+		this.max_time = time;
+	}
 
-					ProgramInterpreter.fixParams( params ); // sort of fixes the params
+	/**
+	 * Get the execution statistics for each script that's been run
+	 * (recently), busiest first.
+	 * 
+	 * @return
+	 */
+	public List<ScriptStats> getStats() {
+		final List<ScriptStats> list;
 
-					//if( debug_enabled ) System.out.println("Params: " + params);
+		synchronized(this.stats) {
+			list = new ArrayList<ScriptStats>( this.stats.values() );
+		}
 
-					if( debug_enabled ) {
-						System.out.println("Params:");
+		Collections.sort(list, new Comparator<ScriptStats>() {
+			@Override
+			public int compare(final ScriptStats s1, final ScriptStats s2) {
+				return Long.compare(s2.getCount(), s1.getCount());
+			}
+		});
 
-						for(final String param : params) {
-							System.out.println(param);
-						}
-					}
+		return list;
+	}
 
-					// evaluate parameters
-					int index = 0;
+	private ScriptStats getStats(final String text) {
+		synchronized(this.stats) {
+			ScriptStats ss = this.stats.get(text);
 
-					// whenever the function called isn't 'if' or 'with' or 'do', we want to evaluate all parameters as we get them
-					if( !functionName.equals("if") && !functionName.equals("with") && !functionName.equals("do") ) {
-						for(final String param : params) {
-							// evaluate parameters if they are valid sub scripts							
-							if( isValidScript( param ) ) {
-								params.set(index, interpret(param, player, object));
-							}
+			if( ss == null ) {
+				ss = new ScriptStats(text);
 
-							index++;
-						}
-					}
+				this.stats.put(text, ss);
+			}
 
-					if( debug_enabled ) {
-						System.out.println("EVALUATE");
-						System.out.println("Evaluate: <" + functionName + "> with " + params);
-					}
+			return ss;
+		}
+	}
 
-					result = evaluate(functionName, params.toArray(new String[params.size()]), player, object);
+	/**
+	 * Get the compiled form of a script, compiling it only if it hasn't
+	 * been already.
+	 * 
+	 * @param script
+	 * @return
+	 */
+	public static Node compile(final Script script) {
+		Node program = script.program;
 
-					if( debug_enabled ) System.out.println("Result: " + result);
-				}
-				else result = "Incomplete function statement, no parameters!";
+		if( program == null ) {
+			program = compile( script.getText() );
+
+			script.program = program;
+		}
+
+		return program;
+	}
+
+	/**
+	 * Get the compiled form of some script text, from the cache if it's
+	 * been compiled before.
+	 * 
+	 * @param script
+	 * @return
+	 */
+	public static Node compile(final String script) {
+		Node program = cache.get(script);
+
+		if( program == null ) {
+			try {
+				program = parse(script);
 			}
-			else {
-				if( debug_enabled ) {
-					System.out.println("EVALUATE");
-					System.out.println("Evaluate: <" + script.substring(1, script.length() - 1) + "> ");
-				}
-				
-				result = evaluate(script, new String[0], player, object);
-				
-				if( debug_enabled ) System.out.println("Result: " + result);
+			catch(final IndexOutOfBoundsException ioobe) {
+				// fixParams ran out of parameters to join (mismatched braces)
+				program = new Value("PGM: Error!");
 			}
+
+			cache.put(script, program);
 		}
-		else {
-			int p_dbref = (( player != null ) ? player.getDBRef() : 1);
-			int o_dbref = (( object != null ) ? object.getDBRef() : 1);
-			
-			result = "Invalid Script! (" + p_dbref + "," + o_dbref + ")";
+
+		return program;
+	}
+
+	public static int getCacheSize() {
+		return cache.size();
+	}
+
+	/**
+	 * Turn script text into a tree of Nodes.
+	 * 
+	 * @param script
+	 * @return
+	 */
+	private static Node parse(final String script) {
+		if ( !isValidScript( script ) ) return new Invalid();
+
+		// no script function equals no script
+		if( script.indexOf(":") == -1 ) return new Atom(script);
+
+		// TODO fix this, we are assuming it's all one nested script...
+		final String work = script.substring(1, script.length() - 1); // strip off the outermost squiggly braces ( {} )
+
+		final String[] temp = work.split(":", 2);
+
+		final String functionName = temp[0]; // FUNCTION NAME
+
+		final List<String> params = Utils.mkList(temp[1].split(",")); // split the arguments on commas ( , )
+
+		ProgramInterpreter.fixParams( params ); // sort of fixes the params
+
+		final Arg[] args = new Arg[params.size()];
+
+		int index = 0;
+
+		for(final String param : params) {
+			args[index] = new Arg(param, isValidScript( param ) ? parse(param) : null);
+			index++;
 		}
-		
+
+		return new Call(functionName, args);
+	}
+
+	/**
+	 * Evaluate a compiled script
+	 * 
+	 * @param program
+	 * @param frame
+	 * @return
+	 */
+	private String run(final Node program, final Frame frame) {
+		frame.step();
+
+		final String result = program.run(this, frame);
+
+		if( debug_enabled ) System.out.println("Result: " + result);
+
 		return result;
 	}
 
-	private String evaluate(final String functionName, final String[] params, final Player player, final MUDObject object) {
-		
-		// TODO fix kludge?
-		// what should cmd, arg, how be set to?
-		addVar("cmd", "");
-		addVar("arg", "");
-		addVar("how", "");
-		addVar("player", "" + player.getDBRef());
-		addVar("this", "" + object.getDBRef());
-		
+	/**
+	 * Evaluate a parameter as a script (whether or not it is one), for
+	 * functions that evaluate their parameters themselves (if, with, do).
+	 * 
+	 * @param arg
+	 * @param frame
+	 * @return
+	 */
+	private String run(final Arg arg, final Frame frame) {
+		if( arg.program != null ) return run(arg.program, frame);
+		else                      return invalid(frame);
+	}
+
+	/**
+	 * Evaluate script text that was only known at runtime (i.e. a function
+	 * result).
+	 * 
+	 * @param script
+	 * @param frame
+	 * @return
+	 */
+	private String interpret(final String script, final Frame frame) {
+		return run(compile(script), frame);
+	}
+
+	private static String invalid(final Frame frame) {
+		int p_dbref = (( frame.player != null ) ? frame.player.getDBRef() : 1);
+		int o_dbref = (( frame.object != null ) ? frame.object.getDBRef() : 1);
+
+		return "Invalid Script! (" + p_dbref + "," + o_dbref + ")";
+	}
+
+	private String call(final Call call, final Frame frame) {
+		if( debug_enabled ) System.out.println("Function: " + call.functionName); // tell us the script function used
+
+		final String functionName = call.functionName;
+		final String[] params = new String[call.args.length];
+
+		// whenever the function called isn't 'if' or 'with' or 'do', we want to evaluate all parameters as we get them
+		final boolean eager = !functionName.equals("if") && !functionName.equals("with") && !functionName.equals("do");
+
+		for(int index = 0; index < params.length; index++) {
+			final Arg arg = call.args[index];
+
+			// evaluate parameters if they are valid sub scripts
+			if( eager && arg.program != null ) params[index] = run(arg.program, frame);
+			else                               params[index] = arg.text;
+		}
+
 		if( debug_enabled ) {
-			System.out.println("# Params: " + params.length);
-			System.out.println("");
-			
-			System.out.println("Params:");
-			
-			for(final String param : params) System.out.println(param);
+			System.out.println("Evaluate: <" + functionName + "> with " + Arrays.asList(params));
 		}
 
+		return evaluate(call, params, frame);
+	}
+
+	private String evaluate(final Call call, final String[] params, final Frame frame) {
+		final String functionName = call.functionName;
+
+		final Player player = frame.player;
+		final MUDObject object = frame.object;
+
 		if( params.length > 0 ) {
 			/*
 			 * TODO: resolve this kludge and figure out a way to ensure that each
@@ -247,14 +408,10 @@ public final class ProgramInterpreter {
 			// this a kludge, since a do function call may contain 1 or more parameters/sub scripts.
 			if ( functionName.equals("do") ) {
 				// {do:script1, script2, ...}
-				String temp;
+				for(final Arg arg : call.args) {
+					if( debug_enabled ) System.out.println("(DO) INTERPRET: " + arg.text);
 
-				for(final String param : params) {
-					if( debug_enabled ) System.out.println("(DO) INTERPRET: " + param);
-
-					temp = interpret(param, player, object);
-
-					if( debug_enabled ) System.out.println("(DO) Result: " + temp);
+					run(arg, frame);
 				}
 
 				return "";
@@ -262,8 +419,6 @@ public final class ProgramInterpreter {
 
 			// Functions that take 1 parameter
 			if( params.length == 1 ) {
-				if( debug_enabled ) System.out.println("Parameter (1): " + params[0]);
-
 				if(functionName.equals("create_item")) {
 					// {create_item:identifier}
 					final Item item = parent.createItem(params[0], true);
@@ -279,8 +434,6 @@ public final class ProgramInterpreter {
 					else               return "" + -1;
 				}
 				else if (functionName.equals("rainbow")) {
-					if( debug_enabled ) System.out.println(params[0]);
-					
 					return Utils.rainbow(params[0], parent.getColors());
 				}
 				else if ( functionName.equals("test") ) {
@@ -298,24 +451,19 @@ public final class ProgramInterpreter {
 
 			// Functions that take 2 parameters
 			else if( params.length == 2 ) {
-				if( debug_enabled ) {
-					System.out.println("Parameter (1): " + params[0]);
-					System.out.println("Parameter (2): " + params[1]);
-				}
-
 				Integer first = null;
 				Integer second = null;
 
 				boolean failNumParse = false;
 
 				// cover some stuff for certain parts here
-				if( Utils.mkList("add", "sub", "mul", "and", "eq", "lt", "le", "gt", "ge").contains(functionName) ) {
+				if( MATH.contains(functionName) ) {
 					if( params[0].startsWith("{") && params[0].endsWith("}") ) {
-						params[0] = interpret(params[0], player, object);
+						params[0] = interpret(params[0], frame);
 					}
 
 					if( params[1].startsWith("{") && params[1].endsWith("}") ) {
-						params[1] = interpret(params[1], player, object);
+						params[1] = interpret(params[1], frame);
 					}
 
 					// try to pre-evaluate parameters here for functions which are basically math (trigger for comparing string equivalent)
@@ -325,15 +473,10 @@ public final class ProgramInterpreter {
 							second = Integer.parseInt(params[1]);
 						}
 						catch(NumberFormatException nfe) {
-							if( debug_enabled ) System.out.println("-- Stack Trace --");
-
-							nfe.printStackTrace();
+							if( debug_enabled ) nfe.printStackTrace();
 
 							failNumParse = true;
 						}
-
-						//System.out.println("first: " + first);
-						//System.out.println("Second: " + second);
 					}
 				}
 
@@ -466,8 +609,7 @@ public final class ProgramInterpreter {
 					final String var = params[0];
 					final String val = params[1];
 					
-					if( hasVar(var) ) setVar(var, val);
-					else              addVar(var, val);
+					frame.vars.put(var, val);
 					
 					return val;
 				}
@@ -542,25 +684,16 @@ public final class ProgramInterpreter {
 
 			// Functions that take 3 parameters
 			else if( params.length == 3 ) {
-				if( debug_enabled ) {
-					System.out.println("Parameter (1): " + params[0]);
-					System.out.println("Parameter (2): " + params[1]);
-					System.out.println("Parameter (3): " + params[2]);
-				}
-
 				if( functionName.equals("if") ) {
 					// {if: test condition, true: do this, false: do this}
 
-					final String result = interpret(params[0], player, object);
-
-					if( debug_enabled ) System.out.println("result: " + result);
+					final String result = run(call.args[0], frame);
 
 					if( result.equals(TRUE) ) {
-						return interpret(params[1], player, object);
-
+						return run(call.args[1], frame);
 					}
 					else if( result.equals(FALSE) ) {
-						return interpret(params[2], player, object);
+						return run(call.args[2], frame);
 					}
 				}
 				else if( functionName.equals("store") ) {
@@ -583,16 +716,16 @@ public final class ProgramInterpreter {
 					else return "";
 				}
 				else if( functionName.equals("with") ) {
-					String result = "";
-					
+					// {with: name, value, script}
 					final String varName = params[0];
 					final String varValue = params[1];
 
-					addVar(varName, varValue);
+					final String previous = frame.vars.put(varName, varValue);
 
-					result = interpret(params[2], player, object);
+					final String result = run(call.args[2], frame);
 
-					delVar(varName);
+					if( previous != null ) frame.vars.put(varName, previous);
+					else                   frame.vars.remove(varName);
 
 					return result;
 				}
@@ -608,9 +741,6 @@ public final class ProgramInterpreter {
 					 * 	2d/3d
 					 *  one or two points
 					 */
-
-					if( debug_enabled ) System.out.println("PGM -distance-");
-
 					List<Point> ptList = Utils.toPoints(Utils.join(params, ","));
 
 					if( ptList != null ) {
@@ -620,90 +750,239 @@ public final class ProgramInterpreter {
 					else { return "PGM: Error!"; }
 					//else { return "Incomplete function statement, no parameters!"; }
 				}
-				else if ( functionName.equals("do") ) {
-					String temp;
+				else { return "PGM: No such function!"; }
+			}
+		}
+		else {
+			return "Incomplete function statement, no parameters!";
+		}
+	}
 
-					for(final String param : params) {
-						if( debug_enabled ) System.out.println("(DO) INTERPRET: " + param);
+	/**
+	 * Evaluate an Atom (a script with no function call, e.g. {name}
+	 * or {&arg}).
+	 * 
+	 * @param atom
+	 * @param frame
+	 * @return
+	 */
+	private String evaluate(final Atom atom, final Frame frame) {
+		/* all ZERO parameter functions */
+		switch(atom.text) {
+		case "{name}":
+			return parent.getServerName();
+		case "{version}":
+			return MUDServer.getVersion();
+		default:
+			// e.g. {&arg}
+			if( atom.varName != null ) {
+				/*
+				 * special
+				 * &cmd - command that started this
+				 * &arg - function argument?
+				 * &this - object code is executing from?
+				 * &player - player context of executing code?
+				 */
+				final String value = frame.vars.get(atom.varName);
+
+				if( value != null ) {
+					return value;
+				}
+				else return "";
+			}
+			else return atom.text;
+		}
+	}
 
-						temp = interpret(param, player, object);
+	/**
+	 * The variables for one run of a script, along with the player
+	 * and object it's being run for.
+	 */
+	private static final class Frame {
+		private final Player player;
+		private final MUDObject object;
+		private final Map<String, String> vars;
 
-						if( debug_enabled ) System.out.println("(DO) Result: " + temp);
+		private final int max_steps;
+		private final long deadline; // (ns)
 
-						if( temp.equals(ERROR) ) {
-							return ""; // return early if we encounter an error
-						}
-					}
+		private int steps = 0;
 
-					return "";
-				}
-				else { return "PGM: No such function!"; }
-			}
+		private Frame(final Player player, final MUDObject object, final Map<String, String> globals, final int max_steps, final long deadline) {
+			this.player = player;
+			this.object = object;
+
+			this.max_steps = max_steps;
+			this.deadline = deadline;
+
+			this.vars = new HashMap<String, String>();
+
+			// TODO fix kludge?
+			// what should cmd, arg, how be set to?
+			this.vars.put("cmd", "");
+			this.vars.put("arg", "");
+			this.vars.put("how", "");
+			this.vars.put("player", "" + ((player != null) ? player.getDBRef() : -1));
+			this.vars.put("this", "" + ((object != null) ? object.getDBRef() : -1));
+
+			this.vars.putAll(globals);
 		}
-		else {
-			//return functionName.substring(2, functionName.length() - 2) + ": Incomplete function statement, insufficient parameters!";
-			/* all ZERO parameter functions */
-			switch(functionName) {
-			case "{name}":
-				return parent.getServerName();
-			case "{version}":
-				return MUDServer.getVersion();
-			default:
-				String temp = functionName.substring(1, functionName.length() - 1);
-
-				// e.g. {&arg}
-				if( temp.startsWith("&") ) {
-					/*
-					 * special
-					 * &cmd - command that started this
-					 * &arg - function argument?
-					 * &this - object code is executing from?
-					 * &player - player context of executing code?
-					 */
 
-					final String varName = temp.substring(1);
-					final String value = getVar(varName);
+		/**
+		 * Count one step of evaluation, stopping the script (by throwing
+		 * BudgetExceeded) if it's out of steps or time. The time is only
+		 * checked every so often, since getting it isn't free.
+		 */
+		private void step() {
+			this.steps++;
 
-					if( value != null ) {
-						return value;
-					}
-					else return "";
-				}
-				else return functionName;
-			}
-			
-			// TODO convert all & 'functions' to var retrievals and store data in vars
-			// TODO consider making a separate area for protected/static vars
-			/*switch(functionName) {
-			case "{&arg}":
-				return vars.get("arg");
-			case "{&cmd}":
-				return "";
-			case "{&how}":
-				return "";
-			case "{&this}":
-				return "" + object.getDBRef();
-			case "{name}":
-				return parent.getServerName();
-			case "{&player}":
-				return "" + player.getDBRef();
-			case "{version}":
-				return MUDServer.getVersion();
-			default:
-				String temp = functionName.substring(1, functionName.length() - 1);
-				
-				//if( functionName.startsWith("&") ) {
-				if( temp.startsWith("&") ) {
-					final String varName = temp.substring(1);
-					final String value = getVar(varName);
+			if( this.steps > this.max_steps ) throw new BudgetExceeded();
 
-					if( value != null ) {
-						return value;
-					}
-					else return "";
-				}
-				else return functionName;
-			}*/
+			if( (this.steps & 63) == 0 && System.nanoTime() > this.deadline ) throw new BudgetExceeded();
+		}
+	}
+
+	/**
+	 * Thrown to stop a script that's gone over it's budget.
+	 */
+	private static final class BudgetExceeded extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		private BudgetExceeded() {
+			super(null, null, false, false); // no stack trace needed
+		}
+	}
+
+	/**
+	 * Execution statistics for a script.
+	 */
+	public static final class ScriptStats {
+		private final String text;
+
+		private long count = 0;
+		private long total = 0; // ns
+		private long max = 0;   // ns
+		private long overruns = 0;
+
+		private ScriptStats(final String text) {
+			this.text = text;
+		}
+
+		private synchronized void record(final long time, final boolean overrun) {
+			count++;
+			total += time;
+
+			if( time > max ) max = time;
+
+			if( overrun ) overruns++;
+		}
+
+		public String getText() {
+			return this.text;
+		}
+
+		public synchronized long getCount() {
+			return this.count;
+		}
+
+		public synchronized long getTotalTime() {
+			return this.total;
+		}
+
+		public synchronized long getMaxTime() {
+			return this.max;
+		}
+
+		public synchronized long getOverruns() {
+			return this.overruns;
+		}
+	}
+
+	/* Compiled Scripts */
+
+	/**
+	 * A compiled script (or part of one).
+	 */
+	public static abstract class Node {
+		abstract String run(final ProgramInterpreter pgm, final Frame frame);
+	}
+
+	/**
+	 * Not a valid script (i.e. unbalanced braces).
+	 */
+	private static final class Invalid extends Node {
+		@Override
+		String run(final ProgramInterpreter pgm, final Frame frame) {
+			return invalid(frame);
+		}
+	}
+
+	/**
+	 * A fixed result.
+	 */
+	private static final class Value extends Node {
+		private final String value;
+
+		private Value(final String value) {
+			this.value = value;
+		}
+
+		@Override
+		String run(final ProgramInterpreter pgm, final Frame frame) {
+			return this.value;
+		}
+	}
+
+	/**
+	 * A script without a function call, e.g. {name} or {&arg}.
+	 */
+	private static final class Atom extends Node {
+		private final String text;
+		private final String varName; // variable name, if it's a variable ( {&name} )
+
+		private Atom(final String text) {
+			this.text = text;
+
+			final String temp = text.substring(1, text.length() - 1);
+
+			this.varName = temp.startsWith("&") ? temp.substring(1) : null;
+		}
+
+		@Override
+		String run(final ProgramInterpreter pgm, final Frame frame) {
+			return pgm.evaluate(this, frame);
+		}
+	}
+
+	/**
+	 * A function call, e.g. {tell:message, player}.
+	 */
+	private static final class Call extends Node {
+		private final String functionName;
+		private final Arg[] args;
+
+		private Call(final String functionName, final Arg[] args) {
+			this.functionName = functionName;
+			this.args = args;
+		}
+
+		@Override
+		String run(final ProgramInterpreter pgm, final Frame frame) {
+			return pgm.call(this, frame);
+		}
+	}
+
+	/**
+	 * A function parameter, along with the compiled script it contains
+	 * (if it's a valid script).
+	 */
+	private static final class Arg {
+		private final String text;
+		private final Node program;
+
+		private Arg(final String text, final Node program) {
+			this.text = text;
+			this.program = program;
 		}
 	}
 	
@@ -0,0 +1,218 @@
+package mud.misc;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import mud.objects.RoomType;
+
+/**
+ * A cache of rendered (parsed, colored, word wrapped) room output, so that
+ * looking at a room nobody has changed is just a matter of copying lines.
+ *
+ * Each rendering is stored under a Key (the room, plus everything about the
+ * viewer/server that changes how it looks) along with the room's revision
+ * and contents version when it was rendered. If either has changed since,
+ * the rendering is stale and gets replaced.
+ *
+ * The cache holds at most CACHE_SIZE renderings, the least recently used
+ * one is thrown away to make room for a new one. A room's renderings should
+ * be thrown away (see invalidate) when it's recycled, since its dbref may be
+ * reused by a new room whose revision and contents version start over.
+ *
+ * NOTE: a description with scripting in it (see isCacheable) can come out
+ * differently every time, so it shouldn't be cached
+ *
+ * @author Jeremy
+ *
+ */
+public class RenderCache {
+	private static final int CACHE_SIZE = 1024;
+
+	private final Map<Key, Render> cache = Collections.synchronizedMap(new LinkedHashMap<Key, Render>(CACHE_SIZE, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<Key, Render> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	});
+
+	private final AtomicLong hits = new AtomicLong(0);
+	private final AtomicLong misses = new AtomicLong(0);
+	private final AtomicLong stale = new AtomicLong(0);
+
+	/**
+	 * Get the rendering for the specified key, if there is one and it's
+	 * still current.
+	 *
+	 * @param key
+	 * @param revision the room's current revision
+	 * @param contents the room's current contents version
+	 * @return the rendering, or null if it needs to be (re-)rendered
+	 */
+	public Render get(final Key key, final int revision, final int contents) {
+		final Render render = this.cache.get(key);
+
+		if( render != null ) {
+			if( render.revision == revision && render.contents == contents ) {
+				this.hits.incrementAndGet();
+
+				return render;
+			}
+
+			this.stale.incrementAndGet();
+		}
+
+		this.misses.incrementAndGet();
+
+		return null;
+	}
+
+	public void put(final Key key, final Render render) {
+		this.cache.put(key, render);
+	}
+
+	/**
+	 * Throw away all the renderings of the specified room.
+	 *
+	 * @param dbref
+	 */
+	public void invalidate(final int dbref) {
+		synchronized(this.cache) {
+			this.cache.keySet().removeIf(key -> key.dbref == dbref);
+		}
+	}
+
+	/**
+	 * Can a room with the specified description be cached? Not if the
+	 * description has any scripting ({...}) in it, since that's evaluated
+	 * when the room is rendered.
+	 *
+	 * @param desc
+	 * @return
+	 */
+	public static boolean isCacheable(final String desc) {
+		return desc == null || desc.indexOf('{') == -1;
+	}
+
+	public void clear() {
+		this.cache.clear();
+	}
+
+	public int size() {
+		return this.cache.size();
+	}
+
+	public long getHits() {
+		return this.hits.get();
+	}
+
+	public long getMisses() {
+		return this.misses.get();
+	}
+
+	/**
+	 * Get the number of misses where there was a rendering, but the room
+	 * had changed since.
+	 *
+	 * @return
+	 */
+	public long getStale() {
+		return this.stale.get();
+	}
+
+	/**
+	 *
+	 * @return hit rate (0-100%)
+	 */
+	public double getHitRate() {
+		final long h = this.hits.get();
+		final long total = h + this.misses.get();
+
+		return (total > 0) ? (100.0 * h) / total : 0.0;
+	}
+
+	/**
+	 * What a rendering depends on, other than the room's own state.
+	 */
+	public static final class Key {
+		private final int dbref;
+		private final int lineLimit;
+		private final int color;
+		private final boolean hud;
+		private final TimeOfDay timeOfDay;
+		private final RoomType roomType;
+
+		public Key(final int dbref, final int lineLimit, final int color, final boolean hud, final TimeOfDay timeOfDay, final RoomType roomType) {
+			this.dbref = dbref;
+			this.lineLimit = lineLimit;
+			this.color = color;
+			this.hud = hud;
+			this.timeOfDay = timeOfDay;
+			this.roomType = roomType;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if( !(o instanceof Key) ) return false;
+
+			final Key k = (Key) o;
+
+			return this.dbref == k.dbref && this.lineLimit == k.lineLimit && this.color == k.color && this.hud == k.hud
+					&& this.timeOfDay == k.timeOfDay && this.roomType == k.roomType;
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = this.dbref;
+
+			hash = 31 * hash + this.lineLimit;
+			hash = 31 * hash + this.color;
+			hash = 31 * hash + (this.hud ? 1 : 0);
+			hash = 31 * hash + ((this.timeOfDay != null) ? this.timeOfDay.hashCode() : 0);
+			hash = 31 * hash + ((this.roomType != null) ? this.roomType.hashCode() : 0);
+
+			return hash;
+		}
+	}
+
+	/**
+	 * The rendered parts of a room's output.
+	 */
+	public static final class Render {
+		private final int revision;
+		private final int contents;
+
+		private final List<String> title;       // room name (and separator)
+		private final List<String> description; // word wrapped description
+		private final List<String> things;      // things (on one line)
+		private final List<String> items;       // items (one per line)
+
+		public Render(final int revision, final int contents, final List<String> title, final List<String> description, final List<String> things, final List<String> items) {
+			this.revision = revision;
+			this.contents = contents;
+
+			this.title = Collections.unmodifiableList(title);
+			this.description = Collections.unmodifiableList(description);
+			this.things = Collections.unmodifiableList(things);
+			this.items = Collections.unmodifiableList(items);
+		}
+
+		public List<String> getTitle() {
+			return this.title;
+		}
+
+		public List<String> getDescription() {
+			return this.description;
+		}
+
+		public List<String> getThings() {
+			return this.things;
+		}
+
+		public List<String> getItems() {
+			return this.items;
+		}
+	}
+}
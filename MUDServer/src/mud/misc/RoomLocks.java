@@ -0,0 +1,96 @@
+package mud.misc;
+
+/*
+  Copyright (c) 2012 Jeremy N. Harton
+  
+  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+  documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+  persons to whom the Software is furnished to do so, subject to the following conditions:
+  
+  The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+  Software.
+  
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+  MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+  CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+  SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Locks for rooms, for use when commands are being run on more than one
+ * thread (see CommandExec). A command which only touches the player's room
+ * locks that room, and one which moves something from one room to another
+ * locks both rooms (see MUDServer.getRooms).
+ * 
+ * Rooms share a fixed number of locks (by dbref), and the locks are
+ * always taken in the same order so that two threads locking the same
+ * rooms can't deadlock.
+ * 
+ * @author Jeremy
+ *
+ */
+public class RoomLocks {
+	private static final int DEFAULT_SIZE = 64;
+	
+	private final ReentrantLock[] locks;
+	
+	public RoomLocks() {
+		this(DEFAULT_SIZE);
+	}
+	
+	public RoomLocks(final int size) {
+		this.locks = new ReentrantLock[Math.max(1, size)];
+		
+		for (int l = 0; l < locks.length; l++) {
+			locks[l] = new ReentrantLock();
+		}
+	}
+	
+	/**
+	 * Lock the specified rooms.
+	 * 
+	 * @param rooms room dbrefs
+	 */
+	public void lock(final int... rooms) {
+		for (final int index : indices(rooms)) {
+			locks[index].lock();
+		}
+	}
+	
+	/**
+	 * Unlock the specified rooms (which must be the same ones
+	 * passed to lock).
+	 * 
+	 * @param rooms room dbrefs
+	 */
+	public void unlock(final int... rooms) {
+		final int[] indices = indices(rooms);
+		
+		for (int i = indices.length - 1; i >= 0; i--) {
+			locks[ indices[i] ].unlock();
+		}
+	}
+	
+	// get the (sorted, distinct) lock indices for the rooms
+	private int[] indices(final int... rooms) {
+		final int[] indices = new int[rooms.length];
+		
+		for (int r = 0; r < rooms.length; r++) {
+			indices[r] = Math.abs(rooms[r] % locks.length);
+		}
+		
+		Arrays.sort(indices);
+		
+		int count = 0;
+		
+		for (int i = 0; i < indices.length; i++) {
+			if (count == 0 || indices[i] != indices[count - 1]) indices[count++] = indices[i];
+		}
+		
+		return Arrays.copyOf(indices, count);
+	}
+}
@@ -10,6 +10,8 @@ package mud.misc;
 public class Script {
 	private String text;
 	
+	volatile ProgramInterpreter.Node program = null; // compiled text (see ProgramInterpreter.compile)
+	
 	public Script(String scriptText) {
 		this.text = scriptText;
 	}
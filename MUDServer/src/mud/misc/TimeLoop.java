@@ -97,7 +97,8 @@ public class TimeLoop implements Runnable
 				ie.printStackTrace();
 			}
 
-			if (!paused) doLoop();
+			// the time changing affects the world (weather, combat, etc), so it happens while no commands are running
+			if (!paused) server.runExclusive(this::doLoop);
 			
 			//System.out.println( Utils.padLeft("" + hour, '0', 2) + ":" + Utils.padLeft("" + minute, '0', 2)+ ":" + Utils.padLeft("" + second, '0', 2));
 		}
@@ -16,10 +16,19 @@ import java.io.OutputStream;
 import java.net.Socket;
 import java.net.SocketException;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
 
 import mud.protocols.Telnet;
 import mud.utils.Utils;
@@ -27,12 +36,38 @@ import mud.utils.Utils;
 public class Client implements Runnable {
 	public static final int TELNET_COMMAND_LENGTH = 3;
 	public static final int BUF_SIZE = 4096;
+	public static final int DEFAULT_HIGH_WATER_MARK = 64 * 1024;
+	
+	private static final AtomicLong total_dropped = new AtomicLong(0); // bytes discarded, for every client there's been
 	
 	private final Socket socket;
 	private final InputStream input;
 	private final OutputStream output;
-
-	private boolean running = false;
+	
+	// non-blocking i/o (only used when the client was accepted by NIOServer)
+	private final SocketChannel channel;
+	private SelectionKey key = null;
+	private final Queue<ByteBuffer> pending_writes = new LinkedList<ByteBuffer>();
+	
+	// output buffering (see beginOutput() and endOutput())
+	private final Object out_lock = new Object();
+	
+	private byte[] out_buf = new byte[BUF_SIZE];
+	private int out_len = 0;
+	private int batch = 0;                               // depth of nested output batches
+	private long unsent = 0;                             // bytes queued for the socket/channel but not yet written
+	private Thread writer = null;                         // writes out queued output (blocking i/o only, see writeOutput())
+	private long dropped = 0;                            // bytes discarded because the client wasn't reading
+	private int high_water_mark = DEFAULT_HIGH_WATER_MARK;
+	
+	// output compression (see startCompression())
+	private Deflater deflater = null;
+	private byte[] z_buf = null;
+	private long raw_bytes = 0;        // bytes compressed
+	private long compressed_bytes = 0; // bytes they were compressed to
+	private long compress_time = 0;    // time spent compressing (ns)
+
+	private volatile boolean running = false;
 	private boolean debug = false;
 	
 	public boolean tn_neg_seq = false; // indicates if the bytes currently being received are part of a negotiation sequence
@@ -42,16 +77,26 @@ public class Client implements Runnable {
 	// temporary storage
 	private final StringBuffer sb = new StringBuffer(80);
 	private List<Byte> buffer = new LinkedList<Byte>();
+	
+	// parser state
+	private int bytes = 0;
+	private int last_ch = ' ';
+	private boolean received_line = false;
 
 	// received data
 	private final Queue<Byte[]> received_telnet_msgs;
 	private final Queue<String> queuedLines;
 	
+	// input notification (see Server.getReadyClient())
+	private BlockingQueue<Client> ready_queue = null;
+	private final AtomicBoolean ready = new AtomicBoolean(false);
+	
 	// response
 	private String response = "";
 	private boolean response_expected = false;
 	
 	public boolean NAWS = false;
+	public boolean MCCP2 = false; // client agreed to MCCP2 (IAC DO MCCP2)
 
 	public Client(final String host, final int port) throws IOException, UnknownHostException {
 		this(new Socket(host, port));
@@ -66,143 +111,58 @@ public class Client implements Runnable {
 		this.input = socket.getInputStream();
 		this.output = socket.getOutputStream();
 		
-		this.received_telnet_msgs = new LinkedList<Byte[]>();
+		this.channel = null;
+		
+		this.received_telnet_msgs = new ConcurrentLinkedQueue<Byte[]>();
 		this.queuedLines = new ConcurrentLinkedQueue<String>();
 	}
+	
+	/**
+	 * Create a client around a non-blocking socket channel. Such a client
+	 * has no thread of it's own, input is handed to it by one of NIOServer's
+	 * i/o threads and output is queued up and written out as the channel
+	 * becomes writable.
+	 * 
+	 * @param channel
+	 * @throws IOException
+	 */
+	public Client(final SocketChannel channel) throws IOException {
+		this.socket = channel.socket();
+		
+		this.socket.setOOBInline(true);
+		
+		this.input = null;
+		this.output = null;
+		
+		this.channel = channel;
+		this.channel.configureBlocking(false);
+		
+		this.received_telnet_msgs = new ConcurrentLinkedQueue<Byte[]>();
+		this.queuedLines = new ConcurrentLinkedQueue<String>();
+		
+		this.running = true;
+	}
 
 	public void run() {
 		// TODO refine code
-		int readValue;
-		int bytes;
-		int last_ch = ' ';
-
-		boolean received_line = false;
-
 		this.running = true;
 		this.debug = true;   // start out with debug enabled
+		
+		// output is written on it's own thread, so a client that isn't reading doesn't hold up whoever writes to it
+		synchronized(out_lock) {
+			if( writer == null ) {
+				writer = new Thread(this::writeOutput, Thread.currentThread().getName() + "-out");
+				
+				writer.setDaemon(true);
+				writer.start();
+			}
+		}
 
 		try {
 			while( running ) {
-				readValue = 0;
-				bytes = 0;
-
 				while( input.available() > 0 ) {
-					// read in a value
-					readValue = input.read();
-					
-					// output what we read
-					//debug("Read: " + readValue);
-					
-					// if we are in a TELNET NEGOTIATON SEQUENCE
-					if( tn_neg_seq ) {
-						if( tn_cmd ) {
-							if( bytes < TELNET_COMMAND_LENGTH ) {
-								debug("Read: " + readValue);
-								
-								buffer.add( (byte) readValue );
-								bytes++;
-							}
-							
-							if( bytes == TELNET_COMMAND_LENGTH ) {
-								/*  response section -- properly belongs in the server end
-								 * 
-								 *  would be wise probably just to send a nice, fixed size array to the server and let it deal with the bytes
-								 */
-
-								received_telnet_msgs.add( buffer.toArray(new Byte[0]) );
-
-								/* end response section */
-
-								buffer.clear();
-								bytes = 0;
-								
-								tn_neg_seq = false;
-								tn_cmd = false;
-							}
-						}
-						else if( tn_subneg ) {
-							if( (byte) readValue == Telnet.IAC ) {
-								received_telnet_msgs.add( buffer.toArray(new Byte[0]) );
-								
-								buffer.clear();
-								bytes = 0;
-
-								debug("TELNET Command");
-							}
-							
-							debug("Read: " + readValue);
-							
-							buffer.add( (byte) readValue );
-							bytes++;
-							
-							if( (byte) readValue == Telnet.IAC ) {
-								//tn_cmd = true;
-								//tn_subneg = false;
-
-								continue;
-							}
-						}
-					}
-					else {
-						// if we see a TELNET COMMAND BYTE (take notice and enter TELNET NEGOTIATION SEQUENCE)
-						if( (byte) readValue == Telnet.IAC ) {
-							buffer.clear();
-
-							debug("TELNET Command");
-							
-							debug("Read: " + readValue);
-							
-							buffer.add( (byte) readValue );
-							bytes++;
-
-							tn_neg_seq = true;
-							tn_cmd = true;
-
-							continue;
-						}
-
-						final Character ch = (char) readValue;
-
-						// LF+CR, LFCR, CR+LF, CRLF
-						// the above combinations are detected and the cr after the nl or the nl after the cr
-						// are ignored because it introduces an extra line into the command
-
-						if (ch == '\012') {
-							// newline (\n)
-							if( last_ch == '\015' ) sb.delete(0, sb.length());
-							else                    received_line = true;
-						}
-						else if(ch == '\015') {
-							// carriage-return (\r)
-							if( last_ch == '\012' ) sb.delete(0, sb.length());
-							else                    received_line = true;
-						}
-						else if (ch == '\010') {
-							// backspace
-							if( sb.length() != 0 ) sb.deleteCharAt( sb.length() - 1 );
-						}
-						else {
-							// any other character
-							debug("Read: " + ch + "(" + readValue + ")");
-
-							sb.append(ch);
-
-							debug("current telnet input: " + Utils.stringToList( sb.toString() )); // tell us the whole string
-						}
-
-						last_ch = ch;
-
-						if( received_line ) {
-							final String line = sb.toString().trim();
-
-							if( !response_expected ) this.queuedLines.add(line);
-							else                     this.response = line;
-
-							sb.delete(0, sb.length());
-
-							received_line = false;     // reset received line indicator
-						}
-					}
+					// read in a value and feed it to the parser
+					process( input.read() );
 
 					// ---------------------------------------------------------------------------------
 
@@ -299,6 +259,148 @@ public class Client implements Runnable {
 		}
 	}
 
+	/**
+	 * Receive data read from a non-blocking channel (see NIOServer). The
+	 * bytes are fed through the same parser used by the blocking read loop,
+	 * so lines and telnet messages end up in the same queues either way.
+	 * 
+	 * @param data
+	 */
+	void receive(final ByteBuffer data) {
+		while( data.hasRemaining() ) {
+			process( data.get() & 0xFF );
+		}
+	}
+
+	/**
+	 * Process a single byte of input, handling telnet negotiation sequences,
+	 * line endings and backspaces. Completed lines are queued up (or stored as
+	 * the response, if one is expected).
+	 * 
+	 * @param readValue
+	 */
+	private void process(final int readValue) {
+		// output what we read
+		//debug("Read: " + readValue);
+		
+		// if we are in a TELNET NEGOTIATON SEQUENCE
+		if( tn_neg_seq ) {
+			if( tn_cmd ) {
+				if( bytes < TELNET_COMMAND_LENGTH ) {
+					debug("Read: " + readValue);
+					
+					buffer.add( (byte) readValue );
+					bytes++;
+				}
+				
+				if( bytes == TELNET_COMMAND_LENGTH ) {
+					/*  response section -- properly belongs in the server end
+					 * 
+					 *  would be wise probably just to send a nice, fixed size array to the server and let it deal with the bytes
+					 */
+
+					received_telnet_msgs.add( buffer.toArray(new Byte[0]) );
+					
+					signal();
+
+					/* end response section */
+
+					buffer.clear();
+					bytes = 0;
+					
+					tn_neg_seq = false;
+					tn_cmd = false;
+				}
+			}
+			else if( tn_subneg ) {
+				if( (byte) readValue == Telnet.IAC ) {
+					received_telnet_msgs.add( buffer.toArray(new Byte[0]) );
+					
+					signal();
+					
+					buffer.clear();
+					bytes = 0;
+
+					debug("TELNET Command");
+				}
+				
+				debug("Read: " + readValue);
+				
+				buffer.add( (byte) readValue );
+				bytes++;
+				
+				if( (byte) readValue == Telnet.IAC ) {
+					//tn_cmd = true;
+					//tn_subneg = false;
+
+					return;
+				}
+			}
+		}
+		else {
+			// if we see a TELNET COMMAND BYTE (take notice and enter TELNET NEGOTIATION SEQUENCE)
+			if( (byte) readValue == Telnet.IAC ) {
+				buffer.clear();
+
+				debug("TELNET Command");
+				
+				debug("Read: " + readValue);
+				
+				buffer.add( (byte) readValue );
+				bytes++;
+
+				tn_neg_seq = true;
+				tn_cmd = true;
+
+				return;
+			}
+
+			final Character ch = (char) readValue;
+
+			// LF+CR, LFCR, CR+LF, CRLF
+			// the above combinations are detected and the cr after the nl or the nl after the cr
+			// are ignored because it introduces an extra line into the command
+
+			if (ch == '\012') {
+				// newline (\n)
+				if( last_ch == '\015' ) sb.delete(0, sb.length());
+				else                    received_line = true;
+			}
+			else if(ch == '\015') {
+				// carriage-return (\r)
+				if( last_ch == '\012' ) sb.delete(0, sb.length());
+				else                    received_line = true;
+			}
+			else if (ch == '\010') {
+				// backspace
+				if( sb.length() != 0 ) sb.deleteCharAt( sb.length() - 1 );
+			}
+			else {
+				// any other character
+				debug("Read: " + ch + "(" + readValue + ")");
+
+				sb.append(ch);
+
+				debug("current telnet input: " + Utils.stringToList( sb.toString() )); // tell us the whole string
+			}
+
+			last_ch = ch;
+
+			if( received_line ) {
+				final String line = sb.toString().trim();
+
+				if( !response_expected ) this.queuedLines.add(line);
+				else                     this.response = line;
+				
+				signal();
+
+				sb.delete(0, sb.length());
+
+				received_line = false;     // reset received line indicator
+			}
+		}
+	}
+
 	public Socket getSocket() {
 		return this.socket;
 	}
@@ -313,9 +415,27 @@ public class Client implements Runnable {
 
 	public void stopRunning() {
 		this.running = false;
+		
+		synchronized(out_lock) {
+			// give the writer a moment to send anything still queued (e.g. a goodbye message), unless
+			// the client isn't reading anyway
+			final long until = System.currentTimeMillis() + 250;
+			
+			while( writer != null && writer != Thread.currentThread() && !pending_writes.isEmpty() && unsent <= high_water_mark ) {
+				final long wait = until - System.currentTimeMillis();
+				
+				if( wait <= 0 ) break;
+				
+				try                               { out_lock.wait(wait); }
+				catch (final InterruptedException ie) { break; }
+			}
+			
+			out_lock.notifyAll(); // let the writer see we've stopped
+		}
 
 		// clean up after ourselves
 		try {
+			if( channel != null ) this.channel.close();
 			if( input != null )  this.input.close();
 			if( output != null ) this.output.close();
 			if( socket != null ) this.socket.close();
@@ -323,41 +443,69 @@ public class Client implements Runnable {
 		catch(final IOException ioe) {
 			ioe.printStackTrace();
 		}
+		
+		synchronized(out_lock) {
+			if( deflater != null ) {
+				deflater.end();
+				deflater = null;
+			}
+		}
 	}
 
 	public String getInput() {
 		return this.queuedLines.poll();
 	}
+	
+	/**
+	 * Is there a line of input waiting to be handled?
+	 * 
+	 * @return
+	 */
+	public boolean hasInput() {
+		return !this.queuedLines.isEmpty();
+	}
+	
+	public boolean hasTelnetMessage() {
+		return !this.received_telnet_msgs.isEmpty();
+	}
+	
+	/**
+	 * Set the queue this client adds itself to when it has input ready for
+	 * the server, so that the server can wait on input rather than poll.
+	 * 
+	 * @param queue
+	 */
+	void setReadyQueue(final BlockingQueue<Client> queue) {
+		this.ready_queue = queue;
+	}
+	
+	/**
+	 * Clear the ready indicator, called once the client has been taken off
+	 * of the ready queue. Any input received after this will signal again.
+	 */
+	void clearReady() {
+		this.ready.set(false);
+	}
+	
+	/**
+	 * Tell the server we have input for it (if we haven't already)
+	 */
+	private void signal() {
+		if( ready_queue != null && ready.compareAndSet(false, true) ) {
+			ready_queue.offer(this);
+		}
+	}
 
 	public void write(final char ch) {
-		try {
-			output.write(ch);
-		}
-		catch (final IOException ioe) {
-			ioe.printStackTrace();
-			stopRunning();
-		}
+		append( new byte[] { (byte) ch } );
 	}
 
 	public void write(final byte b) {
-		try {
-			output.write(b);
-		}
-		catch (final IOException ioe) {
-			ioe.printStackTrace();
-			stopRunning();
-		}
+		append( new byte[] { b } );
 	}
 
 	public void write(final byte data[]) {
-		try {
-			output.write(data);
-			output.flush();
-		}
-		catch (final IOException ioe) {
-			ioe.printStackTrace();
-			stopRunning();
-		}
+		append( data );
 	}
 
 	public void write(final String data) {
@@ -377,9 +525,458 @@ public class Client implements Runnable {
 	 * @param data
 	 */
 	public void write(final List<String> data) {
+		beginOutput();
+		
 		for(final String string : data) {
 			writeln(string);
 		}
+		
+		endOutput();
+	}
+	
+	/**
+	 * Start gathering output. Anything written to the client after this is
+	 * held in the output buffer until the matching call to endOutput(), so
+	 * that all the output from a command (or tick) goes out in a single write.
+	 * 
+	 * NOTE: calls may be nested, output is only flushed by the outermost one
+	 */
+	public void beginOutput() {
+		synchronized(out_lock) {
+			this.batch++;
+		}
+	}
+	
+	/**
+	 * Stop gathering output, flushing the output buffer if this ends the
+	 * outermost batch.
+	 */
+	public void endOutput() {
+		synchronized(out_lock) {
+			if( this.batch > 0 ) this.batch--;
+			
+			if( this.batch == 0 ) queueOutput();
+		}
+		
+		drain();
+	}
+	
+	/**
+	 * Add data to the output buffer. If we aren't in the middle of a batch
+	 * the buffer is flushed right away.
+	 * 
+	 * If the client already has more than four times the high-water mark of
+	 * output waiting on it, it clearly isn't reading. Rather than let output
+	 * pile up in memory (or silently lose some of it, possibly in the middle
+	 * of a line or telnet sequence) the client is disconnected, and what it
+	 * didn't get is counted (see getDroppedBytes).
+	 * 
+	 * @param data
+	 */
+	private void append(final byte[] data) {
+		final long discarded;
+		
+		synchronized(out_lock) {
+			if( unsent > 4L * high_water_mark ) {
+				discarded = unsent + out_len + data.length;
+				
+				this.dropped += discarded;
+				
+				total_dropped.addAndGet(discarded);
+				
+				pending_writes.clear();
+				unsent = 0;
+				out_len = 0;
+			}
+			else discarded = 0;
+		}
+		
+		if( discarded > 0 ) {
+			System.out.println("Client " + getIPAddress() + ": not reading it's output, disconnecting (" + discarded + " bytes discarded)");
+			
+			stopRunning();
+			
+			return;
+		}
+		
+		synchronized(out_lock) {
+			if( out_len + data.length > out_buf.length ) {
+				out_buf = Arrays.copyOf(out_buf, Math.max(2 * out_buf.length, out_len + data.length));
+			}
+			
+			System.arraycopy(data, 0, out_buf, out_len, data.length);
+			
+			out_len += data.length;
+			
+			// flush early rather than buffer more than the high-water mark
+			if( batch == 0 || out_len >= high_water_mark ) queueOutput();
+		}
+		
+		drain();
+	}
+	
+	/**
+	 * Write out everything in the output buffer.
+	 */
+	public void flushOutput() {
+		synchronized(out_lock) {
+			queueOutput();
+		}
+		
+		drain();
+	}
+	
+	/**
+	 * Queue up everything in the output buffer to be written, as one more
+	 * buffer for the socket (blocking) or the channel (non-blocking).
+	 * 
+	 * If output is being compressed, the buffer is compressed and ends with
+	 * a sync flush, so the client can decompress everything it has been sent
+	 * (i.e. up to the end of the batch/prompt) without waiting for more.
+	 * 
+	 * NOTE: must be called with out_lock held
+	 */
+	private void queueOutput() {
+		if( out_len == 0 ) return;
+		
+		if( deflater != null ) {
+			final int len = deflate(out_len, false);
+			
+			out_len = 0;
+			
+			send(z_buf, len);
+		}
+		else {
+			final int len = out_len;
+			
+			out_len = 0;
+			
+			send(out_buf, len);
+		}
+		
+		// don't hang on to a big buffer because of one large burst of output
+		if( out_buf.length > high_water_mark ) out_buf = new byte[BUF_SIZE];
+		if( z_buf != null && z_buf.length > high_water_mark ) z_buf = new byte[BUF_SIZE];
+	}
+	
+	/**
+	 * Queue up data to be written to the socket (blocking) or the channel
+	 * (non-blocking), exactly as it is. Either way it counts as unsent until
+	 * it has actually been written.
+	 * 
+	 * NOTE: must be called with out_lock held, for blocking i/o the data is
+	 * only written out by drain()
+	 * 
+	 * @param data
+	 * @param len  number of bytes (from the start of data) to write
+	 */
+	private void send(final byte[] data, final int len) {
+		if( len == 0 ) return;
+		
+		pending_writes.add( ByteBuffer.wrap( Arrays.copyOf(data, len) ) );
+		
+		unsent += len;
+		
+		if( channel != null ) flush();
+	}
+	
+	/**
+	 * Let the writer know there's output queued up for the socket (blocking
+	 * i/o only). Nothing is written on the calling thread, so it never waits
+	 * on a client that isn't reading.
+	 * 
+	 * NOTE: must be called without out_lock held
+	 */
+	private void drain() {
+		if( channel != null ) return;
+		
+		synchronized(out_lock) {
+			if( !pending_writes.isEmpty() ) out_lock.notifyAll();
+		}
+	}
+	
+	/**
+	 * Write out output queued up for the socket as it arrives, until the
+	 * client is stopped (blocking i/o only, this is the writer thread). It
+	 * writes without holding out_lock, so the output piling up while it waits
+	 * on a client that isn't reading shows in isBackedUp().
+	 */
+	private void writeOutput() {
+		try {
+			while( true ) {
+				final ByteBuffer buf;
+				
+				synchronized(out_lock) {
+					while( running && pending_writes.isEmpty() ) out_lock.wait();
+					
+					buf = pending_writes.peek();
+					
+					if( buf == null ) return; // stopped
+				}
+				
+				output.write(buf.array(), 0, buf.remaining());
+				output.flush();
+				
+				synchronized(out_lock) {
+					// it may have been cleared (and the count reset) meanwhile
+					if( pending_writes.peek() == buf ) {
+						pending_writes.poll();
+						
+						unsent -= buf.remaining();
+					}
+					
+					out_lock.notifyAll(); // see stopRunning
+				}
+			}
+		}
+		catch (final InterruptedException ie) {
+			// done
+		}
+		catch (final IOException ioe) {
+			synchronized(out_lock) {
+				pending_writes.clear();
+				unsent = 0;
+			}
+			
+			if( running ) {
+				ioe.printStackTrace();
+				
+				stopRunning();
+			}
+		}
+	}
+	
+	/**
+	 * Compress the first len bytes of the output buffer into z_buf (growing
+	 * it as needed), ending with a sync flush or, if finish is true, the end
+	 * of the compressed stream.
+	 * 
+	 * @param len
+	 * @param finish
+	 * @return the number of compressed bytes
+	 */
+	private int deflate(final int len, final boolean finish) {
+		final long start = System.nanoTime();
+		
+		deflater.setInput(out_buf, 0, len);
+		
+		if( finish ) deflater.finish();
+		
+		int n = 0;
+		
+		while( true ) {
+			if( n == z_buf.length ) z_buf = Arrays.copyOf(z_buf, 2 * z_buf.length);
+			
+			n += deflater.deflate(z_buf, n, z_buf.length - n, Deflater.SYNC_FLUSH);
+			
+			// a full buffer means there may be more to come
+			if( finish ? deflater.finished() : n < z_buf.length ) break;
+		}
+		
+		this.raw_bytes += len;
+		this.compressed_bytes += n;
+		this.compress_time += System.nanoTime() - start;
+		
+		return n;
+	}
+	
+	/**
+	 * Start compressing output (MCCP2). Anything already written goes out
+	 * uncompressed, followed by IAC SB MCCP2 IAC SE, and everything after
+	 * that is compressed (zlib stream).
+	 * 
+	 * NOTE: only call this once the client has agreed to it (IAC DO MCCP2)
+	 * 
+	 * @return false if output was already being compressed
+	 */
+	public boolean startCompression() {
+		synchronized(out_lock) {
+			if( deflater != null ) return false;
+			
+			queueOutput();
+			
+			send(new byte[] { Telnet.IAC, Telnet.SB, Telnet.MCCP2, Telnet.IAC, Telnet.SE }, 5);
+			
+			this.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+			this.z_buf = new byte[BUF_SIZE];
+		}
+		
+		drain();
+		
+		return true;
+	}
+	
+	/**
+	 * Stop compressing output, ending the compressed stream so that the
+	 * client goes back to reading uncompressed data.
+	 */
+	public void stopCompression() {
+		synchronized(out_lock) {
+			if( deflater == null ) return;
+			
+			final int len = deflate(out_len, true);
+			final byte[] data = Arrays.copyOf(z_buf, len);
+			
+			out_len = 0;
+			
+			deflater.end();
+			
+			this.deflater = null;
+			this.z_buf = null;
+			
+			send(data, len);
+		}
+		
+		drain();
+	}
+	
+	public boolean isCompressing() {
+		return this.deflater != null;
+	}
+	
+	/**
+	 * Get the number of bytes of output that have been compressed.
+	 * 
+	 * @return
+	 */
+	public long getRawBytes() {
+		return this.raw_bytes;
+	}
+	
+	/**
+	 * Get the number of bytes the compressed output came to.
+	 * 
+	 * @return
+	 */
+	public long getCompressedBytes() {
+		return this.compressed_bytes;
+	}
+	
+	/**
+	 * Get the time spent compressing output.
+	 * 
+	 * @return time (ns)
+	 */
+	public long getCompressionTime() {
+		return this.compress_time;
+	}
+	
+	/**
+	 * Write out pending data (non-blocking channels only), gathering all the
+	 * queued buffers into a single write. Write interest is registered with
+	 * the selector if anything is left over.
+	 * 
+	 * @return true if there is no more pending data
+	 */
+	boolean flush() {
+		synchronized(out_lock) {
+			try {
+				if( !pending_writes.isEmpty() ) {
+					unsent -= channel.write( pending_writes.toArray(new ByteBuffer[0]) );
+					
+					while( !pending_writes.isEmpty() && !pending_writes.peek().hasRemaining() ) {
+						pending_writes.poll();
+					}
+				}
+			}
+			catch (final IOException ioe) {
+				pending_writes.clear();
+				unsent = 0;
+				stopRunning();
+			}
+			
+			final boolean done = pending_writes.isEmpty();
+			
+			// the key can be cancelled (client closed) between the check and
+			// using it, so that has to be caught as well
+			if( key != null && key.isValid() ) {
+				try {
+					final int ops = key.interestOps();
+					
+					if( done ) key.interestOps(ops & ~SelectionKey.OP_WRITE);
+					else {
+						key.interestOps(ops | SelectionKey.OP_WRITE);
+						key.selector().wakeup();
+					}
+				}
+				catch (final CancelledKeyException cke) {
+					stopRunning();
+				}
+			}
+			
+			return done;
+		}
+	}
+	
+	/**
+	 * Attach the selection key this client's channel was registered with.
+	 * 
+	 * @param key
+	 */
+	void setKey(final SelectionKey key) {
+		synchronized(out_lock) {
+			this.key = key;
+		}
+		
+		flush();
+	}
+	
+	/**
+	 * Is there more output waiting on this client than the high-water
+	 * mark? If so, the client isn't keeping up and we ought not to be
+	 * giving it more to read (i.e. running it's commands) until it does.
+	 * 
+	 * @return
+	 */
+	public boolean isBackedUp() {
+		synchronized(out_lock) {
+			return unsent + out_len > high_water_mark;
+		}
+	}
+	
+	public void setHighWaterMark(final int bytes) {
+		this.high_water_mark = bytes;
+	}
+	
+	public int getHighWaterMark() {
+		return this.high_water_mark;
+	}
+	
+	/**
+	 * Get the number of bytes of output discarded because the client wasn't
+	 * reading it (see append).
+	 * 
+	 * @return
+	 */
+	public long getDroppedBytes() {
+		synchronized(out_lock) {
+			return this.dropped;
+		}
+	}
+	
+	/**
+	 * Get the number of bytes of output discarded because the client wasn't
+	 * reading it, for every client (including ones that are gone).
+	 * 
+	 * @return
+	 */
+	public static long getTotalDroppedBytes() {
+		return total_dropped.get();
+	}
+	
+	/**
+	 * Get the number of bytes of output waiting to be written.
+	 * 
+	 * @return
+	 */
+	public long getUnsentBytes() {
+		synchronized(out_lock) {
+			return this.unsent + this.out_len;
+		}
+	}
+	
+	SocketChannel getChannel() {
+		return this.channel;
 	}
 
 	public void setDebug(boolean state) {
@@ -0,0 +1,273 @@
+package mud.net;
+
+/*
+ * Copyright (c) 2012 Jeremy N. Harton
+ * 
+ * Released under the MIT License:
+ * LICENSE.txt, http://opensource.org/licenses/MIT
+ * 
+ * NOTE: license provided with code controls, if any
+ * changes are made to the one referred to.
+ */
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import mud.interfaces.MUDServerI;
+
+/**
+ * A non-blocking alternative to Server. Rather than having a thread per
+ * client that polls for input, accepted connections are handed out (round
+ * robin) to a small, fixed number of i/o threads each of which waits on it's
+ * own Selector and feeds whatever it reads to the Client.
+ * 
+ * Clients created here behave the same as far as the rest of the server is
+ * concerned (getInput(), write(...), getTelnetMessage(), etc).
+ * 
+ * @author Jeremy
+ *
+ */
+public class NIOServer extends Server {
+	public static final int DEFAULT_IO_THREADS = 2;
+	
+	private ServerSocketChannel server;
+	private Selector selector;
+	
+	private final IOThread[] workers;
+	private int next = 0;
+	
+	public NIOServer(final MUDServerI p, final int port) {
+		this(p, port, DEFAULT_IO_THREADS);
+	}
+	
+	public NIOServer(final MUDServerI p, final int port, final int numThreads) {
+		super(p, port);
+		
+		this.workers = new IOThread[ Math.max(1, numThreads) ];
+	}
+	
+	@Override
+	public boolean init() {
+		boolean success = true;
+		
+		try {
+			this.selector = Selector.open();
+			
+			this.server = ServerSocketChannel.open();
+			this.server.configureBlocking(false);
+			this.server.socket().bind( new InetSocketAddress(port) );
+			this.server.register(selector, SelectionKey.OP_ACCEPT);
+			
+			for(int n = 0; n < workers.length; n++) {
+				workers[n] = new IOThread();
+				
+				new Thread(workers[n], "io-" + n).start();
+			}
+		}
+		catch (final IOException ioe) {
+			success = false;
+			
+			System.out.println("could not open server socket channel");
+			System.out.println("--- Stack Trace ---");
+			ioe.printStackTrace();
+		}
+		
+		return success;
+	}
+	
+	@Override
+	public void run() {
+		try {
+			if( init() ) {
+				this.running = true;
+			}
+			
+			while (this.running) {
+				selector.select();
+				
+				final Iterator<SelectionKey> iter = selector.selectedKeys().iterator();
+				
+				while( iter.hasNext() ) {
+					final SelectionKey key = iter.next();
+					
+					iter.remove();
+					
+					if( key.isValid() && key.isAcceptable() ) {
+						accept();
+					}
+				}
+			}
+		}
+		catch (final IOException ioe) {
+			System.out.println("--- Stack Trace ---");
+			ioe.printStackTrace();
+		}
+		finally {
+			this.running = false;
+			
+			for (final Client c : clients) c.stopRunning();
+			
+			for (final IOThread w : workers) {
+				if( w != null ) w.stopRunning();
+			}
+			
+			try {
+				if( server != null )   server.close();
+				if( selector != null ) selector.close();
+			}
+			catch (final IOException ioe) {
+				ioe.printStackTrace();
+			}
+		}
+	}
+	
+	@Override
+	public void stopRunning() {
+		super.stopRunning();
+		
+		if( selector != null ) selector.wakeup();
+	}
+	
+	private void accept() throws IOException {
+		final SocketChannel channel = server.accept();
+		
+		// spurious wakeup, no pending connection
+		if( channel == null ) return;
+		
+		System.out.println("Accepted client channel.");
+		
+		final Client client = new Client(channel);
+		
+		client.setReadyQueue(ready);
+		
+		// hand the client off to the next i/o thread
+		workers[next].register(client);
+		
+		next = (next + 1) % workers.length;
+		
+		this.clients.add(client);
+		
+		parent.clientConnected(client);
+	}
+	
+	/**
+	 * An i/o thread. Reads from any channel with data available and writes
+	 * out pending data for any channel which has become writable.
+	 */
+	private class IOThread implements Runnable {
+		private final Selector selector;
+		private final Queue<Client> registrations;
+		
+		private final ByteBuffer readBuffer;
+		
+		private volatile boolean running;
+		
+		public IOThread() throws IOException {
+			this.selector = Selector.open();
+			this.registrations = new ConcurrentLinkedQueue<Client>();
+			
+			this.readBuffer = ByteBuffer.allocateDirect(Client.BUF_SIZE);
+			
+			this.running = true;
+		}
+		
+		/**
+		 * Register the client with this thread, the actual registration
+		 * is done from this thread so that we don't block on select().
+		 * 
+		 * @param client
+		 */
+		public void register(final Client client) {
+			this.registrations.add(client);
+			this.selector.wakeup();
+		}
+		
+		public void stopRunning() {
+			this.running = false;
+			this.selector.wakeup();
+		}
+		
+		public void run() {
+			try {
+				while( running ) {
+					selector.select();
+					
+					Client client;
+					
+					while( (client = registrations.poll()) != null ) {
+						try {
+							final SelectionKey key = client.getChannel().register(selector, SelectionKey.OP_READ, client);
+							
+							client.setKey(key);
+						}
+						catch (final ClosedChannelException | CancelledKeyException e) {
+							client.stopRunning();
+						}
+					}
+					
+					final Iterator<SelectionKey> iter = selector.selectedKeys().iterator();
+					
+					while( iter.hasNext() ) {
+						final SelectionKey key = iter.next();
+						
+						iter.remove();
+						
+						client = (Client) key.attachment();
+						
+						// the key may be cancelled at any point by another thread
+						// closing the client, so check it before each operation
+						try {
+							if( key.isValid() && key.isReadable() ) read(client);
+							
+							if( key.isValid() && key.isWritable() ) client.flush();
+						}
+						catch (final CancelledKeyException cke) {
+							client.stopRunning();
+						}
+					}
+				}
+			}
+			catch (final IOException ioe) {
+				System.out.println("--- Stack Trace ---");
+				ioe.printStackTrace();
+			}
+			finally {
+				try { selector.close(); }
+				catch (final IOException ioe) { ioe.printStackTrace(); }
+			}
+		}
+		
+		private void read(final Client client) {
+			int numRead;
+			
+			try {
+				readBuffer.clear();
+				
+				numRead = client.getChannel().read(readBuffer);
+			}
+			catch (final IOException ioe) {
+				numRead = -1;
+			}
+			
+			// end of stream, the other end closed the connection
+			if( numRead == -1 ) {
+				client.stopRunning();
+				return;
+			}
+			
+			readBuffer.flip();
+			
+			client.receive(readBuffer);
+		}
+	}
+}
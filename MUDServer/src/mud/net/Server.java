@@ -19,24 +19,31 @@ import java.util.List;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.Vector;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import mud.interfaces.MUDServerI;
 
 public class Server implements Runnable {
-	final private MUDServerI parent;
+	final protected MUDServerI parent;
 
 	private ServerSocket server;
-	private Integer port;
+	protected Integer port;
 
-	final private Vector<Client> clients;
+	final protected Vector<Client> clients;
+	
+	final protected BlockingQueue<Client> ready; // clients with input waiting
 
-	private boolean running;
+	protected volatile boolean running;
 
 	public Server(final MUDServerI p, final int port) {
 		this.parent = p;
 		this.port = port;
 
 		this.clients = new Vector<Client>();
+		
+		this.ready = new LinkedBlockingQueue<Client>();
 
 		this.running = false;
 	}
@@ -73,6 +80,8 @@ public class Server implements Runnable {
 
 				final Client client = new Client(socket);
 				
+				client.setReadyQueue(ready);
+				
 				new Thread(client).start();
 
 				this.clients.add(client);
@@ -107,6 +116,34 @@ public class Server implements Runnable {
 		return new ArrayList<Client>(this.clients);
 	}
 
+	/**
+	 * Wait for a client to have input ready for us.
+	 * 
+	 * @param timeout maximum time to wait (in milliseconds)
+	 * @return a client with input waiting, or null if the timeout passed first
+	 * @throws InterruptedException
+	 */
+	public Client getReadyClient(final long timeout) throws InterruptedException {
+		final Client client = this.ready.poll(timeout, TimeUnit.MILLISECONDS);
+		
+		if( client != null ) client.clearReady();
+		
+		return client;
+	}
+	
+	/**
+	 * Get a client with input ready for us, if there is one.
+	 * 
+	 * @return a client with input waiting, or null if there are none
+	 */
+	public Client getReadyClient() {
+		final Client client = this.ready.poll();
+		
+		if( client != null ) client.clearReady();
+		
+		return client;
+	}
+
 	public void disconnect(final Client client) {
 		client.stopRunning();
 		this.clients.remove(client);
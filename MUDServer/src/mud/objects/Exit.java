@@ -107,9 +107,11 @@ public class Exit extends MUDObject
 	public void setDestination(final Room newDestination) {
 		if( newDestination != null ) destination = newDestination.getDBRef();
 		else                         destination = -1;
+		changed();
 	}
 	public void setDestination(int newDestination) {
 		this.destination = newDestination;
+		changed();
 	}
 
 	public int getDestination()
@@ -119,6 +121,7 @@ public class Exit extends MUDObject
 	
 	public void addAlias(final String alias) {
 		this.aliases.add(alias);
+		changed();
 	}
 	
 	public ArrayList<String> getAliases() {
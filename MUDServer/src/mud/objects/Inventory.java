@@ -0,0 +1,378 @@
+package mud.objects;
+
+/*
+ * Copyright (c) 2015 Jeremy N. Harton
+ *
+ * Released under the MIT License:
+ * LICENSE.txt, http://opensource.org/licenses/MIT
+ *
+ * NOTE: license provided with code controls, if any
+ * changes are made to the one referred to.
+ */
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import mud.objects.items.Container;
+
+/**
+ * A list of items (a player's inventory, a container's contents) that keeps
+ * running totals of what's in it -- weight, number of items and number of
+ * items of each ItemType -- so that they don't have to be worked out by
+ * walking the list (and every container in it) each time they're wanted.
+ *
+ * The totals include the contents of any containers in the list. A
+ * container's contents are an Inventory too, and pass any change in their
+ * totals on to the Inventory the container is in (and so on, up the chain).
+ *
+ * Every change to the list goes through add(int, Item), set(int, Item) or
+ * remove(int) (AbstractList builds add, remove, clear, removeIf, etc on
+ * them), so the totals are kept up to date even when the list is changed
+ * directly. The weight of each item is recorded when it's added; if it
+ * changes after that (e.g. something was stacked on it) call update(item).
+ *
+ * check() compares the totals to a full walk of the items, rebuild() works
+ * them out again from scratch.
+ *
+ * @author Jeremy
+ *
+ */
+public class Inventory extends AbstractList<Item> {
+	private static final double EPSILON = 0.000001;
+
+	private final List<Item> items;
+	private final List<Double> weights; // weight of each item when added/updated, not counting container contents
+
+	private final Map<ItemType, Integer> counts = new HashMap<ItemType, Integer>(); // number of items, by type
+
+	private double weight = 0.0; // total weight
+	private int count = 0;       // total number of items
+
+	private Inventory parent = null; // the inventory the container holding this one is in (if any)
+
+	public Inventory() {
+		this(10);
+	}
+
+	public Inventory(final int capacity) {
+		this.items = new ArrayList<Item>(capacity);
+		this.weights = new ArrayList<Double>(capacity);
+	}
+
+	@Override
+	public Item get(final int index) {
+		return this.items.get(index);
+	}
+
+	@Override
+	public int size() {
+		return this.items.size();
+	}
+
+	@Override
+	public void add(final int index, final Item item) {
+		final double w = weigh(item);
+
+		this.items.add(index, item);
+		this.weights.add(index, w);
+
+		this.modCount++;
+
+		attach(item, w);
+	}
+
+	@Override
+	public Item set(final int index, final Item item) {
+		final double w = weigh(item);
+
+		final Item old = this.items.set(index, item);
+		final double oldWeight = this.weights.set(index, w);
+
+		detach(old, oldWeight);
+		attach(item, w);
+
+		return old;
+	}
+
+	@Override
+	public Item remove(final int index) {
+		final Item item = this.items.remove(index);
+		final double w = this.weights.remove(index);
+
+		this.modCount++;
+
+		detach(item, w);
+
+		return item;
+	}
+
+	/**
+	 * Account for a change in the weight of an item in the list (since it
+	 * was added, or last updated).
+	 *
+	 * @param item
+	 */
+	public void update(final Item item) {
+		for (int i = 0; i < this.items.size(); i++) {
+			if( this.items.get(i) == item ) {
+				final double w = weigh(item);
+
+				adjust(w - this.weights.set(i, w), 0, null, 0);
+
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Get the total weight of the items, including the contents of any
+	 * containers.
+	 *
+	 * @return weight (lbs)
+	 */
+	public double getWeight() {
+		return this.weight;
+	}
+
+	/**
+	 * Get the total number of items, including the contents of any
+	 * containers.
+	 *
+	 * @return
+	 */
+	public int getItemCount() {
+		return this.count;
+	}
+
+	/**
+	 * Get the total number of items of the specified type, including the
+	 * contents of any containers.
+	 *
+	 * @param type
+	 * @return
+	 */
+	public int getItemCount(final ItemType type) {
+		final Integer n = this.counts.get(type);
+
+		return (n != null) ? n : 0;
+	}
+
+	/**
+	 * Compare the totals to what walking the items (and the contents of any
+	 * containers) says they ought to be.
+	 *
+	 * @param name what this is the inventory of (for messages)
+	 * @return a description of each problem found (empty if there are none)
+	 */
+	public List<String> check(final String name) {
+		final List<String> problems = new LinkedList<String>();
+
+		final Totals actual = new Totals();
+
+		for (final Item item : this.items) {
+			actual.add(item, this);
+
+			if( item instanceof Container ) {
+				final Inventory contents = ((Container) item).getInventory();
+
+				if( contents.parent == this ) problems.addAll( contents.check(name + " > " + item.getName()) );
+				else problems.add(name + ": " + item.getName() + " (#" + item.getDBRef() + ") isn't linked to the inventory it's in");
+			}
+		}
+
+		if( Math.abs(actual.weight - this.weight) > EPSILON ) {
+			problems.add(name + ": weight is " + this.weight + ", should be " + actual.weight);
+		}
+
+		if( actual.count != this.count ) {
+			problems.add(name + ": item count is " + this.count + ", should be " + actual.count);
+		}
+
+		if( !actual.counts.equals(this.counts) ) {
+			problems.add(name + ": item type counts are " + this.counts + ", should be " + actual.counts);
+		}
+
+		return problems;
+	}
+
+	/**
+	 * Work the totals out again from scratch, for this inventory and the
+	 * ones it's (somewhere) inside of and holds.
+	 */
+	public void rebuild() {
+		Inventory root = this;
+
+		while( root.parent != null ) root = root.parent;
+
+		root.recount();
+	}
+
+	private void recount() {
+		final Totals actual = new Totals();
+
+		for (int i = 0; i < this.items.size(); i++) {
+			final Item item = this.items.get(i);
+
+			if( item instanceof Container ) {
+				final Inventory contents = ((Container) item).getInventory();
+
+				if( contents.parent == null && !isInside(contents) ) contents.parent = this;
+
+				if( contents.parent == this ) contents.recount();
+			}
+
+			this.weights.set(i, weigh(item));
+
+			actual.add(item, this);
+		}
+
+		this.weight = actual.weight;
+		this.count = actual.count;
+
+		this.counts.clear();
+		this.counts.putAll(actual.counts);
+	}
+
+	private void attach(final Item item, final double w) {
+		if( item == null ) return;
+
+		adjust(w, 1, type(item), 1);
+
+		if( item instanceof Container ) {
+			final Inventory contents = ((Container) item).getInventory();
+
+			if( !isInside(contents) ) link(contents, this);
+		}
+	}
+
+	private void detach(final Item item, final double w) {
+		if( item == null ) return;
+
+		adjust(-w, -1, type(item), -1);
+
+		if( item instanceof Container ) {
+			final Inventory contents = ((Container) item).getInventory();
+
+			if( contents.parent == this ) link(contents, null);
+		}
+	}
+
+	/**
+	 * Make a container's contents part of the specified inventory's totals,
+	 * taking them out of the totals of the one they were part of (if any).
+	 *
+	 * @param contents
+	 * @param parent   the inventory the container is in (null if none)
+	 */
+	private static void link(final Inventory contents, final Inventory parent) {
+		if( contents.parent != null ) contents.parent.adjust(contents, -1);
+
+		contents.parent = parent;
+
+		if( parent != null ) parent.adjust(contents, 1);
+	}
+
+	private void adjust(final Inventory contents, final int sign) {
+		adjust(sign * contents.weight, sign * contents.count, null, 0);
+
+		for (final Map.Entry<ItemType, Integer> e : contents.counts.entrySet()) {
+			adjust(0, 0, e.getKey(), sign * e.getValue());
+		}
+	}
+
+	/**
+	 * Change the totals, here and in every inventory up the chain.
+	 *
+	 * @param dw   change in weight
+	 * @param dn   change in number of items
+	 * @param type type to change the count of (null for none)
+	 * @param dt   change in the count of that type
+	 */
+	private void adjust(final double dw, final int dn, final ItemType type, final int dt) {
+		for (Inventory inv = this; inv != null; inv = inv.parent) {
+			inv.weight += dw;
+			inv.count += dn;
+
+			if( dt != 0 ) {
+				final Integer n = inv.counts.get(type);
+				final int m = ((n != null) ? n : 0) + dt;
+
+				if( m != 0 ) inv.counts.put(type, m);
+				else         inv.counts.remove(type);
+			}
+		}
+	}
+
+	/**
+	 * Is the specified inventory this one or one that this is (somewhere)
+	 * inside of? A container mustn't be linked into itself, or the totals
+	 * would be passed around in circles.
+	 *
+	 * @param inv
+	 * @return
+	 */
+	private boolean isInside(final Inventory inv) {
+		for (Inventory i = this; i != null; i = i.parent) {
+			if( i == inv ) return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Get the weight of an item, not counting what's in it (that's counted
+	 * through the container's own inventory).
+	 *
+	 * @param item
+	 * @return
+	 */
+	private static double weigh(final Item item) {
+		if( item == null ) return 0.0;
+
+		if( item instanceof Container ) return ((Container) item).getEmptyWeight();
+
+		return item.getWeight();
+	}
+
+	private static ItemType type(final Item item) {
+		return (item != null) ? item.getItemType() : null;
+	}
+
+	/**
+	 * The totals for a set of items, worked out the long way. The contents
+	 * of a container are only counted if they're linked to the inventory
+	 * it's in (see link), the same as the running totals.
+	 */
+	private static final class Totals {
+		private double weight = 0.0;
+		private int count = 0;
+		private final Map<ItemType, Integer> counts = new HashMap<ItemType, Integer>();
+
+		private void add(final Item item, final Inventory inv) {
+			if( item == null ) return;
+
+			this.weight += weigh(item);
+			this.count++;
+
+			count(item.getItemType());
+
+			if( item instanceof Container ) {
+				final Inventory contents = ((Container) item).getInventory();
+
+				if( contents.parent == inv ) {
+					for (final Item item1 : contents.items) add(item1, contents);
+				}
+			}
+		}
+
+		private void count(final ItemType type) {
+			final Integer c = this.counts.get(type);
+
+			this.counts.put(type, ((c != null) ? c : 0) + 1);
+		}
+	}
+}
@@ -137,6 +137,7 @@ public class Item extends MUDObject {
 	
 	public void setItemType(ItemType newType) {
 		this.item_type = newType;
+		changed();
 	}
 	
 	public ItemType getItemType() {
@@ -145,6 +146,7 @@ public class Item extends MUDObject {
 	
 	public void setSlotType(final SlotType newType) {
 		this.slot_type = newType;
+		changed();
 	}
 	
 	public SlotType getSlotType() {
@@ -158,7 +158,7 @@ public class Player extends MUDObject implements Mobile
 	protected Coins money;                              // Money (D&D, MUD)
 	public transient Map<Currency, Integer> money2;     //
 	
-	protected transient List<Item> inventory;           // Player Inventory (D&D, MUD, MU)
+	protected transient Inventory inventory;            // Player Inventory (D&D, MUD, MU)
 	protected transient Map<String, Slot> slots;        // the player's equipped gear
 	
 	/* Professions */
@@ -331,7 +331,7 @@ public class Player extends MUDObject implements Mobile
 		this.skills = new LinkedHashMap<Skill, Integer>();
 		
 		this.money = _MONEY;
-		this.inventory = new ArrayList<Item>(50);
+		this.inventory = new Inventory(50);
 
 		// instantiate quest list
 		this.quests = new ArrayList<Quest>();
@@ -439,7 +439,7 @@ public class Player extends MUDObject implements Mobile
 		this.skills = new LinkedHashMap<Skill, Integer>(36, 0.75f);
 		
 		this.money = tempMoney;
-		this.inventory = new ArrayList<Item>(50);
+		this.inventory = new Inventory(50);
 		
 		// instantiate quest list
 		this.quests = new ArrayList<Quest>();
@@ -490,6 +490,7 @@ public class Player extends MUDObject implements Mobile
 		addConfigOption("notify_newmail", false);       // notify the player on receipt of new mail? (default: false)
 		addConfigOption("silly_messages", false);       // enable sillier/more humorous error messages where used (default: false)
 		addConfigOption("server_echo", false);          // do we want the server to echo command if that option is enabled (default: false)
+		addConfigOption("compress", true);              // compress output (MCCP2) if the client supports it (default: true)
 	}
 
 	public void setClient(final Client c) {
@@ -516,6 +517,7 @@ public class Player extends MUDObject implements Mobile
 	 */
 	public void setAccess(final int newAccessLevel) {
 		this.access = newAccessLevel;
+		changed();
 	}
 
 	public void addName(final String tName) {
@@ -632,6 +634,7 @@ public class Player extends MUDObject implements Mobile
 	 */
 	public void setPass(final String newPass) {
 		this.pass = Utils.hash(newPass);
+		changed();
 	}
 	
 	// TODO idling
@@ -670,6 +673,7 @@ public class Player extends MUDObject implements Mobile
 	// set the player's status
 	public void setStatus(final String arg) {
 		this.status = arg;
+		changed();
 	}
 
 	public Status getPStatus() {
@@ -704,6 +708,7 @@ public class Player extends MUDObject implements Mobile
 	// and calculate that, then decide if the player can hold it
 	public void setMoney(final Coins c) {
 		this.money = c;
+		changed();
 		//this.money = this.money.add(c);
 		
 		/*if( c.isMoreOrEqual(Coins.copper(0)) ) {
@@ -830,6 +835,7 @@ public class Player extends MUDObject implements Mobile
 
 	public void setAbility(final Ability ability, final int abilityValue) {
 		this.stats.put(ability, abilityValue);
+		changed();
 	}
 
 	public int getAbilityMod(final Ability ability) {
@@ -862,7 +868,7 @@ public class Player extends MUDObject implements Mobile
 		this.skillMod[skill.getId()] = skillMod;
 	}
 
-	public List<Item> getInventory() {
+	public Inventory getInventory() {
 		return this.inventory;
 	}
 
@@ -8,6 +8,7 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import mud.ObjectFlag;
 import mud.MUDObject;
@@ -57,6 +58,8 @@ public class Room extends MUDObject implements EventSource, Instance
 	private transient Zone zone = null;                     // the zone this room belongs to
 	
 	private transient List<Exit> exits;                     // the exits leading away from the room
+	
+	private transient volatile int contents = 0;            // incremented when the things/items here change (see contentsChanged)
 	private transient String exitNames;                     // formatted string containing the usable exit names
 	
 	private transient List<Thing> things;                   // the objects the room contains (things)
@@ -72,7 +75,7 @@ public class Room extends MUDObject implements EventSource, Instance
 	
 	public transient char[] tiles;
 	
-	private transient List<Player> listeners;               // Player(s) in the Room listening to what is being said
+	private transient List<Player> listeners;               // Player(s) in the Room listening to what is being said (copy-on-write, players may move in/out while it is being read)
 	private transient List<SayEventListener> _listeners;    // Other things listening to say events? 
 
 	private transient Map<TriggerType, List<Trigger>> triggers; //
@@ -108,7 +111,7 @@ public class Room extends MUDObject implements EventSource, Instance
 		this.items = new ArrayList<Item>();
 		this.things = new ArrayList<Thing>();
 		
-		this.listeners = new ArrayList<Player>();
+		this.listeners = new CopyOnWriteArrayList<Player>();
 		this._listeners = new ArrayList<SayEventListener>();
 		
 		this.triggers = new HashMap<TriggerType, List<Trigger>>();
@@ -141,7 +144,7 @@ public class Room extends MUDObject implements EventSource, Instance
 		this.items = new ArrayList<Item>();
 		this.things = new ArrayList<Thing>();
 		
-		this.listeners = new ArrayList<Player>();
+		this.listeners = new CopyOnWriteArrayList<Player>();
 		this._listeners = new ArrayList<SayEventListener>();
 		
 		this.triggers = new HashMap<TriggerType, List<Trigger>>();
@@ -178,7 +181,7 @@ public class Room extends MUDObject implements EventSource, Instance
 		this.items = new ArrayList<Item>();
 		this.things = new ArrayList<Thing>();
 		
-		this.listeners = new ArrayList<Player>();
+		this.listeners = new CopyOnWriteArrayList<Player>();
 		this._listeners = new ArrayList<SayEventListener>();
 		
 		this.triggers = new HashMap<TriggerType, List<Trigger>>();
@@ -211,6 +214,7 @@ public class Room extends MUDObject implements EventSource, Instance
 	 */
 	public void setRoomType(final RoomType newRoomType) {
 		this.roomType = newRoomType;
+		changed();
 	}
 
 	/**
@@ -322,6 +326,7 @@ public class Room extends MUDObject implements EventSource, Instance
 		if( dim.equalsIgnoreCase("x") )      this.y = size;
 		else if( dim.equalsIgnoreCase("y") ) this.y = size;
 		else if( dim.equalsIgnoreCase("z") ) this.z = size;
+		changed();
 	}
 	
 	public int getDimension(final String dim) {
@@ -335,6 +340,7 @@ public class Room extends MUDObject implements EventSource, Instance
 		this.x = xSize;
 		this.y = ySize;
 		this.z = zSize;
+		changed();
 	}
 
 	public List<Player> getListeners() {
@@ -365,6 +371,7 @@ public class Room extends MUDObject implements EventSource, Instance
 	 */
 	public void addItem(final Item item) {
 		this.items.add(item);
+		contentsChanged();
 	}
 	
 	/**
@@ -374,6 +381,7 @@ public class Room extends MUDObject implements EventSource, Instance
 	 */
 	public void addItems(final List<Item> items) {
 		this.items.addAll(items);
+		contentsChanged();
 	}
 	
 	/**
@@ -382,10 +390,12 @@ public class Room extends MUDObject implements EventSource, Instance
 	 */
 	public void removeItem(final Item item) {
 		this.items.remove(item);
+		contentsChanged();
 	}
 	
 	public void removeItems(final List<Item> items) {
 		this.items.removeAll(items);
+		contentsChanged();
 	}
 	
 	/**
@@ -404,6 +414,7 @@ public class Room extends MUDObject implements EventSource, Instance
 	 */
 	public void addThing(final Thing thing) {
 		this.things.add(thing);
+		contentsChanged();
 	}
 	
 	/**
@@ -413,6 +424,7 @@ public class Room extends MUDObject implements EventSource, Instance
 	 */
 	public void addThings(final List<Thing> things) {
 		this.things.addAll( things );
+		contentsChanged();
 	}
 	
 	/**
@@ -422,16 +434,36 @@ public class Room extends MUDObject implements EventSource, Instance
 	 */
 	public void removeThing(final Thing thing) {
 		this.things.remove(thing);
+		contentsChanged();
 	}
 	
 	public void removeThings(final List<Thing> things) {
 		this.things.removeAll( things );
+		contentsChanged();
 	}
 
 	public List<Thing> getThings() {
 		return this.things;
 	}
 	
+	/**
+	 * Indicate that the things/items in the room, or something about one of
+	 * them, have changed.
+	 */
+	public void contentsChanged() {
+		this.contents++;
+	}
+	
+	/**
+	 * Get the version of the room's contents, which goes up every time the
+	 * things/items in the room change (see contentsChanged).
+	 * 
+	 * @return
+	 */
+	public int getContentsVersion() {
+		return this.contents;
+	}
+	
 	/* Triggers & Scripting */
 	public void setTrigger(TriggerType type, Trigger trigger) {
 		this.triggers.get(type).add(trigger);
@@ -451,6 +483,7 @@ public class Room extends MUDObject implements EventSource, Instance
 
 	public void setZone(final Zone zone) {
 		this.zone = zone;
+		changed();
 	}
 
 	public Zone getZone() {
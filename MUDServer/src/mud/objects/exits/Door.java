@@ -60,6 +60,7 @@ public class Door extends Exit implements Lockable<Item> {
 	@Override
 	public boolean lock() {
 		this.isLocked = true;
+		changed();
 		return true;
 	}
 	
@@ -76,6 +77,7 @@ public class Door extends Exit implements Lockable<Item> {
 	@Override
 	public boolean unlock() {
 		this.isLocked = false;
+		changed();
 		return true;
 	}
 	
@@ -103,6 +105,7 @@ public class Door extends Exit implements Lockable<Item> {
 			this.requiresKey = false;
 			this.key = null;
 		}
+		changed();
 	}
 
 	@Override
@@ -154,6 +154,8 @@ public class Portal extends Exit implements EventSource, SayEventListener {
 				this.destinations = null;                      // clear the destinaton array list
 			}
 		}
+		
+		changed();
 	}
 	
 	/**
@@ -206,6 +208,8 @@ public class Portal extends Exit implements EventSource, SayEventListener {
 		else {
 			destinations.add(newDestination);
 		}
+		
+		changed();
 	}
 	
 	/**
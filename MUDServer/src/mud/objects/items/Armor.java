@@ -126,6 +126,7 @@ public class Armor extends Item {
 	
 	public void setMod(int newMod) {
 		this.mod = newMod;
+		changed();
 	}
 	
 	@Override
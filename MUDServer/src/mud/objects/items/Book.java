@@ -87,6 +87,7 @@ public class Book extends Item implements Editable {
 	
 	public void setTitle(final String newTitle) {
 		this.title = newTitle;
+		changed();
 	}
 	
 	public String getAuthor() {
@@ -95,6 +96,7 @@ public class Book extends Item implements Editable {
 	
 	public void setAuthor(final String newAuthor) {
 		this.author = newAuthor;
+		changed();
 	}
 	
 	public Integer getPageNum() {
@@ -131,11 +133,13 @@ public class Book extends Item implements Editable {
 				this.pages.set(newPageNum, list);
 			}
 			else this.pages.add(list);
+			changed();
 		}
 	}
 	
 	public void addPage(final List<String> list) {
 		this.pages.add(list);
+		changed();
 	}
 	
 	/* Navigation */
@@ -1,6 +1,5 @@
 package mud.objects.items;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
@@ -8,6 +7,7 @@ import java.util.List;
 import mud.ObjectFlag;
 import mud.TypeFlag;
 import mud.interfaces.Storage;
+import mud.objects.Inventory;
 import mud.objects.Item;
 import mud.objects.ItemTypes;
 import mud.utils.Utils;
@@ -21,7 +21,7 @@ public class Container extends Item implements Storage<Item> {
 	public static final int DEFAULT_SIZE = 5;
 	
 	private int size;
-	private List<Item> contents;
+	private Inventory contents;
 	
 	//protected Map<String, Slot> slots = null; // handles objects which hold specific things, like sheaths for swords
 
@@ -34,7 +34,7 @@ public class Container extends Item implements Storage<Item> {
 		
 		this.size = Container.DEFAULT_SIZE;
 		
-		this.contents = new ArrayList<Item>(this.size);
+		this.contents = new Inventory(this.size);
 	}
 
 	public Container(final String name) {
@@ -54,7 +54,7 @@ public class Container extends Item implements Storage<Item> {
 
 		this.size = size;
 
-		this.contents = new ArrayList<Item>(this.size);
+		this.contents = new Inventory(this.size);
 	}
 	
 	// TODO does not copy contents, should it?
@@ -65,7 +65,7 @@ public class Container extends Item implements Storage<Item> {
 		
 		this.size = template.size;
 		
-		this.contents = new ArrayList<Item>(this.size);
+		this.contents = new Inventory(this.size);
 		
 		this.displayWidth = template.displayWidth;
 	}
@@ -78,20 +78,21 @@ public class Container extends Item implements Storage<Item> {
 		
 		this.size = size;
 		
-		this.contents = new ArrayList<Item>(this.size);
+		this.contents = new Inventory(this.size);
 	}
 	
 	@Override
 	public Double getWeight() {
-		final Double containerWeight = super.getWeight();
-		
-		Double temp = 0.0;
-		
-		for(final Item item : this.contents) {
-			temp += item.getWeight();
-		}
-		
-		return (containerWeight + temp);
+		return getEmptyWeight() + this.contents.getWeight();
+	}
+	
+	/**
+	 * Get the weight of the container itself, not counting what's in it.
+	 * 
+	 * @return
+	 */
+	public Double getEmptyWeight() {
+		return super.getWeight();
 	}
 	
 	public int getDisplayWidth() {
@@ -107,9 +108,7 @@ public class Container extends Item implements Storage<Item> {
 		
 		for (final Item item1 : this.contents) {
 			if (item1.getName().equals(itemName)) {
-				this.weight -= item1.getWeight();
-				
-				return this.contents.remove(this.contents.indexOf(item));
+				return this.contents.remove(this.contents.indexOf(item1));
 			}
 		}
 		
@@ -151,6 +150,16 @@ public class Container extends Item implements Storage<Item> {
 		return Collections.unmodifiableList(this.contents);
 	}
 	
+	/**
+	 * Get the contents along with their totals (weight, number of items),
+	 * see Inventory.
+	 * 
+	 * @return
+	 */
+	public Inventory getInventory() {
+		return this.contents;
+	}
+	
 	@Override
 	public Container getCopy() {
 		return new Container(this);
@@ -71,6 +71,7 @@ public class Shield extends Item
 	
 	public void setShieldType(final ShieldType newType) {
 		this.shield_type = newType;
+		changed();
 	}
 	
 	@Override
@@ -84,6 +85,7 @@ public class Shield extends Item
 	
 	public void setMod(int newMod) {
 		this.mod = newMod;
+		changed();
 	}
 	
 	@Override
@@ -151,6 +151,7 @@ public class Weapon extends Item {
 	
 	public void setModifier(int newMod) {
 		this.mod = newMod;
+		changed();
 	}
 	
 	public int getModifer() {
@@ -62,6 +62,7 @@ public class Box extends Thing implements Closeable, Lockable<Item>, Storage<Ite
 	@Override
 	public void setKey(Item key) {
 		this.key = key;
+		changed();
 	}
 	
 	@Override
@@ -73,6 +74,7 @@ public class Box extends Thing implements Closeable, Lockable<Item>, Storage<Ite
 	public boolean lock() {
 		if( this.key == null ) {
 			isLocked = true;
+			changed();
 			return true;
 		}
 		
@@ -85,6 +87,7 @@ public class Box extends Thing implements Closeable, Lockable<Item>, Storage<Ite
 		else {
 			if( this.key == key ) {
 				isLocked = true;
+				changed();
 				return true;
 			}
 			
@@ -96,6 +99,7 @@ public class Box extends Thing implements Closeable, Lockable<Item>, Storage<Ite
 	public boolean unlock() {
 		if( this.key == null ) {
 			isLocked = false;
+			changed();
 			return true;
 		}
 		
@@ -108,6 +112,7 @@ public class Box extends Thing implements Closeable, Lockable<Item>, Storage<Ite
 		else {
 			if( this.key == key ) {
 				isLocked = false;
+				changed();
 				return true;
 			}
 			
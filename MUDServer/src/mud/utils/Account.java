@@ -108,6 +108,8 @@ public class Account implements Serializable {
 	
 	private transient boolean online; // is there a Player in-game from this account/is the account logged in
 	
+	private transient boolean dirty;  // has it changed since it was last saved (see AccountStore)
+	
 	/**
 	 * 
 	 * @param aId
@@ -127,6 +129,8 @@ public class Account implements Serializable {
 		
 		this.charLimit = aCharLimit;
 		this.characters = new ArrayList<Player>(aCharLimit);
+		
+		this.dirty = true;
 	}
 
 	/**
@@ -187,6 +191,7 @@ public class Account implements Serializable {
 	 */
 	private void setModified(final Date modDate) {
 		this.modified = modDate;
+		this.dirty = true;
 	}
 	
 	/**
@@ -196,7 +201,7 @@ public class Account implements Serializable {
 	 */
 	public Date getArchived() {
 		// defensive copy
-		return new Date(this.archived);
+		return (this.archived != null) ? new Date(this.archived) : null;
 	}
 	
 	/**
@@ -204,7 +209,7 @@ public class Account implements Serializable {
 	 * 
 	 * @param archiveDate
 	 */
-	private void setArchived(final Date archiveDate) {
+	void setArchived(final Date archiveDate) {
 		this.archived = archiveDate;
 	}
 	
@@ -289,6 +294,7 @@ public class Account implements Serializable {
 	
 	public void setLastIPAddress(final String ipAddress) {
 		this.lastIPAddress = ipAddress;
+		this.dirty = true;
 	}
 	
 	/**
@@ -351,6 +357,7 @@ public class Account implements Serializable {
 	public void setClient(final Client newClient) {
 		if( this.client != null && newClient == null ) {
 			this.lastIPAddress = this.client.getInput();
+			this.dirty = true;
 		}
 		
 		this.client = newClient;
@@ -379,4 +386,17 @@ public class Account implements Serializable {
 	public boolean isOnline() {
 		return this.online;
 	}
+	
+	/**
+	 * Has this account changed since it was last saved?
+	 * 
+	 * @return
+	 */
+	public boolean isDirty() {
+		return this.dirty;
+	}
+	
+	void setDirty(final boolean dirty) {
+		this.dirty = dirty;
+	}
 }
\ No newline at end of file
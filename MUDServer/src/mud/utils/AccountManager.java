@@ -10,48 +10,136 @@ package mud.utils;
  * the license distributed with the source is the one that must be followed.
  */
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Hashtable;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import mud.objects.Player;
 
+/**
+ * Holds and tracks Account objects.
+ * 
+ * Besides the accounts themselves (by id), the accounts are indexed by
+ * username and by the dbref of each character linked to them, so logging
+ * in and finding a player's account don't depend on how many accounts
+ * there are. For the character index to stay current, characters should
+ * be linked/unlinked through here (see linkCharacter, unlinkCharacter)
+ * rather than on the Account directly.
+ * 
+ * Usernames are unique, ignoring case. An account whose username is
+ * already taken is refused (see addAccount).
+ * 
+ * The ids of removed accounts are kept until they're asked for (see
+ * takeRemoved), so that they can be removed from wherever the accounts
+ * are saved too.
+ * 
+ * @author Jeremy
+ *
+ */
 public final class AccountManager {
 	private Integer last_account_id = -1;
 	
 	private final Hashtable<Integer, Account> iamap; // integer account map
 	
+	private final Map<String, Account> byName;    // username (lowercased) -> account
+	private final Map<Integer, Account> byPlayer; // character (dbref) -> account
+	
+	private final Set<Integer> removed; // ids of accounts removed since takeRemoved was last called
+	
 	public AccountManager() {
 		this.iamap = new Hashtable<Integer, Account>();
+		
+		this.byName = new Hashtable<String, Account>();
+		this.byPlayer = new Hashtable<Integer, Account>();
+		
+		this.removed = new LinkedHashSet<Integer>();
 	}
 	
 	public int nextId() {
 		return ++(this.last_account_id);
 	}
 	
+	/**
+	 * Create a new account.
+	 * 
+	 * @param name
+	 * @param password
+	 * @param char_limit
+	 * @return the new account, or null if there's already one with that username (ignoring case)
+	 */
 	public Account addAccount(final String name, final String password, final int char_limit) {
+		if( hasAccount(name) ) return null;
+		
 		int aId = nextId();
 		Account account = new Account(aId, name, password, char_limit);
 		//this.iamap.put( aId, new Account(aId, name, password, char_limit) );
 		this.iamap.put( aId, account );
 		
+		index(account);
+		
 		return account;
 	}
 	
-	public void addAccount(final Account account) {
+	/**
+	 * Add an existing account.
+	 * 
+	 * @param account
+	 * @return true if it was added, false if there's already one with the same id or username (ignoring case)
+	 */
+	public boolean addAccount(final Account account) {
 		// if we don't already have an account with that ID
 		if( !this.iamap.containsKey( account.getId() ) ) {
+			if( hasAccount( account.getUsername() ) ) {
+				System.out.println("AccountManager: account " + account.getId() + " refused, username '" + account.getUsername() + "' is already taken");
+				return false;
+			}
+			
 			this.iamap.put( account.getId(), account );
 			
+			index(account);
+			
 			// if this account has an id later than our current last, update that
 			if( account.getId() > this.last_account_id ) {
 				this.last_account_id = account.getId();
 			}
+			
+			return true;
 		}
+		
+		return false;
 	}
 	
 	public void removeAccount(final Account toRemove) {
-		this.iamap.remove(toRemove);
+		if( toRemove == null ) return;
+		
+		if( this.iamap.remove( toRemove.getId(), toRemove ) ) {
+			unindex(toRemove);
+			
+			synchronized(this.removed) {
+				this.removed.add( toRemove.getId() );
+			}
+		}
+	}
+	
+	/**
+	 * Get the ids of the accounts removed since the last time this was
+	 * called.
+	 * 
+	 * @return
+	 */
+	public List<Integer> takeRemoved() {
+		synchronized(this.removed) {
+			final List<Integer> ids = new ArrayList<Integer>(this.removed);
+			
+			this.removed.clear();
+			
+			return ids;
+		}
 	}
 	
 	public void removeAccount(final Integer id) {
@@ -59,36 +147,91 @@ public final class AccountManager {
 		
 		removeAccount(toRemove);
 	}
+	
+	/**
+	 * Link an existing character to the specified account (see Account.linkCharacter)
+	 * 
+	 * @param account
+	 * @param player
+	 * @return true if the character was linked, false otherwise
+	 */
+	public boolean linkCharacter(final Account account, final Player player) {
+		final boolean success = account.linkCharacter(player);
+		
+		if( success ) this.byPlayer.put(player.getDBRef(), account);
+		
+		return success;
+	}
+	
+	/**
+	 * Unlink a character from the specified account (see Account.unlinkCharacter)
+	 * 
+	 * @param account
+	 * @param player
+	 * @return true if the character was unlinked, false otherwise
+	 */
+	public boolean unlinkCharacter(final Account account, final Player player) {
+		final boolean success = account.unlinkCharacter(player);
+		
+		if( success ) this.byPlayer.remove(player.getDBRef(), account);
+		
+		return success;
+	}
 
 	public Account getAccount(int accountId) {
 		return iamap.get(accountId);
 	}
 
 	public Account getAccount(final Player player) {
-		Account a = null;
-		
-		// TODO properly fix this, without kludging
-		for(final Account account : iamap.values()) {
-			if( account.getCharacters().contains(player) ) {
-				a = account;
-				break;
-			}
-		}
+		return (player != null) ? this.byPlayer.get( player.getDBRef() ) : null;
+	}
+	
+	/**
+	 * Get the account with the specified username.
+	 * 
+	 * @param name
+	 * @return the account, or null if there isn't one
+	 */
+	public Account getAccount(final String name) {
+		final Account account = (name != null) ? this.byName.get( name.toLowerCase() ) : null;
 		
-		return a;
+		// usernames are matched exactly, they're only unique ignoring case
+		return (account != null && account.getUsername().equals(name)) ? account : null;
+	}
+	
+	/**
+	 * Is there an account with the specified username (ignoring case)?
+	 * 
+	 * @param name
+	 * @return
+	 */
+	public boolean hasAccount(final String name) {
+		return name != null && this.byName.containsKey( name.toLowerCase() );
 	}
 	
+	/**
+	 * Get the account with the specified username, if the password (hash) is
+	 * the right one for it.
+	 * 
+	 * @param name
+	 * @param pass password hash
+	 * @return the account, or null if there isn't one or the password is wrong
+	 */
 	public Account getAccount(final String name, final String pass) {
-		Account a = null;
+		final Account account = getAccount(name);
 		
-		for (final Account account : iamap.values()) {
-			if (account.getUsername().equals(name) && account.getPassword().equals(pass)) {
-				a = account;
-				break;
-			}
-		}
-
-		return a;
+		return (account != null && checkPassword(account, pass)) ? account : null;
+	}
+	
+	/**
+	 * Check a password (hash) against the specified account's.
+	 * 
+	 * @param account
+	 * @param pass password hash
+	 * @return true if they match, false otherwise
+	 */
+	public boolean checkPassword(final Account account, final String pass) {
+		return account.getPassword().equals(pass);
 	}
 	
 	public Collection<Account> getAccounts() {
@@ -98,4 +241,20 @@ public final class AccountManager {
 	public int numAccounts() {
 		return this.iamap.size();
 	}
+	
+	private void index(final Account account) {
+		this.byName.put(account.getUsername().toLowerCase(), account);
+		
+		for (final Player player : account.getCharacters()) {
+			this.byPlayer.putIfAbsent(player.getDBRef(), account);
+		}
+	}
+	
+	private void unindex(final Account account) {
+		this.byName.remove(account.getUsername().toLowerCase(), account);
+		
+		for (final Player player : account.getCharacters()) {
+			this.byPlayer.remove(player.getDBRef(), account);
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,389 @@
+package mud.utils;
+
+/*
+ * Copyright (c) 2014 Jeremy N. Harton
+ *
+ * Released under the MIT License:
+ * LICENSE.txt, http://opensource.org/licenses/MIT
+ *
+ * NOTE: If the text of LICENSE.txt differs from the web site referenced, then
+ * the license distributed with the source is the one that must be followed.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import mud.objects.Player;
+
+/**
+ * All the accounts, in one file.
+ *
+ * The file starts with a header (magic number, version, slot size and the
+ * number of slots in use) followed by a fixed size slot for each account,
+ * so an account that has changed can be rewritten in place without
+ * touching the others (see save). Which slot each account is in is kept in
+ * memory, built when the file is loaded.
+ *
+ * Each slot holds the length of the record (0 for an empty slot) and the
+ * record itself: id, status, dates, username, password (hash), character
+ * limit, last ip address and the dbrefs of the account's characters. An
+ * account that is removed has it's slot emptied (see remove), and empty
+ * slots are reused for new accounts.
+ *
+ * readLegacy reads the old one file per account (.acct, serialized
+ * Account objects) format, for migrating to this one.
+ *
+ * @author Jeremy
+ *
+ */
+public class AccountStore {
+	private static final int MAGIC = 0x41434354; // "ACCT"
+	private static final int VERSION = 1;
+
+	private static final int HEADER = 16;  // header size (bytes)
+	private static final int SLOT = 512;   // slot size (bytes)
+
+	private final File file;
+
+	private final Map<Integer, Integer> slots = new HashMap<Integer, Integer>(); // account id -> slot
+	private final Deque<Integer> free = new ArrayDeque<Integer>();               // empty slots (below count)
+	private int count = 0;                                                      // slots in use
+
+	public AccountStore(final File file) {
+		this.file = file;
+	}
+
+	public boolean exists() {
+		return this.file.exists();
+	}
+
+	/**
+	 * Load all the accounts in the file, decoding them in parallel.
+	 *
+	 * @param players used to find each character (by dbref), so it can be linked to its account
+	 * @return the accounts
+	 * @throws IOException
+	 */
+	public synchronized List<Account> load(final IntFunction<Player> players) throws IOException {
+		this.slots.clear();
+		this.free.clear();
+		this.count = 0;
+
+		if( !this.file.exists() ) return new ArrayList<Account>();
+
+		try (final RandomAccessFile raf = new RandomAccessFile(this.file, "r")) {
+			final FileChannel channel = raf.getChannel();
+
+			final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+			if( buffer.limit() < HEADER || buffer.getInt(0) != MAGIC ) {
+				throw new IOException("AccountStore: " + this.file.getName() + " is not an account file");
+			}
+
+			if( buffer.getInt(4) != VERSION || buffer.getInt(8) != SLOT ) {
+				throw new IOException("AccountStore: " + this.file.getName() + " has an unsupported version/slot size");
+			}
+
+			final int used = Math.min(buffer.getInt(12), (buffer.limit() - HEADER) / SLOT);
+
+			final List<Account> accounts = IntStream.range(0, used).parallel()
+					.mapToObj(slot -> decode(buffer.duplicate(), slot, players))
+					.collect(Collectors.toList());
+
+			for (int slot = 0; slot < used; slot++) {
+				final Account account = accounts.get(slot);
+
+				if( account != null ) this.slots.put(account.getId(), slot);
+				else if( buffer.getInt(HEADER + slot * SLOT) == 0 ) this.free.add(slot); // empty (not garbage)
+			}
+
+			this.count = used;
+
+			accounts.removeIf(Objects::isNull);
+
+			return accounts;
+		}
+	}
+
+	/**
+	 * Write the accounts that have changed (or are new) to the file, each in
+	 * its own slot. Accounts that haven't changed aren't touched.
+	 *
+	 * @param accounts
+	 * @param all      write every account, whether it has changed or not
+	 * @return the number of accounts written
+	 * @throws IOException
+	 */
+	public synchronized int save(final Collection<Account> accounts, final boolean all) throws IOException {
+		int written = 0;
+
+		try (final RandomAccessFile raf = new RandomAccessFile(this.file, "rw")) {
+			final FileChannel channel = raf.getChannel();
+
+			final int before = this.count;
+
+			for (final Account account : accounts) {
+				Integer slot = this.slots.get(account.getId());
+
+				if( slot != null && !all && !account.isDirty() ) continue;
+
+				// clear it first, so a change made while we're writing isn't lost
+				account.setDirty(false);
+
+				final byte[] record;
+
+				try {
+					record = encode(account);
+				}
+				catch(final IOException ioe) {
+					account.setDirty(true);
+
+					System.out.println("AccountStore: unable to save account " + account.getId() + " (" + ioe.getMessage() + ")");
+
+					continue;
+				}
+
+				if( slot == null ) {
+					slot = !this.free.isEmpty() ? this.free.poll() : this.count++;
+
+					this.slots.put(account.getId(), slot);
+				}
+
+				final ByteBuffer buffer = ByteBuffer.allocate(SLOT);
+
+				buffer.putInt(record.length);
+				buffer.put(record);
+				buffer.rewind();
+
+				channel.write(buffer, HEADER + (long) slot * SLOT);
+
+				written++;
+			}
+
+			if( before == 0 || this.count != before || channel.size() < HEADER ) {
+				writeHeader(channel);
+			}
+
+			if( written > 0 ) channel.force(false);
+		}
+
+		return written;
+	}
+
+	/**
+	 * Remove an account from the file, by emptying it's slot (so that it isn't
+	 * loaded again). The slot is reused for the next new account.
+	 *
+	 * @param id account id
+	 * @return true if the account was in the file, false otherwise
+	 * @throws IOException
+	 */
+	public synchronized boolean remove(final int id) throws IOException {
+		final Integer slot = this.slots.get(id);
+
+		if( slot == null ) return false;
+
+		try (final RandomAccessFile raf = new RandomAccessFile(this.file, "rw")) {
+			final FileChannel channel = raf.getChannel();
+
+			final ByteBuffer empty = ByteBuffer.allocate(4); // a record length of 0
+
+			channel.write(empty, HEADER + (long) slot * SLOT);
+			channel.force(false);
+		}
+
+		this.slots.remove(id);
+		this.free.add(slot);
+
+		return true;
+	}
+
+	/**
+	 * Get the number of slots in use.
+	 *
+	 * @return
+	 */
+	public synchronized int size() {
+		return this.count;
+	}
+
+	private void writeHeader(final FileChannel channel) throws IOException {
+		final ByteBuffer header = ByteBuffer.allocate(HEADER);
+
+		header.putInt(MAGIC);
+		header.putInt(VERSION);
+		header.putInt(SLOT);
+		header.putInt(this.count);
+		header.rewind();
+
+		channel.write(header, 0);
+	}
+
+	private static byte[] encode(final Account account) throws IOException {
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream(SLOT);
+		final DataOutputStream out = new DataOutputStream(baos);
+
+		final Date archived = account.getArchived();
+		final String lastIPAddress = account.getLastIPAddress();
+
+		out.writeInt(account.getId());
+		out.writeByte(account.getStatus().ordinal());
+
+		writeDate(out, account.getCreated());
+		writeDate(out, account.getModified());
+		writeDate(out, archived);
+
+		out.writeUTF(account.getUsername());
+		out.writeUTF(account.getPassword());
+		out.writeInt(account.getCharLimit());
+		out.writeUTF((lastIPAddress != null) ? lastIPAddress : "");
+
+		final List<Player> characters = account.getCharacters();
+
+		out.writeShort(characters.size());
+
+		for (final Player player : characters) out.writeInt(player.getDBRef());
+
+		out.flush();
+
+		if( baos.size() > SLOT - 4 ) throw new IOException("record too big (" + baos.size() + " bytes)");
+
+		return baos.toByteArray();
+	}
+
+	private static Account decode(final ByteBuffer buffer, final int slot, final IntFunction<Player> players) {
+		final int offset = HEADER + slot * SLOT;
+		final int length = buffer.getInt(offset);
+
+		if( length <= 0 || length > SLOT - 4 ) return null; // empty (or garbage)
+
+		final byte[] record = new byte[length];
+
+		buffer.position(offset + 4);
+		buffer.get(record);
+
+		try {
+			final DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+
+			final int id = in.readInt();
+			final Account.Status status = Account.Status.values()[in.readByte()];
+
+			final Date created = readDate(in);
+			final Date modified = readDate(in);
+			final Date archived = readDate(in);
+
+			final String username = in.readUTF();
+			final String password = in.readUTF();
+			final int charLimit = in.readInt();
+			final String lastIPAddress = in.readUTF();
+
+			final List<Player> characters = new ArrayList<Player>();
+
+			for (int n = in.readShort(); n > 0; n--) {
+				final Player player = players.apply(in.readInt());
+
+				if( player != null ) characters.add(player);
+			}
+
+			final Account account = new Account(id, status, created, modified, username, password, charLimit, characters.toArray(new Player[0]));
+
+			if( archived != null )        account.setArchived(archived);
+			if( !lastIPAddress.isEmpty() ) account.setLastIPAddress(lastIPAddress);
+
+			account.setDirty(false);
+
+			return account;
+		}
+		catch(final IOException | RuntimeException e) {
+			System.out.println("AccountStore: bad record in slot " + slot + " (" + e.getMessage() + ")");
+
+			return null;
+		}
+	}
+
+	private static void writeDate(final DataOutputStream out, final Date date) throws IOException {
+		if( date != null ) {
+			out.writeByte(date.getMonth());
+			out.writeByte(date.getDay());
+			out.writeShort(date.getYear());
+		}
+		else {
+			out.writeByte(0);
+			out.writeByte(0);
+			out.writeShort(0);
+		}
+	}
+
+	private static Date readDate(final DataInputStream in) throws IOException {
+		final int month = in.readByte();
+		final int day = in.readByte();
+		final int year = in.readShort();
+
+		return (month != 0) ? new Date(month, day, year) : null;
+	}
+
+	/**
+	 * Read accounts from the old one file per account format (serialized
+	 * Account objects in &lt;username&gt;.acct files), so they can be saved
+	 * to an AccountStore.
+	 *
+	 * Characters weren't saved in that format, so the player with the same
+	 * name as the account (if any) is linked to it, as loading them used to.
+	 *
+	 * @param dir     the account directory
+	 * @param players used to find the player with the account's name
+	 * @return the accounts
+	 */
+	public static List<Account> readLegacy(final File dir, final Function<String, Player> players) {
+		final List<Account> accounts = new ArrayList<Account>();
+
+		final File[] files = dir.listFiles((d, name) -> name.endsWith(".acct"));
+
+		if( files == null ) return accounts;
+
+		for (final File file : files) {
+			if( !file.isFile() ) continue;
+
+			try (final ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
+				final Account account = (Account) ois.readObject();
+
+				final Player player = players.apply(account.getUsername());
+
+				final Account account2 = new Account(account.getId(), account.getStatus(), account.getCreated(), account.getModified(),
+						account.getUsername(), account.getPassword(), account.getCharLimit(), (player != null) ? new Player[] { player } : new Player[0]);
+
+				if( account.getLastIPAddress() != null ) account2.setLastIPAddress(account.getLastIPAddress());
+
+				accounts.add(account2);
+			}
+			catch(final ClassNotFoundException | IOException e) {
+				System.out.println("AccountStore: unable to read " + file.getName());
+				e.printStackTrace();
+			}
+		}
+
+		return accounts;
+	}
+}
@@ -1,41 +1,48 @@
 package mud.utils;
 
-import java.util.TimerTask;
-
 import mud.misc.Effect;
 
 /**
- * A TimerTask that handles Effect durations on
- * a task per Effect basis.
+ * Handles Effect durations on a timer per Effect basis. The timer is
+ * run by a TimingWheel (see schedule), rather than counting down a
+ * "second" at a time.
  * 
  * @author Jeremy
  *
  */
-public class EffectTimer extends TimerTask {
+public class EffectTimer {
 	private Effect effect;
-	private int remaining;
+	private int duration;
+	
+	private TimingWheel.Timeout timeout = null;
 	
 	public EffectTimer(Effect effect, int duration) {
 		super();
 		this.effect = effect;
-		this.remaining = duration;
+		this.duration = duration;
 	}
 	
 	public Effect getEffect() {
 		return this.effect;
 	}
 	
-	public int getTimeRemaining() {
-		return this.remaining;
+	/**
+	 * Start the timer, running the specified task when it expires.
+	 * 
+	 * @param wheel
+	 * @param onExpiry
+	 */
+	public void schedule(final TimingWheel wheel, final Runnable onExpiry) {
+		this.timeout = wheel.schedule(onExpiry, this.duration * 1000L);
 	}
-
-	@Override
-	public void run() {
-		if( this.remaining > 0 ) {
-			// do task
-			// increment counter
-			this.remaining--; // count down a "second"
-		}
-		else { cancel(); }
+	
+	public boolean cancel() {
+		return this.timeout != null && this.timeout.cancel();
+	}
+	
+	public int getTimeRemaining() {
+		if( this.timeout == null ) return this.duration;
+		
+		return (int) ((this.timeout.getRemaining() + 999) / 1000); // round up to a "second"
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -17,8 +17,9 @@ CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTH
 SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
  */
 
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.nio.file.Paths;
@@ -48,6 +49,9 @@ public class Log {
 	private static final Integer BUFFER_SIZE = 1000;
 	private static final Integer MAX_LOG_SIZE = 10000;
 	
+	private static final TimeZone TIME_ZONE = TimeZone.getTimeZone("America/New_York");
+	private static final Locale LOCALE = new Locale("ENGLISH", "US");
+	
 	private String LOG_DIR;
 	
 	private String name;
@@ -67,7 +71,14 @@ public class Log {
 	private int lines_written;
 	private int log_num = 1;
 	
+	private int max_lines = Log.MAX_LOG_SIZE; // lines per file before starting a new one
+	private long roll_interval = 0;           // time (ms) before starting a new file, 0 for never
+	private long opened = 0;                  // when the current file was opened (ms)
+	
 	private List<String> buffer = null;
+	
+	// the last timestamp generated, it's reused for anything else logged in the same millisecond
+	private volatile TimeStamp timestamp = new TimeStamp(0, "");
 
 	// time, date, filename, etc
 	// logging principle
@@ -97,26 +108,8 @@ public class Log {
 	}
 	
 	public Log(final String name, final boolean buffer, final boolean timestamp) {
-		// TODO reduce redundant timestamp code
-		final TimeZone tz = TimeZone.getTimeZone("America/New_York");
-		final Locale lc = new Locale("ENGLISH", "US");
-		
-		final Calendar cal = Calendar.getInstance(tz, lc);
-		
-		int month = cal.get(Calendar.MONTH);
-		int day = cal.get(Calendar.DAY_OF_MONTH);
-		int year = cal.get(Calendar.YEAR);
-		
-		int hour = cal.get(Calendar.HOUR);
-		int minute = cal.get(Calendar.MINUTE);
-		
-		getTimeString('-');
-		
-		final String date = (month + 1) + "-" + day + "-" + year;
-		final String time = hour + "-" + minute;
-		
 		this.name = name;
-		this.filename = name + "_" + date + "_" + time + ".txt";
+		this.filename = makeFileName(name);
 		
 		this.useBuffer = buffer;
 		this.useTimestamp = timestamp;
@@ -159,6 +152,25 @@ public class Log {
 		return this.lines_written;
 	}
 	
+	/**
+	 * Set how many lines may be written to a log file before a new one
+	 * is started.
+	 * 
+	 * @param lines
+	 */
+	public void setMaxLines(final int lines) {
+		this.max_lines = lines;
+	}
+	
+	/**
+	 * Set how long a log file is used for before a new one is started.
+	 * 
+	 * @param ms time in milliseconds, 0 to only start a new one when the current one is full
+	 */
+	public void setRollInterval(final long ms) {
+		this.roll_interval = ms;
+	}
+	
 	/**
 	 * Opens the log (and it's associated file) for writing.
 	 */
@@ -174,13 +186,9 @@ public class Log {
 					file.createNewFile();
 				}
 				
-				this.output = new PrintWriter(file);
+				this.output = new PrintWriter( new BufferedWriter(new FileWriter(file), 64 * 1024) );
 				this.isOpen = true;
-			}
-			catch (final FileNotFoundException fnfe) {
-				System.out.println("File not found!");
-				System.out.println("--- Stack Trace ---");
-				fnfe.printStackTrace();
+				this.opened = System.currentTimeMillis();
 			}
 			catch (final IOException e) {
 				System.out.println("Bad path: " + file);
@@ -197,79 +205,121 @@ public class Log {
 	 * 
 	 * @param message
 	 */
-	public void writeln(final String message)
+	public synchronized void writeln(final String message)
 	{
 		if ( this.isOpen ) {
-			if ( !this.isFull ) {
-				final String timeString = getTimeString();
-				
-				String logString = "";
-				
-				if( useTimestamp ) logString = "[" + timeString + "] " + message;
-				else               logString = message;
-
-				logString.trim();
-
-				if( this.useBuffer ) {
-					// flush buffer to file if full
-					if( this.buffer.size() >= Log.BUFFER_SIZE ) {
-						for(final String s : this.buffer) this.output.println(s);
-						
-						this.output.flush();
-						this.buffer.clear();
-					}
+			final String logString = format(message);
+			
+			if( this.useBuffer ) {
+				// flush buffer to file if full
+				if( this.buffer.size() >= Log.BUFFER_SIZE ) {
+					final List<String> lines = new ArrayList<String>(this.buffer);
+					
+					this.buffer.clear();
+					
+					for(final String s : lines) write(s);
 					
-					this.buffer.add( logString );
-				}
-				else {
-					this.output.println(logString);
 					this.output.flush();
 				}
 				
-				this.lines_written++;
-
-				if ( this.lines_written == Log.MAX_LOG_SIZE ) {
-					this.isFull = true;
-				}
+				this.buffer.add( logString );
 			}
 			else {
-				if( this.useBuffer ) {
-					// flush ENTIRE buffer since we're closing this log file
-					for(final String s : this.buffer) this.output.println(s);
-					
-					this.output.flush();
-					this.buffer.clear();
-				}
-				
-				// report full log
-				System.out.println("Log Full!");
-				
-				// close current log file and open a new one and call write again
-				closeLog();
-				
-				// change filename (e.g. test_date_time.log > test1_date_time.log)
-				final String prefix = filename.substring(0, filename.indexOf('_'));
-				
-				filename.replace(prefix, prefix + this.log_num);
-				
-				this.log_num++;
-
-				// open log
-				openLog();
+				write(logString);
+				this.output.flush();
 			}
 		}
 		else System.out.println("Log File not open.[" + getFileName() + "]");
 	}
-
+	
+	/**
+	 * Write a batch of lines, that have already been formatted (see format),
+	 * with a single flush at the end.
+	 * 
+	 * @param lines
+	 */
+	public synchronized void writeAll(final List<String> lines)
+	{
+		if ( this.isOpen ) {
+			for(final String s : lines) write(s);
+			
+			this.output.flush();
+		}
+		else System.out.println("Log File not open.[" + getFileName() + "]");
+	}
+	
+	/**
+	 * Add a timestamp to the message (if this log uses them).
+	 * 
+	 * @param message
+	 * @return
+	 */
+	public String format(final String message) {
+		if( useTimestamp ) return "[" + getTimeString() + "] " + message;
+		else               return message;
+	}
+	
+	/**
+	 * Write a line to the current file, starting a new file first if the
+	 * current one is full or has been in use long enough.
+	 * 
+	 * @param logString
+	 */
+	private void write(final String logString) {
+		if( this.isFull || (this.roll_interval > 0 && System.currentTimeMillis() - this.opened >= this.roll_interval) ) {
+			roll();
+			
+			if( !this.isOpen ) return;
+		}
+		
+		this.output.println(logString);
+		
+		this.lines_written++;
+		
+		if ( this.lines_written >= this.max_lines ) {
+			this.isFull = true;
+		}
+	}
+	
+	/**
+	 * Close the current log file and open a new one
+	 * (e.g. test_date_time.txt > test1_date_time.txt)
+	 */
+	private void roll() {
+		if( this.useBuffer ) {
+			// flush ENTIRE buffer since we're closing this log file
+			for(final String s : this.buffer) this.output.println(s);
+			
+			this.buffer.clear();
+		}
+		
+		closeLog();
+		
+		this.filename = makeFileName(this.name + this.log_num);
+		
+		this.log_num++;
+		
+		this.lines_written = 0;
+		this.isFull = false;
+		
+		openLog();
+	}
+	
 	/**
 	 * A method to close the log (and it's corresponding file).
 	 * 
 	 * NOTE: Doing so does result in the stream being flushed.
 	 */
-	public void closeLog()
+	public synchronized void closeLog()
 	{
 		// if the log is open
 		if ( this.isOpen ) {
+			if( this.useBuffer ) {
+				for(final String s : this.buffer) this.output.println(s);
+				
+				this.buffer.clear();
+			}
+			
 			this.output.flush();
 			this.output.close();
 			
@@ -281,20 +331,29 @@ public class Log {
 	}
 	
 	private String getTimeString() {
-		return getTimeString(':');
+		final long now = System.currentTimeMillis();
+		
+		TimeStamp ts = this.timestamp;
+		
+		if( ts.time != now ) {
+			ts = new TimeStamp(now, getTimeString(now, ':'));
+			
+			this.timestamp = ts;
+		}
+		
+		return ts.text;
 	}
 	
 	/**
 	 * Get a Calendar instance for the purposes of checking the time, so that log entries
-	 * can be timestamped. This gets the current time and generates a string.
+	 * can be timestamped. This gets the specified time and generates a string.
 	 * 
 	 * @return
 	 */
-	private String getTimeString(final char sep) {
-		final TimeZone tz = TimeZone.getTimeZone("America/New_York");
-		final Locale lc = new Locale("ENGLISH", "US");
+	private static String getTimeString(final long time, final char sep) {
+		final Calendar cal = Calendar.getInstance(TIME_ZONE, LOCALE);
 		
-		final Calendar cal = Calendar.getInstance(tz, lc);
+		cal.setTimeInMillis(time);
 		
 		String hour, minute, second;
 		
@@ -314,6 +373,38 @@ public class Log {
 		return hour + sep + minute + sep + second ;
 	}
 	
+	/**
+	 * Make a log file name from the log name and the current date and time.
+	 * 
+	 * @param prefix
+	 * @return
+	 */
+	private static String makeFileName(final String prefix) {
+		final Calendar cal = Calendar.getInstance(TIME_ZONE, LOCALE);
+		
+		int month = cal.get(Calendar.MONTH);
+		int day = cal.get(Calendar.DAY_OF_MONTH);
+		int year = cal.get(Calendar.YEAR);
+		
+		int hour = cal.get(Calendar.HOUR);
+		int minute = cal.get(Calendar.MINUTE);
+		
+		final String date = (month + 1) + "-" + day + "-" + year;
+		final String time = hour + "-" + minute;
+		
+		return prefix + "_" + date + "_" + time + ".txt";
+	}
+	
+	private static final class TimeStamp {
+		private final long time;
+		private final String text;
+		
+		private TimeStamp(final long time, final String text) {
+			this.time = time;
+			this.text = text;
+		}
+	}
+	
 	private final String resolvePath(final String path, final String...dirs) {
 		return "" + Paths.get(path, dirs).toAbsolutePath();
 	}
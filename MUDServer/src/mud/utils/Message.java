@@ -46,6 +46,8 @@ public class Message
 	
 	private Integer location;        //
 	
+	private Player exclude;          // player who shouldn't get a local broadcast (usually the one it's about)
+	
 	private Boolean wasSent = false; // has this message been sent
 
 	/**
@@ -78,6 +80,7 @@ public class Message
 		this.message = template.message;
 		
 		this.location = template.location;
+		this.exclude = template.exclude;
 		
 		this.wasSent = template.wasSent;
 	}
@@ -93,6 +96,20 @@ public class Message
 		this(null, null, tempMessage, tLocation);
 	}
 	
+	/**
+	 * Broadcast (Local) -- initiated by server, about a player (who
+	 * doesn't get it, e.g. "<player> dropped <item> on the floor.")
+	 * 
+	 * @param tempMessage
+	 * @param tLocation
+	 * @param tExclude
+	 */
+	public Message(final String tempMessage, final Room tLocation, final Player tExclude) {
+		this(null, null, tempMessage, tLocation);
+		
+		this.exclude = tExclude;
+	}
+	
 	public Message(final Player tSender, final Player tRecipient, final String tMessage) {
 		this(tSender, tRecipient, tMessage, null);
 	}
@@ -135,6 +152,10 @@ public class Message
 		return this.location;
 	}
 	
+	public Player getExclude() {
+		return this.exclude;
+	}
+	
 	public boolean wasSent() {
 		return this.wasSent;
 	}
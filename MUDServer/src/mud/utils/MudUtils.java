@@ -1,7 +1,6 @@
 package mud.utils;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -27,16 +26,7 @@ import mud.objects.items.WeaponType;
 
 public final class MudUtils {
 	public static double calculateWeight(final Coins money) {
-		double weight = 0.0;
-
-		final int[] coins = money.toArray();
-
-		weight += coins[0] * ( 0.0625 );  // copper (1/16 oz./coin)
-		weight += coins[1] * ( 0.1250 );  // silver (1/8 oz./coin)
-		weight += coins[2] * ( 0.2500 );  // gold (1/4 oz./coin)
-		weight += coins[3] * ( 0.5000 );  // platinum (1/2 oz./coin)
-
-		return ( weight / 16 ); // 16 oz = 1 lb
+		return money.getWeight();
 
 		// in order to set weight of a coin I need to establish values and relative values
 		// i.e. 100 copper = 1 silver, 100 silver = 1 gold, 100 gold = 1 platinum
@@ -57,18 +47,8 @@ public final class MudUtils {
 	}
 
 	public static double calculateWeight(final Player player) {
-		double weight = 0.0;
-
-		for (final Item item : player.getInventory())
-		{
-			// if it's a container, ask it how heavy it is
-			// (this is calculated by the bag -- hence bags of holding)
-			if (item != null) {
-				weight += item.getWeight();
-			}
-		}
-
-		return weight;
+		// kept up to date as items come and go (see Inventory)
+		return player.getInventory().getWeight();
 	}
 
 	public static String getTypeName(final TypeFlag tFlag) {
@@ -234,6 +214,17 @@ public final class MudUtils {
 	 * Find the Item with the specified name in the list of Items provided, if
 	 * it's there.
 	 * 
+	 * The best match is found, in this order (ignoring case):
+	 * 1) the name is the same as the argument
+	 * 2) the name starts with the argument
+	 * 3) the name ends with the argument
+	 * 4) any component of the name (continuous non-whitespace segment)
+	 * contains the argument's first component
+	 * 
+	 * Where several items match equally well, the one with the lowest dbref
+	 * wins, as it does with NameIndex (which does the same without looking at
+	 * every item), so that both find the same item.
+	 * 
 	 * @param itemName
 	 * @param items
 	 * 
@@ -241,60 +232,76 @@ public final class MudUtils {
 	 */
 	public static Item findItem(final String itemName, final List<Item> items) {
 		/** Extracted from MUDServer **/
-		final String arg = itemName;
-		final String arg_lc = arg.toLowerCase();
-		
-		Item item = null;
-		
+		final String arg_lc = itemName.toLowerCase();
+		final String arg_word = NameIndex.firstWord(arg_lc);
+
+		Item exact = null;
+		Item startsWith = null;
+		Item endsWith = null;
+		Item contains = null;
+
 		for (final Item item1 : items) {
-			// if there is a name or dbref match from the argument in the inventory
-			// if the item name exactly equals the arguments or the name
-			// contains the argument (both case-sensitive), or
-			// if the dbref is correct
-
-			final String name = item1.getName();
-			final String name_lc = name.toLowerCase();
-			
-			final List<String> components = Arrays.asList(name_lc.split(" "));
-			
-			System.out.println("Argument:              " + arg);
-			System.out.println("Name:                  " + name);
-			System.out.println("Argument (Lower Case): " + arg_lc);
-			System.out.println("Name (Lower Case):     " + name_lc);
-			System.out.println("Components:            " + components);
-
-			/*
-			 * 1) is the name the same as ARG (ignoring case -- setting both name and arg to lowercase)
-			 * 2) does the name start with ARG (ignoring case -- setting both name and arg to lowercase)
-			 * 3) does the name end with ARG (ignoring case -- setting both name and arg to lowercase)
-			 * 4) does the name contain ARG (ignoring case -- setting both name and arg to lowercase)
-			 * 5) is any component of the name the same as the arg (continues non-whitespace separated segments)
-			 */
-
-			boolean sameName = name.equalsIgnoreCase(arg) || name_lc.equals(arg_lc);
-			boolean startsWith = name_lc.startsWith(arg_lc);
-			boolean endsWith = name_lc.endsWith(arg_lc);
-			boolean nameContains = name_lc.contains(arg_lc);
-			boolean compsContain = components.contains(arg_lc);
-
-			boolean test = false;
-
-			for (final String s : components) {
-				for (final String s1 : Arrays.asList(arg.toLowerCase().split(" "))) {
-					if (s.contains(s1)) test = true;
-					break;
-				}
+			final String name_lc = item1.getName().toLowerCase();
+
+			if ( name_lc.equals(arg_lc) ) {
+				exact = lowest(exact, item1);
+				continue;
 			}
-			
-			// for string in A, is A.S a substring of string name N.S
-			if ( sameName || startsWith || endsWith || nameContains || compsContain || test ) {
-				item = item1;
-				
-				break;
+
+			if ( exact != null ) continue;
+
+			if ( name_lc.startsWith(arg_lc) ) {
+				startsWith = lowest(startsWith, item1);
+				continue;
+			}
+
+			if ( startsWith != null ) continue;
+
+			if ( name_lc.endsWith(arg_lc) ) {
+				endsWith = lowest(endsWith, item1);
+				continue;
+			}
+
+			if ( endsWith == null && componentContains(name_lc, arg_word) ) {
+				contains = lowest(contains, item1);
 			}
 		}
 
-		return item;
+		if ( exact != null )      return exact;
+		if ( startsWith != null ) return startsWith;
+		if ( endsWith != null )   return endsWith;
+
+		return contains;
+	}
+
+	/**
+	 * Get whichever of the two items has the lower dbref (the best match so
+	 * far may be null).
+	 * 
+	 * @param best
+	 * @param item
+	 * @return
+	 */
+	private static Item lowest(final Item best, final Item item) {
+		return ( best == null || item.getDBRef() < best.getDBRef() ) ? item : best;
+	}
+
+	/**
+	 * Does any component (continuous non-whitespace segment) of the name
+	 * contain the specified string?
+	 * 
+	 * @param name
+	 * @param string
+	 * @return
+	 */
+	private static boolean componentContains(final String name, final String string) {
+		if ( string.isEmpty() ) return true;
+
+		for (final String component : name.split(" ")) {
+			if ( component.contains(string) ) return true;
+		}
+
+		return false;
 	}
 	
 	/**
@@ -309,11 +316,7 @@ public final class MudUtils {
 		Item item = null;
 
 		for (final Item item1 : items) {
-			final String itemName = item1.getName();
-
 			if ( item1.getDBRef() == itemDBRef ) {
-				System.out.println(itemName + " true");
-
 				item = item1;
 				
 				break;
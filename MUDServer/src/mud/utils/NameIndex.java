@@ -0,0 +1,244 @@
+package mud.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import mud.MUDObject;
+
+/**
+ * An index of object names (ignoring case), for finding objects by part of
+ * their name without looking at every object.
+ *
+ * Names are kept in sorted maps, so a prefix is a range of keys: whole names
+ * (exact and prefix matches), reversed names (suffix matches) and, if asked
+ * for, every suffix of every word in each name (a word containing something
+ * is a word suffix starting with it).
+ *
+ * find(String) uses the same rules as MudUtils.findItem, best match first:
+ * 1) the name is the same as the argument
+ * 2) the name starts with the argument
+ * 3) the name ends with the argument
+ * 4) a word of the name contains the (first word of the) argument
+ *
+ * When more than one object matches equally well, the one with the lowest
+ * dbref is found.
+ *
+ * @author Jeremy
+ *
+ * @param <T>
+ */
+public class NameIndex<T extends MUDObject> {
+	private static final Comparator<MUDObject> BY_DBREF = new Comparator<MUDObject>() {
+		@Override
+		public int compare(final MUDObject o1, final MUDObject o2) {
+			return Integer.compare(o1.getDBRef(), o2.getDBRef());
+		}
+	};
+
+	private final boolean words; // index the words in names too (see find)
+
+	private final Map<T, String> names = new HashMap<T, String>(); // object -> name it's indexed under (lower case)
+
+	private final NavigableMap<String, Set<T>> byName = new TreeMap<String, Set<T>>();
+	private final NavigableMap<String, Set<T>> byReverse = new TreeMap<String, Set<T>>();
+	private final NavigableMap<String, Set<T>> byWord = new TreeMap<String, Set<T>>(); // word suffix -> objects
+
+	/**
+	 *
+	 * @param words index the words in names too, so that find works (otherwise only exact and prefix lookups do)
+	 */
+	public NameIndex(final boolean words) {
+		this.words = words;
+	}
+
+	public synchronized void add(final T object) {
+		if( this.names.containsKey(object) ) remove(object);
+
+		final String name = lower(object);
+
+		this.names.put(object, name);
+
+		put(this.byName, name, object);
+
+		if( this.words ) {
+			put(this.byReverse, reverse(name), object);
+
+			for (final String word : name.split(" ")) {
+				for (int i = 0; i < word.length(); i++) put(this.byWord, word.substring(i), object);
+			}
+		}
+	}
+
+	public synchronized void remove(final T object) {
+		final String name = this.names.remove(object);
+
+		if( name == null ) return;
+
+		take(this.byName, name, object);
+
+		if( this.words ) {
+			take(this.byReverse, reverse(name), object);
+
+			for (final String word : name.split(" ")) {
+				for (int i = 0; i < word.length(); i++) take(this.byWord, word.substring(i), object);
+			}
+		}
+	}
+
+	/**
+	 * Re-index the object if its name has changed since it was indexed.
+	 *
+	 * @param object
+	 */
+	public synchronized void update(final T object) {
+		final String name = this.names.get(object);
+
+		if( name != null && !name.equals( lower(object) ) ) add(object);
+	}
+
+	public synchronized boolean contains(final T object) {
+		return this.names.containsKey(object);
+	}
+
+	public synchronized int size() {
+		return this.names.size();
+	}
+
+	public synchronized void clear() {
+		this.names.clear();
+		this.byName.clear();
+		this.byReverse.clear();
+		this.byWord.clear();
+	}
+
+	/**
+	 * Get the objects whose name is the specified one (ignoring case), ordered
+	 * by dbref.
+	 *
+	 * @param name
+	 * @return
+	 */
+	public synchronized List<T> findExact(final String name) {
+		final Set<T> set = this.byName.get( name.toLowerCase() );
+
+		return (set != null) ? new ArrayList<T>(set) : new ArrayList<T>(0);
+	}
+
+	/**
+	 * Get the objects whose name starts with the specified prefix (ignoring
+	 * case), ordered by dbref.
+	 *
+	 * @param prefix
+	 * @return
+	 */
+	public synchronized List<T> findByPrefix(final String prefix) {
+		final List<T> list = new ArrayList<T>();
+
+		for (final Set<T> set : range(this.byName, prefix.toLowerCase()).values()) list.addAll(set);
+
+		Collections.sort(list, BY_DBREF);
+
+		return list;
+	}
+
+	/**
+	 * Find the object that best matches the argument (see class description).
+	 *
+	 * @param arg
+	 * @return the object, or null if nothing matches
+	 */
+	public synchronized T find(final String arg) {
+		final String arg_lc = arg.toLowerCase();
+
+		T found = first( this.byName.get(arg_lc) );
+
+		if( found == null ) found = first( range(this.byName, arg_lc).values() );
+
+		if( this.words ) {
+			if( found == null ) found = first( range(this.byReverse, reverse(arg_lc)).values() );
+
+			if( found == null ) {
+				final String word = firstWord(arg_lc);
+
+				if( word.isEmpty() ) found = first( this.byName.values() ); // the empty string is in every name
+				else                 found = first( range(this.byWord, word).values() );
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * Get the first word of an argument, the way findItem splits it (i.e.
+	 * an empty string if it starts with a space).
+	 *
+	 * @param arg
+	 * @return
+	 */
+	static String firstWord(final String arg) {
+		final int space = arg.indexOf(' ');
+
+		return (space != -1) ? arg.substring(0, space) : arg;
+	}
+
+	private String lower(final T object) {
+		final String name = object.getName();
+
+		return (name != null) ? name.toLowerCase() : "";
+	}
+
+	private static String reverse(final String string) {
+		return new StringBuilder(string).reverse().toString();
+	}
+
+	private static <T> NavigableMap<String, Set<T>> range(final NavigableMap<String, Set<T>> map, final String prefix) {
+		return map.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+	}
+
+	private T first(final Set<T> set) {
+		return (set != null && !set.isEmpty()) ? ((TreeSet<T>) set).first() : null;
+	}
+
+	private T first(final Collection<Set<T>> sets) {
+		T found = null;
+
+		for (final Set<T> set : sets) {
+			final T t = first(set);
+
+			if( t != null && (found == null || t.getDBRef() < found.getDBRef()) ) found = t;
+		}
+
+		return found;
+	}
+
+	private void put(final Map<String, Set<T>> map, final String key, final T object) {
+		Set<T> set = map.get(key);
+
+		if( set == null ) {
+			set = new TreeSet<T>(BY_DBREF);
+
+			map.put(key, set);
+		}
+
+		set.add(object);
+	}
+
+	private void take(final Map<String, Set<T>> map, final String key, final T object) {
+		final Set<T> set = map.get(key);
+
+		if( set != null ) {
+			set.remove(object);
+
+			if( set.isEmpty() ) map.remove(key);
+		}
+	}
+}
@@ -0,0 +1,161 @@
+package mud.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * A small pool of threads for hashing passwords (see Utils.hash), which
+ * is slow on purpose, so that logging in doesn't hold up everything else.
+ *
+ * The number of waiting hashes is limited, as is the number any one
+ * address can have waiting/in progress at once, so a flood of logins gets
+ * turned away rather than piling up.
+ *
+ * @author Jeremy
+ *
+ */
+public class PasswordHasher {
+	private final ThreadPoolExecutor pool;
+	private final int per_address; // max hashes waiting/in progress for one address
+
+	private final Map<String, Integer> pending = new HashMap<String, Integer>(); // hashes waiting/in progress, by address
+
+	private final AtomicLong completed = new AtomicLong(0);
+	private final AtomicLong rejected = new AtomicLong(0);
+	private final AtomicLong total = new AtomicLong(0); // ns
+	private final AtomicLong max = new AtomicLong(0);   // ns
+
+	/**
+	 *
+	 * @param threads     number of hashing threads
+	 * @param queue_size  number of hashes that can be waiting for a thread
+	 * @param per_address number of hashes one address can have waiting/in progress
+	 */
+	public PasswordHasher(final int threads, final int queue_size, final int per_address) {
+		this.per_address = per_address;
+
+		this.pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(queue_size), new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger(0);
+
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread thread = new Thread(r, "hasher-" + count.incrementAndGet());
+
+				thread.setDaemon(true);
+
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Hash a password on one of the pool's threads, then hand the hash to
+	 * the callback (on that thread).
+	 *
+	 * @param address  address the request came from
+	 * @param password
+	 * @param callback
+	 * @return true if the hash will be done, false if it was turned away (too many pending)
+	 */
+	public boolean hash(final String address, final String password, final Consumer<String> callback) {
+		synchronized(this.pending) {
+			final Integer count = this.pending.get(address);
+
+			if( count != null && count >= this.per_address ) {
+				this.rejected.incrementAndGet();
+				return false;
+			}
+
+			this.pending.put(address, (count != null) ? count + 1 : 1);
+		}
+
+		try {
+			this.pool.execute(new Runnable() {
+				public void run() {
+					final long start = System.nanoTime();
+
+					final String hash;
+
+					try {
+						hash = Utils.hash(password);
+					}
+					finally {
+						done(address, System.nanoTime() - start);
+					}
+
+					callback.accept(hash);
+				}
+			});
+		}
+		catch(final RejectedExecutionException ree) {
+			release(address);
+
+			this.rejected.incrementAndGet();
+
+			return false;
+		}
+
+		return true;
+	}
+
+	public void shutdown() {
+		this.pool.shutdownNow();
+	}
+
+	public int getThreads() {
+		return this.pool.getMaximumPoolSize();
+	}
+
+	public int getQueued() {
+		return this.pool.getQueue().size();
+	}
+
+	public int getActive() {
+		return this.pool.getActiveCount();
+	}
+
+	public long getCompleted() {
+		return this.completed.get();
+	}
+
+	public long getRejected() {
+		return this.rejected.get();
+	}
+
+	public long getTotalTime() {
+		return this.total.get();
+	}
+
+	public long getMaxTime() {
+		return this.max.get();
+	}
+
+	private void done(final String address, final long time) {
+		release(address);
+
+		this.completed.incrementAndGet();
+		this.total.addAndGet(time);
+
+		long m;
+
+		while( time > (m = this.max.get()) && !this.max.compareAndSet(m, time) );
+	}
+
+	private void release(final String address) {
+		synchronized(this.pending) {
+			final Integer count = this.pending.get(address);
+
+			if( count == null || count <= 1 ) this.pending.remove(address);
+			else                              this.pending.put(address, count - 1);
+		}
+	}
+}
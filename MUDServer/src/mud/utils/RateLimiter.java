@@ -0,0 +1,60 @@
+package mud.utils;
+
+/**
+ * A simple token bucket, used to limit how quickly a client may
+ * issue commands. Tokens are added continuously at the specified
+ * rate up to the burst size, and each command uses one up.
+ * 
+ * @author Jeremy
+ *
+ */
+public class RateLimiter {
+	private final double rate; // tokens per millisecond
+	private final int burst;   // maximum number of tokens
+	
+	private double tokens;
+	private long last;
+	
+	public RateLimiter(final int perSecond, final int burst) {
+		this.rate = Math.max(1, perSecond) / 1000.0;
+		this.burst = Math.max(1, burst);
+		
+		this.tokens = this.burst;
+		this.last = System.currentTimeMillis();
+	}
+	
+	/**
+	 * Try to use up a token.
+	 * 
+	 * @return true if a token was available, false otherwise
+	 */
+	public synchronized boolean tryAcquire() {
+		refill();
+		
+		if( this.tokens >= 1 ) {
+			this.tokens--;
+			return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Get the time until a token will be available.
+	 * 
+	 * @return time in milliseconds (0 if one is available now)
+	 */
+	public synchronized long getDelay() {
+		refill();
+		
+		if( this.tokens >= 1 ) return 0;
+		else                   return (long) Math.ceil( (1 - this.tokens) / this.rate );
+	}
+	
+	private void refill() {
+		final long now = System.currentTimeMillis();
+		
+		this.tokens = Math.min(this.burst, this.tokens + (now - this.last) * this.rate);
+		this.last = now;
+	}
+}
@@ -0,0 +1,102 @@
+package mud.utils;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A fixed size, lock-free queue for many threads putting things in (offer)
+ * and a single thread taking them out (poll, drainTo). When it's full,
+ * offer just fails rather than waiting.
+ *
+ * @author Jeremy
+ *
+ * @param <T>
+ */
+public class RingBuffer<T> {
+	private final AtomicReferenceArray<T> slots;
+	private final int mask;
+
+	private final AtomicLong head = new AtomicLong(0); // next slot to take from (only changed by the consumer)
+	private final AtomicLong tail = new AtomicLong(0); // next slot to put into
+
+	/**
+	 * 
+	 * @param capacity size of the buffer (rounded up to a power of two)
+	 */
+	public RingBuffer(final int capacity) {
+		int size = 1;
+
+		while( size < capacity ) size <<= 1;
+
+		this.slots = new AtomicReferenceArray<T>(size);
+		this.mask = size - 1;
+	}
+
+	/**
+	 * Put something in the buffer.
+	 * 
+	 * @param item
+	 * @return true if it was added, false if the buffer was full
+	 */
+	public boolean offer(final T item) {
+		while( true ) {
+			final long t = tail.get();
+
+			if( t - head.get() >= slots.length() ) return false;
+
+			if( tail.compareAndSet(t, t + 1) ) {
+				slots.lazySet((int) (t & mask), item);
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Take the next thing out of the buffer. Only one thread should do this.
+	 * 
+	 * @return the next item, or null if there isn't one (yet)
+	 */
+	public T poll() {
+		final long h = head.get();
+		final int index = (int) (h & mask);
+
+		// null if it's empty, or if the slot was claimed but hasn't been filled in yet
+		final T item = slots.get(index);
+
+		if( item != null ) {
+			slots.lazySet(index, null);
+			head.lazySet(h + 1);
+		}
+
+		return item;
+	}
+
+	/**
+	 * Take up to the specified number of things out of the buffer.
+	 * 
+	 * @param list list to add them to
+	 * @param max
+	 * @return how many were taken
+	 */
+	public int drainTo(final List<T> list, final int max) {
+		int count = 0;
+
+		T item;
+
+		while( count < max && (item = poll()) != null ) {
+			list.add(item);
+			count++;
+		}
+
+		return count;
+	}
+
+	public int size() {
+		return (int) Math.max(0, tail.get() - head.get());
+	}
+
+	public int capacity() {
+		return slots.length();
+	}
+}
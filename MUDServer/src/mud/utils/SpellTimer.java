@@ -1,40 +1,47 @@
 package mud.utils;
 
-import java.util.TimerTask;
-
 import mud.magic.Spell;
 
 /**
- * A TimerTask that handles duration counts for
- * Spell(s) on a task per spell basis.
+ * Handles duration counts for Spell(s) on a timer per spell basis. The
+ * timer is run by a TimingWheel (see schedule), rather than counting down
+ * a "second" at a time.
  * 
  * @author Jeremy
  *
  */
-public class SpellTimer extends TimerTask {
+public class SpellTimer {
 	private Spell spell;
-	private int remaining;
+	private int duration;
+	
+	private TimingWheel.Timeout timeout = null;
 	
 	public SpellTimer(Spell spell, int duration) {
 		this.spell = spell;
-		this.remaining = duration;
+		this.duration = duration;
 	}
 	
 	public Spell getSpell() {
 		return this.spell;
 	}
 	
-	public int getTimeRemaining() {
-		return this.remaining;
+	/**
+	 * Start the timer, running the specified task when it expires.
+	 * 
+	 * @param wheel
+	 * @param onExpiry
+	 */
+	public void schedule(final TimingWheel wheel, final Runnable onExpiry) {
+		this.timeout = wheel.schedule(onExpiry, this.duration * 1000L);
 	}
-
-	@Override
-	public void run() {
-		if( this.remaining > 0 ) {
-			// do task
-			// increment counter
-			this.remaining--; // count down a "second"
-		}
-		else { cancel(); }
+	
+	public boolean cancel() {
+		return this.timeout != null && this.timeout.cancel();
+	}
+	
+	public int getTimeRemaining() {
+		if( this.timeout == null ) return this.duration;
+		
+		return (int) ((this.timeout.getRemaining() + 999) / 1000); // round up to a "second"
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
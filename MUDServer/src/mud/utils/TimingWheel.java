@@ -0,0 +1,301 @@
+package mud.utils;
+
+import java.util.concurrent.Executor;
+
+/**
+ * A hierarchical timing wheel, for running things after a delay (spell
+ * cooldowns, effect durations, auctions, respawns, etc).
+ *
+ * Time is divided into ticks. The first wheel has a slot for each of the
+ * next 64 ticks, the second a slot for each of the next 64 * 64 ticks (64
+ * at a time), and so on. A timeout goes in the slot for when it's due on
+ * the smallest wheel that reaches that far, and is moved down a wheel each
+ * time the wheel below it comes around to that slot. Adding and cancelling
+ * a timeout are O(1), and each tick only looks at the timeouts that are
+ * due (or being moved down a wheel), not every timeout there is.
+ *
+ * Timeouts further off than the wheels reach are kept in an overflow list
+ * which is looked at each time the last wheel comes around.
+ *
+ * Tasks are handed to the wheel's executor (by default just run) on the
+ * thread that calls advance (usually the wheel's own thread, see run()), so
+ * they should be quick.
+ *
+ * @author Jeremy
+ *
+ */
+public class TimingWheel implements Runnable {
+	private static final int BITS = 6;
+	private static final int SLOTS = 1 << BITS; // slots per wheel
+	private static final int MASK = SLOTS - 1;
+	private static final int LEVELS = 4;        // number of wheels
+
+	private final long tick; // length of a tick (ms)
+	private final long start;
+
+	private final Executor executor; // runs each task when it's due
+
+	private final Timeout[][] wheels = new Timeout[LEVELS][SLOTS]; // heads of each slot's list
+	private Timeout overflow = null;
+
+	private long current = 0; // next tick to process
+	private int size = 0;
+
+	private volatile boolean running = false;
+
+	/**
+	 *
+	 * @param tick length of a tick (ms)
+	 */
+	public TimingWheel(final long tick) {
+		this(tick, Runnable::run);
+	}
+
+	/**
+	 *
+	 * @param tick length of a tick (ms)
+	 * @param executor runs each task when it's due (e.g. while holding a lock)
+	 */
+	public TimingWheel(final long tick, final Executor executor) {
+		this.tick = Math.max(1, tick);
+		this.start = System.currentTimeMillis();
+		this.executor = executor;
+	}
+
+	/**
+	 * Run the task after the specified delay (rounded up to a whole tick).
+	 *
+	 * @param task
+	 * @param delay time to wait (ms)
+	 * @return a Timeout, which can be used to cancel the task or see how long is left
+	 */
+	public Timeout schedule(final Runnable task, final long delay) {
+		final long deadline = System.currentTimeMillis() + Math.max(0, delay);
+
+		final Timeout timeout = new Timeout(this, task, deadline, (deadline - this.start + this.tick - 1) / this.tick);
+
+		synchronized(this) {
+			add(timeout);
+			size++;
+		}
+
+		return timeout;
+	}
+
+	/**
+	 * Process every tick up to the specified time, running any tasks that
+	 * are due.
+	 *
+	 * @param now (ms)
+	 */
+	public void advance(final long now) {
+		final long target = (now - this.start) / this.tick;
+
+		while( true ) {
+			Timeout due;
+
+			synchronized(this) {
+				if( this.current > target ) break;
+
+				final int index = (int) (this.current & MASK);
+
+				// move timeouts down from the bigger wheels when the smaller ones come around
+				if( index == 0 ) cascade(1);
+
+				due = this.wheels[0][index];
+
+				this.wheels[0][index] = null;
+
+				for (Timeout t = due; t != null; t = t.next) {
+					t.state = Timeout.EXPIRED;
+					size--;
+				}
+
+				this.current++;
+			}
+
+			while( due != null ) {
+				final Timeout next = due.next;
+
+				due.next = null;
+				due.prev = null;
+
+				try {
+					this.executor.execute(due.task);
+				}
+				catch(final RuntimeException re) {
+					System.out.println("TimingWheel: task failed");
+					re.printStackTrace();
+				}
+
+				due = next;
+			}
+		}
+	}
+
+	/**
+	 * Keep advancing the wheel, once a tick, until stop() is called.
+	 */
+	@Override
+	public void run() {
+		this.running = true;
+
+		while( this.running ) {
+			advance( System.currentTimeMillis() );
+
+			try {
+				Thread.sleep(this.tick);
+			}
+			catch(final InterruptedException ie) {
+				break;
+			}
+		}
+	}
+
+	public void stop() {
+		this.running = false;
+	}
+
+	public synchronized int size() {
+		return this.size;
+	}
+
+	private void cascade(final int level) {
+		if( level == LEVELS ) {
+			// the last wheel came around, see if anything waiting for it is in reach now
+			Timeout t = this.overflow;
+
+			this.overflow = null;
+
+			while( t != null ) {
+				final Timeout next = t.next;
+
+				add(t);
+
+				t = next;
+			}
+
+			return;
+		}
+
+		final int index = (int) ((this.current >> (BITS * level)) & MASK);
+
+		if( index == 0 ) cascade(level + 1);
+
+		Timeout t = this.wheels[level][index];
+
+		this.wheels[level][index] = null;
+
+		while( t != null ) {
+			final Timeout next = t.next;
+
+			add(t);
+
+			t = next;
+		}
+	}
+
+	private void add(final Timeout timeout) {
+		final long due = Math.max(timeout.due, this.current);
+		final long delta = due - this.current;
+
+		timeout.prev = null;
+
+		for (int level = 0; level < LEVELS; level++) {
+			if( delta < (1L << (BITS * (level + 1))) ) {
+				final int index = (int) ((due >> (BITS * level)) & MASK);
+
+				timeout.level = level;
+				timeout.index = index;
+				timeout.next = this.wheels[level][index];
+
+				if( timeout.next != null ) timeout.next.prev = timeout;
+
+				this.wheels[level][index] = timeout;
+
+				return;
+			}
+		}
+
+		timeout.level = LEVELS;
+		timeout.next = this.overflow;
+
+		if( timeout.next != null ) timeout.next.prev = timeout;
+
+		this.overflow = timeout;
+	}
+
+	private synchronized boolean cancel(final Timeout timeout) {
+		if( timeout.state != Timeout.WAITING ) return false;
+
+		timeout.state = Timeout.CANCELLED;
+
+		if( timeout.prev != null )                 timeout.prev.next = timeout.next;
+		else if( timeout.level == LEVELS )         this.overflow = timeout.next;
+		else                                       this.wheels[timeout.level][timeout.index] = timeout.next;
+
+		if( timeout.next != null ) timeout.next.prev = timeout.prev;
+
+		timeout.next = null;
+		timeout.prev = null;
+
+		size--;
+
+		return true;
+	}
+
+	/**
+	 * A task waiting to be run by a TimingWheel.
+	 */
+	public static final class Timeout {
+		private static final int WAITING = 0;
+		private static final int EXPIRED = 1;
+		private static final int CANCELLED = 2;
+
+		private final TimingWheel wheel;
+		private final Runnable task;
+		private final long deadline; // (ms)
+		private final long due;      // (ticks)
+
+		// where it is in the wheel (guarded by the wheel)
+		private Timeout next = null;
+		private Timeout prev = null;
+		private int level;
+		private int index;
+
+		private volatile int state = WAITING;
+
+		private Timeout(final TimingWheel wheel, final Runnable task, final long deadline, final long due) {
+			this.wheel = wheel;
+			this.task = task;
+			this.deadline = deadline;
+			this.due = due;
+		}
+
+		/**
+		 * Cancel the task, if it hasn't been run yet.
+		 *
+		 * @return true if it was cancelled, false if it had already run (or been cancelled)
+		 */
+		public boolean cancel() {
+			return this.wheel.cancel(this);
+		}
+
+		public boolean isCancelled() {
+			return this.state == CANCELLED;
+		}
+
+		public boolean isExpired() {
+			return this.state == EXPIRED;
+		}
+
+		/**
+		 * Get how long until the task is due to be run.
+		 *
+		 * @return time (ms), 0 if it's already due
+		 */
+		public long getRemaining() {
+			return Math.max(0, this.deadline - System.currentTimeMillis());
+		}
+	}
+}
@@ -63,17 +63,18 @@ public final class Utils {
 	 * 
 	 * NOTE: a failure to get a a key factory will result in the program exiting
 	 * 
+	 * NOTE2: key factories aren't thread-safe, so each thread hashing
+	 * passwords (see PasswordHasher) gets its own
 	 */
-	private static SecretKeyFactory f;
-	
-	static {
+	private static final ThreadLocal<SecretKeyFactory> f = ThreadLocal.withInitial(() -> {
 		try {
-			f = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1");
+			return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1");
 		} catch (Exception e) {
 			e.printStackTrace();
 			System.exit(-1);
 		}
-	}
+		return null;
+	});
 	
 	final private static byte[] salt = new byte[16];
 	
@@ -94,7 +95,7 @@ public final class Utils {
 		final KeySpec spec = new PBEKeySpec(password.toCharArray(), salt, 65536, 128);
 
 		try {
-			final byte[] hash = f.generateSecret(spec).getEncoded();
+			final byte[] hash = f.get().generateSecret(spec).getEncoded();
 			return new BigInteger(1, hash).toString(16);
 		}
 		catch (Exception e) {